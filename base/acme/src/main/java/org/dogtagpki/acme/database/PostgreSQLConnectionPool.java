@@ -0,0 +1,371 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class maintains a bounded pool of JDBC connections.
+ *
+ * The connection returned by getConnection() is a proxy of a pooled
+ * connection. Closing the proxy returns the connection into the pool.
+ * A connection that has been idle longer than the validation interval
+ * is validated before it is reused. A connection that failed with
+ * a connection error is discarded, and a connection that failed with
+ * any other error is validated when it is returned into the pool.
+ * The statements and result sets created from the connection are
+ * proxied as well so their errors are detected too.
+ *
+ * Since the connections are long-lived, the prepared statements are
+ * cached by the JDBC driver for each connection (see prepareThreshold
+ * and preparedStatementCacheQueries in the PostgreSQL JDBC driver).
+ */
+public class PostgreSQLConnectionPool {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PostgreSQLConnectionPool.class);
+
+    public final static int DEFAULT_MAX_CONNECTIONS = 10;
+    public final static int DEFAULT_MAX_WAIT = 30; // seconds
+    public final static int DEFAULT_VALIDATION_INTERVAL = 30; // seconds
+    public final static int DEFAULT_VALIDATION_TIMEOUT = 5; // seconds
+
+    private String url;
+    private Properties info;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxWait = DEFAULT_MAX_WAIT;
+    private int validationInterval = DEFAULT_VALIDATION_INTERVAL;
+    private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT;
+
+    // idle connections, most recently used first
+    private BlockingDeque<PooledConnection> connections = new LinkedBlockingDeque<>();
+    private Semaphore permits;
+    private AtomicInteger activeConnections = new AtomicInteger();
+    private volatile boolean closed;
+
+    public PostgreSQLConnectionPool(String url, Properties info) {
+        this.url = url;
+        this.info = info;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(int maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public int getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(int validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public void setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    public void init() {
+        permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Returns a connection from the pool, or creates a new connection
+     * if there is no idle connection. The connection must be closed
+     * to return it into the pool.
+     */
+    public Connection getConnection() throws Exception {
+
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        if (!permits.tryAcquire(maxWait, TimeUnit.SECONDS)) {
+            throw new SQLException("Unable to get connection within " + maxWait + " seconds");
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+
+            PooledConnection pc;
+            while ((pc = connections.pollFirst()) != null) {
+
+                if (now - pc.lastUsed < validationInterval * 1000L || validate(pc)) {
+                    break;
+                }
+
+                pc.destroy();
+            }
+
+            if (pc == null) {
+                logger.info("Connecting to " + url);
+                pc = new PooledConnection(DriverManager.getConnection(url, info));
+            }
+
+            activeConnections.incrementAndGet();
+            return pc.createProxy();
+
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    boolean validate(PooledConnection pc) {
+
+        try {
+            if (pc.connection.isValid(validationTimeout)) {
+                return true;
+            }
+
+            logger.info("PostgreSQLConnectionPool: Discarding invalid connection");
+
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnectionPool: Unable to validate connection: " + e.getMessage());
+            logger.warn("SQL state: " + e.getSQLState());
+        }
+
+        return false;
+    }
+
+    void release(PooledConnection pc) {
+
+        try {
+            activeConnections.decrementAndGet();
+
+            if (closed || pc.broken || pc.connection.isClosed()) {
+                pc.destroy();
+                return;
+            }
+
+            if (pc.failed && !validate(pc)) {
+                pc.destroy();
+                return;
+            }
+
+            pc.failed = false;
+
+            if (!pc.connection.getAutoCommit()) {
+                // discard uncommitted changes
+                pc.connection.rollback();
+                pc.connection.setAutoCommit(true);
+            }
+
+            pc.lastUsed = System.currentTimeMillis();
+            connections.offerFirst(pc);
+
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnectionPool: Unable to release connection: " + e.getMessage());
+            pc.destroy();
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns the number of connections in use.
+     */
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     */
+    public int getIdleConnections() {
+        return connections.size();
+    }
+
+    public void close() {
+
+        closed = true;
+
+        PooledConnection pc;
+        while ((pc = connections.poll()) != null) {
+            pc.destroy();
+        }
+    }
+
+    class PooledConnection {
+
+        Connection connection;
+        long lastUsed;
+
+        // set if the connection failed with a connection error
+        boolean broken;
+
+        // set if the connection failed with another error
+        boolean failed;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection createProxy() {
+
+            ConnectionHandler handler = new ConnectionHandler(this);
+
+            handler.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    handler);
+
+            return handler.proxy;
+        }
+
+        /**
+         * Invokes a method of the connection or of an object created
+         * from the connection and records the errors.
+         *
+         * @param proxy connection proxy
+         */
+        Object invoke(Connection proxy, Object target, Method method, Object[] args) throws Throwable {
+
+            Object result;
+
+            try {
+                result = method.invoke(target, args);
+
+            } catch (InvocationTargetException e) {
+
+                Throwable cause = e.getCause();
+
+                // https://www.postgresql.org/docs/current/errcodes-appendix.html
+                if (cause instanceof SQLException) {
+                    String sqlState = ((SQLException) cause).getSQLState();
+                    if (sqlState != null && sqlState.startsWith("08")) {
+                        broken = true;
+                    } else {
+                        failed = true;
+                    }
+                }
+
+                throw cause;
+            }
+
+            if (result == null) {
+                return null;
+            }
+
+            Class<?> type = method.getReturnType();
+
+            if (type == Connection.class) {
+                // don't expose the pooled connection
+                return proxy;
+            }
+
+            if (type == Statement.class
+                    || type == PreparedStatement.class
+                    || type == CallableStatement.class
+                    || type == ResultSet.class) {
+
+                return Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[] { type },
+                        new StatementHandler(this, proxy, result));
+            }
+
+            return result;
+        }
+
+        void destroy() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("PostgreSQLConnectionPool: Unable to close connection: " + e.getMessage());
+            }
+        }
+    }
+
+    class ConnectionHandler implements InvocationHandler {
+
+        PooledConnection pc;
+        Connection proxy;
+        boolean released;
+
+        ConnectionHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (!released) {
+                    released = true;
+                    release(pc);
+                }
+                return null;
+            }
+
+            if (name.equals("isClosed") && released) {
+                return true;
+            }
+
+            if (released) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+
+            return pc.invoke(this.proxy, pc.connection, method, args);
+        }
+    }
+
+    /**
+     * This class handles the statements and result sets
+     * created from a pooled connection.
+     */
+    class StatementHandler implements InvocationHandler {
+
+        PooledConnection pc;
+        Connection connection;
+        Object target;
+
+        StatementHandler(PooledConnection pc, Connection connection, Object target) {
+            this.pc = pc;
+            this.connection = connection;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return pc.invoke(connection, target, method, args);
+        }
+    }
+}
@@ -9,11 +9,9 @@ import java.io.FileReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -45,7 +43,8 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     protected String url;
 
     protected Properties statements;
-    protected Connection connection;
+    protected PostgreSQLConnectionPool pool;
+    protected volatile boolean initialized;
 
     Boolean enabled;
     PostgreSQLConfigMonitor monitor;
@@ -68,6 +67,30 @@ public class PostgreSQLDatabase extends ACMEDatabase {
 
         url = (String) info.remove("url");
 
+        pool = new PostgreSQLConnectionPool(url, info);
+
+        String maxConnections = (String) info.remove("maxConnections");
+        if (maxConnections != null) {
+            pool.setMaxConnections(Integer.parseInt(maxConnections));
+        }
+
+        String maxWait = (String) info.remove("maxWait");
+        if (maxWait != null) {
+            pool.setMaxWait(Integer.parseInt(maxWait));
+        }
+
+        String validationInterval = (String) info.remove("validationInterval");
+        if (validationInterval != null) {
+            pool.setValidationInterval(Integer.parseInt(validationInterval));
+        }
+
+        String validationTimeout = (String) info.remove("validationTimeout");
+        if (validationTimeout != null) {
+            pool.setValidationTimeout(Integer.parseInt(validationTimeout));
+        }
+
+        pool.init();
+
         String statementsFilename = info.getProperty(
                 "statements",
                 "/usr/share/pki/acme/database/postgresql/statements.conf");
@@ -107,36 +130,20 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     }
 
     /**
-     * This method will create the initial connection, validate
-     * the current connection, or reestablish the connection if
-     * it's closed.
+     * This method will get a connection from the connection pool.
+     * The tables will be created when the first connection is made.
+     * The connection must be closed to return it into the pool.
      *
      * This method should only be called by methods implementing
      * ACMEDatabase.
-     *
-     * TODO: Use connection pool.
      */
-    public void connect() throws Exception {
+    public Connection connect() throws Exception {
 
-        if (connection == null) { // create the initial connection
-            logger.info("Connecting to " + url);
-            connection = DriverManager.getConnection(url, info);
-            setup();
-            return;
-        }
-
-        // validate the current connection
-        try (Statement st = connection.createStatement();
-            ResultSet rs = st.executeQuery("SELECT 1")) {
+        Connection connection;
+        try {
+            connection = pool.getConnection();
 
         } catch (SQLException e) {
-
-            if (connection.isClosed()) { // reestablish the connection
-                logger.info("Reconnecting to " + url);
-                connection = DriverManager.getConnection(url, info);
-                return;
-            }
-
             logger.error("Unable to access database: " + e.getMessage());
 
             // https://www.postgresql.org/docs/current/errcodes-appendix.html
@@ -144,12 +151,31 @@ public class PostgreSQLDatabase extends ACMEDatabase {
 
             throw e;
         }
+
+        if (initialized) {
+            return connection;
+        }
+
+        try {
+            synchronized (this) {
+                if (!initialized) {
+                    setup(connection);
+                    initialized = true;
+                }
+            }
+
+        } catch (Exception e) {
+            connection.close();
+            throw e;
+        }
+
+        return connection;
     }
 
     /**
      * This method will create the tables if they do not exist.
      */
-    public void setup() throws Exception {
+    public void setup(Connection connection) throws Exception {
 
         logger.info("Setting up database");
 
@@ -181,7 +207,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    String getConfig(String id) throws Exception {
+    String getConfig(Connection connection, String id) throws Exception {
 
         logger.info("Getting config " + id);
 
@@ -202,7 +228,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    void addConfig(String id, String value) throws Exception {
+    void addConfig(Connection connection, String id, String value) throws Exception {
 
         logger.info("Setting config " + id + ": " + value);
 
@@ -216,7 +242,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    int updateConfig(String id, String value) throws Exception {
+    int updateConfig(Connection connection, String id, String value) throws Exception {
 
         logger.info("Updating config " + id + ": " + value);
 
@@ -230,7 +256,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    void removeConfig(String id) throws Exception {
+    void removeConfig(Connection connection, String id) throws Exception {
 
         logger.info("Removing config " + id);
 
@@ -243,17 +269,17 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    void setConfig(String id, String value) throws Exception {
+    void setConfig(Connection connection, String id, String value) throws Exception {
 
         if (value == null) {
-            removeConfig(id);
+            removeConfig(connection, id);
             return;
         }
 
-        int updatedRows = updateConfig(id, value);
+        int updatedRows = updateConfig(connection, id, value);
         if (updatedRows > 0) return;
 
-        addConfig(id, value);
+        addConfig(connection, id, value);
     }
 
     @Override
@@ -265,10 +291,10 @@ public class PostgreSQLDatabase extends ACMEDatabase {
 
         if (monitor == null) {
 
-            connect();
-
-            String value = getConfig("enabled");
-            enabled = value == null ? null : Boolean.valueOf(value);
+            try (Connection connection = connect()) {
+                String value = getConfig(connection, "enabled");
+                enabled = value == null ? null : Boolean.valueOf(value);
+            }
         }
 
         return enabled;
@@ -277,15 +303,16 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void setEnabled(Boolean enabled) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String value = enabled == null ? null : enabled.toString();
-        setConfig("enabled", value);
+            String value = enabled == null ? null : enabled.toString();
+            setConfig(connection, "enabled", value);
 
-        this.enabled = enabled;
+            this.enabled = enabled;
+        }
     }
 
-    private ACMENonce getNonce(String nonceID) throws Exception {
+    private ACMENonce getNonce(Connection connection, String nonceID) throws Exception {
 
         logger.info("Getting nonce " + nonceID);
 
@@ -318,41 +345,43 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addNonce(ACMENonce nonce) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String nonceID = nonce.getID();
-        logger.info("Adding nonce " + nonceID);
+            String nonceID = nonce.getID();
+            logger.info("Adding nonce " + nonceID);
 
-        String sql = statements.getProperty("addNonce");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addNonce");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, nonceID);
+                ps.setString(1, nonceID);
 
-            Date creationTime = nonce.getCreationTime();
-            ps.setTimestamp(2, new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = nonce.getCreationTime();
+                ps.setTimestamp(2, new Timestamp(creationTime.getTime()), UTC);
 
-            Date expirationTime = nonce.getExpirationTime();
-            ps.setTimestamp(3, new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = nonce.getExpirationTime();
+                ps.setTimestamp(3, new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.executeUpdate();
+                ps.executeUpdate();
+            }
         }
     }
 
     @Override
     public ACMENonce removeNonce(String nonceID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        ACMENonce nonce = getNonce(nonceID);
-        if (nonce == null) return null;
+            ACMENonce nonce = getNonce(connection, nonceID);
+            if (nonce == null) return null;
 
-        deleteNonce(nonceID);
-        return nonce;
+            deleteNonce(connection, nonceID);
+            return nonce;
+        }
     }
 
-    private void deleteNonce(String nonceID) throws Exception {
+    private void deleteNonce(Connection connection, String nonceID) throws Exception {
 
         logger.info("Removing nonce " + nonceID);
 
@@ -368,20 +397,21 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredNonces(Date currentTime) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting expired nonces");
+            logger.info("Getting expired nonces");
 
-        Collection<String> nonceIDs = getExpiredNonceIDs(currentTime);
+            Collection<String> nonceIDs = getExpiredNonceIDs(connection, currentTime);
 
-        logger.info("Removing expired nonces");
+            logger.info("Removing expired nonces");
 
-        for (String nonceID : nonceIDs) {
-            deleteNonce(nonceID);
+            for (String nonceID : nonceIDs) {
+                deleteNonce(connection, nonceID);
+            }
         }
     }
 
-    private Collection<String> getExpiredNonceIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredNonceIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredNonceIDs");
         logger.info("SQL: " + sql);
@@ -406,42 +436,43 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public ACMEAccount getAccount(String accountID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting account " + accountID);
+            logger.info("Getting account " + accountID);
 
-        String sql = statements.getProperty("getAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getAccount");
+            logger.info("SQL: " + sql);
 
-        ACMEAccount account = new ACMEAccount();
+            ACMEAccount account = new ACMEAccount();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, accountID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, accountID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                account.setID(accountID);
+                    account.setID(accountID);
 
-                Timestamp created = rs.getTimestamp("created");
-                account.setCreationTime(new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    account.setCreationTime(new Date(created.getTime()));
 
-                account.setStatus(rs.getString("status"));
+                    account.setStatus(rs.getString("status"));
 
-                String jwk = rs.getString("jwk");
-                account.setJWK(JWK.fromJSON(jwk));
+                    String jwk = rs.getString("jwk");
+                    account.setJWK(JWK.fromJSON(jwk));
+                }
             }
-        }
 
-        getAccountContacts(account);
+            getAccountContacts(connection, account);
 
-        return account;
+            return account;
+        }
     }
 
-    private void getAccountContacts(ACMEAccount account) throws Exception {
+    private void getAccountContacts(Connection connection, ACMEAccount account) throws Exception {
 
         String accountID = account.getID();
         logger.info("Getting contacts for " + accountID);
@@ -471,54 +502,61 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addAccount(ACMEAccount account) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String accountID = account.getID();
-        logger.info("Adding account " + accountID);
+            String accountID = account.getID();
+            logger.info("Adding account " + accountID);
 
-        String sql = statements.getProperty("addAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addAccount");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, accountID);
+                ps.setString(1, accountID);
 
-            Date creationTime = account.getCreationTime();
-            ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = account.getCreationTime();
+                ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            ps.setString(3, account.getStatus());
-            ps.setString(4, account.getJWK().toJSON());
+                ps.setString(3, account.getStatus());
+                ps.setString(4, account.getJWK().toJSON());
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
 
-        addAccountContacts(account);
+            addAccountContacts(connection, account);
+        }
     }
 
     @Override
     public void updateAccount(ACMEAccount account) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String accountID = account.getID();
-        logger.info("Updating account " + accountID);
+            String accountID = account.getID();
+            logger.info("Updating account " + accountID);
 
-        String sql = statements.getProperty("updateAccount");
-        logger.info("SQL: " + sql);
+            // replace the contacts in a single transaction
+            connection.setAutoCommit(false);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            String sql = statements.getProperty("updateAccount");
+            logger.info("SQL: " + sql);
+
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, account.getStatus());
-            ps.setString(2, accountID);
+                ps.setString(1, account.getStatus());
+                ps.setString(2, accountID);
 
-            ps.executeUpdate();
-        }
+                ps.executeUpdate();
+            }
 
-        removeAccountContacts(accountID);
-        addAccountContacts(account);
+            removeAccountContacts(connection, accountID);
+            addAccountContacts(connection, account);
+
+            connection.commit();
+        }
     }
 
-    private void addAccountContacts(ACMEAccount account) throws Exception {
+    private void addAccountContacts(Connection connection, ACMEAccount account) throws Exception {
 
         String[] contacts = account.getContact();
         if (contacts == null) return;
@@ -536,12 +574,14 @@ public class PostgreSQLDatabase extends ACMEDatabase {
                 ps.setString(1, accountID);
                 ps.setString(2, contact);
 
-                ps.executeUpdate();
+                ps.addBatch();
             }
+
+            ps.executeBatch();
         }
     }
 
-    private void removeAccountContacts(String accountID) throws Exception {
+    private void removeAccountContacts(Connection connection, String accountID) throws Exception {
 
         logger.info("Removing contacts for account " + accountID);
 
@@ -559,203 +599,207 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public ACMEOrder getOrder(String orderID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting order " + orderID);
+            logger.info("Getting order " + orderID);
 
-        String sql = statements.getProperty("getOrder");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrder");
+            logger.info("SQL: " + sql);
 
-        ACMEOrder order = new ACMEOrder();
+            ACMEOrder order = new ACMEOrder();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, orderID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, orderID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                order.setID(orderID);
-                order.setAccountID(rs.getString("account_id"));
+                    order.setID(orderID);
+                    order.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                order.setStatus(rs.getString("status"));
+                    order.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                Timestamp notBefore = rs.getTimestamp("not_before");
-                order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                    Timestamp notBefore = rs.getTimestamp("not_before");
+                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                Timestamp notAfter = rs.getTimestamp("not_after");
-                order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                    Timestamp notAfter = rs.getTimestamp("not_after");
+                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                order.setCertID(rs.getString("cert_id"));
+                    order.setCertID(rs.getString("cert_id"));
+                }
             }
-        }
 
-        getOrderIdentifiers(order);
-        getOrderAuthorizations(order);
+            getOrderIdentifiers(connection, order);
+            getOrderAuthorizations(connection, order);
 
-        return order;
+            return order;
+        }
     }
 
     @Override
     public Collection<ACMEOrder> getOrdersByAccount(String accountID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting orders for account " + accountID);
+            logger.info("Getting orders for account " + accountID);
 
-        String sql = statements.getProperty("getOrdersByAccount");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrdersByAccount");
+            logger.info("SQL: " + sql);
 
-        Collection<ACMEOrder> orders = new ArrayList<>();
+            Collection<ACMEOrder> orders = new ArrayList<>();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, accountID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, accountID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                while (rs.next()) {
-                    ACMEOrder order = new ACMEOrder();
-                    order.setID(rs.getString("id"));
-                    order.setAccountID(accountID);
+                    while (rs.next()) {
+                        ACMEOrder order = new ACMEOrder();
+                        order.setID(rs.getString("id"));
+                        order.setAccountID(accountID);
 
-                    Timestamp created = rs.getTimestamp("created");
-                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                        Timestamp created = rs.getTimestamp("created");
+                        order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                    order.setStatus(rs.getString("status"));
+                        order.setStatus(rs.getString("status"));
 
-                    Timestamp expires = rs.getTimestamp("expires");
-                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                        Timestamp expires = rs.getTimestamp("expires");
+                        order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                    Timestamp notBefore = rs.getTimestamp("not_before");
-                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                        Timestamp notBefore = rs.getTimestamp("not_before");
+                        order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                    Timestamp notAfter = rs.getTimestamp("not_after");
-                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                        Timestamp notAfter = rs.getTimestamp("not_after");
+                        order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                    order.setCertID(rs.getString("cert_id"));
+                        order.setCertID(rs.getString("cert_id"));
 
-                    getOrderIdentifiers(order);
-                    getOrderAuthorizations(order);
+                        getOrderIdentifiers(connection, order);
+                        getOrderAuthorizations(connection, order);
 
-                    orders.add(order);
+                        orders.add(order);
+                    }
                 }
             }
-        }
 
-        return orders;
+            return orders;
+        }
     }
 
     @Override
     public Collection<ACMEOrder> getOrdersByAuthorizationAndStatus(String authzID, String status)
             throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting " + status + " orders for authorization " + authzID);
+            logger.info("Getting " + status + " orders for authorization " + authzID);
 
-        String sql = statements.getProperty("getOrdersByAuthorizationAndStatus");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrdersByAuthorizationAndStatus");
+            logger.info("SQL: " + sql);
 
-        Collection<ACMEOrder> orders = new ArrayList<>();
+            Collection<ACMEOrder> orders = new ArrayList<>();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, authzID);
-            ps.setString(2, status);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, authzID);
+                ps.setString(2, status);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                while (rs.next()) {
-                    ACMEOrder order = new ACMEOrder();
-                    order.setID(rs.getString("id"));
-                    order.setAccountID(rs.getString("account_id"));
+                    while (rs.next()) {
+                        ACMEOrder order = new ACMEOrder();
+                        order.setID(rs.getString("id"));
+                        order.setAccountID(rs.getString("account_id"));
 
-                    Timestamp created = rs.getTimestamp("created");
-                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                        Timestamp created = rs.getTimestamp("created");
+                        order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                    order.setStatus(rs.getString("status"));
+                        order.setStatus(rs.getString("status"));
 
-                    Timestamp expires = rs.getTimestamp("expires");
-                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                        Timestamp expires = rs.getTimestamp("expires");
+                        order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                    Timestamp notBefore = rs.getTimestamp("not_before");
-                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                        Timestamp notBefore = rs.getTimestamp("not_before");
+                        order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                    Timestamp notAfter = rs.getTimestamp("not_after");
-                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                        Timestamp notAfter = rs.getTimestamp("not_after");
+                        order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                    order.setCertID(rs.getString("cert_id"));
+                        order.setCertID(rs.getString("cert_id"));
 
-                    getOrderIdentifiers(order);
-                    getOrderAuthorizations(order);
+                        getOrderIdentifiers(connection, order);
+                        getOrderAuthorizations(connection, order);
 
-                    orders.add(order);
+                        orders.add(order);
+                    }
                 }
             }
-        }
 
-        return orders;
+            return orders;
+        }
     }
 
     @Override
     public ACMEOrder getOrderByCertificate(String certID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting order for certificate " + certID);
+            logger.info("Getting order for certificate " + certID);
 
-        String sql = statements.getProperty("getOrderByCertificate");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getOrderByCertificate");
+            logger.info("SQL: " + sql);
 
-        ACMEOrder order = new ACMEOrder();
+            ACMEOrder order = new ACMEOrder();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, certID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, certID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    // no order found
-                    return null;
-                }
+                    if (!rs.next()) {
+                        // no order found
+                        return null;
+                    }
 
-                // order found
+                    // order found
 
-                order.setID(rs.getString("id"));
-                order.setAccountID(rs.getString("account_id"));
+                    order.setID(rs.getString("id"));
+                    order.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                order.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    order.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                order.setStatus(rs.getString("status"));
+                    order.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    order.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                Timestamp notBefore = rs.getTimestamp("not_before");
-                order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
+                    Timestamp notBefore = rs.getTimestamp("not_before");
+                    order.setNotBeforeTime(notBefore == null ? null : new Date(notBefore.getTime()));
 
-                Timestamp notAfter = rs.getTimestamp("not_after");
-                order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
+                    Timestamp notAfter = rs.getTimestamp("not_after");
+                    order.setNotAfterTime(notAfter == null ? null : new Date(notAfter.getTime()));
 
-                order.setCertID(certID);
+                    order.setCertID(certID);
+                }
             }
-        }
 
-        getOrderIdentifiers(order);
-        getOrderAuthorizations(order);
+            getOrderIdentifiers(connection, order);
+            getOrderAuthorizations(connection, order);
 
-        return order;
+            return order;
+        }
     }
 
-    private Collection<String> getExpiredOrderIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredOrderIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredOrderIDs");
         logger.info("SQL: " + sql);
@@ -777,7 +821,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         return orderIDs;
     }
 
-    private void getOrderIdentifiers(ACMEOrder order) throws Exception {
+    private void getOrderIdentifiers(Connection connection, ACMEOrder order) throws Exception {
 
         String orderID = order.getID();
         logger.info("Getting identifiers for order " + orderID);
@@ -806,7 +850,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void getOrderAuthorizations(ACMEOrder order) throws Exception {
+    private void getOrderAuthorizations(Connection connection, ACMEOrder order) throws Exception {
 
         String orderID = order.getID();
         logger.info("Getting authorizations for order " + orderID);
@@ -836,43 +880,49 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addOrder(ACMEOrder order) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String orderID = order.getID();
-        logger.info("Adding order " + orderID);
+            String orderID = order.getID();
+            logger.info("Adding order " + orderID);
 
-        String sql = statements.getProperty("addOrder");
-        logger.info("SQL: " + sql);
+            // add the order and its identifiers and authorizations in a single transaction
+            connection.setAutoCommit(false);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            String sql = statements.getProperty("addOrder");
+            logger.info("SQL: " + sql);
 
-            ps.setString(1, orderID);
-            ps.setString(2, order.getAccountID());
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            Date creationTime = order.getCreationTime();
-            ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                ps.setString(1, orderID);
+                ps.setString(2, order.getAccountID());
 
-            ps.setString(4, order.getStatus());
+                Date creationTime = order.getCreationTime();
+                ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            Date expirationTime = order.getExpirationTime();
-            ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                ps.setString(4, order.getStatus());
 
-            Date notBefore = order.getNotBeforeTime();
-            ps.setTimestamp(6, notBefore == null ? null : new Timestamp(notBefore.getTime()), UTC);
+                Date expirationTime = order.getExpirationTime();
+                ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            Date notAfter = order.getNotAfterTime();
-            ps.setTimestamp(7, notAfter == null ? null : new Timestamp(notAfter.getTime()), UTC);
+                Date notBefore = order.getNotBeforeTime();
+                ps.setTimestamp(6, notBefore == null ? null : new Timestamp(notBefore.getTime()), UTC);
 
-            ps.setString(8, order.getCertID());
+                Date notAfter = order.getNotAfterTime();
+                ps.setTimestamp(7, notAfter == null ? null : new Timestamp(notAfter.getTime()), UTC);
 
-            ps.executeUpdate();
-        }
+                ps.setString(8, order.getCertID());
 
-        addOrderIdentifiers(order);
-        addOrderAuthorizations(order);
+                ps.executeUpdate();
+            }
+
+            addOrderIdentifiers(connection, order);
+            addOrderAuthorizations(connection, order);
+
+            connection.commit();
+        }
     }
 
-    private void addOrderIdentifiers(ACMEOrder order) throws Exception {
+    private void addOrderIdentifiers(Connection connection, ACMEOrder order) throws Exception {
 
         ACMEIdentifier[] identifiers = order.getIdentifiers();
         if (identifiers == null) return;
@@ -883,20 +933,22 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         String sql = statements.getProperty("addOrderIdentifiers");
         logger.info("SQL: " + sql);
 
-        for (ACMEIdentifier identifier : identifiers) {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (ACMEIdentifier identifier : identifiers) {
 
                 ps.setString(1, orderID);
                 ps.setString(2, identifier.getType());
                 ps.setString(3, identifier.getValue());
 
-                ps.executeUpdate();
+                ps.addBatch();
             }
+
+            ps.executeBatch();
         }
     }
 
-    private void removeOrderIdentifiers(String orderID) throws Exception {
+    private void removeOrderIdentifiers(Connection connection, String orderID) throws Exception {
 
         logger.info("Removing identifiers for order " + orderID);
 
@@ -909,7 +961,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void addOrderAuthorizations(ACMEOrder order) throws Exception {
+    private void addOrderAuthorizations(Connection connection, ACMEOrder order) throws Exception {
 
         String[] authzIDs = order.getAuthzIDs();
         if (authzIDs == null) return;
@@ -927,12 +979,14 @@ public class PostgreSQLDatabase extends ACMEDatabase {
                 ps.setString(1, orderID);
                 ps.setString(2, authzID);
 
-                ps.executeUpdate();
+                ps.addBatch();
             }
+
+            ps.executeBatch();
         }
     }
 
-    private void removeOrderAuthorizations(String orderID) throws Exception {
+    private void removeOrderAuthorizations(Connection connection, String orderID) throws Exception {
 
         logger.info("Removing authorizations for order " + orderID);
 
@@ -948,32 +1002,33 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void updateOrder(ACMEOrder order) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String orderID = order.getID();
-        logger.info("Updating order " + orderID);
+            String orderID = order.getID();
+            logger.info("Updating order " + orderID);
 
-        String sql = statements.getProperty("updateOrder");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("updateOrder");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, order.getStatus());
-            ps.setString(2, order.getCertID());
+                ps.setString(1, order.getStatus());
+                ps.setString(2, order.getCertID());
 
-            Date expirationTime = order.getExpirationTime();
-            ps.setTimestamp(3, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = order.getExpirationTime();
+                ps.setTimestamp(3, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.setString(4, orderID);
+                ps.setString(4, orderID);
 
-            ps.executeUpdate();
+                ps.executeUpdate();
+            }
         }
     }
 
-    private void removeOrder(String orderID) throws Exception {
+    private void removeOrder(Connection connection, String orderID) throws Exception {
 
-        removeOrderIdentifiers(orderID);
-        removeOrderAuthorizations(orderID);
+        removeOrderIdentifiers(connection, orderID);
+        removeOrderAuthorizations(connection, orderID);
 
         logger.info("Removing order " + orderID);
 
@@ -989,114 +1044,117 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredOrders(Date currentTime) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting expired order IDs");
+            logger.info("Getting expired order IDs");
 
-        Collection<String> orderIDs = getExpiredOrderIDs(currentTime);
+            Collection<String> orderIDs = getExpiredOrderIDs(connection, currentTime);
 
-        logger.info("Removing expired orders");
+            logger.info("Removing expired orders");
 
-        for (String orderID : orderIDs) {
-            removeOrder(orderID);
+            for (String orderID : orderIDs) {
+                removeOrder(connection, orderID);
+            }
         }
     }
 
     @Override
     public ACMEAuthorization getAuthorization(String authzID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting authorization " + authzID);
+            logger.info("Getting authorization " + authzID);
 
-        String sql = statements.getProperty("getAuthorization");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getAuthorization");
+            logger.info("SQL: " + sql);
 
-        ACMEAuthorization authorization = new ACMEAuthorization();
+            ACMEAuthorization authorization = new ACMEAuthorization();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, authzID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, authzID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                authorization.setID(authzID);
-                authorization.setAccountID(rs.getString("account_id"));
+                    authorization.setID(authzID);
+                    authorization.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                authorization.setStatus(rs.getString("status"));
+                    authorization.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                ACMEIdentifier identifier = new ACMEIdentifier();
-                identifier.setType(rs.getString("identifier_type"));
-                identifier.setValue(rs.getString("identifier_value"));
-                authorization.setIdentifier(identifier);
+                    ACMEIdentifier identifier = new ACMEIdentifier();
+                    identifier.setType(rs.getString("identifier_type"));
+                    identifier.setValue(rs.getString("identifier_value"));
+                    authorization.setIdentifier(identifier);
 
-                boolean wildcard = rs.getBoolean("wildcard");
-                authorization.setWildcard(wildcard ? true : null);
+                    boolean wildcard = rs.getBoolean("wildcard");
+                    authorization.setWildcard(wildcard ? true : null);
+                }
             }
-        }
 
-        getAuthorizationChallenges(authorization);
+            getAuthorizationChallenges(connection, authorization);
 
-        return authorization;
+            return authorization;
+        }
     }
 
     @Override
     public ACMEAuthorization getAuthorizationByChallenge(String challengeID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting authorization for challenge " + challengeID);
+            logger.info("Getting authorization for challenge " + challengeID);
 
-        String sql = statements.getProperty("getAuthorizationByChallenge");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getAuthorizationByChallenge");
+            logger.info("SQL: " + sql);
 
-        ACMEAuthorization authorization = new ACMEAuthorization();
+            ACMEAuthorization authorization = new ACMEAuthorization();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, challengeID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, challengeID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                authorization.setID(rs.getString("id"));
-                authorization.setAccountID(rs.getString("account_id"));
+                    authorization.setID(rs.getString("id"));
+                    authorization.setAccountID(rs.getString("account_id"));
 
-                Timestamp created = rs.getTimestamp("created");
-                authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                authorization.setStatus(rs.getString("status"));
+                    authorization.setStatus(rs.getString("status"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                ACMEIdentifier identifier = new ACMEIdentifier();
-                identifier.setType(rs.getString("identifier_type"));
-                identifier.setValue(rs.getString("identifier_value"));
-                authorization.setIdentifier(identifier);
+                    ACMEIdentifier identifier = new ACMEIdentifier();
+                    identifier.setType(rs.getString("identifier_type"));
+                    identifier.setValue(rs.getString("identifier_value"));
+                    authorization.setIdentifier(identifier);
 
-                boolean wildcard = rs.getBoolean("wildcard");
-                authorization.setWildcard(wildcard ? true : null);
+                    boolean wildcard = rs.getBoolean("wildcard");
+                    authorization.setWildcard(wildcard ? true : null);
+                }
             }
-        }
 
-        getAuthorizationChallenges(authorization);
+            getAuthorizationChallenges(connection, authorization);
 
-        return authorization;
+            return authorization;
+        }
     }
 
-    private Collection<String> getExpiredAuthorizationIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredAuthorizationIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredAuthorizationIDs");
         logger.info("SQL: " + sql);
@@ -1121,55 +1179,56 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public Collection<ACMEAuthorization> getRevocationAuthorizations(String accountID, Date time) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting authorizations for account " + accountID);
+            logger.info("Getting authorizations for account " + accountID);
 
-        String sql = statements.getProperty("getRevocationAuthorizations");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getRevocationAuthorizations");
+            logger.info("SQL: " + sql);
 
-        Collection<ACMEAuthorization> authorizations = new ArrayList<>();
+            Collection<ACMEAuthorization> authorizations = new ArrayList<>();
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, accountID);
-            ps.setTimestamp(2, new Timestamp(time.getTime()), UTC);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, accountID);
+                ps.setTimestamp(2, new Timestamp(time.getTime()), UTC);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                while (rs.next()) {
+                    while (rs.next()) {
 
-                    ACMEAuthorization authorization = new ACMEAuthorization();
+                        ACMEAuthorization authorization = new ACMEAuthorization();
 
-                    authorization.setID(rs.getString("id"));
-                    authorization.setAccountID(accountID);
+                        authorization.setID(rs.getString("id"));
+                        authorization.setAccountID(accountID);
 
-                    Timestamp created = rs.getTimestamp("created");
-                    authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
+                        Timestamp created = rs.getTimestamp("created");
+                        authorization.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                    authorization.setStatus(rs.getString("status"));
+                        authorization.setStatus(rs.getString("status"));
 
-                    Timestamp expires = rs.getTimestamp("expires");
-                    authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                        Timestamp expires = rs.getTimestamp("expires");
+                        authorization.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                    ACMEIdentifier identifier = new ACMEIdentifier();
-                    identifier.setType(rs.getString("identifier_type"));
-                    identifier.setValue(rs.getString("identifier_value"));
-                    authorization.setIdentifier(identifier);
+                        ACMEIdentifier identifier = new ACMEIdentifier();
+                        identifier.setType(rs.getString("identifier_type"));
+                        identifier.setValue(rs.getString("identifier_value"));
+                        authorization.setIdentifier(identifier);
 
-                    boolean wildcard = rs.getBoolean("wildcard");
-                    authorization.setWildcard(wildcard ? true : null);
+                        boolean wildcard = rs.getBoolean("wildcard");
+                        authorization.setWildcard(wildcard ? true : null);
 
-                    getAuthorizationChallenges(authorization);
+                        getAuthorizationChallenges(connection, authorization);
 
-                    authorizations.add(authorization);
+                        authorizations.add(authorization);
+                    }
                 }
             }
-        }
 
-        return authorizations;
+            return authorizations;
+        }
     }
 
-    private void getAuthorizationChallenges(ACMEAuthorization authorization) throws Exception {
+    private void getAuthorizationChallenges(Connection connection, ACMEAuthorization authorization) throws Exception {
 
         String authzID = authorization.getID();
         logger.info("Getting challenges for authorization " + authzID);
@@ -1209,68 +1268,80 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addAuthorization(ACMEAuthorization authorization) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String authzID = authorization.getID();
-        logger.info("Adding authorization " + authzID);
+            String authzID = authorization.getID();
+            logger.info("Adding authorization " + authzID);
 
-        String sql = statements.getProperty("addAuthorization");
-        logger.info("SQL: " + sql);
+            // add the authorization and its challenges in a single transaction
+            connection.setAutoCommit(false);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            String sql = statements.getProperty("addAuthorization");
+            logger.info("SQL: " + sql);
 
-            ps.setString(1, authzID);
-            ps.setString(2, authorization.getAccountID());
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            Date creationTime = authorization.getCreationTime();
-            ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                ps.setString(1, authzID);
+                ps.setString(2, authorization.getAccountID());
 
-            ps.setString(4, authorization.getStatus());
+                Date creationTime = authorization.getCreationTime();
+                ps.setTimestamp(3, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            Date expirationTime = authorization.getExpirationTime();
-            ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                ps.setString(4, authorization.getStatus());
 
-            ACMEIdentifier identifier = authorization.getIdentifier();
-            ps.setString(6, identifier.getType());
-            ps.setString(7, identifier.getValue());
+                Date expirationTime = authorization.getExpirationTime();
+                ps.setTimestamp(5, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            Boolean wildcard = authorization.getWildcard();
-            ps.setBoolean(8, wildcard == null ? false : wildcard);
+                ACMEIdentifier identifier = authorization.getIdentifier();
+                ps.setString(6, identifier.getType());
+                ps.setString(7, identifier.getValue());
 
-            ps.executeUpdate();
-        }
+                Boolean wildcard = authorization.getWildcard();
+                ps.setBoolean(8, wildcard == null ? false : wildcard);
+
+                ps.executeUpdate();
+            }
+
+            addAuthorizationChallenges(connection, authorization);
 
-        addAuthorizationChallenges(authorization);
+            connection.commit();
+        }
     }
 
     @Override
     public void updateAuthorization(ACMEAuthorization authorization) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        String authzID = authorization.getID();
-        logger.info("Updating authorization " + authzID);
+            String authzID = authorization.getID();
+            logger.info("Updating authorization " + authzID);
 
-        String sql = statements.getProperty("updateAuthorization");
-        logger.info("SQL: " + sql);
+            // replace the challenges in a single transaction
+            connection.setAutoCommit(false);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            String sql = statements.getProperty("updateAuthorization");
+            logger.info("SQL: " + sql);
 
-            ps.setString(1, authorization.getStatus());
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            Date expirationTime = authorization.getExpirationTime();
-            ps.setTimestamp(2, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                ps.setString(1, authorization.getStatus());
 
-            ps.setString(3, authzID);
+                Date expirationTime = authorization.getExpirationTime();
+                ps.setTimestamp(2, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.executeUpdate();
-        }
+                ps.setString(3, authzID);
+
+                ps.executeUpdate();
+            }
 
-        removeAuthorizationChallenges(authzID);
-        addAuthorizationChallenges(authorization);
+            removeAuthorizationChallenges(connection, authzID);
+            addAuthorizationChallenges(connection, authorization);
+
+            connection.commit();
+        }
     }
 
-    private void removeAuthorizationChallenges(String authzID) throws Exception {
+    private void removeAuthorizationChallenges(Connection connection, String authzID) throws Exception {
 
         logger.info("Removing challenges for authorization " + authzID);
 
@@ -1283,7 +1354,7 @@ public class PostgreSQLDatabase extends ACMEDatabase {
         }
     }
 
-    private void addAuthorizationChallenges(ACMEAuthorization authorization) throws Exception {
+    private void addAuthorizationChallenges(Connection connection, ACMEAuthorization authorization) throws Exception {
 
         Collection<ACMEChallenge> challenges = authorization.getChallenges();
         if (challenges == null) return;
@@ -1307,14 +1378,16 @@ public class PostgreSQLDatabase extends ACMEDatabase {
                 Date validationTime = challenge.getValidationTime();
                 ps.setTimestamp(6, validationTime == null ? null : new Timestamp(validationTime.getTime()), UTC);
 
-                ps.executeUpdate();
+                ps.addBatch();
             }
+
+            ps.executeBatch();
         }
     }
 
-    private void removeAuthorization(String authzID) throws Exception {
+    private void removeAuthorization(Connection connection, String authzID) throws Exception {
 
-        removeAuthorizationChallenges(authzID);
+        removeAuthorizationChallenges(connection, authzID);
 
         logger.info("Removing authorization " + authzID);
 
@@ -1330,55 +1403,57 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredAuthorizations(Date currentTime) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting expired authorization IDs");
+            logger.info("Getting expired authorization IDs");
 
-        Collection<String> authzIDs = getExpiredAuthorizationIDs(currentTime);
+            Collection<String> authzIDs = getExpiredAuthorizationIDs(connection, currentTime);
 
-        logger.info("Removing expired authorization");
+            logger.info("Removing expired authorization");
 
-        for (String authzID : authzIDs) {
-            removeAuthorization(authzID);
+            for (String authzID : authzIDs) {
+                removeAuthorization(connection, authzID);
+            }
         }
     }
 
     @Override
     public ACMECertificate getCertificate(String certID) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting certificate " + certID);
+            logger.info("Getting certificate " + certID);
 
-        String sql = statements.getProperty("getCertificate");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("getCertificate");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, certID);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, certID);
 
-            try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = ps.executeQuery()) {
 
-                if (!rs.next()) {
-                    return null;
-                }
+                    if (!rs.next()) {
+                        return null;
+                    }
 
-                ACMECertificate certificate = new ACMECertificate();
-                certificate.setID(certID);
+                    ACMECertificate certificate = new ACMECertificate();
+                    certificate.setID(certID);
 
-                Timestamp created = rs.getTimestamp("created");
-                certificate.setCreationTime(created == null ? null : new Date(created.getTime()));
+                    Timestamp created = rs.getTimestamp("created");
+                    certificate.setCreationTime(created == null ? null : new Date(created.getTime()));
 
-                certificate.setData(rs.getBytes("data"));
+                    certificate.setData(rs.getBytes("data"));
 
-                Timestamp expires = rs.getTimestamp("expires");
-                certificate.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
+                    Timestamp expires = rs.getTimestamp("expires");
+                    certificate.setExpirationTime(expires == null ? null : new Date(expires.getTime()));
 
-                return certificate;
+                    return certificate;
+                }
             }
         }
     }
 
-    private Collection<String> getExpiredCertificateIDs(Date currentTime) throws Exception {
+    private Collection<String> getExpiredCertificateIDs(Connection connection, Date currentTime) throws Exception {
 
         String sql = statements.getProperty("getExpiredCertificateIDs");
         logger.info("SQL: " + sql);
@@ -1403,30 +1478,31 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void addCertificate(String certID, ACMECertificate certificate) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Adding certificate " + certID);
+            logger.info("Adding certificate " + certID);
 
-        String sql = statements.getProperty("addCertificate");
-        logger.info("SQL: " + sql);
+            String sql = statements.getProperty("addCertificate");
+            logger.info("SQL: " + sql);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
-            ps.setString(1, certID);
+                ps.setString(1, certID);
 
-            Date creationTime = certificate.getCreationTime();
-            ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
+                Date creationTime = certificate.getCreationTime();
+                ps.setTimestamp(2, creationTime == null ? null : new Timestamp(creationTime.getTime()), UTC);
 
-            ps.setBytes(3, certificate.getData());
+                ps.setBytes(3, certificate.getData());
 
-            Date expirationTime = certificate.getExpirationTime();
-            ps.setTimestamp(4, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
+                Date expirationTime = certificate.getExpirationTime();
+                ps.setTimestamp(4, expirationTime == null ? null : new Timestamp(expirationTime.getTime()), UTC);
 
-            ps.executeUpdate();
+                ps.executeUpdate();
+            }
         }
     }
 
-    private void removeCertificate(String certID) throws Exception {
+    private void removeCertificate(Connection connection, String certID) throws Exception {
 
         logger.info("Removing certificate " + certID);
 
@@ -1442,16 +1518,17 @@ public class PostgreSQLDatabase extends ACMEDatabase {
     @Override
     public void removeExpiredCertificates(Date currentTime) throws Exception {
 
-        connect();
+        try (Connection connection = connect()) {
 
-        logger.info("Getting expired certificaate IDs");
+            logger.info("Getting expired certificaate IDs");
 
-        Collection<String> certIDs = getExpiredCertificateIDs(currentTime);
+            Collection<String> certIDs = getExpiredCertificateIDs(connection, currentTime);
 
-        logger.info("Removing expired certificates");
+            logger.info("Removing expired certificates");
 
-        for (String certID : certIDs) {
-            removeCertificate(certID);
+            for (String certID : certIDs) {
+                removeCertificate(connection, certID);
+            }
         }
     }
 
@@ -1462,8 +1539,8 @@ public class PostgreSQLDatabase extends ACMEDatabase {
             monitor.stop();
         }
 
-        if (connection != null) {
-            connection.close();
+        if (pool != null) {
+            pool.close();
         }
     }
 }
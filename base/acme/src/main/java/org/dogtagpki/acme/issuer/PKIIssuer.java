@@ -12,7 +12,14 @@ import java.io.StringWriter;
 import java.math.BigInteger;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+import javax.ws.rs.core.Response;
 
 import org.apache.commons.codec.binary.Base64;
 import org.dogtagpki.acme.ACMERevocation;
@@ -23,6 +30,7 @@ import org.mozilla.jss.netscape.security.util.Utils;
 import org.mozilla.jss.netscape.security.x509.RevocationReason;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
+import com.netscape.certsrv.base.PKIException;
 import com.netscape.certsrv.ca.CACertClient;
 import com.netscape.certsrv.ca.CAClient;
 import com.netscape.certsrv.cert.CertData;
@@ -46,9 +54,25 @@ public class PKIIssuer extends ACMEIssuer {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PKIIssuer.class);
 
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+
+    // Tomcat's default session timeout is 30 minutes
+    public static final int DEFAULT_SESSION_TIMEOUT = 1800;
+
     private ClientConfig clientConfig = new ClientConfig();
     private String profile;
 
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long sessionTimeout = DEFAULT_SESSION_TIMEOUT * 1000L;
+
+    // idle sessions, most recently used first
+    private BlockingDeque<Session> sessions = new LinkedBlockingDeque<>();
+    private Semaphore permits;
+    private volatile boolean closed;
+
+    // enrollment templates in XML format keyed by profile ID
+    private Map<String, String> templates = new ConcurrentHashMap<>();
+
     public String getProfile() {
         return profile;
     }
@@ -108,6 +132,130 @@ public class PKIIssuer extends ACMEIssuer {
 
         profile = config.getParameter("profile");
         logger.info("- profile: " + profile);
+
+        String maxConnections = config.getParameter("maxConnections");
+        if (maxConnections != null) {
+            this.maxConnections = Integer.parseInt(maxConnections);
+        }
+        logger.info("- max connections: " + this.maxConnections);
+
+        String sessionTimeout = config.getParameter("sessionTimeout");
+        if (sessionTimeout != null) {
+            this.sessionTimeout = Integer.parseInt(sessionTimeout) * 1000L;
+        }
+        logger.info("- session timeout: " + this.sessionTimeout / 1000 + " seconds");
+
+        permits = new Semaphore(this.maxConnections, true);
+        closed = false;
+    }
+
+    @Override
+    public void close() throws Exception {
+
+        logger.info("Closing PKI issuer");
+
+        closed = true;
+
+        Session session;
+        while ((session = sessions.poll()) != null) {
+            session.close();
+        }
+
+        templates.clear();
+    }
+
+    /**
+     * Gets a session from the pool, or creates a new one if there
+     * is no idle session. Sessions that have been idle longer than
+     * the session timeout are discarded since the server will have
+     * expired them already.
+     */
+    Session acquireSession() throws Exception {
+
+        permits.acquire();
+
+        try {
+            long now = System.currentTimeMillis();
+
+            Session session;
+            while ((session = sessions.pollFirst()) != null) {
+
+                if (now - session.lastUsed < sessionTimeout) {
+                    return session;
+                }
+
+                logger.debug("PKIIssuer: Closing expired session");
+                session.close();
+            }
+
+            logger.info("PKIIssuer: Creating new session");
+            return new Session(clientConfig);
+
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a session into the pool. A session that failed
+     * with an unexpected error is closed instead since its
+     * connection might be in an unknown state.
+     */
+    void releaseSession(Session session, boolean reusable) {
+
+        try {
+            if (reusable && !closed) {
+                session.lastUsed = System.currentTimeMillis();
+                sessions.offerFirst(session);
+
+            } else {
+                session.close();
+            }
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    <T> T execute(SessionTask<T> task) throws Exception {
+
+        Session session = acquireSession();
+        boolean reusable = false;
+
+        try {
+            T result = task.execute(session);
+            reusable = true;
+            return result;
+
+        } catch (PKIException e) {
+            // the server has responded, so the connection is still usable
+            reusable = true;
+            throw e;
+
+        } finally {
+            releaseSession(session, reusable);
+        }
+    }
+
+    /**
+     * Returns a copy of the enrollment template for the profile. The template
+     * is downloaded once and cached in XML format, so each request gets its
+     * own instance that can be modified. The cached template is removed when
+     * an enrollment with it fails, since the profile may have changed.
+     */
+    CertEnrollmentRequest getEnrollmentTemplate(Session session, String profileID) throws Exception {
+
+        String xml = templates.get(profileID);
+
+        if (xml == null) {
+            logger.info("PKIIssuer: Getting enrollment template for " + profileID);
+            CertEnrollmentRequest template = session.call(() -> session.certClient.getEnrollmentTemplate(profileID));
+            xml = template.toXML();
+            templates.put(profileID, xml);
+        }
+
+        return CertEnrollmentRequest.fromXML(xml);
     }
 
     @Override
@@ -115,9 +263,7 @@ public class PKIIssuer extends ACMEIssuer {
 
         logger.info("Issuing certificate");
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
-
-            CAClient caClient = new CAClient(pkiClient);
+        return execute(session -> {
 
             // Here the agent credentials are stored in the ClientConfig and will
             // be sent to the CA automatically if any of the methods being called
@@ -144,58 +290,98 @@ public class PKIIssuer extends ACMEIssuer {
             // it's not actually necessary to call CAClient.login(). However, to
             // support both types of profiles the CAClient.login() needs to be
             // called explicitly.
-            caClient.login();
-
-            CACertClient certClient = new CACertClient(caClient);
-            CertEnrollmentRequest certEnrollmentRequest = certClient.getEnrollmentTemplate(profile);
+            //
+            // The session is logged in once and reused for subsequent requests
+            // until it expires.
+            session.login();
 
-            for (ProfileInput input : certEnrollmentRequest.getInputs()) {
+            CACertClient certClient = session.certClient;
+            boolean cached = templates.containsKey(profile);
+            CertRequestInfo info;
 
-                ProfileAttribute typeAttr = input.getAttribute("cert_request_type");
-                if (typeAttr != null) {
-                    typeAttr.setValue("pkcs10");
-                }
+            try {
+                info = enrollRequest(session, pkcs10);
 
-                ProfileAttribute csrAttr = input.getAttribute("cert_request");
-                if (csrAttr != null) {
-                    csrAttr.setValue(Utils.base64encodeSingleLine(pkcs10.toByteArray()));
-                }
+            } catch (Exception e) {
+                templates.remove(profile);
+                throw e;
             }
 
-            logger.info("Request:\n" + certEnrollmentRequest);
-
-            CertRequestInfos infos = certClient.enrollRequest(certEnrollmentRequest, null, null);
-
-            logger.info("Responses:");
-            CertRequestInfo info = infos.getEntries().iterator().next();
+            String error = info.getErrorMessage();
+            if (error != null) {
+                templates.remove(profile);
 
-            RequestId requestId = info.getRequestID();
+                if (cached) {
+                    // the profile may have changed since the template was cached
+                    logger.warn("PKIIssuer: Unable to generate certificate with cached template: " + error);
+                    logger.info("PKIIssuer: Retrying with new enrollment template for " + profile);
 
-            logger.info("- Request ID: " + requestId.toHexString());
-            logger.info("  Type: " + info.getRequestType());
-            logger.info("  Request Status: " + info.getRequestStatus());
-            logger.info("  Operation Result: " + info.getOperationResult());
+                    info = enrollRequest(session, pkcs10);
+                    error = info.getErrorMessage();
+                }
+            }
 
-            String error = info.getErrorMessage();
             if (error != null) {
                 throw new Exception("Unable to generate certificate: " + error);
             }
 
+            RequestId requestId = info.getRequestID();
+
             CertId id = null;
             if (info.getRequestStatus() == RequestStatus.COMPLETE) {
                 id = info.getCertId();
             } else {
-                CertReviewResponse reviewInfo = certClient.reviewRequest(requestId);
-                certClient.approveRequest(requestId, reviewInfo);
+                CertReviewResponse reviewInfo = session.call(() -> certClient.reviewRequest(requestId));
+                session.call(() -> {
+                    certClient.approveRequest(requestId, reviewInfo);
+                    return null;
+                });
 
-                info = certClient.getRequest(requestId);
+                info = session.call(() -> certClient.getRequest(requestId));
                 id = info.getCertId();
             }
 
             logger.info("Serial number: " + id.toHexString());
             BigInteger serialNumber = id.toBigInteger();
             return Base64.encodeBase64URLSafeString(serialNumber.toByteArray());
+        });
+    }
+
+    /**
+     * Submits an enrollment request for the CSR using the enrollment
+     * template of the profile.
+     */
+    CertRequestInfo enrollRequest(Session session, PKCS10 pkcs10) throws Exception {
+
+        CACertClient certClient = session.certClient;
+        CertEnrollmentRequest certEnrollmentRequest = getEnrollmentTemplate(session, profile);
+
+        for (ProfileInput input : certEnrollmentRequest.getInputs()) {
+
+            ProfileAttribute typeAttr = input.getAttribute("cert_request_type");
+            if (typeAttr != null) {
+                typeAttr.setValue("pkcs10");
+            }
+
+            ProfileAttribute csrAttr = input.getAttribute("cert_request");
+            if (csrAttr != null) {
+                csrAttr.setValue(Utils.base64encodeSingleLine(pkcs10.toByteArray()));
+            }
         }
+
+        logger.info("Request:\n" + certEnrollmentRequest);
+
+        CertRequestInfos infos = session.call(() -> certClient.enrollRequest(certEnrollmentRequest, null, null));
+
+        logger.info("Responses:");
+        CertRequestInfo info = infos.getEntries().iterator().next();
+
+        logger.info("- Request ID: " + info.getRequestID().toHexString());
+        logger.info("  Type: " + info.getRequestType());
+        logger.info("  Request Status: " + info.getRequestStatus());
+        logger.info("  Operation Result: " + info.getOperationResult());
+
+        return info;
     }
 
     @Override
@@ -204,11 +390,10 @@ public class PKIIssuer extends ACMEIssuer {
         CertId id = new CertId(new BigInteger(1, Base64.decodeBase64(certID)));
         logger.info("Serial number: " + id.toHexString());
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
+        return execute(session -> {
 
-            CAClient caClient = new CAClient(pkiClient);
-            CACertClient certClient = new CACertClient(caClient);
-            CertData certData = certClient.getCert(id);
+            CACertClient certClient = session.certClient;
+            CertData certData = session.call(() -> certClient.getCert(id));
 
             String pkcs7Chain = certData.getPkcs7CertChain();
             logger.info("Cert chain:\n" + pkcs7Chain);
@@ -234,7 +419,7 @@ public class PKIIssuer extends ACMEIssuer {
             }
 
             return sw.toString();
-        }
+        });
     }
 
     @Override
@@ -263,11 +448,10 @@ public class PKIIssuer extends ACMEIssuer {
 
         logger.info("Reviewing certificate");
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
+        execute(session -> {
 
-            CAClient caClient = new CAClient(pkiClient);
-            CACertClient certClient = new CACertClient(caClient);
-            CertData certData = certClient.reviewCert(certID);
+            CACertClient certClient = session.certClient;
+            CertData certData = session.call(() -> certClient.reviewCert(certID));
 
             // Compare cert in request to cert retrieved from PKI.
             // This prevents DOS attacks against certificates from this issuer,
@@ -291,7 +475,7 @@ public class PKIIssuer extends ACMEIssuer {
             request.setNonce(certData.getNonce());
 
             logger.info("Revoking certificate");
-            CertRequestInfo certRequestInfo = certClient.revokeCert(certID, request);
+            CertRequestInfo certRequestInfo = session.call(() -> certClient.revokeCert(certID, request));
 
             RequestStatus status = certRequestInfo.getRequestStatus();
             if (status != RequestStatus.COMPLETE) {
@@ -302,6 +486,78 @@ public class PKIIssuer extends ACMEIssuer {
                 String error = certRequestInfo.getErrorMessage();
                 throw new Exception("Unable to revoke certificate: " + error);
             }
+
+            return null;
+        });
+    }
+
+    interface SessionTask<T> {
+        T execute(Session session) throws Exception;
+    }
+
+    interface SessionCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * This class holds a long-lived connection to the CA. A session
+     * is used by one thread at a time.
+     */
+    static class Session implements AutoCloseable {
+
+        PKIClient pkiClient;
+        CAClient caClient;
+        CACertClient certClient;
+
+        boolean loggedIn;
+        long lastUsed;
+
+        Session(ClientConfig clientConfig) throws Exception {
+            pkiClient = new PKIClient(clientConfig);
+            caClient = new CAClient(pkiClient);
+            certClient = new CACertClient(caClient);
+        }
+
+        void login() throws Exception {
+
+            if (loggedIn) {
+                return;
+            }
+
+            caClient.login();
+            loggedIn = true;
+        }
+
+        /**
+         * Invokes a REST method. If the server no longer recognizes the
+         * session, the session will log in again and retry the method once.
+         */
+        <T> T call(SessionCall<T> call) throws Exception {
+
+            try {
+                return call.call();
+
+            } catch (PKIException e) {
+
+                if (!loggedIn || e.getCode() != Response.Status.UNAUTHORIZED.getStatusCode()) {
+                    throw e;
+                }
+
+                logger.info("PKIIssuer: Session expired, logging in again");
+                loggedIn = false;
+                login();
+
+                return call.call();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                pkiClient.close();
+            } catch (Exception e) {
+                logger.warn("PKIIssuer: Unable to close session: " + e.getMessage(), e);
+            }
         }
     }
 }
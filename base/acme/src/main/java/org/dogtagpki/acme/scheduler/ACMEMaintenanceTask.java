@@ -7,6 +7,7 @@ package org.dogtagpki.acme.scheduler;
 
 import java.util.Date;
 
+import org.dogtagpki.acme.server.ACMEChallengeExecutor;
 import org.dogtagpki.acme.server.ACMEEngine;
 
 /**
@@ -25,5 +26,15 @@ public class ACMEMaintenanceTask extends ACMETask {
 
         ACMEEngine engine = ACMEEngine.getInstance();
         engine.removeExpiredRecords(currentTime);
+
+        ACMEChallengeExecutor challengeExecutor = engine.getChallengeExecutor();
+        if (challengeExecutor != null) {
+            logger.info("ACME challenges:");
+            logger.info("- pending: " + challengeExecutor.getPendingChallenges());
+            logger.info("- active: " + challengeExecutor.getActiveChallenges());
+            logger.info("- valid: " + challengeExecutor.getValidChallenges());
+            logger.info("- invalid: " + challengeExecutor.getInvalidChallenges());
+            logger.info("- rejected: " + challengeExecutor.getRejectedChallenges());
+        }
     }
 }
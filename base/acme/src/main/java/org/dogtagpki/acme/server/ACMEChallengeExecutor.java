@@ -0,0 +1,233 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import org.dogtagpki.acme.ACMEError;
+import org.dogtagpki.acme.ValidationResult;
+
+/**
+ * This class validates challenges with a fixed number of threads.
+ *
+ * A failed validation attempt is not retried by sleeping in the thread.
+ * Instead the next attempt is scheduled with a delay, so the thread can
+ * validate other challenges in the meantime.
+ *
+ * The number of challenges being validated or waiting for a retry is
+ * limited. Once the limit is reached, new challenges are rejected with
+ * HTTP 503 so the client can retry later.
+ */
+public class ACMEChallengeExecutor {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEChallengeExecutor.class);
+
+    private ACMEValidationConfig config;
+
+    private ScheduledThreadPoolExecutor executorService;
+
+    // challenges being validated or waiting for a retry
+    private AtomicInteger pending = new AtomicInteger();
+
+    // challenges currently being validated by a thread
+    private AtomicInteger active = new AtomicInteger();
+
+    private AtomicLong validChallenges = new AtomicLong();
+    private AtomicLong invalidChallenges = new AtomicLong();
+    private AtomicLong rejectedChallenges = new AtomicLong();
+
+    public ACMEValidationConfig getConfig() {
+        return config;
+    }
+
+    public void setConfig(ACMEValidationConfig config) {
+        this.config = config;
+    }
+
+    public void init() throws Exception {
+
+        logger.info("Initializing ACME challenge executor");
+        logger.info("- threads: " + config.getThreads());
+        logger.info("- max pending: " + config.getMaxPending());
+        logger.info("- max attempts: " + config.getMaxAttempts());
+        logger.info("- retry delay: " + config.getRetryDelay());
+        logger.info("- backoff: " + config.getBackoff());
+        logger.info("- max retry delay: " + config.getMaxRetryDelay());
+
+        AtomicInteger counter = new AtomicInteger();
+
+        executorService = new ScheduledThreadPoolExecutor(config.getThreads(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ACMEChallengeExecutor-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        executorService.setRemoveOnCancelPolicy(true);
+    }
+
+    public void shutdown() throws Exception {
+
+        logger.info("Shutting down ACME challenge executor");
+
+        // challenges that have not been validated will remain in processing
+        // state and will eventually be removed by the maintenance task
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Reserves a slot for a new challenge. This method should be called
+     * before the challenge is moved into processing state. The slot
+     * must be released with either execute() or cancel().
+     *
+     * @throws WebApplicationException if there are too many pending challenges
+     */
+    public void reserve() throws Exception {
+
+        int maxPending = config.getMaxPending();
+
+        while (true) {
+            int current = pending.get();
+
+            if (current >= maxPending) {
+                rejectedChallenges.incrementAndGet();
+                logger.warn("ACMEChallengeExecutor: Too many pending challenges: " + current);
+                throw createServiceUnavailableException();
+            }
+
+            if (pending.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases a slot reserved with reserve() without validating a challenge.
+     */
+    public void cancel() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Validates the challenge in the background using a slot
+     * reserved with reserve().
+     */
+    public void execute(ACMEChallengeProcessor processor) {
+        try {
+            executorService.execute(() -> process(processor));
+
+        } catch (Exception e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    void process(ACMEChallengeProcessor processor) {
+
+        String challengeID = processor.getChallenge().getID();
+        boolean done = true;
+
+        active.incrementAndGet();
+
+        try {
+            ValidationResult r = processor.validateChallenge();
+            int attempts = processor.getAttempts();
+
+            if (r.isOK()) {
+                processor.finalizeValidAuthorization();
+                validChallenges.incrementAndGet();
+
+            } else if (attempts < config.getMaxAttempts() && !executorService.isShutdown()) {
+                long delay = getRetryDelay(attempts);
+                logger.info("Retrying challenge " + challengeID + " in " + delay + " ms");
+
+                try {
+                    executorService.schedule(() -> process(processor), delay, TimeUnit.MILLISECONDS);
+                    done = false;
+
+                } catch (RejectedExecutionException e) {
+                    // shutting down, the maintenance task will remove the challenge
+                    logger.info("Unable to retry challenge " + challengeID + ": " + e.getMessage());
+                }
+
+            } else {
+                processor.finalizeInvalidAuthorization(r.getError());
+                invalidChallenges.incrementAndGet();
+            }
+
+        } catch (Exception e) {
+            logger.error("Unable to process challenge " + challengeID + ": " + e.getMessage(), e);
+
+        } finally {
+            active.decrementAndGet();
+            if (done) pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the delay in milliseconds before the next attempt.
+     *
+     * @param attempts number of attempts that have been made
+     */
+    public long getRetryDelay(int attempts) {
+
+        double delay = config.getRetryDelay() * Math.pow(config.getBackoff(), attempts - 1);
+        delay = Math.min(delay, config.getMaxRetryDelay());
+
+        return (long) (delay * 1000);
+    }
+
+    public WebApplicationException createServiceUnavailableException() {
+
+        ResponseBuilder builder = Response.status(Response.Status.SERVICE_UNAVAILABLE);
+        builder.type("application/problem+json");
+        builder.header("Retry-After", config.getRetryDelay());
+
+        ACMEError error = new ACMEError();
+        error.setType("urn:ietf:params:acme:error:rateLimited");
+        error.setDetail("Too many pending challenges, please retry later");
+        builder.entity(error);
+
+        return new WebApplicationException(builder.build());
+    }
+
+    /**
+     * Returns the number of challenges being validated or waiting for a retry.
+     */
+    public int getPendingChallenges() {
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of challenges currently being validated.
+     */
+    public int getActiveChallenges() {
+        return active.get();
+    }
+
+    public long getValidChallenges() {
+        return validChallenges.get();
+    }
+
+    public long getInvalidChallenges() {
+        return invalidChallenges.get();
+    }
+
+    public long getRejectedChallenges() {
+        return rejectedChallenges.get();
+    }
+}
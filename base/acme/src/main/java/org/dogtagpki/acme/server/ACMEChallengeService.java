@@ -6,6 +6,7 @@
 package org.dogtagpki.acme.server;
 
 import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -83,8 +84,19 @@ public class ACMEChallengeService {
                 throw new Exception("Unsupported challenge type: " + type);
             }
 
-            challenge.setStatus("processing");
-            engine.updateAuthorization(account, authorization);
+            // reserve a slot before changing the challenge status
+            // so the challenge will not get stuck in processing state
+            ACMEChallengeExecutor executor = engine.getChallengeExecutor();
+            executor.reserve();
+
+            try {
+                challenge.setStatus("processing");
+                engine.updateAuthorization(account, authorization);
+
+            } catch (Exception e) {
+                executor.cancel();
+                throw e;
+            }
 
             ACMEChallengeProcessor processor = new ACMEChallengeProcessor(
                     account,
@@ -92,8 +104,16 @@ public class ACMEChallengeService {
                     challenge,
                     validator);
 
-            // TODO: use thread pool
-            new Thread(processor).start();
+            try {
+                executor.execute(processor);
+
+            } catch (RejectedExecutionException e) {
+                // the executor is shutting down, let the client retry the challenge
+                logger.warn("Unable to validate challenge " + challengeID + ": " + e.getMessage());
+                challenge.setStatus("pending");
+                engine.updateAuthorization(account, authorization);
+                throw executor.createServiceUnavailableException();
+            }
 
         } else if (challengeStatus.equals("processing")) {
             // TODO: retry the challenge
@@ -97,10 +97,13 @@ public class ACMEEngine {
 
     private ACMEScheduler scheduler;
 
+    private ACMEChallengeExecutor challengeExecutor;
+
     private RealmCommon realm;
 
     private boolean noncesPersistent;
     private Map<String, ACMENonce> nonces = new ConcurrentHashMap<>();
+    private ACMEStatelessNonces statelessNonces;
 
     public static ACMEEngine getInstance() {
         return INSTANCE;
@@ -161,6 +164,10 @@ public class ACMEEngine {
         validators.put(name, validator);
     }
 
+    public ACMEChallengeExecutor getChallengeExecutor() {
+        return challengeExecutor;
+    }
+
     public ACMEIssuerConfig getIssuerConfig() {
         return issuerConfig;
     }
@@ -210,6 +217,7 @@ public class ACMEEngine {
         logger.info("- enabled: " + config.isEnabled());
         logger.info("- base URL: " + config.getBaseURL());
         logger.info("- nonces persistent: " + config.getNoncesPersistent());
+        logger.info("- nonces stateless: " + config.getNoncesStateless());
 
         ACMEPolicyConfig policyConfig = config.getPolicyConfig();
         logger.info("- wildcard: " + policyConfig.getEnableWildcards());
@@ -226,6 +234,11 @@ public class ACMEEngine {
         logger.info("  - valid: " + policyConfig.getRetention().getValidOrders());
         logger.info("- certificate retention: " + policyConfig.getRetention().getCertificates());
 
+        ACMEValidationConfig validationConfig = config.getValidationConfig();
+        logger.info("- validation threads: " + validationConfig.getThreads());
+        logger.info("- validation max pending: " + validationConfig.getMaxPending());
+        logger.info("- validation max attempts: " + validationConfig.getMaxAttempts());
+
         policy = new ACMEPolicy(policyConfig);
     }
 
@@ -233,6 +246,25 @@ public class ACMEEngine {
         random = SecureRandom.getInstance("pkcs11prng", "Mozilla-JSS");
     }
 
+    public void initStatelessNonces() throws Exception {
+
+        Boolean stateless = config.getNoncesStateless();
+        if (stateless == null || !stateless) return;
+
+        logger.info("Initializing stateless nonces");
+
+        // the used nonces are only known to this instance,
+        // so the nonces issued before a restart must be rejected
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+
+        Date currentTime = new Date();
+        long lifetime = policy.getNonceExpirationTime(currentTime).getTime() - currentTime.getTime();
+
+        statelessNonces = new ACMEStatelessNonces(secret, lifetime);
+        logger.info("- slice length: " + statelessNonces.getSliceLength() + " ms");
+    }
+
     public void initMetadata(String filename) throws Exception {
 
         File metadataConfigFile = new File(filename);
@@ -310,6 +342,13 @@ public class ACMEEngine {
         }
     }
 
+    public void initChallengeExecutor() throws Exception {
+
+        challengeExecutor = new ACMEChallengeExecutor();
+        challengeExecutor.setConfig(config.getValidationConfig());
+        challengeExecutor.init();
+    }
+
     public void initIssuer(String filename) throws Exception {
 
         File issuerConfigFile = new File(filename);
@@ -458,9 +497,11 @@ public class ACMEEngine {
         this.noncesPersistent =  noncePersistent != null ? noncePersistent : false;
 
         initRandomGenerator();
+        initStatelessNonces();
         initMetadata(acmeConfDir + File.separator + "metadata.conf");
         initDatabase(acmeConfDir + File.separator + "database.conf");
         initValidators(acmeConfDir + File.separator + "validators.conf");
+        initChallengeExecutor();
         initIssuer(acmeConfDir + File.separator + "issuer.conf");
         initScheduler(acmeConfDir + File.separator + "scheduler.conf");
         initMonitors(acmeConfDir + File.separator + "configsources.conf");
@@ -485,6 +526,13 @@ public class ACMEEngine {
         validators.clear();
     }
 
+    public void shutdownChallengeExecutor() throws Exception {
+        if (challengeExecutor == null) return;
+
+        challengeExecutor.shutdown();
+        challengeExecutor = null;
+    }
+
     public void shutdownIssuer() throws Exception {
         if (issuer == null) return;
 
@@ -521,6 +569,7 @@ public class ACMEEngine {
         shutdownMonitors();
         shutdownScheduler();
         shutdownIssuer();
+        shutdownChallengeExecutor();
         shutdownValidators();
         shutdownDatabase();
 
@@ -538,6 +587,16 @@ public class ACMEEngine {
         Date currentTime = new Date();
         ACMENonce nonce = new ACMENonce();
 
+        if (statelessNonces != null) {
+
+            nonce.setID(statelessNonces.createNonce(currentTime.getTime()));
+            nonce.setCreationTime(currentTime);
+            nonce.setExpirationTime(policy.getNonceExpirationTime(currentTime));
+
+            logger.info("Created nonce: " + nonce);
+            return nonce;
+        }
+
         // generate 128-bit nonce with JSS
         // TODO: make it configurable
 
@@ -565,6 +624,28 @@ public class ACMEEngine {
 
     public void validateNonce(String value) throws Exception {
 
+        if (statelessNonces != null) {
+
+            if (!statelessNonces.validateNonce(value, System.currentTimeMillis())) {
+
+                // the nonce may have expired or been used already,
+                // provide a new nonce so the client can retry
+                ResponseBuilder builder = Response.status(Response.Status.BAD_REQUEST);
+                builder.type("application/problem+json");
+                builder.header("Replay-Nonce", createNonce().getID());
+
+                ACMEError error = new ACMEError();
+                error.setType("urn:ietf:params:acme:error:badNonce");
+                error.setDetail("Invalid nonce: " + value);
+                builder.entity(error);
+
+                throw new WebApplicationException(builder.build());
+            }
+
+            logger.info("Valid nonce: " + value);
+            return;
+        }
+
         ACMENonce nonce;
 
         if (noncesPersistent) {
@@ -591,7 +672,9 @@ public class ACMEEngine {
 
     public void removeExpiredRecords(Date currentTime) throws Exception {
 
-        if (noncesPersistent) {
+        if (statelessNonces != null) {
+            // stateless nonces expire automatically
+        } else if (noncesPersistent) {
             database.removeExpiredNonces(currentTime);
         } else {
             nonces.values().removeIf(n -> !currentTime.before(n.getExpirationTime()));
@@ -25,10 +25,14 @@ public class ACMEEngineConfig implements JSONSerializer {
     private Boolean enabled = true;
     private URL baseURL;
     private Boolean noncesPersistent;
+    private Boolean noncesStateless;
 
     @JsonProperty("policy")
     private ACMEPolicyConfig policyConfig = new ACMEPolicyConfig();
 
+    @JsonProperty("validation")
+    private ACMEValidationConfig validationConfig = new ACMEValidationConfig();
+
     public Boolean isEnabled() {
         return enabled;
     }
@@ -53,6 +57,14 @@ public class ACMEEngineConfig implements JSONSerializer {
         this.noncesPersistent = noncesPersistent;
     }
 
+    public Boolean getNoncesStateless() {
+        return noncesStateless;
+    }
+
+    public void setNoncesStateless(Boolean noncesStateless) {
+        this.noncesStateless = noncesStateless;
+    }
+
     public ACMEPolicyConfig getPolicyConfig() {
         return policyConfig;
     }
@@ -61,6 +73,14 @@ public class ACMEEngineConfig implements JSONSerializer {
         this.policyConfig = wildcard;
     }
 
+    public ACMEValidationConfig getValidationConfig() {
+        return validationConfig;
+    }
+
+    public void setValidationConfig(ACMEValidationConfig validationConfig) {
+        this.validationConfig = validationConfig;
+    }
+
     public static ACMEEngineConfig fromProperties(Properties props) throws Exception {
 
         ACMEEngineConfig config = new ACMEEngineConfig();
@@ -79,12 +99,22 @@ public class ACMEEngineConfig implements JSONSerializer {
             } else if (key.equals("nonces.persistent")) {
                 config.setNoncePersistent(Boolean.valueOf(value));
 
+            } else if (key.equals("nonces.stateless")) {
+                config.setNoncesStateless(Boolean.valueOf(value));
+
             } else if (key.startsWith("policy.")) {
 
                 String policyKey = key.substring(7);
 
                 ACMEPolicyConfig policyConfig = config.getPolicyConfig();
                 policyConfig.setProperty(policyKey, value);
+
+            } else if (key.startsWith("validation.")) {
+
+                String validationKey = key.substring(11);
+
+                ACMEValidationConfig validationConfig = config.getValidationConfig();
+                validationConfig.setProperty(validationKey, value);
             }
         }
 
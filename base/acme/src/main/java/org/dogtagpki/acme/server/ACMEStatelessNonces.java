@@ -0,0 +1,216 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * This class generates nonces that can be validated without storing
+ * them in memory or in the database.
+ *
+ * A nonce consists of a time slice and a sequence number within
+ * the time slice, protected with HMAC-SHA256. Nonces from slices
+ * older than the nonce lifetime are expired.
+ *
+ * To detect replays, each time slice keeps a bitmap of the sequence
+ * numbers that have been used. A nonce costs one bit until its time
+ * slice expires.
+ *
+ * The bitmaps are kept in memory and are not shared, so stateless
+ * nonces can only be used with a single ACME instance. The secret
+ * must be generated randomly on each start: nonces issued before a
+ * restart cannot be checked for replays, so they must be rejected.
+ * Multiple replicas should use persistent nonces in the shared
+ * database instead.
+ */
+public class ACMEStatelessNonces {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEStatelessNonces.class);
+
+    public static final String ALGORITHM = "HmacSHA256";
+
+    // number of time slices per nonce lifetime
+    public static final int SLICES = 16;
+
+    public static final int MIN_SLICE_LENGTH = 1000; // milliseconds
+
+    // slice (8 bytes), sequence number (4 bytes)
+    public static final int DATA_LENGTH = 12;
+    public static final int MAC_LENGTH = 16;
+
+    private SecretKeySpec key;
+
+    private long sliceLength;
+    private long windowSlices;
+
+    private ThreadLocal<Mac> macs;
+
+    // sequence number generator for the current slice
+    private long currentSlice = -1;
+    private int nextSequenceNumber;
+
+    // slice -> used sequence numbers
+    private Map<Long, Slice> slices = new ConcurrentHashMap<>();
+    private volatile long oldestSlice;
+
+    /**
+     * @param secret random HMAC secret
+     * @param lifetime nonce lifetime in milliseconds
+     */
+    public ACMEStatelessNonces(byte[] secret, long lifetime) throws Exception {
+
+        key = new SecretKeySpec(secret, ALGORITHM);
+
+        sliceLength = Math.max(lifetime / SLICES, MIN_SLICE_LENGTH);
+        windowSlices = (lifetime + sliceLength - 1) / sliceLength;
+
+        // make sure the key is usable
+        Mac.getInstance(ALGORITHM).init(key);
+
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    public long getSliceLength() {
+        return sliceLength;
+    }
+
+    synchronized int nextSequenceNumber(long slice) {
+
+        if (slice != currentSlice) {
+            currentSlice = slice;
+            nextSequenceNumber = 0;
+        }
+
+        return nextSequenceNumber++;
+    }
+
+    public String createNonce(long currentTime) {
+
+        long slice = currentTime / sliceLength;
+        int sequenceNumber = nextSequenceNumber(slice);
+
+        ByteBuffer buffer = ByteBuffer.allocate(DATA_LENGTH + MAC_LENGTH);
+        buffer.putLong(slice);
+        buffer.putInt(sequenceNumber);
+
+        byte[] bytes = buffer.array();
+        byte[] mac = sign(bytes);
+        System.arraycopy(mac, 0, bytes, DATA_LENGTH, MAC_LENGTH);
+
+        removeExpiredSlices(slice);
+
+        return Base64.encodeBase64URLSafeString(bytes);
+    }
+
+    /**
+     * Validates the nonce and marks it as used.
+     *
+     * @return true if the nonce is valid and has not been used before
+     */
+    public boolean validateNonce(String value, long currentTime) {
+
+        if (value == null) {
+            return false;
+        }
+
+        byte[] bytes = Base64.decodeBase64(value);
+
+        if (bytes.length != DATA_LENGTH + MAC_LENGTH) {
+            logger.debug("ACMEStatelessNonces: Invalid nonce length: " + bytes.length);
+            return false;
+        }
+
+        byte[] mac = sign(bytes);
+        if (!MessageDigest.isEqual(
+                Arrays.copyOf(mac, MAC_LENGTH),
+                Arrays.copyOfRange(bytes, DATA_LENGTH, DATA_LENGTH + MAC_LENGTH))) {
+            logger.debug("ACMEStatelessNonces: Invalid nonce MAC");
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long slice = buffer.getLong();
+        int sequenceNumber = buffer.getInt();
+
+        long current = currentTime / sliceLength;
+        removeExpiredSlices(current);
+
+        if (slice > current || sequenceNumber < 0) {
+            logger.debug("ACMEStatelessNonces: Invalid nonce slice: " + slice);
+            return false;
+        }
+
+        if (slice < current - windowSlices) {
+            logger.debug("ACMEStatelessNonces: Expired nonce slice: " + slice);
+            return false;
+        }
+
+        Slice s = slices.computeIfAbsent(slice, k -> new Slice());
+        if (!s.use(sequenceNumber)) {
+            logger.debug("ACMEStatelessNonces: Nonce has been used");
+            return false;
+        }
+
+        return true;
+    }
+
+    byte[] sign(byte[] bytes) {
+        Mac mac = macs.get();
+        mac.update(bytes, 0, DATA_LENGTH);
+        return mac.doFinal();
+    }
+
+    void removeExpiredSlices(long current) {
+
+        long oldest = current - windowSlices;
+        if (oldest <= oldestSlice) {
+            return;
+        }
+
+        oldestSlice = oldest;
+        slices.keySet().removeIf(k -> k < oldest);
+    }
+
+    /**
+     * Returns the number of slices with used nonces.
+     */
+    public int getSlices() {
+        return slices.size();
+    }
+
+    static class Slice {
+
+        private BitSet used = new BitSet();
+
+        synchronized boolean use(int sequenceNumber) {
+
+            if (used.get(sequenceNumber)) {
+                return false;
+            }
+
+            used.set(sequenceNumber);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * This class contains the parameters used to schedule
+ * challenge validations.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class ACMEValidationConfig implements JSONSerializer {
+
+    // number of threads performing validations
+    private Integer threads = 10;
+
+    // maximum number of challenges being validated or waiting for a retry
+    private Integer maxPending = 1000;
+
+    // maximum number of validation attempts per challenge
+    private Integer maxAttempts = 5;
+
+    // delay before the first retry in seconds
+    private Integer retryDelay = 5;
+
+    // multiplier applied to the delay after each retry
+    private Double backoff = 1.0;
+
+    // maximum delay between retries in seconds
+    private Integer maxRetryDelay = 60;
+
+    public ACMEValidationConfig() {}
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
+    public Integer getMaxPending() {
+        return maxPending;
+    }
+
+    public void setMaxPending(Integer maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Integer getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Integer retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public Double getBackoff() {
+        return backoff;
+    }
+
+    public void setBackoff(Double backoff) {
+        this.backoff = backoff;
+    }
+
+    public Integer getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    public void setMaxRetryDelay(Integer maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    public void setProperty(String key, String value) throws Exception {
+
+        if (key.equals("threads")) {
+            threads = Integer.valueOf(value);
+
+        } else if (key.equals("maxPending")) {
+            maxPending = Integer.valueOf(value);
+
+        } else if (key.equals("maxAttempts")) {
+            maxAttempts = Integer.valueOf(value);
+
+        } else if (key.equals("retryDelay")) {
+            retryDelay = Integer.valueOf(value);
+
+        } else if (key.equals("backoff")) {
+            backoff = Double.valueOf(value);
+
+        } else if (key.equals("maxRetryDelay")) {
+            maxRetryDelay = Integer.valueOf(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return toJSON();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PostgreSQLConnectionPoolTest {
+
+    static final String URL = "jdbc:pooltest:acme";
+
+    static TestDriver driver = new TestDriver();
+
+    /**
+     * This driver creates connections whose statements throw
+     * an SQLException with the configured SQL state.
+     */
+    static class TestDriver implements Driver {
+
+        List<TestConnection> connections = new ArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) return null;
+            TestConnection connection = new TestConnection();
+            connections.add(connection);
+            return connection.createProxy();
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:pooltest:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    static class TestConnection {
+
+        boolean valid = true;
+        boolean closed;
+        int validations;
+
+        // SQL state of the error thrown by the statements, or null
+        String sqlState;
+
+        Connection proxy;
+
+        Connection createProxy() {
+            proxy = (Connection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                        case "isValid":
+                            validations++;
+                            return valid;
+                        case "isClosed":
+                            return closed;
+                        case "close":
+                            closed = true;
+                            return null;
+                        case "getAutoCommit":
+                            return true;
+                        case "prepareStatement":
+                            return createStatement();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            return proxy;
+        }
+
+        PreparedStatement createStatement() {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                        case "getConnection":
+                            return proxy;
+                        case "executeQuery":
+                            if (sqlState != null) {
+                                throw new SQLException("Query failed", sqlState);
+                            }
+                            return createResultSet();
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        ResultSet createResultSet() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] { ResultSet.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                        case "next":
+                            throw new SQLException("Connection lost", "08006");
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    PostgreSQLConnectionPool pool;
+
+    @BeforeAll
+    public static void registerDriver() throws Exception {
+        DriverManager.registerDriver(driver);
+    }
+
+    @AfterAll
+    public static void deregisterDriver() throws Exception {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @BeforeEach
+    public void createPool() {
+        driver.connections.clear();
+        pool = new PostgreSQLConnectionPool(URL, new Properties());
+        pool.setMaxConnections(2);
+        pool.setMaxWait(0);
+        pool.init();
+    }
+
+    void executeQuery(String sqlState) throws Exception {
+
+        driver.connections.get(driver.connections.size() - 1).sqlState = sqlState;
+
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+            assertThrows(SQLException.class, () -> ps.executeQuery());
+        }
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+
+        Connection conn = pool.getConnection();
+        assertEquals(1, pool.getActiveConnections());
+
+        // statements return the pooled connection proxy
+        PreparedStatement ps = conn.prepareStatement("SELECT 1");
+        assertSame(conn, ps.getConnection());
+
+        conn.close();
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertTrue(conn.isClosed());
+
+        pool.getConnection().close();
+        assertEquals(1, driver.connections.size());
+    }
+
+    @Test
+    public void testMaxConnections() throws Exception {
+
+        Connection conn1 = pool.getConnection();
+        Connection conn2 = pool.getConnection();
+
+        assertThrows(SQLException.class, () -> pool.getConnection());
+
+        conn1.close();
+        conn2.close();
+
+        assertEquals(2, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testStatementConnectionError() throws Exception {
+
+        pool.getConnection().close();
+        executeQuery("08006");
+
+        // broken connection is discarded without validation
+        TestConnection tc = driver.connections.get(0);
+        assertTrue(tc.closed);
+        assertEquals(0, tc.validations);
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testResultSetConnectionError() throws Exception {
+
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT 1");
+                ResultSet rs = ps.executeQuery()) {
+            assertThrows(SQLException.class, () -> rs.next());
+        }
+
+        assertTrue(driver.connections.get(0).closed);
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testStatementError() throws Exception {
+
+        pool.getConnection().close();
+        TestConnection tc = driver.connections.get(0);
+
+        // valid connection is kept after a query error
+        executeQuery("42P01");
+        assertEquals(1, tc.validations);
+        assertEquals(1, pool.getIdleConnections());
+
+        // invalid connection is discarded
+        tc.valid = false;
+        executeQuery("57P01");
+        assertEquals(2, tc.validations);
+        assertTrue(tc.closed);
+        assertEquals(0, pool.getIdleConnections());
+    }
+}
@@ -0,0 +1,94 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.jupiter.api.Test;
+
+public class ACMEStatelessNoncesTest {
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+    private static final long LIFETIME = 30 * 60 * 1000; // 30 minutes
+
+    @Test
+    public void testReplay() throws Exception {
+
+        ACMEStatelessNonces nonces = new ACMEStatelessNonces(SECRET, LIFETIME);
+        long now = System.currentTimeMillis();
+
+        String nonce1 = nonces.createNonce(now);
+        String nonce2 = nonces.createNonce(now);
+        assertNotEquals(nonce1, nonce2);
+
+        assertTrue(nonces.validateNonce(nonce2, now));
+        assertTrue(nonces.validateNonce(nonce1, now + 1000));
+
+        assertFalse(nonces.validateNonce(nonce1, now + 2000));
+        assertFalse(nonces.validateNonce(nonce2, now + 2000));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+
+        ACMEStatelessNonces nonces = new ACMEStatelessNonces(SECRET, LIFETIME);
+        long now = System.currentTimeMillis();
+
+        String nonce1 = nonces.createNonce(now);
+        String nonce2 = nonces.createNonce(now);
+
+        assertTrue(nonces.validateNonce(nonce1, now + LIFETIME - 1));
+        assertFalse(nonces.validateNonce(nonce2, now + LIFETIME + 2 * nonces.getSliceLength()));
+
+        // expired slices are no longer tracked
+        assertEquals(0, nonces.getSlices());
+    }
+
+    @Test
+    public void testInvalidNonce() throws Exception {
+
+        ACMEStatelessNonces nonces = new ACMEStatelessNonces(SECRET, LIFETIME);
+        long now = System.currentTimeMillis();
+
+        String nonce = nonces.createNonce(now);
+
+        byte[] bytes = Base64.decodeBase64(nonce);
+        bytes[11] ^= 1; // modify sequence number
+        assertFalse(nonces.validateNonce(Base64.encodeBase64URLSafeString(bytes), now));
+
+        assertFalse(nonces.validateNonce("invalid", now));
+        assertFalse(nonces.validateNonce(null, now));
+
+        ACMEStatelessNonces otherNonces = new ACMEStatelessNonces(
+                "fedcba9876543210fedcba9876543210".getBytes(), LIFETIME);
+        assertFalse(otherNonces.validateNonce(nonce, now));
+
+        assertTrue(nonces.validateNonce(nonce, now));
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+
+        ACMEStatelessNonces nonces = new ACMEStatelessNonces(SECRET, LIFETIME);
+        long now = System.currentTimeMillis();
+
+        String nonce = nonces.createNonce(now);
+        assertTrue(nonces.validateNonce(nonce, now));
+
+        // the used nonces are forgotten after a restart, so a new secret
+        // is generated to reject the old nonces
+        ACMEStatelessNonces restarted = new ACMEStatelessNonces(
+                "fedcba9876543210fedcba9876543210".getBytes(), LIFETIME);
+        assertFalse(restarted.validateNonce(nonce, now));
+
+        String newNonce = restarted.createNonce(now);
+        assertTrue(restarted.validateNonce(newNonce, now));
+    }
+}
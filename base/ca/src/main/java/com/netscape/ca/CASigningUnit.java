@@ -50,6 +50,10 @@ public final class CASigningUnit extends SigningUnit {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CASigningUnit.class);
 
+    private SignatureContextPool mSigners;
+    private SignatureContextPool mVerifiers;
+    private boolean mTestSignatureFailure;
+
     public CASigningUnit() {
     }
 
@@ -116,6 +120,23 @@ public final class CASigningUnit extends SigningUnit {
             mDefSigningAlgorithm = checkSigningAlgorithmFromName(mDefSigningAlgname);
             logger.debug("SigningUnit: signing algorithm: " + mDefSigningAlgorithm);
 
+            int poolSize = config.getSignerPoolSize();
+            logger.debug("SigningUnit: signer pool size: " + poolSize);
+
+            mSigners = new SignatureContextPool(
+                    "signing",
+                    poolSize,
+                    mToken::getSignatureContext,
+                    signer -> signer.initSign(mPrivk));
+
+            mVerifiers = new SignatureContextPool(
+                    "verification",
+                    poolSize,
+                    mToken::getSignatureContext,
+                    signer -> signer.initVerify(mPubk));
+
+            mTestSignatureFailure = config.getTestSignatureFailure();
+
             mInited = true;
 
         } catch (java.security.cert.CertificateException e) {
@@ -141,10 +162,15 @@ public final class CASigningUnit extends SigningUnit {
     }
 
     /**
+     * Returns a signature context initialized with the signing key.
+     * The data to be signed can be passed to the context in multiple
+     * updates, then the signature is created with sign(Signature).
+     * If the signature is not created, the context must be given back
+     * with discardSignatureContext(Signature).
+     *
      * @param algname is expected to be one of JCA's algorithm names.
      */
-    @Override
-    public byte[] sign(byte[] data, String algname) throws Exception {
+    public Signature getSignatureContext(String algname) throws Exception {
 
         if (!mInited) {
             throw new EBaseException("CASigningUnit not initialized");
@@ -158,13 +184,21 @@ public final class CASigningUnit extends SigningUnit {
             signAlg = checkSigningAlgorithmFromName(algname);
         }
 
-        // XXX use a pool of signers based on alg ?
-        // XXX Map algor. name to id. hack: use hardcoded define for now.
-        logger.info("CASigningUnit: Getting algorithm context for " + algname + " " + signAlg);
-        Signature signer = mToken.getSignatureContext(signAlg);
+        return mSigners.borrow(signAlg);
+    }
 
-        signer.initSign(mPrivk);
-        signer.update(data);
+    /**
+     * Gives back a signature context that will not be used
+     * to create a signature.
+     */
+    public void discardSignatureContext(Signature signer) {
+        mSigners.discard(signer);
+    }
+
+    /**
+     * Creates the signature of the data passed to the signature context.
+     */
+    public byte[] sign(Signature signer) throws Exception {
 
         /* debugging
         boolean testAutoShutdown = false;
@@ -175,14 +209,43 @@ public final class CASigningUnit extends SigningUnit {
         }
         */
 
-        logger.info("CASigningUnit: Signing Certificate");
+        logger.debug("CASigningUnit: Signing Certificate");
 
-        boolean testSignatureFailure = mConfig.getTestSignatureFailure();
-        if (testSignatureFailure) {
+        if (mTestSignatureFailure) {
+            mSigners.discard(signer);
             throw new SignatureException("SignatureException forced for testing");
         }
 
-        return signer.sign();
+        byte[] signature;
+        try {
+            signature = signer.sign();
+        } catch (Exception e) {
+            mSigners.discard(signer);
+            throw e;
+        }
+
+        // the context is reset to its initialized state
+        mSigners.release(signer);
+
+        return signature;
+    }
+
+    /**
+     * @param algname is expected to be one of JCA's algorithm names.
+     */
+    @Override
+    public byte[] sign(byte[] data, String algname) throws Exception {
+
+        Signature signer = getSignatureContext(algname);
+
+        try {
+            signer.update(data);
+        } catch (Exception e) {
+            mSigners.discard(signer);
+            throw e;
+        }
+
+        return sign(signer);
     }
 
     @Override
@@ -199,12 +262,20 @@ public final class CASigningUnit extends SigningUnit {
             throw new ECAException(CMS.getUserMessage("CMS_CA_SIGNING_ALGOR_NOT_SUPPORTED", algname));
         }
 
-        // XXX make this configurable. hack: use hardcoded for now.
-        Signature signer = mToken.getSignatureContext(signAlg);
+        Signature signer = mVerifiers.borrow(signAlg);
+
+        boolean verified;
+        try {
+            signer.update(data);
+            verified = signer.verify(signature);
+        } catch (Exception e) {
+            mVerifiers.discard(signer);
+            throw e;
+        }
 
-        signer.initVerify(mPubk);
-        signer.update(data);
+        // the context is reset to its initialized state
+        mVerifiers.release(signer);
 
-        return signer.verify(signature);
+        return verified;
     }
 }
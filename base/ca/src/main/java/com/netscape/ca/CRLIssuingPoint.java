@@ -19,10 +19,16 @@ package com.netscape.ca;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -67,6 +73,7 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.CRLRepository;
 import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.RevocationJournalEntry;
 import com.netscape.cmscore.ldap.CAPublisherProcessor;
 import com.netscape.cmscore.ldap.LdapRule;
 import com.netscape.cmscore.logging.Auditor;
@@ -74,6 +81,8 @@ import com.netscape.cmscore.request.CertRequestRepository;
 import com.netscape.cmscore.request.Request;
 import com.netscape.cmscore.util.StatsSubsystem;
 
+import netscape.ldap.LDAPException;
+
 /**
  * This class encapsulates CRL issuing mechanism. CertificateAuthority
  * contains a map of CRLIssuingPoint indexed by string ids. Each issuing
@@ -175,6 +184,43 @@ public class CRLIssuingPoint implements Runnable {
     private Hashtable<BigInteger, RevokedCertificate> mRevokedCerts = new Hashtable<>();
     private Hashtable<BigInteger, RevokedCertificate> mUnrevokedCerts = new Hashtable<>();
     private Hashtable<BigInteger, RevokedCertificate> mExpiredCerts = new Hashtable<>();
+
+    /**
+     * Changes to the revoked and unrevoked certificates that have been
+     * stored in the revocation journal but not in the cache attributes
+     * of the CRL issuing point record yet.
+     */
+    private List<RevocationJournalEntry> mRevocationJournal = new ArrayList<>();
+    private long mRevocationJournalSequence = 0;
+
+    /**
+     * Revocation journal entries that have not been stored yet, in the
+     * order of their sequence numbers. The entries are created while
+     * holding cacheMonitor, and they are stored outside of it while
+     * holding journalMonitor, so they reach the database in order
+     * without blocking the cache while the database is updated.
+     */
+    private List<RevocationJournalEntry> mUnstoredJournalEntries = new ArrayList<>();
+    private Object journalMonitor = new Object();
+
+    /**
+     * Whether the database schema supports the revocation journal. It is
+     * cleared the first time the journal is rejected by the schema, so
+     * the following changes are stored in full without trying again.
+     */
+    private volatile boolean mRevocationJournalEnabled = true;
+
+    /**
+     * Revoked and unrevoked certificates that have not been merged into
+     * the CRL cache yet, with their state after the last change. A CRL
+     * update takes a snapshot by swapping the map, so the values in the
+     * snapshot are never modified and changes made while the CRL is being
+     * generated are left for the next update. The cache generation is
+     * incremented when the cache is cleared. Guarded by cacheMonitor.
+     */
+    private Map<BigInteger, PendingCert> mPendingCerts = new LinkedHashMap<>();
+    private long mCacheGeneration = 0;
+
     private boolean mIncludeExpiredCerts = false;
     private boolean mIncludeExpiredCertsOneExtraTime = false;
     private boolean mCACertsOnly = false;
@@ -358,6 +404,9 @@ public class CRLIssuingPoint implements Runnable {
 
     private boolean mSaveMemory = false;
 
+    // encode the full CRL without building the CRL object in memory
+    private boolean mStreamingEncoding = false;
+
     /**
      * One time config flag that we have an updated schedule and we want it
      * followed immediately after startup.
@@ -896,6 +945,7 @@ public class CRLIssuingPoint implements Runnable {
         mPublishDN = config.getPublishDN();
 
         mSaveMemory = config.getSaveMemory();
+        mStreamingEncoding = config.getStreamingEncoding();
 
         mCMSCRLExtensions = new CMSCRLExtensions(this, config);
 
@@ -993,6 +1043,7 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             mFirstUnsaved = crlRecord.getFirstUnsaved();
+            loadRevocationJournal(crlRecord.getRevocationJournal());
             logger.debug("CRLIssuingPoint: CRL number: " + mCRLNumber);
             logger.debug("CRLIssuingPoint: CRL size: " + mCRLSize);
             logger.debug("CRLIssuingPoint: first unsaved: " + mFirstUnsaved);
@@ -1040,6 +1091,9 @@ public class CRLIssuingPoint implements Runnable {
                                 }
                                 logger.debug("CRLIssuingPoint: - unrevoked certs: " + mUnrevokedCerts.size());
 
+                                replayRevocationJournal();
+                                initPendingCerts();
+
                                 mExpiredCerts = crlRecord.getExpiredCerts();
                                 if (mExpiredCerts == null) {
                                     mExpiredCerts = new Hashtable<>();
@@ -2204,8 +2258,14 @@ public class CRLIssuingPoint implements Runnable {
 
         mCRLCacheIsCleared = true;
         mCRLCerts.clear();
-        mRevokedCerts.clear();
-        mUnrevokedCerts.clear();
+
+        synchronized (cacheMonitor) {
+            mRevokedCerts.clear();
+            mUnrevokedCerts.clear();
+            mPendingCerts.clear();
+            mCacheGeneration++;
+        }
+
         mExpiredCerts.clear();
         mSchemaCounter = 0;
     }
@@ -2217,8 +2277,13 @@ public class CRLIssuingPoint implements Runnable {
 
         logger.info("CRLIssuingPoint: Clearing delta CRL cache");
 
-        mRevokedCerts.clear();
-        mUnrevokedCerts.clear();
+        synchronized (cacheMonitor) {
+            mRevokedCerts.clear();
+            mUnrevokedCerts.clear();
+            mPendingCerts.clear();
+            mCacheGeneration++;
+        }
+
         mExpiredCerts.clear();
         mSchemaCounter = 0;
     }
@@ -2299,9 +2364,11 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             try {
+                List<RevocationJournalEntry> journal = getRevocationJournal();
                 mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 mCRLCacheIsCleared = false;
+                compactRevocationJournal(journal);
             } catch (EBaseException e) {
                 logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
             }
@@ -2419,14 +2486,20 @@ public class CRLIssuingPoint implements Runnable {
      */
     private void updateRevokedCert(int certType,
                                    BigInteger serialNumber,
-                                   RevokedCertImpl revokedCert) {
-        updateRevokedCert(certType, serialNumber, revokedCert, null);
+                                   RevokedCertImpl revokedCert) throws EBaseException {
+        updateRevokedCert(certType, serialNumber, revokedCert, null, false);
     }
 
+    /**
+     * update CRL cache with new revoked-unrevoked certificate info
+     *
+     * @param store true to store the change in the revocation journal
+     */
     private void updateRevokedCert(int certType,
                                    BigInteger serialNumber,
                                    RevokedCertImpl revokedCert,
-                                   String requestId) {
+                                   String requestId,
+                                   boolean store) throws EBaseException {
 
         CertId certID = new CertId(serialNumber);
         logger.info("CRLIssuingPoint: Updating revoked cert " + certID.toHexString());
@@ -2441,31 +2514,53 @@ public class CRLIssuingPoint implements Runnable {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
                 }
             }
+
+            List<RevocationJournalEntry> entries = new ArrayList<>();
+
+            // A change that has been taken into the snapshot of a CRL update
+            // in progress cannot be cancelled since it may already be in the
+            // CRL, so it is replaced by the opposite change instead.
+            boolean inSnapshot = !mPendingCerts.containsKey(serialNumber);
+
             if (certType == REVOKED_CERT) {
-                if (mUnrevokedCerts.containsKey(serialNumber)) {
+                if (mUnrevokedCerts.containsKey(serialNumber) && !inSnapshot) {
                     mUnrevokedCerts.remove(serialNumber);
+                    entries.add(new RevocationJournalEntry(++mRevocationJournalSequence,
+                            RevocationJournalEntry.REMOVE_UNREVOKED_CERT, serialNumber, null));
+
                     if (mCRLCerts.containsKey(serialNumber)) {
                         Date revocationDate = revokedCert.getRevocationDate();
                         CRLExtensions entryExt = getRequiredEntryExtensions(revokedCert.getExtensions());
-                        RevokedCertImpl newRevokedCert =
-                                new RevokedCertImpl(serialNumber, revocationDate, entryExt);
-
-                        mCRLCerts.put(serialNumber, newRevokedCert);
+                        mCRLCerts.put(serialNumber, new RevokedCertImpl(serialNumber, revocationDate, entryExt));
                     }
 
                 } else {
+                    if (mUnrevokedCerts.remove(serialNumber) != null) {
+                        entries.add(new RevocationJournalEntry(++mRevocationJournalSequence,
+                                RevocationJournalEntry.REMOVE_UNREVOKED_CERT, serialNumber, null));
+                    }
+
                     Date revocationDate = revokedCert.getRevocationDate();
                     CRLExtensions entryExt = getRequiredEntryExtensions(revokedCert.getExtensions());
-                    RevokedCertImpl newRevokedCert =
-                            new RevokedCertImpl(serialNumber, revocationDate, entryExt);
+                    RevokedCertImpl newRevokedCert = new RevokedCertImpl(serialNumber, revocationDate, entryExt);
 
                     mRevokedCerts.put(serialNumber, newRevokedCert);
+                    entries.add(new RevocationJournalEntry(++mRevocationJournalSequence,
+                            RevocationJournalEntry.ADD_REVOKED_CERT, serialNumber, newRevokedCert));
                 }
 
             } else if (certType == UNREVOKED_CERT) {
-                if (mRevokedCerts.containsKey(serialNumber)) {
+                if (mRevokedCerts.containsKey(serialNumber) && !inSnapshot) {
                     mRevokedCerts.remove(serialNumber);
+                    entries.add(new RevocationJournalEntry(++mRevocationJournalSequence,
+                            RevocationJournalEntry.REMOVE_REVOKED_CERT, serialNumber, null));
+
                 } else {
+                    if (mRevokedCerts.remove(serialNumber) != null) {
+                        entries.add(new RevocationJournalEntry(++mRevocationJournalSequence,
+                                RevocationJournalEntry.REMOVE_REVOKED_CERT, serialNumber, null));
+                    }
+
                     CRLExtensions entryExt = new CRLExtensions();
 
                     try {
@@ -2477,15 +2572,433 @@ public class CRLIssuingPoint implements Runnable {
                             new Date(), entryExt);
 
                     mUnrevokedCerts.put(serialNumber, newRevokedCert);
+                    entries.add(new RevocationJournalEntry(++mRevocationJournalSequence,
+                            RevocationJournalEntry.ADD_UNREVOKED_CERT, serialNumber, newRevokedCert));
                 }
+
+            } else {
+                return;
+            }
+
+            markPendingCert(serialNumber);
+
+            if (store) {
+                mUnstoredJournalEntries.addAll(entries);
             }
         }
 
+        if (store) {
+            storeRevocationJournal();
+        }
+
         logger.debug("CRLIssuingPoint: - CRL certs: " + mCRLCerts.size());
         logger.debug("CRLIssuingPoint: - revoked certs: " + mRevokedCerts.size());
         logger.debug("CRLIssuingPoint: - unrevoked certs: " + mUnrevokedCerts.size());
     }
 
+    /**
+     * Stores the revocation journal entries that have not been stored yet.
+     * The entries may have been created by other threads, they are stored
+     * by whichever thread gets the journal monitor first.
+     *
+     * Since the entries are stored in order, the journal in the database
+     * always contains the latest changes, so replaying it on top of the
+     * stored revoked and unrevoked certificates gives the current cache
+     * even if some of the changes are already included in them.
+     */
+    private void storeRevocationJournal() throws EBaseException {
+
+        synchronized (journalMonitor) {
+
+            List<RevocationJournalEntry> entries;
+
+            synchronized (cacheMonitor) {
+                if (mUnstoredJournalEntries.isEmpty()) {
+                    return;
+                }
+
+                entries = mUnstoredJournalEntries;
+                mUnstoredJournalEntries = new ArrayList<>();
+            }
+
+            for (RevocationJournalEntry entry : entries) {
+                if (!storeRevocationJournalEntry(entry)) {
+                    // the remaining entries are included in the stored certificates
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a change of the revoked or unrevoked certificates in the
+     * revocation journal. If the journal cannot be updated (e.g. the
+     * database schema does not support it yet), the revoked and unrevoked
+     * certificates are stored in full instead.
+     *
+     * @return true if the change has been stored in the journal
+     */
+    private boolean storeRevocationJournalEntry(RevocationJournalEntry entry) throws EBaseException {
+
+        if (mRevocationJournalEnabled) {
+            try {
+                mCRLRepository.addRevocationJournalEntry(mId, entry);
+
+                synchronized (cacheMonitor) {
+                    mRevocationJournal.add(entry);
+                }
+
+                mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                return true;
+
+            } catch (EBaseException e) {
+                if (isSchemaViolation(e)) {
+                    logger.warn("CRLIssuingPoint: Revocation journal not supported by database schema for "
+                            + mId + ", storing revoked certificates in full: " + e.getMessage());
+                    logger.warn("CRLIssuingPoint: Run pki-server upgrade to update the database schema");
+                    mRevocationJournalEnabled = false;
+
+                } else {
+                    logger.warn("CRLIssuingPoint: Unable to update revocation journal: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        List<RevocationJournalEntry> journal = getRevocationJournal();
+        Hashtable<BigInteger, RevokedCertificate> revokedCerts;
+        Hashtable<BigInteger, RevokedCertificate> unrevokedCerts;
+
+        // copy the certificates so they can be stored without the monitor
+        synchronized (cacheMonitor) {
+            revokedCerts = new Hashtable<>(mRevokedCerts);
+            unrevokedCerts = new Hashtable<>(mUnrevokedCerts);
+        }
+
+        mCRLRepository.updateRevokedCerts(mId, revokedCerts, unrevokedCerts);
+        mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+        compactRevocationJournal(journal);
+
+        return false;
+    }
+
+    /**
+     * Returns true if the database rejected the change because the
+     * schema does not define the revocation journal attribute.
+     */
+    private boolean isSchemaViolation(Throwable e) {
+
+        for (Throwable t = e; t != null; t = t.getCause()) {
+
+            if (!(t instanceof LDAPException)) {
+                continue;
+            }
+
+            int resultCode = ((LDAPException) t).getLDAPResultCode();
+            return resultCode == LDAPException.OBJECT_CLASS_VIOLATION
+                    || resultCode == LDAPException.UNDEFINED_ATTRIBUTE_TYPE;
+        }
+
+        return false;
+    }
+
+    /**
+     * Loads the revocation journal entries stored in the CRL issuing point
+     * record, so they will be removed once the cache is stored in full.
+     */
+    private void loadRevocationJournal(List<RevocationJournalEntry> journal) {
+
+        synchronized (cacheMonitor) {
+            mRevocationJournal.clear();
+
+            if (journal == null) {
+                return;
+            }
+
+            for (RevocationJournalEntry entry : journal) {
+                mRevocationJournal.add(entry);
+                mRevocationJournalSequence = Math.max(mRevocationJournalSequence, entry.getSequenceNumber());
+            }
+        }
+    }
+
+    /**
+     * Applies the changes stored in the revocation journal
+     * to the revoked and unrevoked certificates.
+     */
+    private void replayRevocationJournal() {
+
+        synchronized (cacheMonitor) {
+            logger.info("CRLIssuingPoint: Replaying " + mRevocationJournal.size() + " revocation journal entries");
+
+            for (RevocationJournalEntry entry : mRevocationJournal) {
+                entry.apply(mRevokedCerts, mUnrevokedCerts);
+            }
+
+            logger.debug("CRLIssuingPoint: - revoked certs: " + mRevokedCerts.size());
+            logger.debug("CRLIssuingPoint: - unrevoked certs: " + mUnrevokedCerts.size());
+        }
+    }
+
+    /**
+     * Marks the revoked and unrevoked certificates loaded
+     * from the CRL issuing point record as pending.
+     */
+    private void initPendingCerts() {
+
+        synchronized (cacheMonitor) {
+            mPendingCerts.clear();
+
+            for (BigInteger serialNumber : mRevokedCerts.keySet()) {
+                markPendingCert(serialNumber);
+            }
+
+            for (BigInteger serialNumber : mUnrevokedCerts.keySet()) {
+                markPendingCert(serialNumber);
+            }
+        }
+    }
+
+    /**
+     * Records the current state of a revoked or unrevoked certificate
+     * as pending. Must be called while holding cacheMonitor.
+     */
+    private void markPendingCert(BigInteger serialNumber) {
+        mPendingCerts.put(serialNumber, new PendingCert(
+                mRevokedCerts.get(serialNumber),
+                mUnrevokedCerts.get(serialNumber)));
+    }
+
+    /**
+     * Takes a snapshot of the revoked and unrevoked certificates that
+     * have not been merged into the CRL cache. The snapshot only swaps
+     * the map of pending certificates, so revocations are not blocked
+     * while the snapshot is being processed.
+     */
+    private PendingCerts getPendingCerts() {
+
+        PendingCerts pending = new PendingCerts();
+
+        synchronized (cacheMonitor) {
+            pending.certs = mPendingCerts;
+            mPendingCerts = new LinkedHashMap<>();
+            pending.generation = mCacheGeneration;
+            pending.journalSequence = mRevocationJournalSequence;
+        }
+
+        // the snapshot is no longer shared
+        for (Iterator<PendingCert> i = pending.certs.values().iterator(); i.hasNext();) {
+            PendingCert pendingCert = i.next();
+
+            if (pendingCert.revokedCert != null) {
+                pending.revoked++;
+
+            } else if (pendingCert.unrevokedCert != null) {
+                pending.unrevoked++;
+
+            } else {
+                // revoked and unrevoked again before the snapshot
+                i.remove();
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Merges the certificates of the snapshot into the CRL cache. The
+     * certificates changed after the snapshot remain pending with their
+     * new state.
+     */
+    private void mergePendingCerts(PendingCerts pending) {
+
+        int revoked = 0;
+        int unrevoked = 0;
+
+        for (Iterator<Map.Entry<BigInteger, PendingCert>> i = pending.certs.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<BigInteger, PendingCert> entry = i.next();
+            BigInteger serialNumber = entry.getKey();
+            PendingCert pendingCert = entry.getValue();
+
+            synchronized (cacheMonitor) {
+                if (pending.generation != mCacheGeneration) {
+                    // cache has been cleared
+                    break;
+                }
+
+                if (pendingCert.unrevokedCert != null) {
+                    mCRLCerts.remove(serialNumber);
+                    unrevoked++;
+
+                    // remove the certificate unless it has been changed after the snapshot
+                    if (mUnrevokedCerts.get(serialNumber) == pendingCert.unrevokedCert) {
+                        mUnrevokedCerts.remove(serialNumber);
+                    }
+                }
+
+                if (pendingCert.revokedCert != null) {
+                    mCRLCerts.put(serialNumber, pendingCert.revokedCert);
+                    revoked++;
+
+                    if (mRevokedCerts.get(serialNumber) == pendingCert.revokedCert) {
+                        mRevokedCerts.remove(serialNumber);
+                    }
+                }
+            }
+
+            i.remove();
+        }
+
+        pending.certs.clear();
+
+        logger.info("CRLIssuingPoint: Added " + revoked + " revoked cert(s) to cache");
+        logger.info("CRLIssuingPoint: Removed " + unrevoked + " unrevoked cert(s) from cache");
+    }
+
+    /**
+     * Returns the certificates of the snapshot that have not been
+     * merged into the CRL cache to the pending certificates, unless
+     * they have been changed after the snapshot.
+     */
+    private void restorePendingCerts(PendingCerts pending) {
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        synchronized (cacheMonitor) {
+            if (pending.generation == mCacheGeneration) {
+                for (Map.Entry<BigInteger, PendingCert> entry : pending.certs.entrySet()) {
+                    mPendingCerts.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        pending.certs.clear();
+    }
+
+    /**
+     * State of a revoked or unrevoked certificate after a change.
+     */
+    static class PendingCert {
+
+        final RevokedCertificate revokedCert;
+        final RevokedCertificate unrevokedCert;
+
+        PendingCert(RevokedCertificate revokedCert, RevokedCertificate unrevokedCert) {
+            this.revokedCert = revokedCert;
+            this.unrevokedCert = unrevokedCert;
+        }
+    }
+
+    /**
+     * Snapshot of the revoked and unrevoked certificates.
+     */
+    static class PendingCerts {
+
+        long generation;
+
+        // last revocation journal entry included in the snapshot
+        long journalSequence;
+
+        Map<BigInteger, PendingCert> certs = new LinkedHashMap<>();
+        int revoked;
+        int unrevoked;
+
+        boolean isEmpty() {
+            return certs.isEmpty();
+        }
+
+        void clear() {
+            certs.clear();
+            revoked = 0;
+            unrevoked = 0;
+        }
+
+        /**
+         * Returns the revoked and unrevoked certificates for the delta CRL.
+         */
+        Hashtable<BigInteger, RevokedCertificate> getDeltaCRLCerts() {
+
+            Hashtable<BigInteger, RevokedCertificate> deltaCRLCerts = new Hashtable<>();
+
+            for (Map.Entry<BigInteger, PendingCert> entry : certs.entrySet()) {
+                PendingCert pendingCert = entry.getValue();
+                deltaCRLCerts.put(entry.getKey(), pendingCert.revokedCert != null
+                        ? pendingCert.revokedCert : pendingCert.unrevokedCert);
+            }
+
+            return deltaCRLCerts;
+        }
+    }
+
+    /**
+     * Returns the revocation journal entries stored so far. This has to be
+     * called before the revoked and unrevoked certificates are stored in full,
+     * so that the returned entries are included in the stored certificates
+     * and can be removed from the journal with compactRevocationJournal().
+     */
+    private List<RevocationJournalEntry> getRevocationJournal() {
+        synchronized (cacheMonitor) {
+            return new ArrayList<>(mRevocationJournal);
+        }
+    }
+
+    /**
+     * Removes revocation journal entries that have been
+     * included in the stored revoked and unrevoked certificates.
+     * Entries added later are kept, they will be applied again
+     * on top of the stored certificates on startup.
+     */
+    private void compactRevocationJournal(long sequenceNumber) {
+
+        List<RevocationJournalEntry> journal = new ArrayList<>();
+
+        synchronized (cacheMonitor) {
+            for (RevocationJournalEntry entry : mRevocationJournal) {
+                if (entry.getSequenceNumber() <= sequenceNumber) {
+                    journal.add(entry);
+                }
+            }
+        }
+
+        compactRevocationJournal(journal);
+    }
+
+    /**
+     * Removes revocation journal entries that have been
+     * included in the stored revoked and unrevoked certificates.
+     */
+    private void compactRevocationJournal(List<RevocationJournalEntry> journal) {
+
+        if (journal.isEmpty()) {
+            return;
+        }
+
+        Set<RevocationJournalEntry> compacted = Collections.newSetFromMap(new IdentityHashMap<>());
+        compacted.addAll(journal);
+
+        List<RevocationJournalEntry> entries = new ArrayList<>();
+
+        synchronized (cacheMonitor) {
+            // skip entries removed by another compaction
+            for (RevocationJournalEntry entry : mRevocationJournal) {
+                if (compacted.contains(entry)) {
+                    entries.add(entry);
+                }
+            }
+            mRevocationJournal.removeIf(compacted::contains);
+        }
+
+        try {
+            mCRLRepository.removeRevocationJournalEntries(mId, entries);
+        } catch (EBaseException e) {
+            // the entries are still in the database, they are harmless
+            // since they are included in the stored certificates, and
+            // will be removed after the next restart
+            logger.warn("CRLIssuingPoint: Unable to compact revocation journal: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Adds revoked certificate to delta-CRL cache.
      *
@@ -2513,15 +3026,10 @@ public class CRLIssuingPoint implements Runnable {
         boolean includeCert = cp.checkRevokedCertExtensions(revokedCert.getExtensions());
 
         if (mEnable && mEnableCRLCache && includeCert) {
-            updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId);
-
-            if (mCacheUpdateInterval == 0) {
-                try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
-                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
-                } catch (EBaseException e) {
-                    logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
-                }
+            try {
+                updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId, mCacheUpdateInterval == 0);
+            } catch (EBaseException e) {
+                logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
             }
         }
     }
@@ -2547,15 +3055,10 @@ public class CRLIssuingPoint implements Runnable {
         logger.info("CRLIssuingPoint: Adding unrevoked cert " + certID.toHexString());
 
         if (mEnable && mEnableCRLCache) {
-            updateRevokedCert(UNREVOKED_CERT, serialNumber, null, requestId);
-
-            if (mCacheUpdateInterval == 0) {
-                try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
-                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
-                } catch (EBaseException e) {
-                    logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_UNREVOKED_CERT", mId, e.toString()), e);
-                }
+            try {
+                updateRevokedCert(UNREVOKED_CERT, serialNumber, null, requestId, mCacheUpdateInterval == 0);
+            } catch (EBaseException e) {
+                logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_UNREVOKED_CERT", mId, e.toString()), e);
             }
         }
     }
@@ -2605,9 +3108,11 @@ public class CRLIssuingPoint implements Runnable {
     public void updateCRLCacheRepository() {
         synchronized (repositoryMonitor) {
             try {
+                List<RevocationJournalEntry> journal = getRevocationJournal();
                 mCRLRepository.updateCRLCache(mId, Long.valueOf(mCRLSize),
                         mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                compactRevocationJournal(journal);
             } catch (EBaseException e) {
                 logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
             }
@@ -2887,128 +3392,106 @@ public class CRLIssuingPoint implements Runnable {
         }
 
         mSplits[0] -= System.currentTimeMillis();
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> clonedRevokedCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) mRevokedCerts.clone();
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> clonedUnrevokedCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) mUnrevokedCerts.clone();
+
+        // changes made after the snapshot are left for the next update
+        PendingCerts pending = getPendingCerts();
+
         @SuppressWarnings("unchecked")
         Hashtable<BigInteger, RevokedCertificate> clonedExpiredCerts =
                 (Hashtable<BigInteger, RevokedCertificate>) mExpiredCerts.clone();
 
         mSplits[0] += System.currentTimeMillis();
 
-        // starting from the beginning
-
-        if ((!mEnableCRLCache) ||
-                ((mCRLCacheIsCleared && mCRLCerts.isEmpty() && clonedRevokedCerts.isEmpty() &&
-                        clonedUnrevokedCerts.isEmpty() && clonedExpiredCerts.isEmpty()) ||
-                        (mCRLCerts.isEmpty() && (!clonedUnrevokedCerts.isEmpty())) ||
-                        (mCRLCerts.size() < clonedUnrevokedCerts.size()) ||
-                        (mCRLCerts.isEmpty() && (mCRLSize > 0)) ||
-                (mCRLCerts.size() > 0 && mCRLSize == 0))) {
+        logger.debug("CRLIssuingPoint: - pending revoked certs: " + pending.revoked);
+        logger.debug("CRLIssuingPoint: - pending unrevoked certs: " + pending.unrevoked);
 
-            mSplits[5] -= System.currentTimeMillis();
-            mDeltaCRLSize = -1;
-            clearCRLCache();
-            clonedRevokedCerts.clear();
-            clonedUnrevokedCerts.clear();
-            clonedExpiredCerts.clear();
-            mSchemaCounter = 0;
+        try {
+            // starting from the beginning
 
-            StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
-            if (statsSub != null) {
-                statsSub.startTiming("generation");
-            }
-            processRevokedCerts();
+            if ((!mEnableCRLCache) ||
+                    ((mCRLCacheIsCleared && mCRLCerts.isEmpty() && pending.revoked == 0 &&
+                            pending.unrevoked == 0 && clonedExpiredCerts.isEmpty()) ||
+                            (mCRLCerts.isEmpty() && (pending.unrevoked > 0)) ||
+                            (mCRLCerts.size() < pending.unrevoked) ||
+                            (mCRLCerts.isEmpty() && (mCRLSize > 0)) ||
+                    (mCRLCerts.size() > 0 && mCRLSize == 0))) {
 
-            if (statsSub != null) {
-                statsSub.endTiming("generation");
-            }
+                mSplits[5] -= System.currentTimeMillis();
+                mDeltaCRLSize = -1;
+                clearCRLCache();
+                pending.clear();
+                clonedExpiredCerts.clear();
+                mSchemaCounter = 0;
 
-            mCRLCacheIsCleared = false;
-            mSplits[5] += System.currentTimeMillis();
-        } else {
-            if (isDeltaCRLEnabled()) {
+                StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
+                if (statsSub != null) {
+                    statsSub.startTiming("generation");
+                }
+                processRevokedCerts();
 
-                generateDeltaCRL(
-                        clonedRevokedCerts,
-                        clonedUnrevokedCerts,
-                        clonedExpiredCerts,
-                        signingAlgorithm,
-                        thisUpdate,
-                        nextDeltaUpdate);
+                if (statsSub != null) {
+                    statsSub.endTiming("generation");
+                }
 
+                mCRLCacheIsCleared = false;
+                mSplits[5] += System.currentTimeMillis();
             } else {
-                mDeltaCRLSize = -1;
-            }
+                if (isDeltaCRLEnabled()) {
 
-            mSplits[5] -= System.currentTimeMillis();
+                    generateDeltaCRL(
+                            pending.getDeltaCRLCerts(),
+                            clonedExpiredCerts,
+                            signingAlgorithm,
+                            thisUpdate,
+                            nextDeltaUpdate);
 
-            if (mSchemaCounter == 0) {
-                if (((!mCRLCerts.isEmpty()) && ((!clonedRevokedCerts.isEmpty()) ||
-                        (!clonedUnrevokedCerts.isEmpty()) || (!clonedExpiredCerts.isEmpty()))) ||
-                        (mCRLCerts.isEmpty() && (mCRLSize == 0) && (!clonedRevokedCerts.isEmpty()))) {
+                } else {
+                    mDeltaCRLSize = -1;
+                }
 
-                    if (!clonedUnrevokedCerts.isEmpty()) {
-                        for (Enumeration<BigInteger> e = clonedUnrevokedCerts.keys(); e.hasMoreElements();) {
-                            BigInteger serialNumber = e.nextElement();
-                            CertId certID = new CertId(serialNumber);
+                mSplits[5] -= System.currentTimeMillis();
 
-                            if (mCRLCerts.containsKey(serialNumber)) {
-                                logger.info("CRLIssuingPoint: Removing unrevoked cert " + certID.toHexString() + " from cache");
-                                mCRLCerts.remove(serialNumber);
-                            }
-                            mUnrevokedCerts.remove(serialNumber);
-                        }
-                    }
+                if (mSchemaCounter == 0) {
+                    if (((!mCRLCerts.isEmpty()) && ((!pending.isEmpty()) || (!clonedExpiredCerts.isEmpty()))) ||
+                            (mCRLCerts.isEmpty() && (mCRLSize == 0) && (pending.revoked > 0))) {
 
-                    if (!clonedRevokedCerts.isEmpty()) {
-                        for (Enumeration<BigInteger> e = clonedRevokedCerts.keys(); e.hasMoreElements();) {
-                            BigInteger serialNumber = e.nextElement();
-                            CertId certID = new CertId(serialNumber);
+                        mergePendingCerts(pending);
 
-                            logger.info("CRLIssuingPoint: Adding revoked cert " + certID.toHexString() + " to cache");
-                            mCRLCerts.put(serialNumber, mRevokedCerts.get(serialNumber));
-                            mRevokedCerts.remove(serialNumber);
-                        }
-                    }
+                        int expired = 0;
 
-                    if (!clonedExpiredCerts.isEmpty()) {
                         for (Enumeration<BigInteger> e = clonedExpiredCerts.keys(); e.hasMoreElements();) {
                             BigInteger serialNumber = e.nextElement();
-                            CertId certID = new CertId(serialNumber);
 
                             if ((!mIncludeExpiredCertsOneExtraTime) ||
                                     (mLastFullUpdate != null &&
-                                    mLastFullUpdate.after((mExpiredCerts.get(serialNumber)).getRevocationDate())) ||
+                                    mLastFullUpdate.after((clonedExpiredCerts.get(serialNumber)).getRevocationDate())) ||
                                     mLastFullUpdate == null) {
-                                logger.info("CRLIssuingPoint: Removing expired cert " + certID.toHexString() + " from cache");
-                                if (mCRLCerts.containsKey(serialNumber)) {
-                                    mCRLCerts.remove(serialNumber);
-                                }
+                                mCRLCerts.remove(serialNumber);
                                 mExpiredCerts.remove(serialNumber);
+                                expired++;
                             }
                         }
+
+                        logger.info("CRLIssuingPoint: Removed " + expired + " expired cert(s) from cache");
                     }
+                    mLastFullUpdate = mLastUpdate;
                 }
-                mLastFullUpdate = mLastUpdate;
+                mSplits[5] += System.currentTimeMillis();
             }
-            mSplits[5] += System.currentTimeMillis();
+
+        } finally {
+            // keep the certificates that have not been merged for the next update
+            restorePendingCerts(pending);
         }
 
         logger.debug("CRLIssuingPoint: - CRL certs: " + mCRLCerts.size());
 
-        clonedRevokedCerts.clear();
-        clonedUnrevokedCerts.clear();
         clonedExpiredCerts.clear();
-        clonedRevokedCerts = null;
-        clonedUnrevokedCerts = null;
         clonedExpiredCerts = null;
 
         if ((!isDeltaCRLEnabled()) || mSchemaCounter == 0) {
             generateFullCRL(signingAlgorithm, thisUpdate, nextUpdate);
+            compactRevocationJournal(pending.journalSequence);
         }
 
         if (isDeltaCRLEnabled() && mDeltaCRLSize > -1 && mSchemaCounter > 0) {
@@ -3044,9 +3527,15 @@ public class CRLIssuingPoint implements Runnable {
         return ext;
     }
 
+    /**
+     * Generates a delta CRL.
+     *
+     * @param deltaCRLCerts revoked and unrevoked certificates since the last full CRL,
+     *            the expired certificates will be added into this table
+     * @param clonedExpiredCerts expired certificates since the last full CRL
+     */
     void generateDeltaCRL(
-            Hashtable<BigInteger, RevokedCertificate> clonedRevokedCerts,
-            Hashtable<BigInteger, RevokedCertificate> clonedUnrevokedCerts,
+            Hashtable<BigInteger, RevokedCertificate> deltaCRLCerts,
             Hashtable<BigInteger, RevokedCertificate> clonedExpiredCerts,
             String signingAlgorithm,
             Date thisUpdate,
@@ -3059,18 +3548,12 @@ public class CRLIssuingPoint implements Runnable {
         CAEngine engine = CAEngine.getInstance();
         Auditor auditor = engine.getAuditor();
 
-        @SuppressWarnings("unchecked")
-        Hashtable<BigInteger, RevokedCertificate> deltaCRLCerts =
-                (Hashtable<BigInteger, RevokedCertificate>) clonedRevokedCerts.clone();
-
-        deltaCRLCerts.putAll(clonedUnrevokedCerts);
-
         if (mIncludeExpiredCertsOneExtraTime) {
 
             for (Enumeration<BigInteger> e = clonedExpiredCerts.keys(); e.hasMoreElements();) {
                 BigInteger serialNumber = e.nextElement();
                 if (mLastFullUpdate == null ||
-                    mLastFullUpdate.after(mExpiredCerts.get(serialNumber).getRevocationDate())) {
+                    mLastFullUpdate.after(clonedExpiredCerts.get(serialNumber).getRevocationDate())) {
                     deltaCRLCerts.put(serialNumber, clonedExpiredCerts.get(serialNumber));
                 }
             }
@@ -3207,6 +3690,7 @@ public class CRLIssuingPoint implements Runnable {
         mSplits[6] += System.currentTimeMillis();
 
         X509CRLImpl newX509CRL = null;
+        byte[] newCRL = null;
 
         try {
             logger.debug("CRLIssuingPoint: - signing algorithm: " + signingAlgorithm);
@@ -3228,15 +3712,28 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             logger.info("CRLIssuingPoint: Generating full CRL with " + mCRLCerts.size() + " cert(s)");
-            X509CRLImpl crl = new X509CRLImpl(mCA.getCRLX500Name(),
-                    AlgorithmId.get(signingAlgorithm),
-                    thisUpdate, nextUpdate, mCRLCerts, ext);
 
-            logger.info("CRLIssuingPoint: Signing full CRL with " + signingAlgorithm);
-            newX509CRL = mCA.sign(crl, signingAlgorithm);
+            if (mStreamingEncoding) {
+                StreamingCRLEncoder encoder = new StreamingCRLEncoder(mCA.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextUpdate, mCRLCerts, ext);
+
+                logger.info("CRLIssuingPoint: Signing full CRL with " + signingAlgorithm);
+                newCRL = mCA.sign(encoder, signingAlgorithm);
+
+                // the encoded CRL is only parsed if it will be published
 
-            logger.info("CRLIssuingPoint: Encoding full CRL");
-            byte[] newCRL = newX509CRL.getEncoded();
+            } else {
+                X509CRLImpl crl = new X509CRLImpl(mCA.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextUpdate, mCRLCerts, ext);
+
+                logger.info("CRLIssuingPoint: Signing full CRL with " + signingAlgorithm);
+                newX509CRL = mCA.sign(crl, signingAlgorithm);
+
+                logger.info("CRLIssuingPoint: Encoding full CRL");
+                newCRL = newX509CRL.getEncoded();
+            }
 
             mSplits[7] += System.currentTimeMillis();
 
@@ -3327,7 +3824,11 @@ public class CRLIssuingPoint implements Runnable {
         try {
             mSplits[9] -= System.currentTimeMillis();
             mUpdatingCRL = CRL_PUBLISHING_STARTED;
-            publishCRL(newX509CRL);
+            if (newX509CRL == null) {
+                publishCRL(newCRL, false);
+            } else {
+                publishCRL(newX509CRL);
+            }
             mSplits[9] += System.currentTimeMillis();
 
             auditor.log(new FullCRLPublishingEvent(getAuditSubjectID(), mCRLNumber));
@@ -3363,6 +3864,21 @@ public class CRLIssuingPoint implements Runnable {
      */
     protected void publishCRL(X509CRLImpl x509crl, boolean isDeltaCRL)
             throws EBaseException {
+        publishCRL(x509crl, null, isDeltaCRL);
+    }
+
+    /**
+     * Publishes an encoded CRL. The CRL is only parsed if CRL publishing
+     * is enabled, and the revoked certificates are not parsed since the
+     * publishers only need the encoded CRL.
+     */
+    protected void publishCRL(byte[] crl, boolean isDeltaCRL)
+            throws EBaseException {
+        publishCRL(null, crl, isDeltaCRL);
+    }
+
+    private void publishCRL(X509CRLImpl x509crl, byte[] encodedCRL, boolean isDeltaCRL)
+            throws EBaseException {
         SessionContext sc = SessionContext.getContext();
 
         CAEngine engine = CAEngine.getInstance();
@@ -3388,7 +3904,7 @@ public class CRLIssuingPoint implements Runnable {
 
         logger.info("CRLIssuingPoint: Publishing " + mId);
         try {
-            if (x509crl == null) {
+            if (x509crl == null && encodedCRL == null) {
                 crlRecord = mCRLRepository.readCRLIssuingPointRecord(mId);
                 if (crlRecord != null) {
                     byte[] crl = (isDeltaCRL) ? crlRecord.getDeltaCRL() : crlRecord.getCRL();
@@ -3398,12 +3914,15 @@ public class CRLIssuingPoint implements Runnable {
                     }
                 }
             }
-            if (x509crl != null &&
+            if ((x509crl != null || encodedCRL != null) &&
                     mPublisherProcessor != null && mPublisherProcessor.isCRLPublishingEnabled()) {
                 Enumeration<LdapRule> rules = mPublisherProcessor.getRules(CAPublisherProcessor.PROP_LOCAL_CRL);
                 if (rules == null || !rules.hasMoreElements()) {
                     logger.debug("CRLIssuingPoint: CRL publishing is not enabled");
                 } else {
+                    if (x509crl == null) {
+                        x509crl = new X509CRLImpl(encodedCRL, false);
+                    }
                     if (mPublishDN != null) {
                         mPublisherProcessor.publishCRL(mPublishDN, x509crl);
                         logger.debug("CRLIssuingPoint: CRL published to " + mPublishDN);
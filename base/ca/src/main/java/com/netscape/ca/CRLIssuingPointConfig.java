@@ -201,6 +201,14 @@ public class CRLIssuingPointConfig extends ConfigStore {
         putString("signingAlgorithm", signingAlgorithm);
     }
 
+    public boolean getStreamingEncoding() throws EBaseException {
+        return getBoolean("streamingEncoding", false);
+    }
+
+    public void setStreamingEncoding(boolean streamingEncoding) {
+        putBoolean("streamingEncoding", streamingEncoding);
+    }
+
     public int getUpdateSchema() throws EBaseException {
         return getInteger("updateSchema", 1);
     }
@@ -17,11 +17,13 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.ca;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.MessageDigest;
@@ -873,6 +875,100 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         return signedcrl;
     }
 
+    /**
+     * Signs a CRL prepared by the streaming encoder. The TBSCertList is
+     * passed to the signature context without being stored in memory.
+     *
+     * @param encoder the CRL encoder
+     * @param algname the signing algorithm, or null to use the default algorithm
+     * @return the encoded signed CRL
+     */
+    public byte[] sign(StreamingCRLEncoder encoder, String algname)
+            throws EBaseException {
+
+        CAEngine engine = CAEngine.getInstance();
+        ensureReady();
+
+        StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
+        if (statsSub != null) {
+            statsSub.startTiming("signing");
+        }
+
+        try {
+            if (algname == null) {
+                algname = mSigningUnit.getDefaultAlgorithm();
+            }
+
+            org.mozilla.jss.crypto.Signature signer = mCRLSigningUnit.getSignatureContext(algname);
+
+            OutputStream out = new OutputStream() {
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    try {
+                        signer.update(b, off, len);
+                    } catch (SignatureException e) {
+                        throw new IOException(e);
+                    }
+                }
+            };
+
+            // buffer the small header writes before passing them to the token
+            try (BufferedOutputStream bos = new BufferedOutputStream(out, 64 * 1024)) {
+                encoder.writeTBSCertList(bos);
+
+            } catch (Exception e) {
+                mCRLSigningUnit.discardSignatureContext(signer);
+                throw e;
+            }
+
+            byte[] signature = mCRLSigningUnit.sign(signer);
+
+            return encoder.encode(AlgorithmId.get(algname), signature);
+
+        } catch (CRLException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            throw new ECAException(
+                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+
+        } catch (NoSuchAlgorithmException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            throw new ECAException(CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+
+        } catch (IOException e) {
+            if (e.getCause() instanceof SignatureException) {
+                logger.error(CMS.getUserMessage("CMS_CA_SIGNING_OPERATION_FAILED", e.toString()), e);
+                engine.checkForAndAutoShutdown();
+                throw new EBaseException((SignatureException) e.getCause());
+            }
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            throw new ECAException(
+                    CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+
+        } catch (SignatureException e) {
+            logger.error(CMS.getUserMessage("CMS_CA_SIGNING_OPERATION_FAILED", e.toString()), e);
+            engine.checkForAndAutoShutdown();
+            throw new EBaseException(e);
+
+        } catch (EBaseException e) {
+            throw e;
+
+        } catch (Exception e) {
+            logger.error("Unable to sign data: " + e.getMessage(), e);
+            throw new EBaseException(e);
+
+        } finally {
+            if (statsSub != null) {
+                statsSub.endTiming("signing");
+            }
+        }
+    }
+
     /**
      * Signs the given certificate info using specified signing algorithm
      * If no algorithm is specified the CA's default algorithm is used.
@@ -0,0 +1,184 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+
+/**
+ * This class keeps initialized signature contexts for each algorithm
+ * so they can be reused instead of creating and initializing a new
+ * context on the token for every signature.
+ *
+ * A context is initialized with the key once when it is created.
+ * After sign() or verify() the context is reset to its initialized
+ * state, so it can be given back with release() and used again as is.
+ * A context that failed or was only partially updated must be given
+ * back with discard() instead.
+ *
+ * The pool does not limit the number of contexts in use. If no idle
+ * context is available a new one is created, and at most maxIdle
+ * contexts per algorithm are kept when they are given back. A context
+ * that is never given back is simply garbage collected.
+ */
+public class SignatureContextPool {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SignatureContextPool.class);
+
+    public interface SignatureContextFactory {
+        Signature create(SignatureAlgorithm algorithm) throws Exception;
+    }
+
+    public interface SignatureContextInitializer {
+        void init(Signature signature) throws Exception;
+    }
+
+    private String name;
+    private int maxIdle;
+    private SignatureContextFactory factory;
+    private SignatureContextInitializer initializer;
+
+    private Map<SignatureAlgorithm, IdleContexts> idleContexts = new ConcurrentHashMap<>();
+
+    // borrowed context -> algorithm
+    private Map<Signature, SignatureAlgorithm> borrowed =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+
+    /**
+     * @param name pool name for logging
+     * @param maxIdle maximum number of idle contexts per algorithm,
+     *        0 to disable pooling
+     * @param factory creates contexts
+     * @param initializer initializes new contexts with the key
+     */
+    public SignatureContextPool(
+            String name,
+            int maxIdle,
+            SignatureContextFactory factory,
+            SignatureContextInitializer initializer) {
+
+        this.name = name;
+        this.maxIdle = maxIdle;
+        this.factory = factory;
+        this.initializer = initializer;
+    }
+
+    /**
+     * Returns an initialized context for the algorithm.
+     */
+    public Signature borrow(SignatureAlgorithm algorithm) throws Exception {
+
+        Signature signature = null;
+
+        IdleContexts contexts = idleContexts.get(algorithm);
+        if (contexts != null) {
+            signature = contexts.poll();
+        }
+
+        if (signature != null) {
+            hits.increment();
+
+        } else {
+            misses.increment();
+            logger.debug("SignatureContextPool: Creating " + name + " context for " + algorithm);
+
+            signature = factory.create(algorithm);
+            initializer.init(signature);
+        }
+
+        borrowed.put(signature, algorithm);
+        return signature;
+    }
+
+    /**
+     * Returns a context to the pool after the signature has been
+     * created or verified.
+     */
+    public void release(Signature signature) {
+
+        if (signature == null) {
+            return;
+        }
+
+        SignatureAlgorithm algorithm = borrowed.remove(signature);
+        if (algorithm == null) {
+            logger.warn("SignatureContextPool: Unknown " + name + " context");
+            return;
+        }
+
+        if (maxIdle <= 0) {
+            return;
+        }
+
+        // if the pool is full the context is not kept
+        idleContexts.computeIfAbsent(algorithm, k -> new IdleContexts()).offer(signature, maxIdle);
+    }
+
+    /**
+     * Drops a context that cannot be reused.
+     */
+    public void discard(Signature signature) {
+
+        if (signature == null) {
+            return;
+        }
+
+        // the context is not kept, let it be garbage collected
+        borrowed.remove(signature);
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    static class IdleContexts {
+
+        Queue<Signature> queue = new ConcurrentLinkedQueue<>();
+        AtomicInteger size = new AtomicInteger();
+
+        Signature poll() {
+            Signature signature = queue.poll();
+            if (signature != null) {
+                size.decrementAndGet();
+            }
+            return signature;
+        }
+
+        /**
+         * @return true if the context is kept, false if the pool is full
+         */
+        boolean offer(Signature signature, int maxIdle) {
+
+            if (size.incrementAndGet() > maxIdle) {
+                size.decrementAndGet();
+                return false;
+            }
+
+            queue.offer(signature);
+            return true;
+        }
+    }
+}
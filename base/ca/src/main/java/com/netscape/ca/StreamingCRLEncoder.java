@@ -0,0 +1,299 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.cert.CRLException;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+/**
+ * This class encodes a CRL without building an X509CRLImpl in memory.
+ *
+ * The encoder only keeps references to the revoked certificates and the
+ * encoded CRL header and extensions. The TBSCertList is written entry by
+ * entry into a sink, first into the signature context, then into the
+ * final output together with the signature. Since DER requires the length
+ * of each structure before its content, the lengths of the entries are
+ * computed in advance.
+ *
+ * The entries are written in the enumeration order of the revoked
+ * certificate table, so the result is identical to the encoding of
+ * X509CRLImpl.
+ */
+public class StreamingCRLEncoder {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamingCRLEncoder.class);
+
+    // dates from 2050 are encoded as GeneralizedTime (RFC 5280 section 4.1.2.5)
+    private static final long YR_2050 = 2524608000000L;
+
+    private byte[] header;
+    private RevokedCertificate[] entries;
+    private long entriesLength;
+    private byte[] extensions;
+
+    /**
+     * Prepares the encoding of a CRL.
+     *
+     * @param issuer CRL issuer
+     * @param algId signing algorithm
+     * @param thisUpdate this update
+     * @param nextUpdate next update, can be null
+     * @param revokedCerts revoked certificates
+     * @param crlExts CRL extensions, can be null
+     */
+    public StreamingCRLEncoder(
+            X500Name issuer,
+            AlgorithmId algId,
+            Date thisUpdate,
+            Date nextUpdate,
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
+            CRLExtensions crlExts) throws Exception {
+
+        // Hashtable.values() is synchronized and enumerates
+        // the entries in the same order as Hashtable.elements()
+        entries = revokedCerts.values().toArray(new RevokedCertificate[0]);
+
+        int version = crlExts == null ? 0 : 1;
+
+        for (RevokedCertificate entry : entries) {
+            entriesLength += entry.getEncoded().length;
+
+            if (entry.hasExtensions()) {
+                version = 1;
+            }
+        }
+
+        try (DerOutputStream tmp = new DerOutputStream()) {
+
+            if (version != 0) {
+                tmp.putInteger(new BigInt(version));
+            }
+
+            algId.encode(tmp);
+            issuer.encode(tmp);
+            putTime(tmp, thisUpdate);
+
+            if (nextUpdate != null) {
+                putTime(tmp, nextUpdate);
+            }
+
+            header = tmp.toByteArray();
+        }
+
+        if (crlExts == null) {
+            extensions = new byte[0];
+
+        } else {
+            try (DerOutputStream tmp = new DerOutputStream()) {
+                crlExts.encode(tmp, true);
+                extensions = tmp.toByteArray();
+            }
+        }
+    }
+
+    private static void putTime(DerOutputStream out, Date date) throws IOException {
+        if (date.getTime() < YR_2050) {
+            out.putUTCTime(date);
+        } else {
+            out.putGeneralizedTime(date);
+        }
+    }
+
+    public int getSize() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the length of the TBSCertList content.
+     */
+    private long getTBSContentLength() {
+
+        long length = header.length + extensions.length;
+
+        if (entries.length > 0) {
+            length += 1 + getLengthSize(entriesLength) + entriesLength;
+        }
+
+        return length;
+    }
+
+    /**
+     * Returns the length of the encoded TBSCertList.
+     */
+    public long getTBSCertListLength() {
+        long length = getTBSContentLength();
+        return 1 + getLengthSize(length) + length;
+    }
+
+    /**
+     * Writes the TBSCertList into the output stream.
+     */
+    public void writeTBSCertList(OutputStream out) throws IOException, CRLException {
+
+        out.write(DerOutputStream.tag_Sequence);
+        writeLength(out, getTBSContentLength());
+        out.write(header);
+
+        if (entries.length > 0) {
+            out.write(DerOutputStream.tag_Sequence);
+            writeLength(out, entriesLength);
+
+            long length = 0;
+
+            for (RevokedCertificate entry : entries) {
+                byte[] data = entry.getEncoded();
+                length += data.length;
+
+                if (length > entriesLength) {
+                    throw new CRLException("CRL entry changed during encoding: 0x"
+                            + entry.getSerialNumber().toString(16));
+                }
+
+                out.write(data);
+            }
+
+            if (length != entriesLength) {
+                throw new CRLException("CRL entries changed during encoding");
+            }
+        }
+
+        out.write(extensions);
+    }
+
+    private static byte[] encodeTrailer(AlgorithmId sigAlgId, byte[] signature) throws IOException {
+        try (DerOutputStream tmp = new DerOutputStream()) {
+            sigAlgId.encode(tmp);
+            tmp.putBitString(signature);
+            return tmp.toByteArray();
+        }
+    }
+
+    /**
+     * Writes the signed CRL into the output stream.
+     *
+     * @param out output stream
+     * @param sigAlgId signature algorithm
+     * @param signature signature of the TBSCertList
+     */
+    public void encode(OutputStream out, AlgorithmId sigAlgId, byte[] signature)
+            throws IOException, CRLException {
+
+        byte[] trailer = encodeTrailer(sigAlgId, signature);
+
+        out.write(DerOutputStream.tag_Sequence);
+        writeLength(out, getTBSCertListLength() + trailer.length);
+
+        writeTBSCertList(out);
+        out.write(trailer);
+    }
+
+    /**
+     * Encodes the signed CRL into a byte array of the exact size.
+     *
+     * @param sigAlgId signature algorithm
+     * @param signature signature of the TBSCertList
+     * @return encoded CRL
+     */
+    public byte[] encode(AlgorithmId sigAlgId, byte[] signature) throws IOException, CRLException {
+
+        byte[] trailer = encodeTrailer(sigAlgId, signature);
+
+        long contentLength = getTBSCertListLength() + trailer.length;
+        long length = 1 + getLengthSize(contentLength) + contentLength;
+
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new CRLException("CRL too large to be stored in memory: " + length + " bytes");
+        }
+
+        ArrayOutputStream out = new ArrayOutputStream((int) length);
+
+        out.write(DerOutputStream.tag_Sequence);
+        writeLength(out, contentLength);
+
+        writeTBSCertList(out);
+        out.write(trailer);
+
+        if (out.pos != out.buf.length) {
+            throw new CRLException("Unexpected CRL size: " + out.pos);
+        }
+
+        return out.buf;
+    }
+
+    /**
+     * Returns the number of bytes of a DER definite length.
+     */
+    static int getLengthSize(long length) {
+
+        if (length < 128) {
+            return 1;
+        }
+
+        int size = 1;
+        while (length > 0) {
+            size++;
+            length >>>= 8;
+        }
+
+        return size;
+    }
+
+    /**
+     * Writes a DER definite length.
+     */
+    static void writeLength(OutputStream out, long length) throws IOException {
+
+        if (length < 128) {
+            out.write((int) length);
+            return;
+        }
+
+        int size = getLengthSize(length) - 1;
+        out.write(0x80 | size);
+
+        for (int i = size - 1; i >= 0; i--) {
+            out.write((int) (length >>> (i * 8)) & 0xff);
+        }
+    }
+
+    static class ArrayOutputStream extends OutputStream {
+
+        byte[] buf;
+        int pos;
+
+        ArrayOutputStream(int size) {
+            buf = new byte[size];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (pos >= buf.length) {
+                throw new IOException("CRL exceeds expected size");
+            }
+            buf[pos++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buf.length - pos) {
+                throw new IOException("CRL exceeds expected size");
+            }
+            System.arraycopy(b, off, buf, pos, len);
+            pos += len;
+        }
+    }
+}
@@ -17,23 +17,27 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.publish.publishers;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
 import java.util.Date;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.dogtag.util.cert.CertUtil;
 import org.dogtagpki.server.ca.CAEngine;
 import org.dogtagpki.server.ca.CAEngineConfig;
 import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
@@ -42,14 +46,31 @@ import com.netscape.certsrv.publish.Publisher;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmsutil.crypto.CryptoUtil;
+import com.netscape.cmsutil.http.HttpClient;
 import com.netscape.cmsutil.http.HttpRequest;
+import com.netscape.cmsutil.http.HttpResponse;
 import com.netscape.cmsutil.http.JssSSLSocketFactory;
 
 import netscape.ldap.LDAPConnection;
 
 /**
- * This publisher writes certificate and CRL into
- * a directory.
+ * This publisher sends CRLs to an OCSP responder.
+ *
+ * By default the CRL is sent as a base-64 encoded form parameter. If
+ * binary is enabled, the DER-encoded CRL is sent as the request body,
+ * which requires an OCSP responder that accepts application/pkix-crl.
+ *
+ * The connection to the OCSP responder is kept open and reused for
+ * the next CRL. If async is enabled, the CRL is sent by a background
+ * thread so the CRL can be sent to multiple OCSP responders at the
+ * same time. A CRL that has not been sent yet is replaced by a newer
+ * CRL.
+ *
+ * Delta CRLs are only sent if deltaCRL is enabled.
+ *
+ * The CRL is written to the connection in pieces instead of being
+ * copied into the request. The connection and the background thread
+ * are closed when the publisher is removed or replaced.
  */
 public class OCSPPublisher
         extends Publisher
@@ -62,6 +83,11 @@ public class OCSPPublisher
     private static final String PROP_PATH = "path";
     private static final String PROP_NICK = "nickName";
     private static final String PROP_CLIENT_AUTH_ENABLE = "enableClientAuth";
+    private static final String PROP_BINARY = "binary";
+    private static final String PROP_ASYNC = "async";
+    private static final String PROP_DELTA_CRL = "deltaCRL";
+
+    public static final String CRL_CONTENT_TYPE = "application/pkix-crl";
 
     private ConfigStore mConfig;
     private String mHost = null;
@@ -69,6 +95,19 @@ public class OCSPPublisher
     private String mPath = null;
     private String mNickname = null;
     private boolean mClientAuthEnabled = true;
+    private boolean mBinary = false;
+    private boolean mDeltaCRL = false;
+
+    private JssSSLSocketFactory mFactory;
+    private HttpClient mClient;
+
+    // sends CRLs in the background if async is enabled
+    private ExecutorService mExecutor;
+
+    // latest full CRL waiting to be sent in the background
+    private AtomicReference<X509CRL> mPendingCRL = new AtomicReference<>();
+
+    private volatile boolean mShutdown;
 
     /**
      * Returns the implementation name.
@@ -94,6 +133,9 @@ public class OCSPPublisher
                 PROP_PATH + ";string;URI of CMS's OCSP Secure agent service",
                 PROP_NICK + ";string;Nickname of cert used for client authentication",
                 PROP_CLIENT_AUTH_ENABLE + ";boolean;Client Authentication enabled",
+                PROP_BINARY + ";boolean;Send CRL in binary form (requires OCSP responder support)",
+                PROP_ASYNC + ";boolean;Send CRL in the background",
+                PROP_DELTA_CRL + ";boolean;Send delta CRLs (requires OCSP responder support)",
                 IExtendedPluginInfo.HELP_TOKEN +
                         ";configuration-ldappublish-publisher-ocsppublisher",
                 IExtendedPluginInfo.HELP_TEXT +
@@ -114,6 +156,9 @@ public class OCSPPublisher
         String path = "";
         String nickname = "";
         String clientAuthEnabled = "";
+        String binary = "";
+        String async = "";
+        String deltaCRL = "";
 
         try {
             host = mConfig.getString(PROP_HOST);
@@ -140,6 +185,21 @@ public class OCSPPublisher
         } catch (EBaseException e) {
         }
         v.addElement(PROP_CLIENT_AUTH_ENABLE + "=" + clientAuthEnabled);
+        try {
+            binary = mConfig.getString(PROP_BINARY);
+        } catch (EBaseException e) {
+        }
+        v.addElement(PROP_BINARY + "=" + binary);
+        try {
+            async = mConfig.getString(PROP_ASYNC);
+        } catch (EBaseException e) {
+        }
+        v.addElement(PROP_ASYNC + "=" + async);
+        try {
+            deltaCRL = mConfig.getString(PROP_DELTA_CRL);
+        } catch (EBaseException e) {
+        }
+        v.addElement(PROP_DELTA_CRL + "=" + deltaCRL);
         return v;
     }
 
@@ -168,6 +228,9 @@ public class OCSPPublisher
         v.addElement(PROP_PATH + "=/ocsp/agent/ocsp/addCRL");
         v.addElement(PROP_CLIENT_AUTH_ENABLE + "=true");
         v.addElement(PROP_NICK + "=" + nickname);
+        v.addElement(PROP_BINARY + "=false");
+        v.addElement(PROP_ASYNC + "=false");
+        v.addElement(PROP_DELTA_CRL + "=false");
         return v;
     }
 
@@ -182,6 +245,21 @@ public class OCSPPublisher
         mPath = mConfig.getString(PROP_PATH, "");
         mNickname = mConfig.getString(PROP_NICK, "");
         mClientAuthEnabled = mConfig.getBoolean(PROP_CLIENT_AUTH_ENABLE, true);
+        mBinary = mConfig.getBoolean(PROP_BINARY, false);
+        mDeltaCRL = mConfig.getBoolean(PROP_DELTA_CRL, false);
+
+        if (mConfig.getBoolean(PROP_ASYNC, false)) {
+            // the thread ends when idle, so a replaced instance
+            // does not leave a thread behind
+            mExecutor = new ThreadPoolExecutor(
+                    0, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread thread = new Thread(r, "OCSPPublisher-" + mHost);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
     }
 
     @Override
@@ -189,32 +267,6 @@ public class OCSPPublisher
         return mConfig;
     }
 
-    protected Socket Connect(String host, boolean secure, JssSSLSocketFactory factory) {
-        Socket socket = null;
-        StringTokenizer st = new StringTokenizer(host, " ");
-        while (st.hasMoreTokens()) {
-            String hp = st.nextToken(); // host:port
-            StringTokenizer st1 = new StringTokenizer(hp, ":");
-            String h = st1.nextToken();
-            int p = Integer.parseInt(st1.nextToken());
-            try {
-                if (secure) {
-                    socket = factory.makeSocket(h, p);
-                } else {
-                    socket = new Socket(h, p);
-                }
-                return socket;
-            } catch (Exception e) {
-                logger.warn("OCSPPublisher: " + e.getMessage(), e);
-            }
-            try {
-                Thread.sleep(5000); // 5 seconds delay
-            } catch (Exception e) {
-            }
-        }
-        return null;
-    }
-
     /**
      * Publishs a object to the ldap directory.
      *
@@ -227,20 +279,60 @@ public class OCSPPublisher
      *            java.security.cert.X509CRL)
      */
     @Override
-    public synchronized void publish(LDAPConnection conn, String dn, Object object)
+    public void publish(LDAPConnection conn, String dn, Object object)
             throws ELdapException {
-        try {
-            if (!(object instanceof X509CRL)) {
-                return;
-            }
 
-            X509CRL crl = (X509CRL) object;
+        if (!(object instanceof X509CRL)) {
+            return;
+        }
+
+        X509CRL crl = (X509CRL) object;
+        boolean deltaCRL = crl instanceof X509CRLImpl && ((X509CRLImpl) crl).isDeltaCRL();
+
+        if (deltaCRL && !mDeltaCRL) {
+            logger.info("OCSPPublisher: Delta CRL not sent to " + mHost);
+            return;
+        }
+
+        if (mExecutor == null) {
+            send(crl);
+            return;
+        }
+
+        if (deltaCRL) {
+            execute(() -> send(crl));
+            return;
+        }
+
+        // schedule a task only if there is no CRL waiting,
+        // otherwise the waiting task will send the new CRL
+        if (mPendingCRL.getAndSet(crl) == null) {
+            execute(() -> {
+                X509CRL pendingCRL = mPendingCRL.getAndSet(null);
+                if (pendingCRL != null) {
+                    send(pendingCRL);
+                }
+            });
+        } else {
+            logger.info("OCSPPublisher: Replacing CRL waiting to be sent to " + mHost);
+        }
+    }
 
-            // talk to agent port of CMS
+    void execute(Runnable task) {
+        try {
+            mExecutor.execute(task);
 
-            // open the connection and prepare it to POST
-            boolean secure = true;
+        } catch (RejectedExecutionException e) {
+            // the publisher has been shut down while still in use
+            task.run();
+        }
+    }
 
+    /**
+     * Sends a CRL to the OCSP responder.
+     */
+    protected synchronized void send(X509CRL crl) {
+        try {
             String host = mHost;
             int port = Integer.parseInt(mPort);
             String path = mPath;
@@ -248,93 +340,68 @@ public class OCSPPublisher
             String url = "https://" + host + ":" + port + path;
             logger.info("OCSPPublisher: Publishing CRL to " + url);
 
-            StringBuffer query = new StringBuffer();
-            query.append("crl=");
-            query.append(URLEncoder.encode(CertUtil.CRL_HEADER + "\n", "UTF-8"));
-            query.append(URLEncoder.encode(Utils.base64encode(crl.getEncoded(), true), "UTF-8"));
-            query.append(URLEncoder.encode("\n" + CertUtil.CRL_FOOTER, "UTF-8"));
-            query.append("&noui=true");
-
-            Socket socket = null;
-            JssSSLSocketFactory factory;
-            CAEngine engine = CAEngine.getInstance();
-
-            if (mClientAuthEnabled) {
-                factory = new JssSSLSocketFactory(mNickname);
-            } else {
-                factory = new JssSSLSocketFactory();
-            }
-            factory.addSocketListener(engine.getClientSocketListener());
-
-            if (mHost != null && mHost.indexOf(' ') != -1) {
-                // support failover hosts configuration
-                // host parameter can be
-                // "directory.knowledge.com:1050 people.catalog.com 199.254.1.2"
-                do {
-                    socket = Connect(mHost, secure, factory);
-                } while (socket == null);
-            } else {
-                if (secure) {
-                    socket = factory.makeSocket(host, port);
-                } else {
-                    socket = new Socket(host, port);
-                }
-            }
-
-            if (socket == null) {
-                logger.error("OCSPPublisher: Unable to connect to " + url);
-                throw new ELdapException("Unable to connect to " + url);
-            }
-
-            // use HttpRequest and POST
+            HttpClient.ContentWriter content;
             HttpRequest httpReq = new HttpRequest();
 
             httpReq.setMethod("POST");
-            httpReq.setURI(path);
             httpReq.setHeader("Connection", "Keep-Alive");
 
-            httpReq.setHeader("Content-Type",
-                    "application/x-www-form-urlencoded");
-            httpReq.setHeader("Content-Transfer-Encoding", "7bit");
+            if (mBinary) {
+                // write DER-encoded CRL without any conversion
+                byte[] der = crl.getEncoded();
 
-            httpReq.setHeader("Content-Length",
-                    Integer.toString(query.length()));
-            httpReq.setContent(query.toString());
-            OutputStream os = socket.getOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(os, "UTF8");
+                httpReq.setURI(path + "?noui=true");
+                httpReq.setHeader("Content-Type", CRL_CONTENT_TYPE);
+                httpReq.setHeader("Content-Length", Integer.toString(der.length));
+                content = out -> out.write(der);
+
+            } else {
+                CRLForm form = new CRLForm(crl.getEncoded());
+
+                httpReq.setURI(path);
+                httpReq.setHeader("Content-Type",
+                        "application/x-www-form-urlencoded");
+                httpReq.setHeader("Content-Transfer-Encoding", "7bit");
+
+                httpReq.setHeader("Content-Length",
+                        Long.toString(form.getLength()));
+                content = form;
+            }
 
             logger.debug("OCSPPublisher: start sending CRL");
 
             long startTime = new Date().getTime();
             logger.debug("OCSPPublisher: start CRL sending startTime=" + startTime);
 
-            httpReq.write(outputStreamWriter);
+            HttpResponse httpResp = sendRequest(httpReq, content, url);
 
             long endTime = new Date().getTime();
             logger.debug("OCSPPublisher: done CRL sending endTime=" + endTime + " diff=" + (endTime - startTime));
 
             // Read the response
-            logger.debug("OCSPPublisher: start getting response");
-            BufferedReader dis = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            String nextline;
             String error = "";
             boolean status = false;
 
-            while ((nextline = dis.readLine()) != null) {
-                if (nextline.startsWith("status=")) {
-                    if (nextline.substring(7, nextline.length()).equals("0")) {
-                        status = true;
+            String response = httpResp.getContent();
+            if (response != null) {
+                for (String nextline : response.split("\n")) {
+                    nextline = nextline.trim();
+                    if (nextline.startsWith("status=")) {
+                        if (nextline.substring(7, nextline.length()).equals("0")) {
+                            status = true;
+                        }
+                    }
+                    if (nextline.startsWith("error=")) {
+                        error = nextline.substring(6, nextline.length());
                     }
-                }
-                if (nextline.startsWith("error=")) {
-                    error = nextline.substring(6, nextline.length());
                 }
             }
-            dis.close();
+
             if (status) {
                 logger.debug("OCSPPublisher: successful");
             } else {
-                logger.warn("OCSPPublisher: Unable to publish CRL: " + error);
+                logger.warn("OCSPPublisher: Unable to publish CRL: "
+                        + httpResp.getStatusCode() + " " + error);
             }
 
         } catch (IOException e) {
@@ -348,6 +415,142 @@ public class OCSPPublisher
         } catch (Exception e) {
             logger.warn("OCSPPublisher: Unable to publish CRL: " + e.getMessage(), e);
             logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+
+        } finally {
+            if (mShutdown) {
+                // don't keep the connection of a removed publisher
+                disconnect();
+            }
+        }
+    }
+
+    /**
+     * Sends a request over the kept-alive connection, or over a new
+     * connection if there is none or if the OCSP responder has closed it.
+     */
+    HttpResponse sendRequest(HttpRequest httpReq, HttpClient.ContentWriter content, String url) throws Exception {
+
+        boolean reused = mClient != null && mClient.connected();
+
+        if (reused) {
+            logger.debug("OCSPPublisher: Reusing connection to " + url);
+        } else {
+            connect(url);
+        }
+
+        try {
+            return mClient.send(httpReq, content);
+
+        } catch (IOException e) {
+            disconnect();
+
+            if (!reused) {
+                throw e;
+            }
+
+            // the connection may have been closed while idle
+            logger.debug("OCSPPublisher: Reconnecting to " + url + ": " + e.getMessage());
+            connect(url);
+
+            try {
+                return mClient.send(httpReq, content);
+            } catch (IOException e2) {
+                disconnect();
+                throw e2;
+            }
+        }
+    }
+
+    void connect(String url) throws Exception {
+
+        if (mFactory == null) {
+            CAEngine engine = CAEngine.getInstance();
+
+            if (mClientAuthEnabled) {
+                mFactory = new JssSSLSocketFactory(mNickname);
+            } else {
+                mFactory = new JssSSLSocketFactory();
+            }
+            mFactory.addSocketListener(engine.getClientSocketListener());
+        }
+
+        HttpClient client = new HttpClient(mFactory);
+
+        if (mHost != null && mHost.indexOf(' ') != -1) {
+            // support failover hosts configuration
+            // host parameter can be
+            // "directory.knowledge.com:1050 people.catalog.com 199.254.1.2"
+            while (!connect(client, mHost)) {
+                // keep trying
+            }
+
+        } else {
+            client.connect(mHost, Integer.parseInt(mPort));
+        }
+
+        if (!client.connected()) {
+            logger.error("OCSPPublisher: Unable to connect to " + url);
+            throw new ELdapException("Unable to connect to " + url);
+        }
+
+        mClient = client;
+    }
+
+    boolean connect(HttpClient client, String hosts) {
+
+        StringTokenizer st = new StringTokenizer(hosts, " ");
+        while (st.hasMoreTokens()) {
+            String hp = st.nextToken(); // host:port
+            StringTokenizer st1 = new StringTokenizer(hp, ":");
+            String h = st1.nextToken();
+            int p = st1.hasMoreTokens() ? Integer.parseInt(st1.nextToken()) : Integer.parseInt(mPort);
+            try {
+                client.connect(h, p);
+                return true;
+            } catch (Exception e) {
+                logger.warn("OCSPPublisher: " + e.getMessage(), e);
+            }
+            try {
+                Thread.sleep(5000); // 5 seconds delay
+            } catch (Exception e) {
+            }
+        }
+        return false;
+    }
+
+    void disconnect() {
+
+        if (mClient == null) {
+            return;
+        }
+
+        try {
+            if (mClient.connected()) {
+                mClient.disconnect();
+            }
+        } catch (IOException e) {
+            logger.debug("OCSPPublisher: Unable to disconnect: " + e.getMessage());
+        }
+
+        mClient = null;
+    }
+
+    /**
+     * Closes the kept-alive connection and ends the background thread
+     * once the CRLs waiting to be sent have been sent.
+     */
+    @Override
+    public void shutdown() {
+
+        logger.info("OCSPPublisher: Shutting down publisher for " + mHost);
+        mShutdown = true;
+
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+
+        synchronized (this) {
+            disconnect();
         }
     }
 
@@ -366,4 +569,59 @@ public class OCSPPublisher
             throws ELdapException {
         // NOT USED
     }
+
+    /**
+     * Writes the base-64 encoded CRL as a URL-encoded form parameter
+     * in small pieces, so the encoded CRL is not copied into more
+     * strings. The content is generated twice, once to calculate the
+     * Content-Length and once to write it.
+     */
+    static class CRLForm implements HttpClient.ContentWriter {
+
+        static final int CHUNK_SIZE = 8192;
+
+        private String[] parts;
+        private long length;
+
+        CRLForm(byte[] der) throws IOException {
+            parts = new String[] {
+                    CertUtil.CRL_HEADER + "\n",
+                    Utils.base64encode(der, true),
+                    "\n" + CertUtil.CRL_FOOTER
+            };
+            length = writeContent(null);
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            writeContent(out);
+        }
+
+        long writeContent(OutputStream out) throws IOException {
+
+            long size = write(out, "crl=");
+
+            for (String part : parts) {
+                for (int i = 0; i < part.length(); i += CHUNK_SIZE) {
+                    String chunk = part.substring(i, Math.min(i + CHUNK_SIZE, part.length()));
+                    size += write(out, URLEncoder.encode(chunk, "UTF-8"));
+                }
+            }
+
+            size += write(out, "&noui=true");
+            return size;
+        }
+
+        int write(OutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            if (out != null) {
+                out.write(bytes);
+            }
+            return bytes.length;
+        }
+    }
 }
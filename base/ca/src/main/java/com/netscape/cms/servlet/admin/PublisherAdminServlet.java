@@ -2542,8 +2542,9 @@ public class PublisherAdminServlet extends AdminServlet {
 
         // only remove from memory
         // cannot shutdown because we don't keep track of whether it's
-        // being used.
-        mProcessor.getPublisherInsts().remove(id);
+        // being used, but the publisher can release its own resources.
+        PublisherProxy oldProxy = mProcessor.getPublisherInsts().remove(id);
+        oldProxy.getPublisher().shutdown();
 
         // remove the configuration.
         PublishingPublisherConfig destStore = publishingConfig.getPublisherConfig();
@@ -2824,6 +2825,7 @@ public class PublisherAdminServlet extends AdminServlet {
         // commited ok. replace instance.
 
         mProcessor.getPublisherInsts().put(id, new PublisherProxy(true, newMgrInst));
+        oldinst.shutdown();
 
         logger.info(CMS.getLogMessage("ADMIN_SRVLT_PUB_INST_REP", id));
 
@@ -20,6 +20,7 @@ package com.netscape.cmscore.dbs;
 import java.math.BigInteger;
 import java.util.Date;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
@@ -375,6 +376,51 @@ public class CRLRepository extends Repository {
         modifyCRLIssuingPointRecord(id, mods);
     }
 
+    /**
+     * Appends a change of the recently revoked or released from hold
+     * certificates to the revocation journal of the CRL issuing point record.
+     * Unlike updateRevokedCerts(), the cost does not depend on the number
+     * of certificates in the cache.
+     *
+     * @param id issuing point record id
+     * @param entry journal entry
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void addRevocationJournalEntry(String id, RevocationJournalEntry entry)
+            throws EBaseException {
+
+        logger.info("CRLRepository: Adding revocation journal entry " + entry.getSequenceNumber());
+
+        ModificationSet mods = new ModificationSet();
+        mods.add(CRLIssuingPointRecord.ATTR_REVOCATION_JOURNAL, Modification.MOD_ADD, List.of(entry));
+        mods.add(CRLIssuingPointRecord.ATTR_FIRST_UNSAVED, Modification.MOD_REPLACE, CRLIssuingPointRecord.CLEAN_CACHE);
+
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
+    /**
+     * Removes revocation journal entries which have been included
+     * in the cache stored in the CRL issuing point record.
+     *
+     * @param id issuing point record id
+     * @param entries journal entries to remove
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void removeRevocationJournalEntries(String id, List<RevocationJournalEntry> entries)
+            throws EBaseException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        logger.info("CRLRepository: Removing " + entries.size() + " revocation journal entries");
+
+        ModificationSet mods = new ModificationSet();
+        mods.add(CRLIssuingPointRecord.ATTR_REVOCATION_JOURNAL, Modification.MOD_DELETE, entries);
+
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
     /**
      * Updates CRL issuing point record with recently expired certificates info.
      *
@@ -372,6 +372,11 @@ public abstract class PublisherProcessor {
 
     public void shutdown() {
         logger.debug("Shuting down publishing.");
+
+        for (PublisherProxy proxy : mPublisherInsts.values()) {
+            proxy.getPublisher().shutdown();
+        }
+
         try {
             if (mLdapConnModule != null) {
                 mLdapConnModule.getLdapConnFactory().reset();
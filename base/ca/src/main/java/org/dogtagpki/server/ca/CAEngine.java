@@ -81,6 +81,7 @@ import com.netscape.certsrv.request.RequestListener;
 import com.netscape.certsrv.util.AsyncLoader;
 import com.netscape.cms.authentication.CAAuthSubsystem;
 import com.netscape.cms.request.RequestScheduler;
+import com.netscape.cms.request.RequestSchedulerConfig;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.authentication.VerifiedCert;
@@ -871,6 +872,7 @@ public class CAEngine extends CMSEngine {
 
         if (schedulerClass != null) {
             RequestScheduler scheduler = (RequestScheduler) Class.forName(schedulerClass).getDeclaredConstructor().newInstance();
+            scheduler.init(caConfig.getSubStore("requestScheduler", RequestSchedulerConfig.class));
             requestQueue.setRequestScheduler(scheduler);
         }
 
@@ -49,6 +49,7 @@ import com.netscape.ca.CertificateAuthority;
 import com.netscape.certsrv.base.BadRequestException;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.PKIException;
+import com.netscape.certsrv.base.ServiceUnavailableException;
 import com.netscape.certsrv.base.UnauthorizedException;
 import com.netscape.certsrv.cert.AgentCertResource;
 import com.netscape.certsrv.cert.CertData;
@@ -60,6 +61,7 @@ import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
 import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.logging.AuditFormat;
 import com.netscape.certsrv.logging.ILogger;
+import com.netscape.cms.request.RequestRejectedException;
 import com.netscape.cms.servlet.base.PKIService;
 import com.netscape.cms.servlet.cert.RevocationProcessor;
 import com.netscape.cms.servlet.processors.CAProcessor;
@@ -287,6 +289,11 @@ public class AgentCertService extends PKIService implements AgentCertResource {
 
             processor.auditChangeRequestProcessed(ILogger.SUCCESS);
 
+        } catch (RequestRejectedException e) {
+            logger.warn("Unable to process revocation request: " + e.getMessage(), e);
+            processor.auditChangeRequestProcessed(ILogger.FAILURE);
+            throw new ServiceUnavailableException(e.getMessage(), e, e.getRetryAfter());
+
         } catch (EBaseException e) {
             logger.error("Unable to process revocation request: " + e.getMessage(), e);
             processor.auditChangeRequestProcessed(ILogger.FAILURE);
@@ -366,6 +373,11 @@ public class AgentCertService extends PKIService implements AgentCertResource {
 
             processor.auditChangeRequestProcessed(ILogger.SUCCESS);
 
+        } catch (RequestRejectedException e) {
+            logger.warn("Unable to process unrevocation request: " + e.getMessage(), e);
+            processor.auditChangeRequestProcessed(ILogger.FAILURE);
+            throw new ServiceUnavailableException(e.getMessage(), e, e.getRetryAfter());
+
         } catch (EBaseException e) {
             logger.error("Unable to process unrevocation request: " + e.getMessage(), e);
             processor.auditChangeRequestProcessed(ILogger.FAILURE);
@@ -0,0 +1,168 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLNumberExtension;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
+
+public class StreamingCRLEncoderTest {
+
+    X500Name issuer = new X500Name("CN=CA Signing Certificate,O=EXAMPLE");
+    AlgorithmId algId = AlgorithmId.get("SHA256withRSA");
+
+    Date thisUpdate = new Date(1700000000000L);
+    Date nextUpdate = new Date(1700086400000L);
+
+    // fake signature, the encoding does not depend on its validity
+    byte[] signature = new byte[256];
+
+    public StreamingCRLEncoderTest() throws Exception {
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = (byte) i;
+        }
+    }
+
+    Hashtable<BigInteger, RevokedCertificate> createRevokedCerts(int count, boolean extensions) throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> revokedCerts = new Hashtable<>();
+
+        for (int i = 1; i <= count; i++) {
+            BigInteger serialNumber = BigInteger.valueOf(i * 1000003L);
+            Date revocationDate = new Date(thisUpdate.getTime() - i * 1000L);
+
+            CRLExtensions entryExt = null;
+            if (extensions && i % 2 == 0) {
+                entryExt = new CRLExtensions();
+                entryExt.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(),
+                        CRLReasonExtension.REMOVE_FROM_CRL);
+            }
+
+            revokedCerts.put(serialNumber, new RevokedCertImpl(serialNumber, revocationDate, entryExt));
+        }
+
+        return revokedCerts;
+    }
+
+    CRLExtensions createCRLExtensions() throws Exception {
+        CRLExtensions crlExts = new CRLExtensions();
+        CRLNumberExtension crlNumber = new CRLNumberExtension(BigInteger.valueOf(42));
+        crlExts.set(CRLNumberExtension.NAME, crlNumber);
+        return crlExts;
+    }
+
+    /**
+     * Encodes the CRL with X509CRLImpl the same way as CertificateAuthority.sign().
+     */
+    byte[] encodeSignedCRL(X509CRLImpl crl) throws Exception {
+
+        try (DerOutputStream out = new DerOutputStream()) {
+            DerOutputStream tmp = new DerOutputStream();
+
+            crl.encodeInfo(tmp);
+            algId.encode(tmp);
+            tmp.putBitString(signature);
+
+            out.write(DerValue.tag_Sequence, tmp);
+            return out.toByteArray();
+        }
+    }
+
+    void check(
+            Date nextUpdate,
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
+            CRLExtensions crlExts) throws Exception {
+
+        X509CRLImpl crl = new X509CRLImpl(issuer, algId, thisUpdate, nextUpdate, revokedCerts, crlExts);
+        byte[] expected = encodeSignedCRL(crl);
+
+        StreamingCRLEncoder encoder = new StreamingCRLEncoder(
+                issuer, algId, thisUpdate, nextUpdate, revokedCerts, crlExts);
+
+        assertEquals(revokedCerts.size(), encoder.getSize());
+
+        ByteArrayOutputStream tbsCertList = new ByteArrayOutputStream();
+        encoder.writeTBSCertList(tbsCertList);
+
+        assertArrayEquals(crl.getTBSCertList(), tbsCertList.toByteArray());
+        assertEquals(tbsCertList.size(), encoder.getTBSCertListLength());
+
+        assertArrayEquals(expected, encoder.encode(algId, signature));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(out, algId, signature);
+        assertArrayEquals(expected, out.toByteArray());
+
+        // the encoded CRL can be parsed
+        X509CRLImpl parsedCRL = new X509CRLImpl(expected);
+        assertEquals(revokedCerts.size(),
+                parsedCRL.getRevokedCertificates() == null ? 0 : parsedCRL.getRevokedCertificates().size());
+    }
+
+    @Test
+    public void testEmptyCRL() throws Exception {
+        check(nextUpdate, new Hashtable<>(), null);
+        check(null, new Hashtable<>(), null);
+    }
+
+    @Test
+    public void testEmptyCRLWithExtensions() throws Exception {
+        check(nextUpdate, new Hashtable<>(), createCRLExtensions());
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+        check(nextUpdate, createRevokedCerts(10, false), null);
+    }
+
+    @Test
+    public void testEntriesWithExtensions() throws Exception {
+        check(nextUpdate, createRevokedCerts(10, true), null);
+        check(nextUpdate, createRevokedCerts(10, true), createCRLExtensions());
+    }
+
+    @Test
+    public void testLongLengths() throws Exception {
+        // multi-byte DER lengths for the entries and the CRL
+        check(nextUpdate, createRevokedCerts(5000, true), createCRLExtensions());
+    }
+
+    @Test
+    public void testGeneralizedTime() throws Exception {
+        // dates from 2050 are encoded as GeneralizedTime
+        check(new Date(2600000000000L), createRevokedCerts(3, false), null);
+    }
+
+    @Test
+    public void testLengthSize() throws Exception {
+        assertEquals(1, StreamingCRLEncoder.getLengthSize(0));
+        assertEquals(1, StreamingCRLEncoder.getLengthSize(127));
+        assertEquals(2, StreamingCRLEncoder.getLengthSize(128));
+        assertEquals(2, StreamingCRLEncoder.getLengthSize(255));
+        assertEquals(3, StreamingCRLEncoder.getLengthSize(256));
+        assertEquals(4, StreamingCRLEncoder.getLengthSize(65536));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingCRLEncoder.writeLength(out, 65536);
+        assertArrayEquals(new byte[] { (byte) 0x83, 0x01, 0x00, 0x00 }, out.toByteArray());
+    }
+}
@@ -6,6 +6,8 @@ public class ServiceUnavailableException extends PKIException {
 
     private static final long serialVersionUID = -9160776882517621347L;
 
+    private Integer retryAfter;
+
     public ServiceUnavailableException(String message) {
         super(Response.Status.SERVICE_UNAVAILABLE, message);
     }
@@ -14,4 +16,16 @@ public class ServiceUnavailableException extends PKIException {
         super(Response.Status.SERVICE_UNAVAILABLE, message, cause);
     }
 
+    /**
+     * @param retryAfter seconds the client should wait before retrying
+     */
+    public ServiceUnavailableException(String message, Throwable cause, int retryAfter) {
+        super(Response.Status.SERVICE_UNAVAILABLE, message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Integer getRetryAfter() {
+        return retryAfter;
+    }
+
 }
@@ -17,7 +17,9 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmsutil.http;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -39,6 +41,7 @@ public class HttpClient {
 
     protected Socket mSocket = null;
     protected InputStream mInputStream = null;
+    protected BufferedInputStream mBufferedInputStream = null;
     protected OutputStream mOutputStream = null;
 
     protected InputStreamReader mInputStreamReader = null;
@@ -50,6 +53,13 @@ public class HttpClient {
     protected String mHost;
     protected String mPort;
 
+    /**
+     * Writes the content of a request directly to the connection.
+     */
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
     public HttpClient() {
     }
 
@@ -86,6 +96,7 @@ public class HttpClient {
         }
 
         mInputStream = mSocket.getInputStream();
+        mBufferedInputStream = new BufferedInputStream(mInputStream);
         mOutputStream = mSocket.getOutputStream();
         mInputStreamReader = new InputStreamReader(mInputStream, "UTF8");
         mBufferedReader = new BufferedReader(mInputStreamReader);
@@ -107,26 +118,111 @@ public class HttpClient {
      */
     public HttpResponse send(HttpRequest request)
             throws IOException {
+        return send(request, (ContentWriter) null);
+    }
+
+    /**
+     * Sends a request with binary content to http server.
+     * The content is written after the headers without being
+     * converted into a string. The request must not have any
+     * other content.
+     * Returns a http response.
+     */
+    public HttpResponse send(HttpRequest request, byte[] content)
+            throws IOException {
+        return send(request, content == null ? null : out -> out.write(content));
+    }
+
+    /**
+     * Sends a request whose content is written by the given writer
+     * after the headers, so large content does not have to be copied
+     * into the request. The writer must write exactly the number of
+     * bytes in the Content-Length header. The request must not have
+     * any other content.
+     * Returns a http response.
+     */
+    public HttpResponse send(HttpRequest request, ContentWriter content)
+            throws IOException {
         HttpResponse resp = new HttpResponse();
 
         if (mOutputStream == null)
             throw new IOException("Output stream not initialized");
-        request.write(mOutputStreamWriter);
         try {
-            resp.parse(mBufferedReader);
+            request.write(mOutputStreamWriter);
+            if (content != null) {
+                content.write(mOutputStream);
+                mOutputStream.flush();
+            }
+        } catch (IOException e) {
+            // no response has been read, the caller may resend
+            // the request over a new connection
+            try {
+                disconnect();
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw new HttpWriteException("Unable to send request: " + e.getMessage(), e);
+        }
+        try {
+            // wait for the first byte of the response
+            mBufferedInputStream.mark(1);
+            if (mBufferedInputStream.read() < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+            mBufferedInputStream.reset();
+
+        } catch (IOException e) {
+            // the server did not respond, for example because it closed
+            // the kept-alive connection, the caller may resend the request
+            try {
+                disconnect();
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw new HttpNoResponseException("No response: " + e.getMessage(), e);
+        }
+        boolean keepAlive;
+        try {
+            // the response is framed in bytes, so it is read from
+            // the byte stream instead of the reader
+            resp.parse(mBufferedInputStream);
+            keepAlive = isKeepAlive(request, resp);
         } catch (IOException e) {
             // XXX should we disconnect in all cases ?
             disconnect();
             throw e;
         }
-        disconnect();
+        if (!keepAlive)
+            disconnect();
         return resp;
     }
 
+    /**
+     * Returns true if the connection can be reused after the response.
+     * The request must ask for keep-alive and the end of the response
+     * must be determined without closing the connection.
+     */
+    protected boolean isKeepAlive(HttpRequest request, HttpResponse resp) {
+
+        if (!"keep-alive".equalsIgnoreCase(request.getHeader("Connection")))
+            return false;
+
+        String connection = resp.getHeader("Connection");
+        if ("close".equalsIgnoreCase(connection))
+            return false;
+
+        if (Http.Vers1_0.equals(resp.getHttpVers()) && !"keep-alive".equalsIgnoreCase(connection))
+            return false;
+
+        return resp.getHeader("Content-Length") != null
+                || "chunked".equalsIgnoreCase(resp.getHeader("Transfer-Encoding"));
+    }
+
     public void disconnect()
             throws IOException {
         mSocket.close();
         mInputStream = null;
+        mBufferedInputStream = null;
         mOutputStream = null;
         mConnected = false;
     }
@@ -18,9 +18,13 @@
 package com.netscape.cmsutil.http;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
@@ -85,6 +89,23 @@ public class HttpMessage {
      */
     public void readHeaders(BufferedReader reader)
             throws IOException {
+        readHeaders(reader::readLine);
+    }
+
+    /**
+     * read http headers from a byte stream.
+     */
+    public void readHeaders(InputStream in)
+            throws IOException {
+        readHeaders(() -> readLine(in));
+    }
+
+    interface LineReader {
+        String readLine() throws IOException;
+    }
+
+    void readHeaders(LineReader reader)
+            throws IOException {
         mHeaders = new Hashtable<>();
 
         int colon;
@@ -134,16 +155,11 @@ public class HttpMessage {
 
         if (lenstr != null) {
             int len = Integer.parseInt(lenstr);
-            char[] cbuf = new char[len];
-            int done = reader.read(cbuf, 0, cbuf.length);
-            int total = done;
+            mContent = readContent(reader, len);
 
-            while (done >= 0 && total < len) {
-                done = reader.read(cbuf, total, len - total);
-                total += done;
-            }
+        } else if ("chunked".equalsIgnoreCase(mHeaders.get("transfer-encoding"))) {
+            mContent = readChunkedContent(reader);
 
-            mContent = new String(cbuf);
         } else {
             char[] cbuf = new char[8192];
             StringWriter sw = new StringWriter();
@@ -155,6 +171,181 @@ public class HttpMessage {
         }
     }
 
+    /**
+     * Parses a message from a byte stream, which should be buffered.
+     * Unlike parse(BufferedReader), the content length and the chunk
+     * sizes are counted in bytes as defined by HTTP, so content with
+     * multibyte characters is read completely and the next message
+     * on a kept-alive connection starts at the right position.
+     * The content is decoded as UTF-8.
+     */
+    public void parse(InputStream in)
+            throws IOException {
+        String line = readLine(in);
+
+        if (line == null) {
+            throw new HttpEofException("End of stream reached");
+        }
+        if (line.equals("")) {
+            throw new HttpProtocolException("Bad Http req/resp line " + line);
+        }
+        mLine = line;
+        readHeaders(in);
+
+        String lenstr = mHeaders.get("content-length");
+        byte[] content;
+
+        if (lenstr != null) {
+            int len = Integer.parseInt(lenstr);
+            content = in.readNBytes(len);
+            if (content.length < len) {
+                throw new EOFException(
+                        "End of stream reached after " + content.length + " of " + len + " bytes");
+            }
+
+        } else if ("chunked".equalsIgnoreCase(mHeaders.get("transfer-encoding"))) {
+            content = readChunkedContent(in);
+
+        } else {
+            content = in.readAllBytes();
+            if (content.length == 0) {
+                content = null;
+            }
+        }
+
+        mContent = content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a line terminated by LF or CRLF from a byte stream.
+     *
+     * @return the line without the terminator, or null at end of stream
+     */
+    protected String readLine(InputStream in)
+            throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+
+        byte[] bytes = line.toByteArray();
+        int len = bytes.length;
+        if (len > 0 && bytes[len - 1] == '\r') {
+            len--;
+        }
+
+        return new String(bytes, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * read content with chunked transfer encoding from a byte stream
+     */
+    protected byte[] readChunkedContent(InputStream in)
+            throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        while (true) {
+            String line = readLine(in);
+            if (line == null) {
+                throw new HttpEofException("End of stream reached");
+            }
+
+            int len = parseChunkSize(line);
+            if (len == 0) {
+                break;
+            }
+
+            byte[] chunk = in.readNBytes(len);
+            if (chunk.length < len) {
+                throw new HttpEofException("End of stream reached");
+            }
+
+            content.write(chunk);
+            readLine(in); // CRLF after chunk data
+        }
+
+        // ignore trailers
+        while (true) {
+            String line = readLine(in);
+            if (line == null || line.equals(""))
+                break;
+        }
+
+        return content.toByteArray();
+    }
+
+    int parseChunkSize(String line) throws HttpProtocolException {
+
+        // ignore chunk extensions
+        int semicolon = line.indexOf(';');
+        if (semicolon >= 0) {
+            line = line.substring(0, semicolon);
+        }
+
+        try {
+            return Integer.parseInt(line.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new HttpProtocolException("Bad Http chunk size " + line);
+        }
+    }
+
+    /**
+     * read content of the given length
+     */
+    protected String readContent(BufferedReader reader, int len)
+            throws IOException {
+        char[] cbuf = new char[len];
+        int total = 0;
+
+        while (total < len) {
+            int done = reader.read(cbuf, total, len - total);
+            if (done < 0) {
+                break;
+            }
+            total += done;
+        }
+
+        return new String(cbuf, 0, total);
+    }
+
+    /**
+     * read content with chunked transfer encoding
+     */
+    protected String readChunkedContent(BufferedReader reader)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        while (true) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new HttpEofException("End of stream reached");
+            }
+
+            int len = parseChunkSize(line);
+            if (len == 0) {
+                break;
+            }
+
+            sb.append(readContent(reader, len));
+            reader.readLine(); // CRLF after chunk data
+        }
+
+        // ignore trailers
+        while (true) {
+            String line = reader.readLine();
+            if (line == null || line.equals(""))
+                break;
+        }
+
+        return sb.toString();
+    }
+
     public void reset() {
         mLine = null;
         mHeaders = null;
@@ -0,0 +1,22 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmsutil.http;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown when a request has been written
+ * but the connection failed or was closed before any byte
+ * of the response was received.
+ */
+public class HttpNoResponseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HttpNoResponseException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -0,0 +1,21 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmsutil.http;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown when a request could not be written
+ * to the connection, before any part of the response was read.
+ */
+public class HttpWriteException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HttpWriteException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
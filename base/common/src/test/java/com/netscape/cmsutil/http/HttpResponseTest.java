@@ -0,0 +1,146 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmsutil.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpResponseTest {
+
+    @Test
+    public void testContentLength() throws Exception {
+
+        BufferedReader reader = new BufferedReader(new StringReader(
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 5\r\n" +
+                "\r\n" +
+                "hello" +
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 5\r\n" +
+                "\r\n" +
+                "world"));
+
+        // two responses on the same connection
+        HttpResponse resp = new HttpResponse();
+        resp.parse(reader);
+        assertEquals("200", resp.getStatusCode());
+        assertEquals("hello", resp.getContent());
+
+        resp.parse(reader);
+        assertEquals("world", resp.getContent());
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+
+        BufferedReader reader = new BufferedReader(new StringReader(
+                "HTTP/1.1 200 OK\r\n" +
+                "Transfer-Encoding: chunked\r\n" +
+                "\r\n" +
+                "5\r\n" +
+                "hello\r\n" +
+                "7;ext=1\r\n" +
+                ", world\r\n" +
+                "0\r\n" +
+                "\r\n" +
+                "HTTP/1.1 204 No Content\r\n" +
+                "Content-Length: 0\r\n" +
+                "\r\n"));
+
+        HttpResponse resp = new HttpResponse();
+        resp.parse(reader);
+        assertEquals("hello, world", resp.getContent());
+
+        // the next response is not consumed
+        resp.parse(reader);
+        assertEquals("204", resp.getStatusCode());
+    }
+
+    InputStream createInputStream(String data) {
+        return new BufferedInputStream(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMultibyteContentLength() throws Exception {
+
+        // Content-Length counts bytes, "h\u00e9llo" is 6 bytes in UTF-8
+        InputStream in = createInputStream(
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 6\r\n" +
+                "\r\n" +
+                "h\u00e9llo" +
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 5\r\n" +
+                "\r\n" +
+                "world");
+
+        HttpResponse resp = new HttpResponse();
+        resp.parse(in);
+        assertEquals("200", resp.getStatusCode());
+        assertEquals("h\u00e9llo", resp.getContent());
+
+        resp.parse(in);
+        assertEquals("world", resp.getContent());
+    }
+
+    @Test
+    public void testMultibyteChunked() throws Exception {
+
+        // chunk sizes count bytes, and a character may be split
+        // between chunks: "\u00e9" is 0xC3 0xA9 in UTF-8
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write((
+                "HTTP/1.1 200 OK\r\n" +
+                "Transfer-Encoding: chunked\r\n" +
+                "\r\n" +
+                "2\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(new byte[] { 'h', (byte) 0xC3 });
+        out.write("\r\n1\r\n".getBytes(StandardCharsets.UTF_8));
+        out.write(new byte[] { (byte) 0xA9 });
+        out.write((
+                "\r\n" +
+                "0\r\n" +
+                "\r\n" +
+                "HTTP/1.1 204 No Content\r\n" +
+                "Content-Length: 0\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8));
+
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+        HttpResponse resp = new HttpResponse();
+        resp.parse(in);
+        assertEquals("h\u00e9", resp.getContent());
+
+        // the next response is not consumed
+        resp.parse(in);
+        assertEquals("204", resp.getStatusCode());
+    }
+
+    @Test
+    public void testTruncatedContent() throws Exception {
+
+        // the connection was closed before the end of the content
+        InputStream in = createInputStream(
+                "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: 10\r\n" +
+                "\r\n" +
+                "hello");
+
+        HttpResponse resp = new HttpResponse();
+        assertThrows(EOFException.class, () -> resp.parse(in));
+    }
+}
@@ -73,6 +73,7 @@ import com.netscape.certsrv.request.RequestStatus;
 import com.netscape.certsrv.security.Credential;
 import com.netscape.certsrv.security.IStorageKeyUnit;
 import com.netscape.cms.request.RequestScheduler;
+import com.netscape.cms.request.RequestSchedulerConfig;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.dbs.DBSubsystem;
@@ -139,6 +140,7 @@ public class KeyRecoveryAuthority extends Subsystem implements IAuthority {
 
     protected TransportKeyUnit mTransportKeyUnit;
     protected StorageKeyUnit mStorageKeyUnit = null;
+    protected KeyRecoveryLimiter mRecoveryLimiter;
     protected Hashtable<String, Credential[]> mAutoRecovery = new Hashtable<>();
     protected boolean mAutoRecoveryOn = false;
     protected KeyRepository mKeyDB = null;
@@ -368,6 +370,20 @@ public class KeyRecoveryAuthority extends Subsystem implements IAuthority {
             throw e;
         }
 
+        int maxConcurrentRecoveries = mConfig.getInteger(
+                "recovery.maxConcurrent", KeyRecoveryLimiter.DEFAULT_MAX_CONCURRENT);
+        if (mConfig.getBoolean("keySplitting", false)) {
+            // the storage key is shared between login and logout
+            maxConcurrentRecoveries = 1;
+        }
+        logger.info("KeyRecoveryAuthority: Max concurrent recoveries: " + maxConcurrentRecoveries);
+
+        int maxRecoveryWaitTime = mConfig.getInteger(
+                "recovery.maxWaitTime", KeyRecoveryLimiter.DEFAULT_MAX_WAIT_TIME);
+        logger.info("KeyRecoveryAuthority: Max recovery wait time: " + maxRecoveryWaitTime);
+
+        mRecoveryLimiter = new KeyRecoveryLimiter(maxConcurrentRecoveries, maxRecoveryWaitTime);
+
         // setup token for server-side key generation for user enrollments
         String serverKeygenTokenName = mConfig.getString("serverKeygenTokenName", null);
         if (serverKeygenTokenName == null) {
@@ -443,6 +459,7 @@ public class KeyRecoveryAuthority extends Subsystem implements IAuthority {
         if (schedulerClass != null) {
             try {
                 RequestScheduler scheduler = (RequestScheduler) Class.forName(schedulerClass).getDeclaredConstructor().newInstance();
+                scheduler.init(mConfig.getSubStore("requestScheduler", RequestSchedulerConfig.class));
 
                 requestQueue.setRequestScheduler(scheduler);
             } catch (Exception e) {
@@ -1463,6 +1480,13 @@ public class KeyRecoveryAuthority extends Subsystem implements IAuthority {
         return r;
     }
 
+    /**
+     * Returns the limiter of concurrent key recoveries.
+     */
+    public KeyRecoveryLimiter getRecoveryLimiter() {
+        return mRecoveryLimiter;
+    }
+
     /**
      * Retrieves the storage key unit. The storage key
      * is used to wrap the user key for long term
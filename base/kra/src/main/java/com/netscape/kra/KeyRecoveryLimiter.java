@@ -0,0 +1,95 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.kra;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.netscape.certsrv.kra.EKRAException;
+import com.netscape.cmscore.apps.CMS;
+
+/**
+ * This class limits the number of keys being recovered concurrently.
+ *
+ * Each recovery unwraps or decrypts the archived key with the storage
+ * key on the token, which requires a token session. The limit should
+ * not exceed the number of sessions that the token can provide.
+ *
+ * With key splitting, the storage key is shared by all recoveries
+ * between login and logout, so only one key can be recovered at a time.
+ */
+public class KeyRecoveryLimiter {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(KeyRecoveryLimiter.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT = 10;
+    public static final int DEFAULT_MAX_WAIT_TIME = 60; // seconds
+
+    private int maxConcurrent;
+    private int maxWaitTime;
+    private Semaphore permits;
+
+    public KeyRecoveryLimiter(int maxConcurrent, int maxWaitTime) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitTime = maxWaitTime;
+        permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Returns the maximum time in seconds to wait for a recovery to start.
+     */
+    public int getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Waits until a key can be recovered. Each successful call
+     * must be followed by a call to release().
+     *
+     * @exception EKRAException if the key cannot be recovered
+     *            within the maximum wait time
+     */
+    public void acquire() throws EKRAException {
+
+        boolean acquired;
+
+        try {
+            // unlike tryAcquire(), this does not barge ahead of waiting threads
+            acquired = permits.tryAcquire(maxWaitTime, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EKRAException(CMS.getUserMessage("CMS_KRA_RECOVERY_FAILED_1", "interrupted"), e);
+        }
+
+        if (!acquired) {
+            logger.warn("KeyRecoveryLimiter: Timed out waiting for " + maxConcurrent + " active recoveries");
+            throw new EKRAException(CMS.getUserMessage("CMS_KRA_RECOVERY_FAILED_1", "too many active recoveries"));
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Returns the number of keys being recovered.
+     */
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Returns the estimated number of recoveries waiting to start.
+     */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+}
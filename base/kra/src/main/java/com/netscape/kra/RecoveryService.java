@@ -506,7 +506,20 @@ public class RecoveryService implements IService {
      * Recovers key. (using unwrapping/wrapping on token)
      * - used when allowEncDecrypt_recovery is false
      */
-    public synchronized PrivateKey recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord, boolean isRSA)
+    public PrivateKey recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord, boolean isRSA)
+            throws EBaseException {
+
+        KeyRecoveryLimiter limiter = mKRA.getRecoveryLimiter();
+        limiter.acquire();
+
+        try {
+            return unwrapKey(request, keyRecord, isRSA);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private PrivateKey unwrapKey(Hashtable<String, Object> request, KeyRecord keyRecord, boolean isRSA)
             throws EBaseException {
 
         logger.debug("RecoverService: recoverKey: key to recover is RSA? "+
@@ -726,7 +739,20 @@ public class RecoveryService implements IService {
      * Recovers key.
      * - used when allowEncDecrypt_recovery is true
      */
-    public synchronized byte[] recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord)
+    public byte[] recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord)
+            throws EBaseException {
+
+        KeyRecoveryLimiter limiter = mKRA.getRecoveryLimiter();
+        limiter.acquire();
+
+        try {
+            return decryptKey(request, keyRecord);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private byte[] decryptKey(Hashtable<String, Object> request, KeyRecord keyRecord)
             throws EBaseException {
         KRAEngine engine = KRAEngine.getInstance();
         if (engine.getConfig().getBoolean("kra.keySplitting")) {
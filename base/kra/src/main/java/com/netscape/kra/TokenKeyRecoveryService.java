@@ -183,7 +183,21 @@ public class TokenKeyRecoveryService implements IService {
      * @exception EBaseException failed to serve
      */
     @Override
-    public synchronized boolean serviceRequest(Request request) throws EBaseException {
+    public boolean serviceRequest(Request request) throws EBaseException {
+
+        // the transport key unwrapping, the storage key unwrapping
+        // and the session key wrapping all use token sessions
+        KeyRecoveryLimiter limiter = mKRA.getRecoveryLimiter();
+        limiter.acquire();
+
+        try {
+            return recoverTokenKey(request);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private boolean recoverTokenKey(Request request) throws EBaseException {
 
         String iv_s = "";
 
@@ -448,7 +462,7 @@ public class TokenKeyRecoveryService implements IService {
             if (encrypted) {
                 // Unwrap the archived private key
                 byte privateKeyData[] = null;
-                privateKeyData = recoverKey(params, keyRecord);
+                privateKeyData = decryptKey(params, keyRecord);
                 if (privateKeyData == null) {
                     request.setExtData(Request.RESULT, Integer.valueOf(4));
                     logger.warn("TokenKeyRecoveryService: failed getting private key");
@@ -507,7 +521,7 @@ public class TokenKeyRecoveryService implements IService {
                 jssSubsystem.obscureBytes(p);
 
             } else { //encrypted == false
-                PrivateKey privKey = recoverKey(params, keyRecord, allowEncDecrypt_recovery);
+                PrivateKey privKey = unwrapKey(params, keyRecord, allowEncDecrypt_recovery);
                 if (privKey == null) {
                     request.setExtData(Request.RESULT, Integer.valueOf(4));
                     logger.warn("TokenKeyRecoveryService: failed getting private key");
@@ -654,7 +668,20 @@ public class TokenKeyRecoveryService implements IService {
      * Recovers key.
      *     - with allowEncDecrypt_archival == false
      */
-    public synchronized PrivateKey recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord, boolean allowEncDecrypt_archival)
+    public PrivateKey recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord, boolean allowEncDecrypt_archival)
+        throws EBaseException {
+
+        KeyRecoveryLimiter limiter = mKRA.getRecoveryLimiter();
+        limiter.acquire();
+
+        try {
+            return unwrapKey(request, keyRecord, allowEncDecrypt_archival);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private PrivateKey unwrapKey(Hashtable<String, Object> request, KeyRecord keyRecord, boolean allowEncDecrypt_archival)
         throws EBaseException {
         logger.debug("TokenKeyRecoveryService: recoverKey() - with allowEncDecrypt_archival being false");
         if (allowEncDecrypt_archival) {
@@ -695,7 +722,20 @@ public class TokenKeyRecoveryService implements IService {
     /**
      * Recovers key.
      */
-    public synchronized byte[] recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord)
+    public byte[] recoverKey(Hashtable<String, Object> request, KeyRecord keyRecord)
+            throws EBaseException {
+
+        KeyRecoveryLimiter limiter = mKRA.getRecoveryLimiter();
+        limiter.acquire();
+
+        try {
+            return decryptKey(request, keyRecord);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private byte[] decryptKey(Hashtable<String, Object> request, KeyRecord keyRecord)
             throws EBaseException {
         logger.debug("TokenKeyRecoveryService: recoverKey() - with allowEncDecrypt_archival being true");
         /*
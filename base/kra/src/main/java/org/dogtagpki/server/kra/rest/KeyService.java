@@ -44,6 +44,7 @@ import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.HTTPGoneException;
 import com.netscape.certsrv.base.PKIException;
 import com.netscape.certsrv.base.ResourceNotFoundException;
+import com.netscape.certsrv.base.ServiceUnavailableException;
 import com.netscape.certsrv.base.UnauthorizedException;
 import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
 import com.netscape.certsrv.dbs.Modification;
@@ -64,6 +65,7 @@ import com.netscape.certsrv.logging.event.SecurityDataStatusChangeEvent;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestStatus;
 import com.netscape.cms.realm.PKIPrincipal;
+import com.netscape.cms.request.RequestRejectedException;
 import com.netscape.cms.servlet.base.SubsystemService;
 import com.netscape.cms.servlet.key.KeyRequestDAO;
 import com.netscape.cmscore.authorization.AuthzSubsystem;
@@ -364,6 +366,9 @@ public class KeyService extends SubsystemService implements KeyResource {
                 } else {
                     kra.processSynchronousRequest(request);
                 }
+            } catch (RequestRejectedException e) {
+                kra.destroyVolatileRequest(request.getRequestId());
+                throw new ServiceUnavailableException(e.getMessage(), e, e.getRetryAfter());
             } catch (EBaseException e) {
                 kra.destroyVolatileRequest(request.getRequestId());
                 throw new PKIException(e.getMessage(), e);
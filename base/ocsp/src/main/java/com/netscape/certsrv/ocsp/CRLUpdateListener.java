@@ -0,0 +1,24 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.ocsp;
+
+import java.security.cert.X509CRL;
+
+/**
+ * This interface is used to receive notifications when
+ * an OCSP store installs a new CRL.
+ */
+public interface CRLUpdateListener {
+
+    /**
+     * This method is called after the OCSP store has
+     * started using the new CRL.
+     *
+     * @param crl the new CRL, or null if the store has reloaded
+     *        one or more CRLs without decoding them
+     */
+    public void crlUpdated(X509CRL crl);
+}
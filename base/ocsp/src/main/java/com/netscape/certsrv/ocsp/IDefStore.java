@@ -25,6 +25,8 @@ import java.util.Enumeration;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.RepositoryRecord;
+import com.netscape.cmsutil.ocsp.Request;
+import com.netscape.cmsutil.ocsp.SingleResponse;
 
 /**
  * This class defines an Online Certificate Status Protocol (OCSP) store which
@@ -51,6 +53,27 @@ public interface IDefStore extends IOCSPStore {
      */
     public long getReqCount(String id);
 
+    /**
+     * This method checks the status of multiple certificates in one pass.
+     * By default each request is processed separately, stores can
+     * override it to resolve the issuer of each distinct CA only once.
+     * <P>
+     *
+     * @param reqs the requests to be processed
+     * @return the responses in the same order as the requests
+     * @exception Exception occurs when a request cannot be processed
+     */
+    public default SingleResponse[] processRequests(Request[] reqs) throws Exception {
+
+        SingleResponse[] responses = new SingleResponse[reqs.length];
+
+        for (int i = 0; i < reqs.length; i++) {
+            responses[i] = processRequest(reqs[i]);
+        }
+
+        return responses;
+    }
+
     /**
      * This method creates a an OCSP default store repository record.
      * <P>
@@ -91,6 +114,17 @@ public interface IDefStore extends IOCSPStore {
      */
     public void updateCRL(X509CRL crl) throws EBaseException;
 
+    /**
+     * This method registers a listener that will be notified
+     * when the store installs a new CRL. By default the store
+     * does not notify CRL updates and the listener is ignored.
+     * <P>
+     *
+     * @param listener the CRL update listener
+     */
+    public default void addCRLUpdateListener(CRLUpdateListener listener) {
+    }
+
     /**
      * This method attempts to read the CRL issuing point.
      * <P>
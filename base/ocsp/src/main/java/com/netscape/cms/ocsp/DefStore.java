@@ -18,23 +18,24 @@
 package com.netscape.cms.ocsp;
 
 import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import org.apache.commons.codec.binary.Hex;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
-import org.mozilla.jss.netscape.security.x509.X509Key;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
@@ -42,6 +43,7 @@ import com.netscape.certsrv.common.Constants;
 import com.netscape.certsrv.common.NameValuePairs;
 import com.netscape.certsrv.dbs.Modification;
 import com.netscape.certsrv.dbs.ModificationSet;
+import com.netscape.certsrv.ocsp.CRLUpdateListener;
 import com.netscape.certsrv.ocsp.IDefStore;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
@@ -88,12 +90,17 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     private static final String PROP_INCLUDE_NEXT_UPDATE =
             "includeNextUpdate";
 
+    // minimum time between reloads triggered by unknown issuers
+    private static final long MIN_RELOAD_INTERVAL = 10 * 1000;
+
     protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
     protected boolean mNotFoundGood = true;
     protected boolean mUseCache = true;
     protected boolean mByName = true;
     protected boolean mIncludeNextUpdate = false;
-    protected Hashtable<String, CRLIPContainer> mCacheCRLIssuingPoints = new Hashtable<>();
+    protected volatile IssuerIndex<CRLIPContainer> mCacheCRLIssuingPoints = new IssuerIndex<>();
+    private volatile long mLastReloadTime = 0;
+    protected CopyOnWriteArrayList<CRLUpdateListener> mCRLUpdateListeners = new CopyOnWriteArrayList<>();
     private ConfigStore mConfig;
     private String mId = null;
     private DBSubsystem dbSubsystem;
@@ -208,7 +215,11 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     }
 
     public void incReqCount(String id) {
-        mReqCounts.put(id, Long.valueOf(getReqCount(id) + 1));
+        incReqCount(id, 1);
+    }
+
+    public synchronized void incReqCount(String id, long count) {
+        mReqCounts.put(id, Long.valueOf(getReqCount(id) + count));
     }
 
     /**
@@ -279,7 +290,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                 DEF_REFRESH_IN_SEC);
         if (refresh > 0) {
             DefStoreCRLUpdater updater =
-                    new DefStoreCRLUpdater(mCacheCRLIssuingPoints, refresh);
+                    new DefStoreCRLUpdater(this, refresh);
             updater.start();
         }
     }
@@ -311,174 +322,270 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         INTEGER serialNo = cid.getSerialNumber();
         logger.info("DefStore: Processing request for cert 0x" + serialNo.toString(16));
 
-        // cache result to speed up the performance
-        X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
-        CRLIssuingPointRecord theRec = null;
-        byte keyhsh[] = cid.getIssuerKeyHash().toByteArray();
-        logger.info("DefStore: Issuer key hash: " + new String(Hex.encodeHex(keyhsh)));
-
-        CRLIPContainer matched = mCacheCRLIssuingPoints.get(new String(keyhsh));
+        CRLIPContainer matched = findCRLIssuingPoint(cid);
         logger.info("DefStore: CRL issuing point container: " + matched);
 
         if (matched == null) {
-            logger.info("DefStore: Searching for objectclass=" + CRLIssuingPointRecord.class.getName());
-            Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
-                    "objectclass=" + CRLIssuingPointRecord.class.getName(),
-                    100);
+            throw new Exception("Missing issuer certificate");
+        }
 
-            while (recs.hasMoreElements()) {
-                CRLIssuingPointRecord rec = recs.nextElement();
-                logger.info("DefStore: - ID: " + rec.getId());
+        logger.info("DefStore: Issuer: " + matched.getX509CertImpl().getSubjectX500Principal());
+        incReqCount(matched.getCRLIssuingPointRecord().getId());
 
-                byte certdata[] = rec.getCACert();
-                X509CertImpl cert = null;
+        CRLIPStatus status = new CRLIPStatus(matched);
 
-                try {
-                    cert = new X509CertImpl(certdata);
-                } catch (Exception e) {
-                    logger.error(CMS.getLogMessage("OCSP_DECODE_CERT", e.toString()), e);
-                    throw e;
-                }
+        // check the serial number
+        logger.info("Checked Status of certificate 0x" + serialNo.toString(16));
 
-                MessageDigest md = MessageDigest.getInstance(cid.getDigestName());
-                X509Key key = (X509Key) cert.getPublicKey();
-                byte digest[] = md.digest(key.getKey());
-                logger.info("DefStore:   Digest: " + new String(Hex.encodeHex(digest)));
+        return status.createResponse(cid);
+    }
 
-                if (!Arrays.equals(digest, keyhsh)) {
-                    continue;
-                }
+    /**
+     * Check against the database for the status of multiple certificates.
+     * The issuer of each distinct CA is resolved once per call, so the
+     * CRL issuing point record and the revoked serial index are looked up
+     * once for all certificates issued by the same CA.
+     */
+    @Override
+    public SingleResponse[] processRequests(Request[] reqs) throws Exception {
 
-                logger.info("DefStore: Found issuer");
+        logger.info("DefStore: Processing " + reqs.length + " request(s)");
 
-                theCert = cert;
-                theRec = rec;
-                incReqCount(theRec.getId());
+        SingleResponse[] responses = new SingleResponse[reqs.length];
+        Map<CRLIPContainer, CRLIPStatus> statuses = new IdentityHashMap<>();
 
-                byte crldata[] = rec.getCRL();
-                logger.info("DefStore: CRL: " + crldata);
+        for (int i = 0; i < reqs.length; i++) {
 
-                if (crldata == null) {
-                    throw new Exception("Missing CRL data");
-                }
+            CertID cid = reqs[i].getCertID();
+            CRLIPContainer matched = findCRLIssuingPoint(cid);
 
-                if (rec.getCRLCache() == null) {
-                    logger.debug("DefStore: start building x509 crl impl");
-                    try {
-                        theCRL = new X509CRLImpl(crldata);
-                    } catch (Exception e) {
-                        logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
-                        throw e;
-                    }
-                    logger.debug("DefStore: done building x509 crl impl");
-                } else {
-                    logger.debug("DefStore: using crl cache");
-                }
+            if (matched == null) {
+                throw new Exception("Missing issuer certificate for cert 0x"
+                        + cid.getSerialNumber().toString(16));
+            }
+
+            CRLIPStatus status = statuses.get(matched);
 
-                logger.info("DefStore: Adding CRL issuing point container for " + new String(Hex.encodeHex(digest)));
-                mCacheCRLIssuingPoints.put(new String(digest), new CRLIPContainer(theRec, theCert, theCRL));
-                break;
+            if (status == null) {
+                logger.info("DefStore: Issuer: " + matched.getX509CertImpl().getSubjectX500Principal());
+                status = new CRLIPStatus(matched);
+                statuses.put(matched, status);
             }
 
-        } else {
-            theCert = matched.getX509CertImpl();
-            theRec = matched.getCRLIssuingPointRecord();
-            theCRL = matched.getX509CRLImpl();
-            incReqCount(theRec.getId());
+            responses[i] = status.createResponse(cid);
+            status.count++;
         }
 
-        logger.info("DefStore: Issuer: " + theCert);
+        for (Map.Entry<CRLIPContainer, CRLIPStatus> e : statuses.entrySet()) {
+            incReqCount(e.getKey().getCRLIssuingPointRecord().getId(), e.getValue().count);
+        }
 
-        if (theCert == null) {
-            throw new Exception("Missing issuer certificate");
+        return responses;
+    }
+
+    /**
+     * Finds the CRL issuing point of the CA that issued the certificate
+     * identified by the CertID.
+     *
+     * @return the CRL issuing point container, or null if not found
+     */
+    protected CRLIPContainer findCRLIssuingPoint(CertID cid) throws EBaseException {
+
+        CRLIPContainer matched = mCacheCRLIssuingPoints.get(cid);
+
+        if (matched == null) {
+            matched = loadCRLIssuingPoint(cid);
         }
 
-        logger.info("DefStore: Issuer: " + theCert.getSubjectX500Principal());
+        return matched;
+    }
 
-        // check the serial number
-        logger.info("Checked Status of certificate 0x" + serialNo.toString(16));
+    /**
+     * This class holds the values shared by all responses
+     * for certificates issued by the same CA.
+     */
+    private class CRLIPStatus {
 
         GeneralizedTime thisUpdate;
+        GeneralizedTime nextUpdate;
+        RevokedSerialIndex serialIndex;
+        boolean notFoundGood;
+        long count;
 
-        if (theRec == null) {
-            thisUpdate = new GeneralizedTime(new Date());
-        } else {
-            Date d = theRec.getThisUpdate();
+        CRLIPStatus(CRLIPContainer container) throws Exception {
+
+            CRLIssuingPointRecord rec = container.getCRLIssuingPointRecord();
+
+            Date d = rec.getThisUpdate();
             logger.debug("DefStore: CRL record this update: " + d);
             thisUpdate = new GeneralizedTime(d);
+
+            // this is an optional field
+            if (includeNextUpdate()) {
+                d = rec.getNextUpdate();
+                logger.debug("DefStore: CRL record next update: " + d);
+                nextUpdate = new GeneralizedTime(d);
+            }
+
+            serialIndex = container.getSerialIndex();
+            notFoundGood = isNotFoundGood();
         }
 
-        logger.debug("DefStore: this update: " + thisUpdate.toDate());
+        SingleResponse createResponse(CertID cid) {
 
-        // this is an optional field
-        GeneralizedTime nextUpdate;
+            CertStatus certStatus;
 
-        if (!includeNextUpdate()) {
-            nextUpdate = null;
+            if (serialIndex == null) {
+                certStatus = new UnknownInfo();
+                return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
+            }
 
-        } else if (theRec == null) {
-            nextUpdate = new GeneralizedTime(new Date());
+            int index = serialIndex.indexOf(cid.getSerialNumber());
 
-        } else {
-            Date d = theRec.getNextUpdate();
-            logger.debug("DefStore: CRL record next update: " + d);
-            nextUpdate = new GeneralizedTime(d);
+            if (index == RevokedSerialIndex.NOT_FOUND) {
+                // good or unknown
+                if (notFoundGood) {
+                    certStatus = new GoodInfo();
+                } else {
+                    certStatus = new UnknownInfo();
+                }
+
+            } else {
+                certStatus = new RevokedInfo(new GeneralizedTime(
+                                serialIndex.getRevocationDate(index)));
+            }
+
+            return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
         }
+    }
 
-        logger.debug("DefStore: next update: " + (nextUpdate == null ? null : nextUpdate.toDate()));
+    /**
+     * Reloads the issuer index if the CA that issued the certificate
+     * identified by the CertID is not in the index yet. Requests for
+     * unknown issuers reload the index at most once per
+     * MIN_RELOAD_INTERVAL.
+     */
+    protected CRLIPContainer loadCRLIssuingPoint(CertID cid) throws EBaseException {
 
-        CertStatus certStatus;
+        if (System.currentTimeMillis() - mLastReloadTime < MIN_RELOAD_INTERVAL) {
+            return null;
+        }
 
-        if (theCRL == null) {
+        synchronized (this) {
 
-            certStatus = new UnknownInfo();
+            // the index might have been reloaded by another thread
+            CRLIPContainer matched = mCacheCRLIssuingPoints.get(cid);
+            if (matched != null) {
+                return matched;
+            }
 
-            if (theRec == null) {
-                return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
+            if (System.currentTimeMillis() - mLastReloadTime < MIN_RELOAD_INTERVAL) {
+                return null;
             }
 
-            // if crl is not available, we can try crl cache
-            logger.debug("DefStore: evaluating crl cache");
-            Hashtable<BigInteger, RevokedCertificate> cache = theRec.getCRLCacheNoClone();
-            if (cache != null) {
-                RevokedCertificate rc = cache.get(new BigInteger(serialNo.toString()));
-                if (rc == null) {
-                    if (isNotFoundGood()) {
-                        certStatus = new GoodInfo();
-                    } else {
-                        certStatus = new UnknownInfo();
-                    }
-                } else {
+            logger.info("DefStore: Unknown issuer, reloading CRL issuing points");
+            loadCRLIssuingPoints();
 
-                    certStatus = new RevokedInfo(
-                            new GeneralizedTime(
-                                    rc.getRevocationDate()));
-                }
-            }
+            return mCacheCRLIssuingPoints.get(cid);
+        }
+    }
+
+    /**
+     * Rebuilds the issuer index from the CRL issuing point records.
+     * The hashes of each CA certificate are computed here once
+     * instead of on each OCSP request.
+     *
+     * The new index is built aside and replaces the current one
+     * in a single write, so requests keep using the current index
+     * while the records are loaded. The containers of records that
+     * have not changed are kept with their revoked serial index.
+     *
+     * If the CRL of a loaded issuing point has changed, for example
+     * after it was updated by another server, the CRL update listeners
+     * are notified.
+     */
+    public synchronized void loadCRLIssuingPoints() throws EBaseException {
+        if (reloadCRLIssuingPoints()) {
+            logger.info("DefStore: CRL issuing points changed");
+            notifyCRLUpdated(null);
+        }
+    }
 
-            return new SingleResponse(cid, certStatus, thisUpdate,
-                    nextUpdate);
+    /**
+     * @return true if a CRL issuing point in the previous index has
+     *         been updated or removed
+     */
+    private synchronized boolean reloadCRLIssuingPoints() throws EBaseException {
+
+        // set before the search so a failed search is not retried on each miss
+        mLastReloadTime = System.currentTimeMillis();
+
+        logger.info("DefStore: Searching for objectclass=" + CRLIssuingPointRecord.class.getName());
+        Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
+                "objectclass=" + CRLIssuingPointRecord.class.getName(),
+                100);
+
+        Map<String, CRLIPContainer> containers = new HashMap<>();
+        for (CRLIPContainer container : mCacheCRLIssuingPoints.values()) {
+            containers.put(container.getCRLIssuingPointRecord().getId(), container);
         }
 
-        logger.debug("DefStore: evaluating x509 crl impl");
-        X509CRLEntry crlentry = theCRL.getRevokedCertificate(new BigInteger(serialNo.toString()));
+        IssuerIndex<CRLIPContainer> index = new IssuerIndex<>();
+        boolean changed = false;
+
+        while (recs.hasMoreElements()) {
+            CRLIssuingPointRecord rec = recs.nextElement();
+            logger.info("DefStore: - ID: " + rec.getId());
+
+            CRLIPContainer container = containers.remove(rec.getId());
+
+            if (container != null && container.isCurrent(rec)) {
+                logger.info("DefStore: Keeping CRL issuing point container for "
+                        + container.getX509CertImpl().getSubjectName());
 
-        if (crlentry == null) {
-            // good or unknown
-            if (isNotFoundGood()) {
-                certStatus = new GoodInfo();
             } else {
-                certStatus = new UnknownInfo();
+                X509CertImpl cert;
+                try {
+                    cert = new X509CertImpl(rec.getCACert());
+                } catch (Exception e) {
+                    logger.error(CMS.getLogMessage("OCSP_DECODE_CERT", e.toString()), e);
+                    throw new EBaseException(CMS.getLogMessage("OCSP_DECODE_CERT", e.toString()), e);
+                }
+
+                logger.info("DefStore: Adding CRL issuing point container for " + cert.getSubjectName());
+                changed |= container != null;
+                container = new CRLIPContainer(rec, cert);
             }
 
-        } else {
-            certStatus = new RevokedInfo(new GeneralizedTime(
-                            crlentry.getRevocationDate()));
+            try {
+                index.put(container.getX509CertImpl(), container);
+            } catch (Exception e) {
+                throw new EBaseException("Unable to index CA certificate: " + e.getMessage(), e);
+            }
         }
 
-        return new SingleResponse(cid, certStatus, thisUpdate,
-                nextUpdate);
+        mCacheCRLIssuingPoints = index;
+
+        // the remaining containers are no longer in the database
+        return changed || !containers.isEmpty();
+    }
+
+    /**
+     * Removes all CRL issuing points from the issuer index. The next
+     * request will reload the index regardless of the last reload.
+     * Since changes to the CRLs cannot be detected by the next reload,
+     * the CRL update listeners are notified.
+     */
+    public synchronized void clearCRLIssuingPoints() {
+        mCacheCRLIssuingPoints = new IssuerIndex<>();
+        mLastReloadTime = 0;
+        notifyCRLUpdated(null);
+    }
+
+    private void notifyCRLUpdated(X509CRL crl) {
+        for (CRLUpdateListener listener : mCRLUpdateListeners) {
+            listener.crlUpdated(crl);
+        }
     }
 
     private String transformDN(String dn) {
@@ -581,6 +688,9 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
             s.add(dn, rec);
         }
+
+        // do not delay the requests for the new CA
+        mLastReloadTime = 0;
     }
 
     public Enumeration<RepositoryRecord> searchRepository(String name, String filter)
@@ -755,18 +865,31 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
             logger.debug("DefStore: done CRL update " +
                     crl.getIssuerDN().getName());
 
-            // update cache
-            mCacheCRLIssuingPoints.clear();
+            // update cache, the listeners are notified below
+            try {
+                reloadCRLIssuingPoints();
+            } catch (EBaseException e) {
+                logger.warn("DefStore: Unable to reload CRL issuing points: " + e.getMessage(), e);
+                mCacheCRLIssuingPoints = new IssuerIndex<>();
+                mLastReloadTime = 0;
+            }
 
             logger.info("DefStore: Finish Committing CRL." +
                     " thisUpdate=" + crl.getThisUpdate() +
                     " nextUpdate=" + crl.getNextUpdate());
 
+            notifyCRLUpdated(crl);
+
         } finally {
             mStateCount--;
         }
     }
 
+    @Override
+    public void addCRLUpdateListener(CRLUpdateListener listener) {
+        mCRLUpdateListeners.add(listener);
+    }
+
     @Override
     public int getStateCount() {
         return mStateCount;
@@ -791,14 +914,16 @@ class DeleteOldCRLsThread extends Thread {
 }
 
 class CRLIPContainer {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLIPContainer.class);
+
     private CRLIssuingPointRecord mRec = null;
     private X509CertImpl mCert = null;
-    private X509CRLImpl mCRL = null;
+    private RevokedSerialIndex mSerialIndex = null;
 
-    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, X509CRLImpl crl) {
+    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert) {
         mRec = rec;
         mCert = cert;
-        mCRL = crl;
     }
 
     public CRLIssuingPointRecord getCRLIssuingPointRecord() {
@@ -809,8 +934,57 @@ class CRLIPContainer {
         return mCert;
     }
 
-    public X509CRLImpl getX509CRLImpl() {
-        return mCRL;
+    /**
+     * Returns true if the record has the same CA certificate and CRL
+     * as the record of this container, so the container can be kept.
+     */
+    public boolean isCurrent(CRLIssuingPointRecord rec) {
+        return Arrays.equals(mRec.getCACert(), rec.getCACert())
+                && Objects.equals(mRec.getCRLNumber(), rec.getCRLNumber())
+                && Objects.equals(mRec.getThisUpdate(), rec.getThisUpdate())
+                && Objects.equals(mRec.getNextUpdate(), rec.getNextUpdate());
+    }
+
+    /**
+     * Returns the index of revoked certificates of this issuing point.
+     * The index is built on first use from the CRL cache of the record,
+     * or from the CRL if the record does not provide a CRL cache.
+     * The decoded CRL is not retained.
+     */
+    public synchronized RevokedSerialIndex getSerialIndex() throws Exception {
+
+        if (mSerialIndex != null) {
+            return mSerialIndex;
+        }
+
+        byte crldata[] = mRec.getCRL();
+
+        if (crldata == null) {
+            throw new Exception("Missing CRL data");
+        }
+
+        Hashtable<BigInteger, RevokedCertificate> revokedCerts = mRec.getCRLCacheNoClone();
+
+        if (revokedCerts == null) {
+            logger.debug("DefStore: start building x509 crl impl");
+            try {
+                X509CRLImpl crl = new X509CRLImpl(crldata);
+                revokedCerts = crl.getListOfRevokedCertificates();
+            } catch (Exception e) {
+                logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+                throw e;
+            }
+            logger.debug("DefStore: done building x509 crl impl");
+
+        } else {
+            logger.debug("DefStore: using crl cache");
+        }
+
+        mSerialIndex = RevokedSerialIndex.create(
+                revokedCerts == null ? null : revokedCerts.values());
+        logger.debug("DefStore: Indexed " + mSerialIndex.size() + " revoked certificate(s)");
+
+        return mSerialIndex;
     }
 }
 
@@ -818,11 +992,11 @@ class DefStoreCRLUpdater extends Thread {
 
     public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DefStoreCRLUpdater.class);
 
-    private Hashtable<String, CRLIPContainer> mCache = null;
+    private DefStore mStore = null;
     private int mSec = 0;
 
-    public DefStoreCRLUpdater(Hashtable<String, CRLIPContainer> cache, int sec) {
-        mCache = cache;
+    public DefStoreCRLUpdater(DefStore store, int sec) {
+        mStore = store;
         mSec = sec;
     }
 
@@ -831,7 +1005,13 @@ class DefStoreCRLUpdater extends Thread {
         while (true) {
             try {
                 logger.debug("DefStore: CRLUpdater invoked");
-                mCache.clear();
+                // pick up CRLs updated by other servers
+                mStore.loadCRLIssuingPoints();
+            } catch (Exception e) {
+                logger.warn("DefStore: Unable to reload CRL issuing points: " + e.getMessage(), e);
+                mStore.clearCRLIssuingPoints();
+            }
+            try {
                 sleep(mSec * 1000); // turn sec into millis-sec
             } catch (Exception e) {
                 // ignore
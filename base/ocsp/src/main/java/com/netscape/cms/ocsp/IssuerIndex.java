@@ -0,0 +1,162 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.ocsp;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+
+import com.netscape.cmsutil.ocsp.CertID;
+
+/**
+ * This class maps the issuer fields of an OCSP CertID
+ * (hash algorithm, issuerNameHash, issuerKeyHash) to the
+ * CA known by the OCSP store.
+ *
+ * The hashes of each CA certificate are computed once when
+ * the CA is added to the index, so a lookup does not need
+ * any digest operation.
+ *
+ * @param <T> the object associated with the CA
+ */
+public class IssuerIndex<T> {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(IssuerIndex.class);
+
+    /**
+     * Digest algorithms that can be used in a CertID.
+     */
+    public static final String[] DIGEST_NAMES = {
+            "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512", "MD5", "MD2"
+    };
+
+    // entries matching all CertID issuer fields
+    private ConcurrentHashMap<Key, T> mByNameAndKey = new ConcurrentHashMap<>();
+
+    // entries matching the issuer key hash only, for clients
+    // that do not compute the issuer name hash correctly
+    private ConcurrentHashMap<Key, T> mByKey = new ConcurrentHashMap<>();
+
+    public IssuerIndex() {
+    }
+
+    /**
+     * Adds a CA into the index.
+     */
+    public void put(X509CertImpl caCert, T value) throws Exception {
+
+        X509Key key = (X509Key) caCert.getPublicKey();
+        if (key == null) {
+            throw new Exception("Missing issuer key");
+        }
+
+        byte[] keyData = key.getKey();
+        byte[] nameData = caCert.getSubjectName().getEncoded();
+
+        for (String digestName : DIGEST_NAMES) {
+
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance(digestName);
+            } catch (NoSuchAlgorithmException e) {
+                logger.debug("IssuerIndex: Unsupported digest algorithm: " + digestName);
+                continue;
+            }
+
+            byte[] keyHash = md.digest(keyData);
+            byte[] nameHash = md.digest(nameData);
+
+            mByNameAndKey.put(new Key(digestName, keyHash, nameHash), value);
+            mByKey.put(new Key(digestName, keyHash, null), value);
+        }
+    }
+
+    /**
+     * Finds the CA that issued the certificate identified by the CertID.
+     *
+     * @return the object associated with the CA, or null if not found
+     */
+    public T get(CertID cid) {
+
+        String digestName = cid.getDigestName();
+        if (digestName == null) {
+            return null;
+        }
+
+        byte[] keyHash = cid.getIssuerKeyHash().toByteArray();
+        byte[] nameHash = cid.getIssuerNameHash().toByteArray();
+
+        T value = mByNameAndKey.get(new Key(digestName, keyHash, nameHash));
+        if (value != null) {
+            return value;
+        }
+
+        return mByKey.get(new Key(digestName, keyHash, null));
+    }
+
+    /**
+     * Removes all entries associated with the object.
+     */
+    public void remove(T value) {
+        mByNameAndKey.values().removeIf(v -> v.equals(value));
+        mByKey.values().removeIf(v -> v.equals(value));
+    }
+
+    public Collection<T> values() {
+        return mByKey.values();
+    }
+
+    public boolean isEmpty() {
+        return mByKey.isEmpty();
+    }
+
+    public void clear() {
+        mByNameAndKey.clear();
+        mByKey.clear();
+    }
+
+    static class Key {
+
+        private String digestName;
+        private byte[] keyHash;
+        private byte[] nameHash;
+        private int hashCode;
+
+        Key(String digestName, byte[] keyHash, byte[] nameHash) {
+            this.digestName = digestName;
+            this.keyHash = keyHash;
+            this.nameHash = nameHash;
+
+            int result = digestName.hashCode();
+            result = 31 * result + Arrays.hashCode(keyHash);
+            result = 31 * result + Arrays.hashCode(nameHash);
+            hashCode = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && digestName.equals(other.digestName)
+                    && Arrays.equals(keyHash, other.keyHash)
+                    && Arrays.equals(nameHash, other.nameHash);
+        }
+    }
+}
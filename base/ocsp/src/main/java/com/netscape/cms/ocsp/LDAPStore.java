@@ -18,29 +18,30 @@
 package com.netscape.cms.ocsp;
 
 import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
-import org.mozilla.jss.netscape.security.x509.X509Key;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
 import com.netscape.certsrv.common.Constants;
 import com.netscape.certsrv.common.NameValuePairs;
+import com.netscape.certsrv.ocsp.CRLUpdateListener;
 import com.netscape.certsrv.ocsp.IDefStore;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.base.ConfigSnapshot;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.DBSubsystem;
@@ -87,12 +88,15 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
             "includeNextUpdate";
 
     private ConfigStore mConfig;
+    private ConfigSnapshot<Settings> mSettings;
     private String mId = null;
     private String mCRLAttr = null;
     private boolean mByName = true;
     private String mCACertAttr = null;
     protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
-    private Hashtable<X509CertImpl, X509CRLImpl> mCRLs = new Hashtable<>();
+    private Hashtable<X509CertImpl, CRLStatus> mCRLs = new Hashtable<>();
+    private IssuerIndex<X509CertImpl> mIssuers = new IssuerIndex<>();
+    private CopyOnWriteArrayList<CRLUpdateListener> mCRLUpdateListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructs the default store.
@@ -140,6 +144,7 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
                     DEF_CA_CERT_ATTR);
         mByName = mConfig.getBoolean(PROP_BY_NAME, true);
 
+        mSettings = new ConfigSnapshot<>(mConfig, Settings::new);
     }
 
     /**
@@ -242,16 +247,44 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
 
     public void updateCRLHash(X509CertImpl caCert, X509CRLImpl crl)
             throws EBaseException {
-        X509CRLImpl oldCRL = mCRLs.get(caCert);
+        CRLStatus oldStatus = mCRLs.get(caCert);
 
-        if (oldCRL != null) {
-            if (oldCRL.getThisUpdate().getTime() >= crl.getThisUpdate().getTime()) {
+        if (oldStatus != null) {
+            if (oldStatus.thisUpdate.getTime() >= crl.getThisUpdate().getTime()) {
                 logger.info("LDAPStore: no update, received CRL is older than current CRL");
                 return; // no update
             }
         }
+
+        Hashtable<BigInteger, RevokedCertificate> revokedCerts = crl.getListOfRevokedCertificates();
+        RevokedSerialIndex serialIndex = RevokedSerialIndex.create(
+                revokedCerts == null ? null : revokedCerts.values());
+        logger.debug("LDAPStore: Indexed " + serialIndex.size() + " revoked certificate(s)");
+
+        byte[] encodedCRL;
+        try {
+            encodedCRL = crl.getEncoded();
+        } catch (Exception e) {
+            throw new EBaseException("Unable to encode CRL: " + e.getMessage(), e);
+        }
+
+        // the decoded CRL is not kept, responses only need
+        // the update times and the revoked serial numbers
         logger.debug("Added '" + caCert.getSubjectName() + "' into CRL hash");
-        mCRLs.put(caCert, crl);
+        mCRLs.put(caCert, new CRLStatus(crl.getThisUpdate(), crl.getNextUpdate(), serialIndex, encodedCRL));
+
+        if (oldStatus == null) {
+            // index the CA after its status is available
+            try {
+                mIssuers.put(caCert, caCert);
+            } catch (Exception e) {
+                throw new EBaseException("Unable to index CA certificate: " + e.getMessage(), e);
+            }
+        }
+
+        for (CRLUpdateListener listener : mCRLUpdateListeners) {
+            listener.crlUpdated(crl);
+        }
     }
 
     @Override
@@ -328,6 +361,11 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         throw new EBaseException("NOT SUPPORTED");
     }
 
+    @Override
+    public void addCRLUpdateListener(CRLUpdateListener listener) {
+        mCRLUpdateListeners.add(listener);
+    }
+
     @Override
     public CRLIssuingPointRecord readCRLIssuingPoint(String name)
             throws EBaseException {
@@ -342,9 +380,9 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
 
         while (keys.hasMoreElements()) {
             X509CertImpl caCert = keys.nextElement();
-            X509CRLImpl crl = mCRLs.get(caCert);
+            CRLStatus status = mCRLs.get(caCert);
 
-            recs.addElement(new TempCRLIssuingPointRecord(caCert, crl));
+            recs.addElement(new TempCRLIssuingPointRecord(caCert, status));
         }
         return recs.elements();
     }
@@ -385,15 +423,33 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     }
 
     public boolean includeNextUpdate() throws EBaseException {
-        return mConfig.getBoolean(PROP_INCLUDE_NEXT_UPDATE, false);
+        return mSettings.get().includeNextUpdate;
     }
 
     public boolean isNotFoundGood1() throws EBaseException {
-        return mConfig.getBoolean(PROP_NOT_FOUND_GOOD, true);
+        return mSettings.get().notFoundGood;
+    }
+
+    /**
+     * Parameters used for each OCSP request.
+     */
+    static class Settings {
+
+        final boolean notFoundGood;
+        final boolean includeNextUpdate;
+
+        Settings(ConfigStore config) throws EBaseException {
+            notFoundGood = config.getBoolean(PROP_NOT_FOUND_GOOD, true);
+            includeNextUpdate = config.getBoolean(PROP_INCLUDE_NEXT_UPDATE, false);
+        }
     }
 
     public void incReqCount(String id) {
-        mReqCounts.put(id, Long.valueOf(getReqCount(id) + 1));
+        incReqCount(id, 1);
+    }
+
+    public synchronized void incReqCount(String id, long count) {
+        mReqCounts.put(id, Long.valueOf(getReqCount(id) + count));
     }
 
     /**
@@ -407,69 +463,129 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         logger.info("LDAPStore: Processing request for cert 0x" + serialNo.toString(16));
 
         // locate the right CRL
-        X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
-
         logger.info("LDAPStore: Checking against " + mCRLs.size() + " CA cert(s)");
-        Enumeration<X509CertImpl> caCerts = mCRLs.keys();
+        X509CertImpl theCert = mIssuers.get(cid);
 
-        while (caCerts.hasMoreElements()) {
-            X509CertImpl caCert = caCerts.nextElement();
-            logger.info("LDAPStore: Checking against " + caCert.getSubjectName());
+        if (theCert == null) {
+            throw new Exception("Missing issuer certificate");
+        }
+
+        logger.info("LDAPStore: Found " + theCert.getSubjectName());
+        incReqCount(theCert.getSubjectName().toString());
 
-            MessageDigest md = MessageDigest.getInstance(cid.getDigestName());
-            X509Key key = (X509Key) caCert.getPublicKey();
+        return new IssuerStatus(theCert).createResponse(cid);
+    }
 
-            if (key == null) {
-                throw new Exception("Missing issuer key");
+    /**
+     * Check against the database for the status of multiple certificates.
+     * The CRL of each distinct CA is resolved once per call.
+     */
+    @Override
+    public SingleResponse[] processRequests(Request[] reqs) throws Exception {
+
+        logger.info("LDAPStore: Processing " + reqs.length + " request(s)");
+
+        SingleResponse[] responses = new SingleResponse[reqs.length];
+        Map<X509CertImpl, IssuerStatus> statuses = new IdentityHashMap<>();
+
+        for (int i = 0; i < reqs.length; i++) {
+
+            CertID cid = reqs[i].getCertID();
+            X509CertImpl theCert = mIssuers.get(cid);
+
+            if (theCert == null) {
+                throw new Exception("Missing issuer certificate for cert 0x"
+                        + cid.getSerialNumber().toString(16));
             }
 
-            byte digest[] = md.digest(key.getKey());
-            byte keyhsh[] = cid.getIssuerKeyHash().toByteArray();
+            IssuerStatus status = statuses.get(theCert);
 
-            if (!Arrays.equals(digest, keyhsh)) {
-                continue;
+            if (status == null) {
+                logger.info("LDAPStore: Found " + theCert.getSubjectName());
+                status = new IssuerStatus(theCert);
+                statuses.put(theCert, status);
             }
 
-            theCert = caCert;
-            incReqCount(caCert.getSubjectName().toString());
-            theCRL = mCRLs.get(caCert);
-            break;
+            responses[i] = status.createResponse(cid);
+            status.count++;
         }
 
-        if (theCert == null) {
-            throw new Exception("Missing issuer certificate");
+        for (Map.Entry<X509CertImpl, IssuerStatus> e : statuses.entrySet()) {
+            incReqCount(e.getKey().getSubjectName().toString(), e.getValue().count);
         }
 
-        if (theCRL == null) {
-            throw new Exception("Missing CRL data");
+        return responses;
+    }
+
+    /**
+     * This class holds the parts of the latest CRL of a CA
+     * needed to create responses, and the encoded CRL for the
+     * CRL issuing point records. It is replaced as a whole
+     * when a new CRL is received.
+     */
+    static class CRLStatus {
+
+        final Date thisUpdate;
+        final Date nextUpdate;
+        final RevokedSerialIndex serialIndex;
+        final byte[] encodedCRL;
+
+        CRLStatus(Date thisUpdate, Date nextUpdate, RevokedSerialIndex serialIndex, byte[] encodedCRL) {
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+            this.serialIndex = serialIndex;
+            this.encodedCRL = encodedCRL;
         }
+    }
+
+    /**
+     * This class holds the values shared by all responses
+     * for certificates issued by the same CA.
+     */
+    private class IssuerStatus {
+
+        GeneralizedTime thisUpdate;
+        GeneralizedTime nextUpdate;
+        RevokedSerialIndex serialIndex;
+        boolean notFoundGood;
+        long count;
+
+        IssuerStatus(X509CertImpl caCert) throws Exception {
 
-        GeneralizedTime thisUpdate = new GeneralizedTime(
-                theCRL.getThisUpdate());
-        GeneralizedTime nextUpdate = null;
+            CRLStatus status = mCRLs.get(caCert);
 
-        if (includeNextUpdate()) {
-            nextUpdate = new GeneralizedTime(
-                        theCRL.getNextUpdate());
+            if (status == null) {
+                throw new Exception("Missing CRL data");
+            }
+
+            serialIndex = status.serialIndex;
+            thisUpdate = new GeneralizedTime(status.thisUpdate);
+
+            if (includeNextUpdate()) {
+                nextUpdate = new GeneralizedTime(status.nextUpdate);
+            }
+
+            notFoundGood = isNotFoundGood1();
         }
 
-        CertStatus certStatus = null;
-        X509CRLEntry entry = theCRL.getRevokedCertificate(
-                cid.getSerialNumber());
+        SingleResponse createResponse(CertID cid) {
+
+            CertStatus certStatus = null;
+            int index = serialIndex.indexOf(cid.getSerialNumber());
 
-        if (entry == null) {
-            if (isNotFoundGood1()) {
-                certStatus = new GoodInfo();
+            if (index == RevokedSerialIndex.NOT_FOUND) {
+                if (notFoundGood) {
+                    certStatus = new GoodInfo();
+                } else {
+                    certStatus = new UnknownInfo();
+                }
             } else {
-                certStatus = new UnknownInfo();
+                certStatus = new RevokedInfo(new GeneralizedTime(
+                                serialIndex.getRevocationDate(index)));
             }
-        } else {
-            certStatus = new RevokedInfo(new GeneralizedTime(
-                            entry.getRevocationDate()));
-        }
 
-        return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
+            return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
+        }
     }
 
     /**
@@ -584,11 +700,11 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
 
     private static final long serialVersionUID = 5299660983298765746L;
     private X509CertImpl mCACert = null;
-    private X509CRLImpl mCRL = null;
+    private LDAPStore.CRLStatus mStatus = null;
 
-    TempCRLIssuingPointRecord(X509CertImpl caCert, X509CRLImpl crl) {
+    TempCRLIssuingPointRecord(X509CertImpl caCert, LDAPStore.CRLStatus status) {
         mCACert = caCert;
-        mCRL = crl;
+        mStatus = status;
     }
 
     @Override
@@ -617,7 +733,7 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public Long getCRLSize() {
-        return Long.valueOf(mCRL.getNumberOfRevokedCertificates());
+        return Long.valueOf(mStatus.serialIndex.size());
     }
 
     /**
@@ -633,7 +749,7 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public Date getThisUpdate() {
-        return mCRL.getThisUpdate();
+        return mStatus.thisUpdate;
     }
 
     /**
@@ -641,7 +757,7 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public Date getNextUpdate() {
-        return mCRL.getNextUpdate();
+        return mStatus.nextUpdate;
     }
 
     @Override
@@ -664,11 +780,7 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public byte[] getCRL() {
-        try {
-            return mCRL.getEncoded();
-        } catch (Exception e) {
-            return null;
-        }
+        return mStatus.encodedCRL;
     }
 
     /**
@@ -697,7 +809,12 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public Hashtable<BigInteger, RevokedCertificate> getRevokedCerts() {
-        return mCRL.getListOfRevokedCertificates();
+        try {
+            // decoded on demand, the decoded CRL is not kept
+            return new X509CRLImpl(mStatus.encodedCRL).getListOfRevokedCertificates();
+        } catch (Exception e) {
+            return null;
+        }
     }
 
     /**
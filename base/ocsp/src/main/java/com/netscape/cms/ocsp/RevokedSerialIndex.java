@@ -0,0 +1,244 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.ocsp;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Enumeration;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * This class provides a read-only index of the revoked certificates
+ * in a CRL. The entries are sorted by serial number and stored in
+ * primitive arrays, so the index does not keep an object per revoked
+ * certificate, and a lookup is a binary search over the arrays.
+ *
+ * Serial numbers that fit into 64 bits are stored in a long array
+ * and can be looked up without any allocation. Larger serial numbers
+ * are stored as fixed-width two's-complement big-endian values in a
+ * byte array.
+ */
+public class RevokedSerialIndex {
+
+    public static final int NOT_FOUND = -1;
+    public static final int NO_REASON = -1;
+
+    private static final RevokedSerialIndex EMPTY =
+            new RevokedSerialIndex(0, 8, new long[0], null, new long[0], new byte[0]);
+
+    private int size;
+
+    // number of bytes per serial number
+    private int width;
+
+    // serial numbers if width <= 8
+    private long[] longSerials;
+
+    // serial numbers if width > 8
+    private byte[] byteSerials;
+
+    private long[] revocationTimes;
+    private byte[] reasons;
+
+    private RevokedSerialIndex(
+            int size,
+            int width,
+            long[] longSerials,
+            byte[] byteSerials,
+            long[] revocationTimes,
+            byte[] reasons) {
+
+        this.size = size;
+        this.width = width;
+        this.longSerials = longSerials;
+        this.byteSerials = byteSerials;
+        this.revocationTimes = revocationTimes;
+        this.reasons = reasons;
+    }
+
+    /**
+     * Creates an index from the revoked certificates of a CRL.
+     *
+     * @param revokedCerts revoked certificates, can be null
+     */
+    public static RevokedSerialIndex create(Collection<RevokedCertificate> revokedCerts) {
+
+        if (revokedCerts == null || revokedCerts.isEmpty()) {
+            return EMPTY;
+        }
+
+        RevokedCertificate[] entries = revokedCerts.toArray(new RevokedCertificate[revokedCerts.size()]);
+        Arrays.sort(entries, Comparator.comparing(RevokedCertificate::getSerialNumber));
+
+        int width = 8;
+        for (RevokedCertificate entry : entries) {
+            width = Math.max(width, entry.getSerialNumber().toByteArray().length);
+        }
+
+        long[] longSerials = null;
+        byte[] byteSerials = null;
+
+        if (width == 8) {
+            longSerials = new long[entries.length];
+        } else {
+            byteSerials = new byte[entries.length * width];
+        }
+
+        long[] revocationTimes = new long[entries.length];
+        byte[] reasons = new byte[entries.length];
+
+        int size = 0;
+        BigInteger previous = null;
+
+        for (RevokedCertificate entry : entries) {
+
+            BigInteger serialNumber = entry.getSerialNumber();
+
+            // skip duplicate entries
+            if (serialNumber.equals(previous)) {
+                continue;
+            }
+            previous = serialNumber;
+
+            if (longSerials != null) {
+                longSerials[size] = serialNumber.longValue();
+
+            } else {
+                byte[] bytes = serialNumber.toByteArray();
+                int offset = size * width;
+                int padding = width - bytes.length;
+                byte sign = serialNumber.signum() < 0 ? (byte) 0xFF : 0;
+
+                Arrays.fill(byteSerials, offset, offset + padding, sign);
+                System.arraycopy(bytes, 0, byteSerials, offset + padding, bytes.length);
+            }
+
+            revocationTimes[size] = entry.getRevocationDate().getTime();
+            reasons[size] = (byte) getReason(entry);
+
+            size++;
+        }
+
+        return new RevokedSerialIndex(size, width, longSerials, byteSerials, revocationTimes, reasons);
+    }
+
+    static int getReason(RevokedCertificate entry) {
+
+        CRLExtensions exts = entry.getExtensions();
+        if (exts == null) {
+            return NO_REASON;
+        }
+
+        Enumeration<Extension> e = exts.getElements();
+        while (e.hasMoreElements()) {
+            Extension ext = e.nextElement();
+            if (ext instanceof CRLReasonExtension) {
+                return ((CRLReasonExtension) ext).getReason().getCode();
+            }
+        }
+
+        return NO_REASON;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the entry of a revoked certificate.
+     *
+     * @return the position of the entry, or NOT_FOUND if the certificate is not revoked
+     */
+    public int indexOf(BigInteger serialNumber) {
+
+        if (longSerials != null) {
+            if (serialNumber.bitLength() > 63) {
+                return NOT_FOUND;
+            }
+            int i = Arrays.binarySearch(longSerials, 0, size, serialNumber.longValue());
+            return i < 0 ? NOT_FOUND : i;
+        }
+
+        byte[] bytes = serialNumber.toByteArray();
+        if (bytes.length > width) {
+            return NOT_FOUND;
+        }
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(mid, bytes);
+
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Compares the serial number of an entry with a serial number
+     * in two's-complement big-endian form.
+     */
+    private int compare(int index, byte[] bytes) {
+
+        int offset = index * width;
+        int padding = width - bytes.length;
+        int sign = bytes[0] < 0 ? 0xFF : 0;
+
+        for (int i = 0; i < width; i++) {
+
+            int a = byteSerials[offset + i] & 0xFF;
+            int b = i < padding ? sign : bytes[i - padding] & 0xFF;
+
+            if (a == b) {
+                continue;
+            }
+
+            if (i == 0) {
+                // the first byte contains the sign bit
+                return Byte.compare((byte) a, (byte) b);
+            }
+
+            return a < b ? -1 : 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the revocation time of an entry in milliseconds.
+     */
+    public long getRevocationTime(int index) {
+        return revocationTimes[index];
+    }
+
+    public Date getRevocationDate(int index) {
+        return new Date(revocationTimes[index]);
+    }
+
+    /**
+     * Returns the CRL reason code of an entry, or NO_REASON if
+     * the entry does not have a reason code.
+     */
+    public int getReason(int index) {
+        return reasons[index];
+    }
+}
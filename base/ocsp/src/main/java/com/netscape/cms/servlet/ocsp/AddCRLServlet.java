@@ -18,6 +18,7 @@
 package com.netscape.cms.servlet.ocsp;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
@@ -73,7 +74,11 @@ public class AddCRLServlet extends CMSServlet {
     private static final long serialVersionUID = 1476080474638590902L;
 
     private final static String TPL_FILE = "addCRL.template";
+    private final static String CRL_CONTENT_TYPE = "application/pkix-crl";
+    private final static String PROP_MAX_CRL_SIZE = "maxCRLSize";
+    public final static int DEFAULT_MAX_CRL_SIZE = 100 * 1024 * 1024;
     private String mFormPath = null;
+    private int mMaxCRLSize = DEFAULT_MAX_CRL_SIZE;
     private OCSPAuthority mOCSPAuthority;
 
     public AddCRLServlet() {
@@ -99,6 +104,11 @@ public class AddCRLServlet extends CMSServlet {
 
         if (mOutputTemplatePath != null)
             mFormPath = mOutputTemplatePath;
+
+        String maxCRLSize = sc.getInitParameter(PROP_MAX_CRL_SIZE);
+        if (maxCRLSize != null) {
+            mMaxCRLSize = Integer.parseInt(maxCRLSize);
+        }
     }
 
     /**
@@ -107,7 +117,8 @@ public class AddCRLServlet extends CMSServlet {
      *
      * <ul>
      * <li>http.param crl certificate revocation list, base-64, DER encoded wrapped in -----BEGIN CERTIFICATE REVOCATION
-     * LIST-----, -----END CERTIFICATE REVOCATION LIST----- strings
+     * LIST-----, -----END CERTIFICATE REVOCATION LIST----- strings, or DER encoded in the request body if the content
+     * type is application/pkix-crl
      * <li>http.param noui if true, use minimal hardcoded text response
      * <li>signed.audit LOGGING_SIGNED_AUDIT_CRL_RETRIEVAL used when CRLs are retrieved by the OCSP Responder ("agent"
      * or "EE")
@@ -181,10 +192,23 @@ public class AddCRLServlet extends CMSServlet {
                 }
             }
 
-            String b64 = cmsReq.getHttpReq().getParameter("crl");
-            logger.info("AddCRLServlet: CRL: " + b64);
+            String contentType = req.getContentType();
+            boolean binary = contentType != null && contentType.startsWith(CRL_CONTENT_TYPE);
+
+            String b64 = null;
+            byte[] der = null;
+
+            if (binary) {
+                der = readCRL(req);
+                logger.info("AddCRLServlet: CRL size: " + (der == null ? 0 : der.length));
+
+            } else {
+                b64 = cmsReq.getHttpReq().getParameter("crl");
+                logger.info("AddCRLServlet: CRL size: " + (b64 == null ? 0 : b64.length()));
+                logger.debug("AddCRLServlet: CRL: " + b64);
+            }
 
-            if (b64 == null) {
+            if (b64 == null && der == null) {
                 // store a message in the signed audit log file
                 auditMessage = CMS.getLogMessage(
                         AuditEvent.CRL_RETRIEVAL,
@@ -235,7 +259,7 @@ public class AddCRLServlet extends CMSServlet {
             ArgBlock fixed = new ArgBlock();
             CMSTemplateParams argSet = new CMSTemplateParams(header, fixed);
 
-            if (b64.indexOf(CertUtil.CRL_HEADER) == -1) {
+            if (!binary && b64.indexOf(CertUtil.CRL_HEADER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_HEADER"));
 
                 // store a message in the signed audit log file
@@ -250,7 +274,7 @@ public class AddCRLServlet extends CMSServlet {
                 throw new ECMSGWException(CMS.getUserMessage(getLocale(req),
                                           "CMS_GW_MISSING_CRL_HEADER"));
             }
-            if (b64.indexOf(CertUtil.CRL_FOOTER) == -1) {
+            if (!binary && b64.indexOf(CertUtil.CRL_FOOTER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_FOOTER"));
 
                 // store a message in the signed audit log file
@@ -276,7 +300,7 @@ public class AddCRLServlet extends CMSServlet {
                 if (statsSub != null) {
                     statsSub.startTiming("decode_crl");
                 }
-                crl = mapCRL1(b64);
+                crl = binary ? mapCRL(der) : mapCRL1(b64);
                 if (statsSub != null) {
                     statsSub.endTiming("decode_crl");
                 }
@@ -556,11 +580,50 @@ public class AddCRLServlet extends CMSServlet {
         }
     }
 
+    /**
+     * Reads DER-encoded CRL from the request body. The CRL is rejected
+     * before it is read if it is larger than the maxCRLSize parameter.
+     *
+     * @return CRL data, or null if the request body is empty
+     */
+    byte[] readCRL(HttpServletRequest req) throws IOException {
+
+        long length = req.getContentLengthLong();
+        if (length > mMaxCRLSize) {
+            throw new IOException("CRL too large: " + length + " bytes");
+        }
+
+        byte[] der;
+        try (InputStream in = req.getInputStream()) {
+            if (length >= 0) {
+                der = in.readNBytes((int) length);
+
+            } else {
+                // read one more byte to find out if the CRL is too large
+                der = in.readNBytes(mMaxCRLSize + 1);
+                if (der.length > mMaxCRLSize) {
+                    throw new IOException("CRL too large: more than " + mMaxCRLSize + " bytes");
+                }
+            }
+        }
+
+        return der.length == 0 ? null : der;
+    }
+
+    void setMaxCRLSize(int maxCRLSize) {
+        mMaxCRLSize = maxCRLSize;
+    }
+
     public X509CRLImpl mapCRL1(String mime64)
             throws IOException {
         mime64 = Cert.stripCRLBrackets(mime64.trim());
 
         byte rawPub[] = Utils.base64decode(mime64);
+        return mapCRL(rawPub);
+    }
+
+    public X509CRLImpl mapCRL(byte[] rawPub)
+            throws IOException {
         X509CRLImpl crl = null;
 
         try {
@@ -25,14 +25,24 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.SignatureException;
 import java.security.cert.CertificateParsingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Vector;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dogtagpki.server.ocsp.OCSPConfig;
 import org.dogtagpki.server.ocsp.OCSPEngine;
 import org.dogtagpki.server.ocsp.OCSPEngineConfig;
+import org.dogtagpki.server.ocsp.OCSPLookupConfig;
+import org.dogtagpki.server.ocsp.OCSPResponseCacheConfig;
 import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.InvalidBERException;
@@ -105,6 +115,11 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
 
     private String[] mOCSPSigningAlgorithms = null;
     private IOCSPStore mDefStore = null;
+    private OCSPResponseCache mResponseCache = null;
+
+    private int mLookupThreads = 0;
+    private int mLookupBatchSize = 0;
+    private ExecutorService mLookupExecutor = null;
 
     public long mNumOCSPRequest = 0;
     public long mTotalTime = 0;
@@ -177,6 +192,12 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
                 logger.warn(CMS.getLogMessage("CMSCORE_OCSP_SIGNING_UNIT", e.toString()), e);
             }
 
+            initResponseCache();
+
+            OCSPLookupConfig lookupConfig = mConfig.getLookupConfig();
+            mLookupThreads = lookupConfig.getThreads();
+            mLookupBatchSize = Math.max(1, lookupConfig.getBatchSize());
+
         } catch (EBaseException e) {
             logger.error("OCSPAuthority: " + e.getMessage(), e);
             throw e;
@@ -331,12 +352,55 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         getOCSPSigningAlgorithms();
     }
 
+    private void initResponseCache() throws EBaseException {
+
+        OCSPResponseCacheConfig cacheConfig = mConfig.getResponseCacheConfig();
+
+        if (!cacheConfig.getEnable()) {
+            return;
+        }
+
+        if (!(mDefStore instanceof IDefStore)) {
+            logger.warn("OCSPAuthority: Response cache is not supported by the default store");
+            return;
+        }
+
+        int ttl = cacheConfig.getTTL();
+        int maxSize = cacheConfig.getMaxSize();
+        logger.info("OCSPAuthority: Initializing response cache (ttl: " + ttl + "s, max size: " + maxSize + ")");
+
+        OCSPResponseCache responseCache = new OCSPResponseCache(this, ttl, maxSize);
+
+        ((IDefStore) mDefStore).addCRLUpdateListener(responseCache);
+
+        mResponseCache = responseCache;
+    }
+
     /**
      * Notifies this subsystem if owner is in running mode.
      */
     @Override
     public void startup() throws EBaseException {
         OCSPEngine engine = OCSPEngine.getInstance();
+
+        if (mResponseCache != null) {
+            mResponseCache.start();
+        }
+
+        if (mLookupThreads > 1) {
+            logger.info("OCSPAuthority: Starting " + mLookupThreads + " lookup thread(s)"
+                    + " (batch size: " + mLookupBatchSize + ")");
+            AtomicInteger counter = new AtomicInteger();
+            mLookupExecutor = Executors.newFixedThreadPool(mLookupThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "OCSPLookup-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
         try {
             if (mDefStore != null)
                 mDefStore.startup();
@@ -386,45 +450,6 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         OCSPResponse response;
 
         try {
-            // (3) look into database to check the certificate's status
-            Vector<SingleResponse> singleResponses = new Vector<>();
-
-            if (statsSub != null) {
-                statsSub.startTiming("lookup");
-            }
-
-            long lookupStartTime = new Date().getTime();
-
-            for (int i = 0; i < tbsReq.getRequestCount(); i++) {
-                logger.info("OCSPAuthority: Processing request #" + i);
-
-                Request req = tbsReq.getRequestAt(i);
-                SingleResponse sr = mDefStore.processRequest(req);
-                singleResponses.addElement(sr);
-            }
-
-            long lookupEndTime = new Date().getTime();
-            incLookupTime(lookupEndTime - lookupStartTime);
-
-            if (statsSub != null) {
-                statsSub.endTiming("lookup");
-            }
-
-            if (statsSub != null) {
-                statsSub.startTiming("build_response");
-            }
-
-            SingleResponse res[] = new SingleResponse[singleResponses.size()];
-            singleResponses.copyInto(res);
-
-            ResponderID rid = null;
-
-            if (mDefStore.isByName()) {
-                rid = getResponderIDByName();
-            } else {
-                rid = getResponderIDByHash();
-            }
-
             Extension nonce[] = null;
 
             for (int j = 0; j < tbsReq.getExtensionsCount(); j++) {
@@ -436,32 +461,51 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
                 }
             }
 
-            ResponseData rd = new ResponseData(rid,
-                    new GeneralizedTime(new Date()), res, nonce);
+            // a response without nonce for a single certificate can be cached
+            boolean cacheable = mResponseCache != null && nonce == null && tbsReq.getRequestCount() == 1;
+            long cacheGeneration = 0;
 
-            if (statsSub != null) {
-                statsSub.endTiming("build_response");
+            if (cacheable) {
+                cacheGeneration = mResponseCache.getGeneration();
+                response = mResponseCache.get(tbsReq.getRequestAt(0).getCertID());
+
+                if (response != null) {
+                    logger.info("OCSPAuthority: Returning cached OCSP response");
+
+                    long endTime = new Date().getTime();
+                    incTotalTime(endTime - startTime);
+                    mServedTime = mServedTime + (endTime - startTime);
+
+                    return response;
+                }
             }
 
+            // (3) look into database to check the certificate's status
             if (statsSub != null) {
-                statsSub.startTiming("signing");
+                statsSub.startTiming("lookup");
             }
 
-            long signStartTime = new Date().getTime();
+            long lookupStartTime = new Date().getTime();
 
-            BasicOCSPResponse basicRes = sign(rd);
+            Request[] reqs = new Request[tbsReq.getRequestCount()];
+            for (int i = 0; i < reqs.length; i++) {
+                reqs[i] = tbsReq.getRequestAt(i);
+            }
 
-            long signEndTime = new Date().getTime();
-            incSignTime(signEndTime - signStartTime);
+            SingleResponse res[] = processRequests(reqs);
+
+            long lookupEndTime = new Date().getTime();
+            incLookupTime(lookupEndTime - lookupStartTime);
 
             if (statsSub != null) {
-                statsSub.endTiming("signing");
+                statsSub.endTiming("lookup");
             }
 
-            response = new OCSPResponse(
-                    OCSPResponseStatus.SUCCESSFUL,
-                    new ResponseBytes(ResponseBytes.OCSP_BASIC,
-                            new OCTET_STRING(ASN1Util.encode(basicRes))));
+            response = createResponse(res, nonce);
+
+            if (cacheable) {
+                mResponseCache.put(tbsReq.getRequestAt(0), res[0], response, cacheGeneration);
+            }
 
         } catch (EBaseException e) {
             logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
@@ -482,6 +526,143 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         return response;
     }
 
+    /**
+     * This method looks up the status of a single certificate
+     * in the default OCSP store.
+     *
+     * @param req request for a single certificate
+     * @return SingleResponse the certificate status
+     */
+    public SingleResponse processRequest(Request req) throws Exception {
+        return mDefStore.processRequest(req);
+    }
+
+    /**
+     * This method looks up the status of multiple certificates
+     * in the default OCSP store. If lookup threads are configured,
+     * a request with more certificates than the batch size is split
+     * into batches which are looked up in parallel.
+     *
+     * @param reqs requests for the certificates
+     * @return SingleResponse the certificate statuses in the same order
+     */
+    public SingleResponse[] processRequests(Request[] reqs) throws Exception {
+
+        if (!(mDefStore instanceof IDefStore)) {
+            SingleResponse[] res = new SingleResponse[reqs.length];
+            for (int i = 0; i < reqs.length; i++) {
+                logger.info("OCSPAuthority: Processing request #" + i);
+                res[i] = mDefStore.processRequest(reqs[i]);
+            }
+            return res;
+        }
+
+        IDefStore defStore = (IDefStore) mDefStore;
+
+        if (mLookupExecutor == null || reqs.length <= mLookupBatchSize) {
+            return defStore.processRequests(reqs);
+        }
+
+        logger.info("OCSPAuthority: Processing " + reqs.length + " requests in batches of " + mLookupBatchSize);
+
+        // the first batch is processed in the current thread
+        List<Future<SingleResponse[]>> futures = new ArrayList<>();
+
+        for (int from = mLookupBatchSize; from < reqs.length; from += mLookupBatchSize) {
+            Request[] batch = Arrays.copyOfRange(reqs, from, Math.min(from + mLookupBatchSize, reqs.length));
+            futures.add(mLookupExecutor.submit(() -> defStore.processRequests(batch)));
+        }
+
+        SingleResponse[] res = new SingleResponse[reqs.length];
+
+        try {
+            SingleResponse[] batchRes = defStore.processRequests(Arrays.copyOfRange(reqs, 0, mLookupBatchSize));
+            System.arraycopy(batchRes, 0, res, 0, batchRes.length);
+
+            int pos = batchRes.length;
+
+            for (Future<SingleResponse[]> future : futures) {
+                batchRes = future.get();
+                System.arraycopy(batchRes, 0, res, pos, batchRes.length);
+                pos += batchRes.length;
+            }
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+
+        } finally {
+            for (Future<SingleResponse[]> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * This method retrieves the responder ID configured
+     * in the default OCSP store.
+     *
+     * @return ResponderID an instance of a responder ID
+     */
+    public ResponderID getResponderID() {
+        if (mDefStore.isByName()) {
+            return getResponderIDByName();
+        }
+        return getResponderIDByHash();
+    }
+
+    /**
+     * This method creates a signed OCSP response. It is used for
+     * the OCSP requests and to refresh the pre-signed responses.
+     *
+     * @param res certificate statuses
+     * @param nonce nonce extension, can be null
+     * @return OCSPResponse signed OCSP response
+     */
+    public OCSPResponse createResponse(SingleResponse res[], Extension nonce[]) throws Exception {
+
+        OCSPEngine engine = OCSPEngine.getInstance();
+        StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
+
+        if (statsSub != null) {
+            statsSub.startTiming("build_response");
+        }
+
+        ResponderID rid = getResponderID();
+
+        ResponseData rd = new ResponseData(rid,
+                new GeneralizedTime(new Date()), res, nonce);
+
+        if (statsSub != null) {
+            statsSub.endTiming("build_response");
+        }
+
+        if (statsSub != null) {
+            statsSub.startTiming("signing");
+        }
+
+        long signStartTime = new Date().getTime();
+
+        BasicOCSPResponse basicRes = sign(rd);
+
+        long signEndTime = new Date().getTime();
+        incSignTime(signEndTime - signStartTime);
+
+        if (statsSub != null) {
+            statsSub.endTiming("signing");
+        }
+
+        return new OCSPResponse(
+                OCSPResponseStatus.SUCCESSFUL,
+                new ResponseBytes(ResponseBytes.OCSP_BASIC,
+                        new OCTET_STRING(ASN1Util.encode(basicRes))));
+    }
+
     /**
      * Stops this system. The owner may call shutdown
      * anytime after initialization.
@@ -489,6 +670,22 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public void shutdown() {
+        if (mResponseCache != null) {
+            mResponseCache.stop();
+        }
+
+        if (mLookupExecutor != null) {
+            mLookupExecutor.shutdownNow();
+            mLookupExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the pre-signed response cache, or null if
+     * the cache is disabled.
+     */
+    public OCSPResponseCache getResponseCache() {
+        return mResponseCache;
     }
 
     /**
@@ -733,6 +930,16 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         return mTotalData;
     }
 
+    @Override
+    public long getOCSPResponseCacheHits() {
+        return mResponseCache == null ? 0 : mResponseCache.getHits();
+    }
+
+    @Override
+    public long getOCSPResponseCacheMisses() {
+        return mResponseCache == null ? 0 : mResponseCache.getMisses();
+    }
+
     public void incTotalTime(long inc) {
         mTotalTime += inc;
     }
@@ -0,0 +1,335 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ocsp;
+
+import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.GeneralizedTime;
+
+import com.netscape.certsrv.ocsp.CRLUpdateListener;
+import com.netscape.cmsutil.ocsp.CertID;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.Request;
+import com.netscape.cmsutil.ocsp.SingleResponse;
+
+/**
+ * This class caches signed OCSP responses for requests that contain
+ * a single certificate and no nonce, so these requests can be answered
+ * without a private key operation.
+ *
+ * A cached response is valid until the next update of the CRL or until
+ * the configured TTL expires, whichever comes first. When the OCSP store
+ * installs a new CRL, all cached responses become stale and are re-signed
+ * in bulk by a background thread.
+ *
+ * The responses are also indexed by expiration time, so when the cache
+ * is full the expired responses can be evicted without scanning the
+ * whole cache.
+ */
+public class OCSPResponseCache implements CRLUpdateListener {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPResponseCache.class);
+
+    private OCSPAuthority authority;
+    private long ttl;
+    private int maxSize;
+
+    private Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    // cached responses ordered by expiration time
+    private NavigableSet<Entry> expirations = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong((Entry e) -> e.expiration).thenComparingLong(e -> e.sequence));
+
+    private AtomicLong sequence = new AtomicLong();
+
+    // incremented on each CRL update, entries created
+    // with an older generation are no longer valid
+    private AtomicLong generation = new AtomicLong();
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    private ExecutorService executorService;
+
+    /**
+     * @param authority the OCSP authority used to re-sign responses
+     * @param ttl maximum lifetime of a cached response in seconds
+     * @param maxSize maximum number of cached responses
+     */
+    public OCSPResponseCache(OCSPAuthority authority, int ttl, int maxSize) {
+        this.authority = authority;
+        this.ttl = ttl * 1000L;
+        this.maxSize = maxSize;
+    }
+
+    public void start() {
+        executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "OCSPResponseCache");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void stop() {
+        if (executorService != null) executorService.shutdownNow();
+        entries.clear();
+        expirations.clear();
+    }
+
+    /**
+     * Returns the current generation. The generation has to be obtained
+     * before the certificate status is looked up, so a response created
+     * from an old CRL will not be cached as a current response.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns a cached response for the certificate, or null if there
+     * is no valid cached response.
+     */
+    public OCSPResponse get(CertID certID) throws Exception {
+
+        Key key = new Key(certID);
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+
+        if (entry == null || !entry.isValid(generation.get(), now)) {
+            misses.incrementAndGet();
+
+            if (entry != null && entry.isExpired(now)) {
+                remove(entry);
+            }
+
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.response;
+    }
+
+    /**
+     * Stores a signed response for the certificate.
+     *
+     * @param generation the generation at the time the status was looked up
+     */
+    public void put(Request request, SingleResponse singleResponse, OCSPResponse response, long generation)
+            throws Exception {
+
+        Key key = new Key(request.getCertID());
+
+        long now = System.currentTimeMillis();
+
+        if (entries.size() >= maxSize && !entries.containsKey(key)) {
+
+            // remove expired responses, stale responses are replaced by refresh()
+            removeExpired(now);
+
+            if (entries.size() >= maxSize) {
+                logger.debug("OCSPResponseCache: Cache is full");
+                return;
+            }
+        }
+
+        long expiration = now + ttl;
+
+        GeneralizedTime nextUpdate = singleResponse.getNextUpdate();
+        if (nextUpdate != null) {
+            expiration = Math.min(expiration, nextUpdate.toDate().getTime());
+        }
+
+        Entry newEntry = new Entry(key, request, response, generation, expiration, sequence.incrementAndGet());
+        Entry[] replaced = new Entry[1];
+
+        // do not replace a response created from a newer CRL
+        Entry entry = entries.merge(key, newEntry, (oldEntry, e) -> {
+            if (e.generation < oldEntry.generation) {
+                return oldEntry;
+            }
+            replaced[0] = oldEntry;
+            return e;
+        });
+
+        if (entry != newEntry) {
+            return;
+        }
+
+        expirations.add(newEntry);
+
+        if (replaced[0] != null) {
+            expirations.remove(replaced[0]);
+        }
+    }
+
+    /**
+     * Removes responses that expired before the specified time,
+     * starting with the earliest expiration.
+     */
+    void removeExpired(long now) {
+
+        while (!expirations.isEmpty()) {
+
+            Entry entry;
+            try {
+                entry = expirations.first();
+            } catch (NoSuchElementException e) {
+                // removed by another thread
+                return;
+            }
+
+            if (!entry.isExpired(now)) {
+                return;
+            }
+
+            remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        expirations.remove(entry);
+        entries.remove(entry.key, entry);
+    }
+
+    /**
+     * Invalidates all cached responses and schedules
+     * the responses to be re-signed in the background.
+     */
+    @Override
+    public void crlUpdated(X509CRL crl) {
+
+        long current = generation.incrementAndGet();
+        logger.info("OCSPResponseCache: CRL updated, refreshing " + entries.size() + " response(s)");
+
+        if (executorService == null) {
+            return;
+        }
+
+        executorService.submit(() -> refresh(current));
+    }
+
+    /**
+     * Re-signs all cached responses with the current CRL.
+     */
+    public void refresh(long current) {
+
+        int count = 0;
+
+        for (Entry entry : entries.values()) {
+
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            // another CRL update has been received, it will be refreshed again
+            if (generation.get() != current) {
+                logger.info("OCSPResponseCache: Refresh superseded by a newer CRL");
+                return;
+            }
+
+            if (entry.generation >= current) {
+                continue;
+            }
+
+            try {
+                SingleResponse singleResponse = authority.processRequest(entry.request);
+                OCSPResponse response = authority.createResponse(
+                        new SingleResponse[] { singleResponse }, null);
+
+                put(entry.request, singleResponse, response, current);
+                count++;
+
+            } catch (Exception ex) {
+                logger.warn("OCSPResponseCache: Unable to refresh response: " + ex.getMessage(), ex);
+                remove(entry);
+            }
+        }
+
+        logger.info("OCSPResponseCache: Refreshed " + count + " response(s)");
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    static class Entry {
+
+        Key key;
+        Request request;
+        OCSPResponse response;
+        long generation;
+        long expiration;
+
+        // orders entries with the same expiration
+        long sequence;
+
+        Entry(Key key, Request request, OCSPResponse response, long generation, long expiration, long sequence) {
+            this.key = key;
+            this.request = request;
+            this.response = response;
+            this.generation = generation;
+            this.expiration = expiration;
+            this.sequence = sequence;
+        }
+
+        boolean isValid(long currentGeneration, long now) {
+            return generation == currentGeneration && !isExpired(now);
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiration;
+        }
+    }
+
+    static class Key {
+
+        private byte[] data;
+        private int hashCode;
+
+        Key(CertID certID) throws Exception {
+            data = ASN1Util.encode(certID);
+            hashCode = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && Arrays.equals(data, other.data);
+        }
+    }
+}
@@ -29,4 +29,18 @@ public class OCSPConfig extends ConfigStore {
     public SigningUnitConfig getSigningUnitConfig() {
         return getSubStore("signing", SigningUnitConfig.class);
     }
+
+    /**
+     * Returns ocsp.responseCache.* parameters.
+     */
+    public OCSPResponseCacheConfig getResponseCacheConfig() {
+        return getSubStore("responseCache", OCSPResponseCacheConfig.class);
+    }
+
+    /**
+     * Returns ocsp.lookup.* parameters.
+     */
+    public OCSPLookupConfig getLookupConfig() {
+        return getSubStore("lookup", OCSPLookupConfig.class);
+    }
 }
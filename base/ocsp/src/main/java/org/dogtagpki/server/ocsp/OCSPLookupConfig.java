@@ -0,0 +1,46 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ocsp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides ocsp.lookup.* parameters.
+ */
+public class OCSPLookupConfig extends ConfigStore {
+
+    public static final String THREADS = "threads";
+    public static final String BATCH_SIZE = "batchSize";
+
+    public OCSPLookupConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public OCSPLookupConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns the number of threads used to look up the certificates
+     * of a large OCSP request in parallel. If the value is less than 2,
+     * the certificates are looked up in the request thread.
+     */
+    public int getThreads() throws EBaseException {
+        return getInteger(THREADS, 0);
+    }
+
+    /**
+     * Returns the number of certificates looked up by each thread.
+     * Requests with more certificates are split into batches of
+     * this size.
+     */
+    public int getBatchSize() throws EBaseException {
+        return getInteger(BATCH_SIZE, 50);
+    }
+}
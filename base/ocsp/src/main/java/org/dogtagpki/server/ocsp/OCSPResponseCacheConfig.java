@@ -0,0 +1,47 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ocsp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides ocsp.responseCache.* parameters.
+ */
+public class OCSPResponseCacheConfig extends ConfigStore {
+
+    public static final String ENABLE = "enable";
+    public static final String TTL = "ttl";
+    public static final String MAX_SIZE = "maxSize";
+
+    public OCSPResponseCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public OCSPResponseCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    public boolean getEnable() throws EBaseException {
+        return getBoolean(ENABLE, false);
+    }
+
+    /**
+     * Returns the maximum lifetime of a cached response in seconds.
+     */
+    public int getTTL() throws EBaseException {
+        return getInteger(TTL, 3600);
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     */
+    public int getMaxSize() throws EBaseException {
+        return getInteger(MAX_SIZE, 10000);
+    }
+}
@@ -0,0 +1,163 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
+import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertInfo;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+import com.netscape.cmsutil.ocsp.CertID;
+
+public class IssuerIndexTest {
+
+    static final String SHA1 = "1.3.14.3.2.26";
+    static final String SHA256 = "2.16.840.1.101.3.4.2.1";
+
+    IssuerIndex<String> index = new IssuerIndex<>();
+
+    /**
+     * Creates an unsigned CA certificate. The index only uses
+     * the subject name and the public key.
+     */
+    X509CertImpl createCACert(String subjectDN) throws Exception {
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        byte[] publicKey = generator.generateKeyPair().getPublic().getEncoded();
+
+        X509CertInfo info = new X509CertInfo();
+        info.set(X509CertInfo.SUBJECT, new CertificateSubjectName(new X500Name(subjectDN)));
+        info.set(X509CertInfo.KEY, new CertificateX509Key(X509Key.parse(new DerValue(publicKey))));
+
+        return new X509CertImpl(info);
+    }
+
+    /**
+     * Creates a CertID for a certificate issued by the CA the same
+     * way as an OCSP client.
+     */
+    CertID createCertID(X509CertImpl caCert, String oid, String digestName, long serialNumber)
+            throws Exception {
+
+        MessageDigest md = MessageDigest.getInstance(digestName);
+        byte[] nameHash = md.digest(caCert.getSubjectName().getEncoded());
+        byte[] keyHash = md.digest(((X509Key) caCert.getPublicKey()).getKey());
+
+        return new CertID(
+                new AlgorithmIdentifier(new OBJECT_IDENTIFIER(oid)),
+                new OCTET_STRING(nameHash),
+                new OCTET_STRING(keyHash),
+                new INTEGER(serialNumber));
+    }
+
+    @Test
+    public void testEmptyIndex() throws Exception {
+
+        X509CertImpl caCert = createCACert("CN=CA Signing Certificate,O=EXAMPLE");
+
+        assertTrue(index.isEmpty());
+        assertNull(index.get(createCertID(caCert, SHA1, "SHA-1", 1)));
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+
+        X509CertImpl caCert1 = createCACert("CN=CA 1,O=EXAMPLE");
+        X509CertImpl caCert2 = createCACert("CN=CA 2,O=EXAMPLE");
+        X509CertImpl unknownCert = createCACert("CN=CA 3,O=EXAMPLE");
+
+        index.put(caCert1, "ca1");
+        index.put(caCert2, "ca2");
+
+        assertEquals("ca1", index.get(createCertID(caCert1, SHA1, "SHA-1", 1)));
+        assertEquals("ca2", index.get(createCertID(caCert2, SHA1, "SHA-1", 1)));
+
+        // any supported hash algorithm
+        assertEquals("ca1", index.get(createCertID(caCert1, SHA256, "SHA-256", 2)));
+        assertEquals("ca2", index.get(createCertID(caCert2, SHA256, "SHA-256", 2)));
+
+        assertNull(index.get(createCertID(unknownCert, SHA1, "SHA-1", 1)));
+    }
+
+    @Test
+    public void testWrongNameHash() throws Exception {
+
+        X509CertImpl caCert = createCACert("CN=CA Signing Certificate,O=EXAMPLE");
+        index.put(caCert, "ca");
+
+        CertID cid = createCertID(caCert, SHA1, "SHA-1", 1);
+
+        // some clients do not compute the issuer name hash correctly
+        CertID wrongName = new CertID(
+                cid.getHashAlgorithm(),
+                new OCTET_STRING(new byte[20]),
+                cid.getIssuerKeyHash(),
+                cid.getSerialNumber());
+
+        assertEquals("ca", index.get(wrongName));
+
+        // the key hash must match
+        CertID wrongKey = new CertID(
+                cid.getHashAlgorithm(),
+                cid.getIssuerNameHash(),
+                new OCTET_STRING(new byte[20]),
+                cid.getSerialNumber());
+
+        assertNull(index.get(wrongKey));
+    }
+
+    @Test
+    public void testUnsupportedAlgorithm() throws Exception {
+
+        X509CertImpl caCert = createCACert("CN=CA Signing Certificate,O=EXAMPLE");
+        index.put(caCert, "ca");
+
+        CertID cid = createCertID(caCert, SHA1, "SHA-1", 1);
+
+        CertID unknownAlgorithm = new CertID(
+                new AlgorithmIdentifier(new OBJECT_IDENTIFIER("1.2.3.4")),
+                cid.getIssuerNameHash(),
+                cid.getIssuerKeyHash(),
+                cid.getSerialNumber());
+
+        assertNull(index.get(unknownAlgorithm));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+
+        X509CertImpl caCert1 = createCACert("CN=CA 1,O=EXAMPLE");
+        X509CertImpl caCert2 = createCACert("CN=CA 2,O=EXAMPLE");
+
+        index.put(caCert1, "ca1");
+        index.put(caCert2, "ca2");
+
+        index.remove("ca1");
+
+        assertNull(index.get(createCertID(caCert1, SHA1, "SHA-1", 1)));
+        assertNull(index.get(createCertID(caCert1, SHA256, "SHA-256", 1)));
+        assertEquals("ca2", index.get(createCertID(caCert2, SHA1, "SHA-1", 1)));
+
+        index.clear();
+        assertTrue(index.isEmpty());
+    }
+}
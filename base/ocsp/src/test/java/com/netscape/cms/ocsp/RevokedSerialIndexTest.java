@@ -0,0 +1,97 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class RevokedSerialIndexTest {
+
+    private static RevokedCertificate createEntry(BigInteger serialNumber, long time, RevocationReason reason)
+            throws Exception {
+
+        CRLExtensions exts = null;
+
+        if (reason != null) {
+            exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        }
+
+        return new RevokedCertImpl(serialNumber, new Date(time), exts);
+    }
+
+    @Test
+    public void testEmptyIndex() throws Exception {
+
+        RevokedSerialIndex index = RevokedSerialIndex.create(null);
+
+        assertEquals(0, index.size());
+        assertEquals(RevokedSerialIndex.NOT_FOUND, index.indexOf(BigInteger.ONE));
+    }
+
+    @Test
+    public void testSmallSerialNumbers() throws Exception {
+
+        List<RevokedCertificate> entries = new ArrayList<>();
+        entries.add(createEntry(BigInteger.valueOf(30), 3000, null));
+        entries.add(createEntry(BigInteger.valueOf(10), 1000, RevocationReason.KEY_COMPROMISE));
+        entries.add(createEntry(BigInteger.valueOf(20), 2000, null));
+
+        RevokedSerialIndex index = RevokedSerialIndex.create(entries);
+
+        assertEquals(3, index.size());
+
+        int i = index.indexOf(BigInteger.valueOf(10));
+        assertNotEquals(RevokedSerialIndex.NOT_FOUND, i);
+        assertEquals(1000, index.getRevocationTime(i));
+        assertEquals(RevocationReason.KEY_COMPROMISE.getCode(), index.getReason(i));
+
+        i = index.indexOf(BigInteger.valueOf(30));
+        assertNotEquals(RevokedSerialIndex.NOT_FOUND, i);
+        assertEquals(3000, index.getRevocationTime(i));
+        assertEquals(RevokedSerialIndex.NO_REASON, index.getReason(i));
+
+        assertEquals(RevokedSerialIndex.NOT_FOUND, index.indexOf(BigInteger.valueOf(15)));
+        assertEquals(RevokedSerialIndex.NOT_FOUND, index.indexOf(BigInteger.ONE.shiftLeft(100)));
+    }
+
+    @Test
+    public void testLargeSerialNumbers() throws Exception {
+
+        BigInteger small = BigInteger.valueOf(0x1234);
+        BigInteger large1 = new BigInteger("7fffffffffffffffffffffffffffffff", 16);
+        BigInteger large2 = new BigInteger("ff00000000000000000000000000000001", 16);
+
+        List<RevokedCertificate> entries = new ArrayList<>();
+        entries.add(createEntry(large2, 3000, null));
+        entries.add(createEntry(small, 1000, null));
+        entries.add(createEntry(large1, 2000, RevocationReason.SUPERSEDED));
+
+        RevokedSerialIndex index = RevokedSerialIndex.create(entries);
+
+        assertEquals(3, index.size());
+        assertEquals(1000, index.getRevocationTime(index.indexOf(small)));
+        assertEquals(2000, index.getRevocationTime(index.indexOf(large1)));
+        assertEquals(3000, index.getRevocationTime(index.indexOf(large2)));
+        assertEquals(RevocationReason.SUPERSEDED.getCode(), index.getReason(index.indexOf(large1)));
+
+        assertEquals(RevokedSerialIndex.NOT_FOUND, index.indexOf(BigInteger.valueOf(0x1235)));
+        assertEquals(RevokedSerialIndex.NOT_FOUND, index.indexOf(large1.add(BigInteger.ONE)));
+        assertEquals(RevokedSerialIndex.NOT_FOUND, index.indexOf(BigInteger.ONE.shiftLeft(200)));
+    }
+}
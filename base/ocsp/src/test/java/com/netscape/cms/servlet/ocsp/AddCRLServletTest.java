@@ -0,0 +1,116 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.servlet.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.Test;
+
+public class AddCRLServletTest {
+
+    /**
+     * Creates a request with application/pkix-crl content.
+     *
+     * @param content request body
+     * @param chunked true to send the body without Content-Length
+     */
+    HttpServletRequest createRequest(byte[] content, boolean chunked) {
+
+        ByteArrayInputStream bis = new ByteArrayInputStream(content);
+
+        ServletInputStream in = new ServletInputStream() {
+
+            @Override
+            public int read() throws IOException {
+                return bis.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return bis.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+            }
+        };
+
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getContentType":
+                        return "application/pkix-crl";
+                    case "getContentLength":
+                        return chunked ? -1 : content.length;
+                    case "getContentLengthLong":
+                        return chunked ? -1L : (long) content.length;
+                    case "getInputStream":
+                        return in;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    @Test
+    public void testReadCRL() throws Exception {
+
+        AddCRLServlet servlet = new AddCRLServlet();
+        byte[] content = createContent(1000);
+
+        assertArrayEquals(content, servlet.readCRL(createRequest(content, false)));
+        assertArrayEquals(content, servlet.readCRL(createRequest(content, true)));
+    }
+
+    @Test
+    public void testReadEmptyCRL() throws Exception {
+
+        AddCRLServlet servlet = new AddCRLServlet();
+
+        assertNull(servlet.readCRL(createRequest(new byte[0], false)));
+        assertNull(servlet.readCRL(createRequest(new byte[0], true)));
+    }
+
+    @Test
+    public void testReadLargeCRL() throws Exception {
+
+        AddCRLServlet servlet = new AddCRLServlet();
+        servlet.setMaxCRLSize(1000);
+
+        byte[] content = createContent(1000);
+        assertArrayEquals(content, servlet.readCRL(createRequest(content, false)));
+        assertArrayEquals(content, servlet.readCRL(createRequest(content, true)));
+
+        byte[] largeContent = createContent(1001);
+        assertThrows(IOException.class, () -> servlet.readCRL(createRequest(largeContent, false)));
+        assertThrows(IOException.class, () -> servlet.readCRL(createRequest(largeContent, true)));
+    }
+}
@@ -0,0 +1,164 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+import com.netscape.cmsutil.ocsp.CertID;
+import com.netscape.cmsutil.ocsp.GoodInfo;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.OCSPResponseStatus;
+import com.netscape.cmsutil.ocsp.Request;
+import com.netscape.cmsutil.ocsp.ResponseBytes;
+import com.netscape.cmsutil.ocsp.SingleResponse;
+
+public class OCSPResponseCacheTest {
+
+    // SHA-1
+    AlgorithmIdentifier hashAlgorithm = new AlgorithmIdentifier(new OBJECT_IDENTIFIER("1.3.14.3.2.26"));
+
+    // the cache is not started, so responses are not re-signed on CRL updates
+    OCSPResponseCache cache = new OCSPResponseCache(null, 3600, 2);
+
+    CertID createCertID(long serialNumber) {
+        return new CertID(
+                hashAlgorithm,
+                new OCTET_STRING(new byte[20]),
+                new OCTET_STRING(new byte[20]),
+                new INTEGER(serialNumber));
+    }
+
+    /**
+     * Caches a response for the certificate which expires
+     * after the specified time in milliseconds.
+     */
+    OCSPResponse put(CertID certID, long expiration, long generation) throws Exception {
+
+        Request request = new Request(certID, null);
+
+        Date now = new Date();
+        SingleResponse singleResponse = new SingleResponse(
+                certID,
+                new GoodInfo(),
+                new GeneralizedTime(now),
+                new GeneralizedTime(new Date(now.getTime() + expiration)));
+
+        // the content of the response is not used by the cache
+        OCSPResponse response = new OCSPResponse(
+                OCSPResponseStatus.SUCCESSFUL,
+                new ResponseBytes(ResponseBytes.OCSP_BASIC, new OCTET_STRING(new byte[0])));
+
+        cache.put(request, singleResponse, response, generation);
+
+        return response;
+    }
+
+    @Test
+    public void testHit() throws Exception {
+
+        CertID certID = createCertID(1);
+        OCSPResponse response = put(certID, 60000, cache.getGeneration());
+
+        // a different object with the same content is the same key
+        assertSame(response, cache.get(createCertID(1)));
+        assertEquals(1, cache.getHits());
+
+        assertNull(cache.get(createCertID(2)));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+
+        CertID certID = createCertID(1);
+        OCSPResponse response = put(certID, 100, cache.getGeneration());
+
+        assertSame(response, cache.get(certID));
+
+        Thread.sleep(200);
+
+        // the expired response is not returned and is removed
+        assertNull(cache.get(certID));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCRLUpdate() throws Exception {
+
+        CertID certID = createCertID(1);
+        long generation = cache.getGeneration();
+        put(certID, 60000, generation);
+
+        cache.crlUpdated(null);
+
+        // responses created from the previous CRL are no longer valid
+        assertNull(cache.get(certID));
+
+        // including responses looked up before the update but stored after it
+        put(certID, 60000, generation);
+        assertNull(cache.get(certID));
+
+        OCSPResponse response = put(certID, 60000, cache.getGeneration());
+        assertSame(response, cache.get(certID));
+
+        // a response from an older CRL does not replace a newer one
+        put(certID, 60000, generation);
+        assertSame(response, cache.get(certID));
+    }
+
+    @Test
+    public void testFullCache() throws Exception {
+
+        long generation = cache.getGeneration();
+
+        put(createCertID(1), 100, generation);
+        OCSPResponse response2 = put(createCertID(2), 60000, generation);
+
+        // no expired response to evict
+        put(createCertID(3), 60000, generation);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(createCertID(3)));
+
+        Thread.sleep(200);
+
+        // the expired response is evicted
+        OCSPResponse response3 = put(createCertID(3), 60000, generation);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(createCertID(1)));
+        assertSame(response2, cache.get(createCertID(2)));
+        assertSame(response3, cache.get(createCertID(3)));
+
+        // an existing response can be replaced when the cache is full
+        OCSPResponse response = put(createCertID(2), 60000, generation);
+        assertSame(response, cache.get(createCertID(2)));
+    }
+
+    @Test
+    public void testRemoveExpired() throws Exception {
+
+        long generation = cache.getGeneration();
+
+        put(createCertID(1), 100, generation);
+        put(createCertID(2), 60000, generation);
+
+        cache.removeExpired(System.currentTimeMillis() + 1000);
+        assertEquals(1, cache.size());
+
+        cache.removeExpired(System.currentTimeMillis() + 120000);
+        assertEquals(0, cache.size());
+    }
+}
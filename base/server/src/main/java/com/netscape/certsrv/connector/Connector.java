@@ -40,6 +40,7 @@ import com.netscape.cmsutil.http.HttpResponse;
  * ca.connector.KRA.id="kra"
  * ca.connector.KRA.minHttpConns=1                   #Min connection pool connections.
  * ca.connector.KRA.maxHttpConns=10                  #Max connection pool connections.
+ * ca.connector.KRA.keepAlive=true                   #Reuse connections between requests.
  * </pre>
  */
 public class Connector {
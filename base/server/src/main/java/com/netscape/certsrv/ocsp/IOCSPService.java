@@ -74,4 +74,24 @@ public interface IOCSPService {
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalData();
+
+    /**
+     * Returns the number of OCSP requests answered
+     * from the pre-signed response cache.
+     *
+     * @return number of cache hits
+     */
+    public default long getOCSPResponseCacheHits() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of cacheable OCSP requests that
+     * could not be answered from the pre-signed response cache.
+     *
+     * @return number of cache misses
+     */
+    public default long getOCSPResponseCacheMisses() {
+        return 0;
+    }
 }
@@ -96,4 +96,12 @@ public abstract class Publisher {
      */
     public abstract void unpublish(LDAPConnection conn, String dn, Object object)
             throws ELdapException;
+
+    /**
+     * Releases the resources held by the publisher, for example
+     * connections or threads, when it is removed or replaced.
+     * Publishing may still be in progress when this is called.
+     */
+    public void shutdown() {
+    }
 }
@@ -93,6 +93,14 @@ public class SigningUnitConfig extends ConfigStore {
         return getBoolean("testSignatureFailure", false);
     }
 
+    /**
+     * Returns the maximum number of idle signature contexts
+     * kept for each algorithm (0 = no pooling).
+     */
+    public int getSignerPoolSize() throws EBaseException {
+        return getInteger("signerPoolSize", 16);
+    }
+
     public String getDefaultSigningAlgorithm() throws EBaseException {
         return getString("defaultSigningAlgorithm");
     }
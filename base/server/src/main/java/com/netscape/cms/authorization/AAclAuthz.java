@@ -17,14 +17,19 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.authorization;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dogtagpki.server.authentication.AuthToken;
 import org.dogtagpki.server.authorization.AuthorizationConfig;
@@ -79,8 +84,12 @@ public abstract class AAclAuthz extends AuthzManager {
 
     protected static final String ACLS_ATTR = "aclResources";
 
-    private Map<String, ACL> mACLs = new HashMap<>();
-    private Hashtable<String, AccessEvaluator> mEvaluators = new Hashtable<>();
+    private Map<String, ACL> mACLs = new ConcurrentHashMap<>();
+    private Map<String, AccessEvaluator> mEvaluators = new ConcurrentHashMap<>();
+
+    // compiled ACL entries used by the permission checks; the map is
+    // replaced (never modified) on update so it can be read without locking
+    private volatile Map<String, CompiledACLEntry[]> compiledACLs = Collections.emptyMap();
 
     /* Vector of extendedPluginInfo strings */
     protected static Vector<String> mExtendedPluginInfo = null;
@@ -177,15 +186,38 @@ public abstract class AAclAuthz extends AuthzManager {
         addACLs(acl);
     }
 
-    public void addACLs(ACL acl) throws EACLsException {
+    public synchronized void addACLs(ACL acl) throws EACLsException {
 
         ACL curACL = mACLs.get(acl.getName());
 
         if (curACL == null) {
+            curACL = acl;
             mACLs.put(acl.getName(), acl);
         } else {
             curACL.merge(acl);
         }
+
+        publishACL(curACL);
+    }
+
+    /**
+     * Compiles the ACL entries and publishes them to the permission
+     * checks by replacing the map of compiled ACLs. This method must
+     * be called while holding the lock on this object.
+     */
+    protected void publishACL(ACL acl) {
+
+        List<CompiledACLEntry> entries = new ArrayList<>();
+        Enumeration<ACLEntry> e = acl.entries();
+
+        while (e.hasMoreElements()) {
+            entries.add(new CompiledACLEntry(e.nextElement()));
+        }
+
+        Map<String, CompiledACLEntry[]> map = new HashMap<>(compiledACLs);
+        map.put(acl.getName(), entries.toArray(new CompiledACLEntry[entries.size()]));
+
+        compiledACLs = Collections.unmodifiableMap(map);
     }
 
     @Override
@@ -233,6 +265,12 @@ public abstract class AAclAuthz extends AuthzManager {
         logger.info("AAclAuthz: " + type + " evaluator registered");
     }
 
+    @Override
+    public void unregisterEvaluator(String type) {
+        mEvaluators.remove(type);
+        logger.info("AAclAuthz: " + type + " evaluator unregistered");
+    }
+
     /*******************************************************
      * with session context
      *******************************************************/
@@ -261,7 +299,7 @@ public abstract class AAclAuthz extends AuthzManager {
      * @param perm permission requested
      * @exception EACLsException access permission denied
      */
-    protected synchronized void checkPermission(String name, String perm)
+    protected void checkPermission(String name, String perm)
             throws EACLsException {
 
         String resource = "";
@@ -318,10 +356,10 @@ public abstract class AAclAuthz extends AuthzManager {
      */
     protected boolean checkACLs(String name, String perm) throws EACLsException {
 
-        ACL acl = mACLs.get(name);
+        CompiledACLEntry[] entries = compiledACLs.get(name);
 
         // no such resource, pass it down
-        if (acl == null) {
+        if (entries == null) {
             String infoMsg = "checkACLs(): no acl for" +
                     name + "...pass down to next node";
 
@@ -330,9 +368,7 @@ public abstract class AAclAuthz extends AuthzManager {
             return false;
         }
 
-        Enumeration<ACLEntry> e = acl.entries();
-
-        if (e == null || !e.hasMoreElements()) {
+        if (entries.length == 0) {
             // no acis for node, pass down to next node
             String infoMsg = " AAclAuthz.checkACLs(): no acis for " +
                     name + " acl entry...pass down to next node";
@@ -345,109 +381,30 @@ public abstract class AAclAuthz extends AuthzManager {
         /**
          * must pass all ACLEntry
          */
-        while (e.hasMoreElements()) {
-            ACLEntry entry = e.nextElement();
+        for (CompiledACLEntry entry : entries) {
 
             // if permission not pertinent, move on to next ACLEntry
-            if (entry.containPermission(perm)) {
-                if (evaluateExpressions(entry.getAttributeExpressions())) {
-                    if (!entry.checkPermission(perm)) {
-                        logger.error("AAclAuthz: checkACLs(): permission denied");
-                        throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
-                    }
-                } else if (entry.getType() == ACLEntry.Type.ALLOW) {
-                    // didn't meet the access expression for "allow", failed
+            if (!entry.containPermission(perm)) {
+                continue;
+            }
+
+            logger.debug("AAclAuthz: evaluating expressions: " + entry.getExpression());
+
+            if (entry.getExpression().evaluate(mEvaluators)) {
+                if (entry.getType() == ACLEntry.Type.DENY) {
                     logger.error("AAclAuthz: checkACLs(): permission denied");
                     throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
                 }
+            } else if (entry.getType() == ACLEntry.Type.ALLOW) {
+                // didn't meet the access expression for "allow", failed
+                logger.error("AAclAuthz: checkACLs(): permission denied");
+                throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
             }
         }
 
         return true;
     }
 
-    /**
-     * Resolves the given expressions.
-     * expression || expression || ...
-     * example:
-     * group="Administrators" || group="Operators"
-     */
-    private boolean evaluateExpressions(String s) {
-        // XXX - just handle "||" (or) among multiple expressions for now
-        // XXX - could use some optimization ... later
-
-        logger.debug("evaluating expressions: " + s);
-
-        Vector<Object> v = new Vector<>();
-
-        while (s.length() > 0) {
-            int orIndex = s.indexOf("||");
-            int andIndex = s.indexOf("&&");
-
-            // this is the last expression
-            if (orIndex == -1 && andIndex == -1) {
-                boolean passed = evaluateExpression(s.trim());
-
-                v.addElement(Boolean.valueOf(passed));
-                break;
-
-                // || first
-            } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
-                String s1 = s.substring(0, orIndex);
-                boolean passed = evaluateExpression(s1.trim());
-
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("||");
-                s = s.substring(orIndex + 2);
-                // && first
-            } else {
-                String s1 = s.substring(0, andIndex);
-                boolean passed = evaluateExpression(s1.trim());
-
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("&&");
-                s = s.substring(andIndex + 2);
-            }
-        }
-
-        if (v.size() == 1) {
-            Boolean bool = (Boolean) v.remove(0);
-
-            return bool.booleanValue();
-        }
-        boolean left = false;
-        String op = "";
-        boolean right = false;
-
-        while (!v.isEmpty()) {
-            if (op.equals(""))
-                left = ((Boolean) v.remove(0)).booleanValue();
-            op = (String) v.remove(0);
-            right = ((Boolean) v.remove(0)).booleanValue();
-            left = evaluateExp(left, op, right);
-        }
-
-        return left;
-    }
-
-    /**
-     * Resolves the given expression.
-     */
-    private boolean evaluateExpression(String expression) {
-        // XXX - just recognize "=" for now!!
-        int i = expression.indexOf("=");
-        String type = expression.substring(0, i);
-        String value = expression.substring(i + 1);
-        AccessEvaluator evaluator = mEvaluators.get(type);
-
-        if (evaluator == null) {
-            logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
-            return false;
-        }
-
-        return evaluator.evaluate(type, "=", value);
-    }
-
     /*******************************************************
      * with authToken
      *******************************************************/
@@ -477,7 +434,7 @@ public abstract class AAclAuthz extends AuthzManager {
      * @param perm permission requested
      * @exception EACLsException access permission denied
      */
-    public synchronized void checkPermission(AuthToken authToken, String name,
+    public void checkPermission(AuthToken authToken, String name,
             String perm)
             throws EACLsException {
 
@@ -512,9 +469,9 @@ public abstract class AAclAuthz extends AuthzManager {
             AuthToken authToken,
             Iterable<String> nodes,
             String perm) throws EACLsException {
-        for (ACLEntry entry : getEntries(ACLEntry.Type.ALLOW, nodes, perm)) {
-            logger.debug("checkAllowEntries(): expressions: " + entry.getAttributeExpressions());
-            if (evaluateExpressions(authToken, entry.getAttributeExpressions())) {
+        for (CompiledACLEntry entry : getEntries(ACLEntry.Type.ALLOW, nodes, perm)) {
+            logger.debug("checkAllowEntries(): expressions: " + entry.getExpression());
+            if (entry.getExpression().evaluate(mEvaluators, authToken)) {
                 return true;
             }
         }
@@ -527,110 +484,37 @@ public abstract class AAclAuthz extends AuthzManager {
             Iterable<String> nodes,
             String perm)
             throws EACLsException {
-        for (ACLEntry entry : getEntries(ACLEntry.Type.DENY, nodes, perm)) {
-            logger.debug("checkDenyEntries(): expressions: " + entry.getAttributeExpressions());
-            if (evaluateExpressions(authToken, entry.getAttributeExpressions())) {
+        for (CompiledACLEntry entry : getEntries(ACLEntry.Type.DENY, nodes, perm)) {
+            logger.debug("checkDenyEntries(): expressions: " + entry.getExpression());
+            if (entry.getExpression().evaluate(mEvaluators, authToken)) {
                 logger.error("AAclAuthz: checkPermission(): permission denied");
                 throw new EACLsException(CMS.getUserMessage("CMS_ACL_PERMISSION_DENIED"));
             }
         }
     }
 
-    protected Iterable<ACLEntry> getEntries(
+    protected Iterable<CompiledACLEntry> getEntries(
             ACLEntry.Type entryType,
             Iterable<String> nodes,
             String operation
     ) throws EACLsException {
 
-        Vector<ACLEntry> v = new Vector<>();
+        List<CompiledACLEntry> list = new ArrayList<>();
+        Map<String, CompiledACLEntry[]> acls = compiledACLs;
 
         for (String name : nodes) {
-            ACL acl = mACLs.get(name);
-            if (acl == null)
+            CompiledACLEntry[] entries = acls.get(name);
+            if (entries == null)
                 continue;
-            Enumeration<ACLEntry> e = acl.entries();
-            while (e.hasMoreElements()) {
-                ACLEntry entry = e.nextElement();
-
+            for (CompiledACLEntry entry : entries) {
                 if (entry.getType() == entryType &&
                         entry.containPermission(operation)) {
-                    v.addElement(entry);
+                    list.add(entry);
                 }
             }
         }
 
-        return v;
-    }
-
-    /**
-     * Resolves the given expressions.
-     * expression || expression || ...
-     * example:
-     * group="Administrators" || group="Operators"
-     */
-    private boolean evaluateExpressions(AuthToken authToken, String s) {
-        // XXX - just handle "||" (or) among multiple expressions for now
-        // XXX - could use some optimization ... later
-        logger.debug("evaluating expressions: " + s);
-
-        Vector<Object> v = new Vector<>();
-
-        while (s.length() > 0) {
-            int orIndex = s.indexOf("||");
-            int andIndex = s.indexOf("&&");
-
-            // this is the last expression
-            if (orIndex == -1 && andIndex == -1) {
-                boolean passed = evaluateExpression(authToken, s.trim());
-
-                logger.debug("evaluated expression: " + s.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                break;
-
-                // || first
-            } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
-                String s1 = s.substring(0, orIndex);
-                boolean passed = evaluateExpression(authToken, s1.trim());
-
-                logger.debug("evaluated expression: " + s1.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("||");
-                s = s.substring(orIndex + 2);
-                // && first
-            } else {
-                String s1 = s.substring(0, andIndex);
-                boolean passed = evaluateExpression(authToken, s1.trim());
-
-                logger.debug("evaluated expression: " + s1.trim() + " to be " + passed);
-                v.addElement(Boolean.valueOf(passed));
-                v.addElement("&&");
-                s = s.substring(andIndex + 2);
-            }
-        }
-
-        if (v.isEmpty()) {
-            return false;
-        }
-
-        if (v.size() == 1) {
-            Boolean bool = (Boolean) v.remove(0);
-
-            return bool.booleanValue();
-        }
-
-        boolean left = false;
-        String op = "";
-        boolean right = false;
-
-        while (!v.isEmpty()) {
-            if (op.equals(""))
-                left = ((Boolean) v.remove(0)).booleanValue();
-            op = (String) v.remove(0);
-            right = ((Boolean) v.remove(0)).booleanValue();
-            left = evaluateExp(left, op, right);
-        }
-
-        return left;
+        return list;
     }
 
     public Vector<String> getNodes(String resourceID) {
@@ -653,66 +537,6 @@ public abstract class AAclAuthz extends AuthzManager {
         return v;
     }
 
-    /**
-     * Resolves the given expression.
-     */
-    private boolean evaluateExpression(AuthToken authToken, String expression) {
-        String op = getOp(expression);
-        String type = "";
-        String value = "";
-
-        if (!op.equals("")) {
-            int len = op.length();
-            int i = expression.indexOf(op);
-
-            type = expression.substring(0, i).trim();
-            value = expression.substring(i + len).trim();
-        }
-        AccessEvaluator evaluator = mEvaluators.get(type);
-
-        if (evaluator == null) {
-            logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
-            return false;
-        }
-
-        return evaluator.evaluate(authToken, type, op, value);
-    }
-
-    private String getOp(String exp) {
-        int i = exp.indexOf("!=");
-
-        if (i == -1) {
-            i = exp.indexOf("=");
-            if (i == -1) {
-                i = exp.indexOf(">");
-                if (i == -1) {
-                    i = exp.indexOf("<");
-                    if (i == -1) {
-                        logger.warn("AAclAuthz: " + CMS.getLogMessage("AUTHZ_OP_NOT_SUPPORTED", exp));
-                    } else {
-                        return "<";
-                    }
-                } else {
-                    return ">";
-                }
-            } else {
-                return "=";
-            }
-        } else {
-            return "!=";
-        }
-        return "";
-    }
-
-    private boolean evaluateExp(boolean left, String op, boolean right) {
-        if (op.equals("||")) {
-            return left || right;
-        } else if (op.equals("&&")) {
-            return left && right;
-        }
-        return false;
-    }
-
     /*******************************************************
      * end identification differentiation
      *******************************************************/
@@ -738,7 +562,10 @@ public abstract class AAclAuthz extends AuthzManager {
             throw new EACLsException(CMS.getUserMessage("CMS_ACL_PARSING_ERROR_0"));
         }
 
-        mACLs.put(ac.getName(), ac);
+        synchronized (this) {
+            mACLs.put(ac.getName(), ac);
+            publishACL(ac);
+        }
     }
 
     /**
@@ -748,17 +575,17 @@ public abstract class AAclAuthz extends AuthzManager {
      */
     @Override
     public Enumeration<AccessEvaluator> aclEvaluatorElements() {
-        return (mEvaluators.elements());
+        return Collections.enumeration(mEvaluators.values());
     }
 
     /**
      * gets the access evaluators
      *
-     * @return handle to the access evaluators table
+     * @return a copy of the access evaluators table
      */
     @Override
     public Hashtable<String, AccessEvaluator> getAccessEvaluators() {
-        return mEvaluators;
+        return new Hashtable<>(mEvaluators);
     }
 
     /**
@@ -842,6 +669,42 @@ public abstract class AAclAuthz extends AuthzManager {
     }
 
     public boolean evaluateACLs(AuthToken authToken, String exp) {
-        return evaluateExpressions(authToken, exp);
+        logger.debug("evaluating expressions: " + exp);
+        return ACLExpression.parse(exp).evaluate(mEvaluators, authToken);
+    }
+
+    /**
+     * ACL entry with the permissions and the attribute expression
+     * compiled for concurrent evaluation.
+     */
+    protected static class CompiledACLEntry {
+
+        private final ACLEntry.Type type;
+        private final Set<String> permissions = new HashSet<>();
+        private final ACLExpression expression;
+
+        public CompiledACLEntry(ACLEntry entry) {
+
+            type = entry.getType();
+
+            Enumeration<String> e = entry.permissions();
+            while (e.hasMoreElements()) {
+                permissions.add(e.nextElement());
+            }
+
+            expression = ACLExpression.parse(entry.getAttributeExpressions());
+        }
+
+        public ACLEntry.Type getType() {
+            return type;
+        }
+
+        public boolean containPermission(String permission) {
+            return permissions.contains(permission);
+        }
+
+        public ACLExpression getExpression() {
+            return expression;
+        }
     }
 }
@@ -0,0 +1,190 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.authorization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.dogtagpki.server.authentication.AuthToken;
+
+import com.netscape.certsrv.evaluators.AccessEvaluator;
+import com.netscape.cmscore.apps.CMS;
+
+/**
+ * This class represents a parsed ACL attribute expression, for example:
+ *
+ * <PRE>
+ *   group="Administrators" || user="admin" &amp;&amp; group="Operators"
+ * </PRE>
+ *
+ * The operators are evaluated from left to right without precedence.
+ * The expression is immutable so it can be parsed once when the ACL
+ * is loaded and evaluated concurrently by multiple threads.
+ */
+public class ACLExpression {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACLExpression.class);
+
+    public static final String[] OPERATORS = { "!=", "=", ">", "<" };
+
+    private final String expression;
+    private final Term[] terms;
+
+    // operators between consecutive terms: true for &&, false for ||
+    private final boolean[] and;
+
+    private ACLExpression(String expression, Term[] terms, boolean[] and) {
+        this.expression = expression;
+        this.terms = terms;
+        this.and = and;
+    }
+
+    public static ACLExpression parse(String s) {
+
+        String expression = s;
+        List<Term> terms = new ArrayList<>();
+        List<Boolean> operators = new ArrayList<>();
+
+        while (s != null && s.length() > 0) {
+            int orIndex = s.indexOf("||");
+            int andIndex = s.indexOf("&&");
+
+            // this is the last expression
+            if (orIndex == -1 && andIndex == -1) {
+                terms.add(Term.parse(s.trim()));
+                break;
+
+            // || first
+            } else if (andIndex == -1 || (orIndex != -1 && orIndex < andIndex)) {
+                terms.add(Term.parse(s.substring(0, orIndex).trim()));
+                operators.add(false);
+                s = s.substring(orIndex + 2);
+
+            // && first
+            } else {
+                terms.add(Term.parse(s.substring(0, andIndex).trim()));
+                operators.add(true);
+                s = s.substring(andIndex + 2);
+            }
+        }
+
+        boolean[] and = new boolean[operators.size()];
+        for (int i = 0; i < and.length; i++) {
+            and[i] = operators.get(i);
+        }
+
+        return new ACLExpression(expression, terms.toArray(new Term[terms.size()]), and);
+    }
+
+    /**
+     * Evaluates the expression with the given evaluators. A term is
+     * only evaluated if it can change the result.
+     *
+     * @return false if the expression is empty
+     */
+    public boolean evaluate(Map<String, AccessEvaluator> evaluators, AuthToken authToken) {
+        return evaluate(term -> term.evaluate(evaluators, authToken));
+    }
+
+    /**
+     * Evaluates the expression with the given evaluators in
+     * the current session context.
+     *
+     * @return false if the expression is empty
+     */
+    public boolean evaluate(Map<String, AccessEvaluator> evaluators) {
+        return evaluate(term -> term.evaluate(evaluators));
+    }
+
+    private boolean evaluate(Predicate<Term> evaluator) {
+
+        if (terms.length == 0) {
+            return false;
+        }
+
+        boolean result = evaluator.test(terms[0]);
+
+        for (int i = 0; i < and.length; i++) {
+            if (and[i] ? result : !result) {
+                result = evaluator.test(terms[i + 1]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    static class Term {
+
+        final String type;
+        final String op;
+        final String value;
+
+        Term(String type, String op, String value) {
+            this.type = type;
+            this.op = op;
+            this.value = value;
+        }
+
+        static Term parse(String expression) {
+
+            for (String op : OPERATORS) {
+                int i = expression.indexOf(op);
+                if (i == -1) continue;
+
+                String type = expression.substring(0, i).trim();
+                String value = expression.substring(i + op.length()).trim();
+                return new Term(type, op, value);
+            }
+
+            logger.warn("ACLExpression: " + CMS.getLogMessage("AUTHZ_OP_NOT_SUPPORTED", expression));
+            return new Term("", "", "");
+        }
+
+        AccessEvaluator getEvaluator(Map<String, AccessEvaluator> evaluators) {
+
+            AccessEvaluator evaluator = evaluators.get(type);
+
+            if (evaluator == null) {
+                logger.warn("ACLExpression: " + CMS.getLogMessage("AUTHZ_EVALUATOR_NOT_FOUND", type));
+            }
+
+            return evaluator;
+        }
+
+        boolean evaluate(Map<String, AccessEvaluator> evaluators, AuthToken authToken) {
+
+            AccessEvaluator evaluator = getEvaluator(evaluators);
+            if (evaluator == null) {
+                return false;
+            }
+
+            boolean passed = evaluator.evaluate(authToken, type, op, value);
+            logger.debug("ACLExpression: evaluated expression: " + type + op + value + " to be " + passed);
+
+            return passed;
+        }
+
+        boolean evaluate(Map<String, AccessEvaluator> evaluators) {
+
+            AccessEvaluator evaluator = getEvaluator(evaluators);
+            if (evaluator == null) {
+                return false;
+            }
+
+            boolean passed = evaluator.evaluate(type, op, value);
+            logger.debug("ACLExpression: evaluated expression: " + type + op + value + " to be " + passed);
+
+            return passed;
+        }
+    }
+}
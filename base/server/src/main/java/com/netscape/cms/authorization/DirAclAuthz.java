@@ -57,7 +57,7 @@ public class DirAclAuthz extends AAclAuthz
 
     private LdapBoundConnFactory mLdapConnFactory;
     private String mBaseDN = null;
-    private boolean loaded;
+    private volatile boolean loaded;
     private static boolean needsFlush = false;
 
     /**
@@ -252,7 +252,7 @@ public class DirAclAuthz extends AAclAuthz
     }
 
     @Override
-    protected Iterable<ACLEntry> getEntries(
+    protected Iterable<CompiledACLEntry> getEntries(
             ACLEntry.Type entryType,
             Iterable<String> nodes,
             String operation
@@ -0,0 +1,276 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.logging;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.netscape.certsrv.logging.SignedAuditEvent;
+
+import netscape.ldap.client.JDAPAVA;
+import netscape.ldap.client.JDAPFilter;
+import netscape.ldap.client.JDAPFilterAnd;
+import netscape.ldap.client.JDAPFilterEqualityMatch;
+import netscape.ldap.client.JDAPFilterNot;
+import netscape.ldap.client.JDAPFilterOr;
+import netscape.ldap.client.JDAPFilterPresent;
+import netscape.ldap.client.JDAPFilterSubString;
+
+/**
+ * This class evaluates an audit event filter, e.g. (Outcome=Failure).
+ *
+ * The LDAP filter is compiled once into a tree of matchers, so an
+ * evaluation does not need to inspect the filter types, and literals
+ * are compared with the event attributes in place without creating
+ * lowercase copies or substrings.
+ */
+public abstract class AuditEventFilter {
+
+    /**
+     * Filter that matches no events, used for unsupported filter types.
+     */
+    public static final AuditEventFilter NONE = new AuditEventFilter() {
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return false;
+        }
+    };
+
+    /**
+     * Filter that matches all events.
+     */
+    public static final AuditEventFilter ALL = new AuditEventFilter() {
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return true;
+        }
+    };
+
+    public abstract boolean matches(SignedAuditEvent event);
+
+    /**
+     * Compiles an LDAP filter.
+     *
+     * @param filter the parsed filter, can be null
+     * @return the compiled filter, or null if the filter is null
+     */
+    public static AuditEventFilter compile(JDAPFilter filter) {
+
+        if (filter == null) {
+            return null;
+        }
+
+        if (filter instanceof JDAPFilterPresent present) {
+            return new Present(present.getType());
+
+        } else if (filter instanceof JDAPFilterEqualityMatch equalityMatch) {
+            JDAPAVA ava = equalityMatch.getAVA();
+            return new EqualityMatch(ava.getType(), ava.getValue());
+
+        } else if (filter instanceof JDAPFilterSubString subString) {
+            List<String> anySubstrings = subString.getAnySubstrings();
+            return new SubString(
+                    subString.getType(),
+                    subString.getInitialSubstring(),
+                    anySubstrings == null ? new String[0] : anySubstrings.toArray(new String[0]),
+                    subString.getFinalSubstring());
+
+        } else if (filter instanceof JDAPFilterAnd and) {
+            return new And(compile(and.getFilters()));
+
+        } else if (filter instanceof JDAPFilterOr or) {
+            return new Or(compile(or.getFilters()));
+
+        } else if (filter instanceof JDAPFilterNot not) {
+            AuditEventFilter f = compile(not.getFilter());
+            return new Not(f == null ? NONE : f);
+
+        } else {
+            return NONE;
+        }
+    }
+
+    static AuditEventFilter[] compile(List<JDAPFilter> filters) {
+
+        AuditEventFilter[] result = new AuditEventFilter[filters.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            AuditEventFilter f = compile(filters.get(i));
+            result[i] = f == null ? NONE : f;
+        }
+
+        return result;
+    }
+
+    static String getStringAttribute(SignedAuditEvent event, String name) {
+        Object attr = event.getAttribute(name);
+        return attr instanceof String s ? s : null;
+    }
+
+    /**
+     * Returns the position of a case-insensitive match
+     * of the substring in the string, or -1 if not found.
+     */
+    static int indexOfIgnoreCase(String string, String substring, int fromIndex) {
+
+        int last = string.length() - substring.length();
+
+        for (int i = fromIndex; i <= last; i++) {
+            if (string.regionMatches(true, i, substring, 0, substring.length())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Filter: (name=*)
+     */
+    static class Present extends AuditEventFilter {
+
+        String name;
+
+        Present(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return event.getAttribute(name) != null;
+        }
+    }
+
+    /**
+     * Filter: (name=value)
+     */
+    static class EqualityMatch extends AuditEventFilter {
+
+        String name;
+        String value;
+
+        EqualityMatch(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            String attr = getStringAttribute(event, name);
+            return attr != null && value.equalsIgnoreCase(attr);
+        }
+    }
+
+    /**
+     * Filter: (name=initial*any*...*any*final)
+     */
+    static class SubString extends AuditEventFilter {
+
+        String name;
+        String initialSubstring;
+        String[] anySubstrings;
+        String finalSubstring;
+
+        SubString(String name, String initialSubstring, String[] anySubstrings, String finalSubstring) {
+            this.name = name;
+            this.initialSubstring = toLowerCase(initialSubstring);
+            this.anySubstrings = new String[anySubstrings.length];
+            for (int i = 0; i < anySubstrings.length; i++) {
+                this.anySubstrings[i] = toLowerCase(anySubstrings[i]);
+            }
+            this.finalSubstring = toLowerCase(finalSubstring);
+        }
+
+        static String toLowerCase(String s) {
+            return s == null ? null : s.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+
+            String attr = getStringAttribute(event, name);
+            if (attr == null) return false;
+
+            int position = 0;
+
+            if (initialSubstring != null) {
+                if (!attr.regionMatches(true, 0, initialSubstring, 0, initialSubstring.length())) return false;
+                position = initialSubstring.length();
+            }
+
+            for (String anySubstring : anySubstrings) {
+                int p = indexOfIgnoreCase(attr, anySubstring, position);
+                if (p < 0) return false;
+                position = p + anySubstring.length();
+            }
+
+            if (finalSubstring != null) {
+                int p = attr.length() - finalSubstring.length();
+                if (p < position) return false;
+                if (!attr.regionMatches(true, p, finalSubstring, 0, finalSubstring.length())) return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Filter: (&amp;(filter1)(filter2)...(filterN))
+     */
+    static class And extends AuditEventFilter {
+
+        AuditEventFilter[] filters;
+
+        And(AuditEventFilter[] filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            for (AuditEventFilter f : filters) {
+                if (!f.matches(event)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Filter: (|(filter1)(filter2)...(filterN))
+     */
+    static class Or extends AuditEventFilter {
+
+        AuditEventFilter[] filters;
+
+        Or(AuditEventFilter[] filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            for (AuditEventFilter f : filters) {
+                if (f.matches(event)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Filter: (!(filter))
+     */
+    static class Not extends AuditEventFilter {
+
+        AuditEventFilter filter;
+
+        Not(AuditEventFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean matches(SignedAuditEvent event) {
+            return !filter.matches(event);
+        }
+    }
+}
@@ -51,6 +51,9 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.servlet.ServletException;
 
@@ -82,14 +85,7 @@ import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmscore.logging.LoggerConfig;
 
-import netscape.ldap.client.JDAPAVA;
 import netscape.ldap.client.JDAPFilter;
-import netscape.ldap.client.JDAPFilterAnd;
-import netscape.ldap.client.JDAPFilterEqualityMatch;
-import netscape.ldap.client.JDAPFilterNot;
-import netscape.ldap.client.JDAPFilterOr;
-import netscape.ldap.client.JDAPFilterPresent;
-import netscape.ldap.client.JDAPFilterSubString;
 
 /**
  * A log event listener which write logs to log files
@@ -181,7 +177,13 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     /**
      * The event filters
      */
-    protected Map<String, JDAPFilter> filters = new HashMap<>();
+    protected Map<String, AuditEventFilter> filters = new HashMap<>();
+
+    /**
+     * The filters of the mandatory and selected event types, indexed by
+     * interned event type. Rebuilt when the selected events change.
+     */
+    private volatile Map<String, AuditEventFilter> enabledEvents = new HashMap<>();
 
     /**
      * The eventType that this log is triggered
@@ -221,6 +223,44 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     protected long mLevel = 1;
 
+    /**
+     * The maximum number of queued events written in one batch
+     */
+    static final int WRITER_BATCH_SIZE = 1024;
+
+    /**
+     * The maximum time in nanoseconds the writer thread waits for new events
+     */
+    static final long WRITER_WAIT_TIME = 100_000_000L;
+
+    /**
+     * The queue of events to be written by the writer thread in
+     * asynchronous mode, or null in synchronous mode
+     */
+    protected volatile LogRingBuffer<QueuedEvent> mQueue = null;
+
+    /**
+     * What to do when the queue is full
+     */
+    protected String mOverflowPolicy = LoggerConfig.OVERFLOW_BLOCK;
+
+    /**
+     * The writer thread in asynchronous mode
+     */
+    private volatile Thread mWriterThread = null;
+    private volatile boolean mWriterWaiting = false;
+
+    /**
+     * Lock used by the threads waiting for room in a full queue
+     * under the block overflow policy, notified by the writer thread
+     */
+    private final Object mQueueSpace = new Object();
+    private AtomicInteger mBlockedThreads = new AtomicInteger();
+
+    private AtomicLong mDroppedEvents = new AtomicLong();
+    private AtomicLong mRejectedEvents = new AtomicLong();
+    private volatile int mMaxQueueDepth = 0;
+
     /**
      * Constructor for a LogFile.
      *
@@ -287,9 +327,11 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
 
             // parse filter
             JDAPFilter filter = JDAPFilter.getFilter(strFilter);
-            filters.put(eventType, filter);
+            filters.put(eventType, AuditEventFilter.compile(filter));
         }
 
+        updateEnabledEvents();
+
         try {
             init(config);
         } catch (IOException e) {
@@ -320,6 +362,124 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
                 throw e;
             }
         }
+
+        if (mOn && config.getAsync()) {
+            if (mTrace) {
+                logger.warn("LogFile: Asynchronous mode is not supported with trace enabled");
+            } else {
+                startWriter(config.getQueueSize(), config.getOverflowPolicy());
+            }
+        }
+    }
+
+    /**
+     * Starts writing the events asynchronously. The events are queued
+     * by the threads that generate them, then formatted, signed, and
+     * written in batches by a single writer thread.
+     *
+     * @param queueSize the maximum number of queued events
+     * @param overflowPolicy what to do when the queue is full
+     */
+    public synchronized void startWriter(int queueSize, String overflowPolicy) throws ELogException {
+
+        if (!LoggerConfig.OVERFLOW_BLOCK.equals(overflowPolicy)
+                && !LoggerConfig.OVERFLOW_DROP.equals(overflowPolicy)
+                && !LoggerConfig.OVERFLOW_FAIL.equals(overflowPolicy)) {
+            throw new ELogException("Invalid log overflow policy: " + overflowPolicy);
+        }
+
+        if (mQueue != null) {
+            return;
+        }
+
+        logger.info("LogFile: Writing " + mFileName + " asynchronously");
+        logger.info("LogFile: - queue size: " + queueSize);
+        logger.info("LogFile: - overflow policy: " + overflowPolicy);
+
+        try {
+            mQueue = new LogRingBuffer<>(queueSize);
+        } catch (IllegalArgumentException e) {
+            throw new ELogException(e.getMessage(), e);
+        }
+
+        mOverflowPolicy = overflowPolicy;
+
+        mWriterThread = new WriterThread();
+        mWriterThread.setDaemon(true);
+        mWriterThread.start();
+    }
+
+    /**
+     * Stops the writer thread and writes the remaining queued events.
+     */
+    protected synchronized void stopWriter() {
+
+        LogRingBuffer<QueuedEvent> queue = mQueue;
+        if (queue == null) {
+            return;
+        }
+
+        // new events will be written synchronously
+        mQueue = null;
+
+        // the writer thread only writes while holding the lock,
+        // so the remaining events can be written here in order
+        writeQueuedEvents(queue, Integer.MAX_VALUE, false);
+
+        Thread writerThread = mWriterThread;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+        }
+
+        // let blocked threads write their events synchronously
+        synchronized (mQueueSpace) {
+            mQueueSpace.notifyAll();
+        }
+
+        logger.info("LogFile: Stopped asynchronous writer for " + mFileName);
+        logger.info("LogFile: - max queue depth: " + mMaxQueueDepth);
+        logger.info("LogFile: - dropped events: " + mDroppedEvents.get());
+        logger.info("LogFile: - rejected events: " + mRejectedEvents.get());
+    }
+
+    public boolean isAsync() {
+        return mQueue != null;
+    }
+
+    /**
+     * Returns the number of events waiting to be written.
+     */
+    public int getQueueDepth() {
+        LogRingBuffer<QueuedEvent> queue = mQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Returns the highest number of events found waiting to be written.
+     */
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth;
+    }
+
+    public int getQueueCapacity() {
+        LogRingBuffer<QueuedEvent> queue = mQueue;
+        return queue == null ? 0 : queue.capacity();
+    }
+
+    /**
+     * Returns the number of non-mandatory events discarded
+     * because the queue was full.
+     */
+    public long getDroppedEvents() {
+        return mDroppedEvents.get();
+    }
+
+    /**
+     * Returns the number of events rejected with an error
+     * because the queue was full.
+     */
+    public long getRejectedEvents() {
+        return mRejectedEvents.get();
     }
 
     /**
@@ -329,6 +489,7 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     public void selectEvent(String event) {
         selectedEvents.add(event);
+        updateEnabledEvents();
     }
 
     /**
@@ -338,6 +499,7 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     public void deselectEvent(String event) {
         selectedEvents.remove(event);
+        updateEnabledEvents();
     }
 
     /**
@@ -351,8 +513,31 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
 
         // select specified events
         for (String event : StringUtils.split(events, ", ")) {
-            selectEvent(event);
+            selectedEvents.add(event);
+        }
+
+        updateEnabledEvents();
+    }
+
+    /**
+     * Rebuilds the index of the mandatory and selected event types, so
+     * logging an event only needs a single lookup by event type.
+     */
+    protected void updateEnabledEvents() {
+
+        Map<String, AuditEventFilter> events = new HashMap<>();
+
+        for (String event : mandatoryEvents) {
+            AuditEventFilter filter = filters.get(event);
+            events.put(event.intern(), filter == null ? AuditEventFilter.ALL : filter);
         }
+
+        for (String event : selectedEvents) {
+            AuditEventFilter filter = filters.get(event);
+            events.put(event.intern(), filter == null ? AuditEventFilter.ALL : filter);
+        }
+
+        enabledEvents = events;
     }
 
     public static String base64Encode(byte[] bytes) throws IOException {
@@ -744,6 +929,14 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     @Override
     public synchronized void flush() {
+
+        LogRingBuffer<QueuedEvent> queue = mQueue;
+        if (queue != null) {
+            // include the events queued so far, the log file is
+            // not checked since this might be called while rotating
+            writeQueuedEvents(queue, queue.capacity(), false);
+        }
+
         try {
             if (mLogSigning) {
                 pushSignature();
@@ -800,6 +993,11 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
 
         setFlushInterval(0);
 
+        // write the queued events and switch to synchronous mode first,
+        // so the shutdown event does not wait for the writer thread
+        // which needs the lock held by this thread
+        stopWriter();
+
         // log signed audit shutdown success
         auditMessage = CMS.getLogMessage(
                            AuditEvent.AUDIT_LOG_SHUTDOWN,
@@ -872,6 +1070,223 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         }
     }
 
+    /**
+     * An event queued in asynchronous mode.
+     */
+    static class QueuedEvent {
+
+        LogEvent event;
+
+        // name of the thread that generated the event
+        String threadName;
+
+        QueuedEvent(LogEvent event, String threadName) {
+            this.event = event;
+            this.threadName = threadName;
+        }
+    }
+
+    /**
+     * Log writer thread. Waits for queued events and writes them in
+     * batches. The log is flushed, and signed if log signing is enabled,
+     * once the batches exceed the buffer size instead of once per event.
+     * Stopping the writer will cause this thread to exit.
+     */
+    final class WriterThread extends Thread {
+
+        /**
+         * Writer thread constructor including thread name
+         */
+        public WriterThread() {
+            super();
+            super.setName(mFileName + ".writer");
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                LogRingBuffer<QueuedEvent> queue = mQueue;
+                if (queue == null) {
+                    break;
+                }
+
+                if (queue.isEmpty()) {
+                    mWriterWaiting = true;
+                    // check again in case an event was queued before the flag was set
+                    if (queue.isEmpty() && mQueue != null) {
+                        LockSupport.parkNanos(WRITER_WAIT_TIME);
+                    }
+                    mWriterWaiting = false;
+                    continue;
+                }
+
+                int depth = queue.size();
+                if (depth > mMaxQueueDepth) {
+                    mMaxQueueDepth = depth;
+                }
+
+                synchronized (LogFile.this) {
+                    if (writeQueuedEvents(queue, WRITER_BATCH_SIZE, true) > 0
+                            && mBufferSize > 0 && mBytesUnflushed > mBufferSize) {
+                        flush();
+                    }
+                }
+
+                if (mBlockedThreads.get() > 0) {
+                    synchronized (mQueueSpace) {
+                        mQueueSpace.notifyAll();
+                    }
+                }
+            }
+            mWriterThread = null;
+        }
+    }
+
+    /**
+     * Writes the event to the log file, or queues it for
+     * the writer thread in asynchronous mode.
+     *
+     * @param event The log event
+     */
+    protected void append(LogEvent event) throws ELogException {
+
+        LogRingBuffer<QueuedEvent> queue = mQueue;
+        if (queue == null) {
+            doLog(event);
+            return;
+        }
+
+        QueuedEvent queuedEvent = new QueuedEvent(event, Thread.currentThread().getName());
+
+        if (!queue.offer(queuedEvent) && !handleOverflow(queue, queuedEvent)) {
+            return;
+        }
+
+        if (mQueue != queue) {
+            // the writer was stopped before the event was queued
+            synchronized (this) {
+                writeQueuedEvents(queue, Integer.MAX_VALUE, true);
+            }
+            return;
+        }
+
+        if (mWriterWaiting) {
+            Thread writerThread = mWriterThread;
+            if (writerThread != null) {
+                LockSupport.unpark(writerThread);
+            }
+        }
+    }
+
+    /**
+     * Applies the overflow policy to an event that does not fit into the queue.
+     *
+     * @return true if the event has been queued
+     */
+    private boolean handleOverflow(LogRingBuffer<QueuedEvent> queue, QueuedEvent queuedEvent)
+            throws ELogException {
+
+        if (LoggerConfig.OVERFLOW_FAIL.equals(mOverflowPolicy)) {
+            mRejectedEvents.incrementAndGet();
+            throw new ELogException("Log queue is full: " + mFileName);
+        }
+
+        String type = queuedEvent.event.getEventType();
+
+        if (LoggerConfig.OVERFLOW_DROP.equals(mOverflowPolicy)
+                && (type == null || !mandatoryEvents.contains(type))) {
+            mDroppedEvents.incrementAndGet();
+            return false;
+        }
+
+        if (Thread.holdsLock(this)) {
+            // the writer thread cannot make room while this thread
+            // holds the lock, write the queued events and this event
+            writeQueuedEvents(queue, Integer.MAX_VALUE, true);
+            doLog(queuedEvent.event, queuedEvent.threadName, false);
+            postWrite();
+            return false;
+        }
+
+        // wait for the writer thread to make room for the event
+        boolean queued = false;
+        mBlockedThreads.incrementAndGet();
+
+        try {
+            synchronized (mQueueSpace) {
+                while (!(queued = queue.offer(queuedEvent))) {
+
+                    if (mQueue != queue) {
+                        // writer has been stopped
+                        break;
+                    }
+
+                    Thread writerThread = mWriterThread;
+                    if (writerThread != null) {
+                        LockSupport.unpark(writerThread);
+                    }
+
+                    // the timeout only guards against a writer thread that died
+                    mQueueSpace.wait(WRITER_WAIT_TIME / 1_000_000L);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mRejectedEvents.incrementAndGet();
+            throw new ELogException("Interrupted while waiting for log queue: " + mFileName, e);
+
+        } finally {
+            mBlockedThreads.decrementAndGet();
+        }
+
+        if (queued) {
+            return true;
+        }
+
+        // writer has been stopped
+        synchronized (this) {
+            writeQueuedEvents(queue, Integer.MAX_VALUE, true);
+            doLog(queuedEvent.event, queuedEvent.threadName, false);
+            postWrite();
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes queued events into the log file. Must be called while
+     * holding the lock, so the events are written in the queue order.
+     *
+     * @param queue the event queue
+     * @param max the maximum number of events to write
+     * @param check true to call postWrite() after each event
+     * @return the number of events written
+     */
+    private int writeQueuedEvents(LogRingBuffer<QueuedEvent> queue, int max, boolean check) {
+
+        int count = 0;
+        QueuedEvent queuedEvent;
+
+        while (count < max && (queuedEvent = queue.poll()) != null) {
+            count++;
+
+            try {
+                doLog(queuedEvent.event, queuedEvent.threadName, true);
+
+                if (check) {
+                    postWrite();
+                }
+
+            } catch (ELogException e) {
+                // the failure has been reported by doLog() or postWrite()
+                logger.debug("LogFile: Unable to write queued event: " + e.getMessage());
+            }
+        }
+
+        return count;
+    }
+
     /**
      * Synchronized method to write an event to the log file.
      *
@@ -879,6 +1294,15 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     protected synchronized void doLog(LogEvent event) throws ELogException {
         doLog(event, false);
+        postWrite();
+    }
+
+    /**
+     * Called after an event has been written to the log file while
+     * holding the lock. Subclasses can override this method to check
+     * the log file, for example its size.
+     */
+    protected void postWrite() throws ELogException {
     }
 
     // Standard line separator byte. We always sign this line separator,
@@ -893,8 +1317,16 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     private synchronized void doLog(LogEvent event, boolean noFlush)
             throws ELogException {
+        doLog(event, Thread.currentThread().getName(), noFlush);
+    }
 
-        String entry = logEvt2String(event);
+    /**
+     * @param threadName the name of the thread that generated the event
+     */
+    private synchronized void doLog(LogEvent event, String threadName, boolean noFlush)
+            throws ELogException {
+
+        String entry = logEvt2String(event, threadName);
 
         if (mLogWriter == null) {
             String[] params = { mFileName, entry };
@@ -1031,7 +1463,7 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         // If no type specified in property file, then treated as selected
         String type = ev.getEventType();
         if (type == null) {
-            doLog(ev);
+            append(ev);
             return;
         }
 
@@ -1042,26 +1474,32 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         }
 
         // Is the event type mandatory or selected?
-        if (mandatoryEvents.contains(type) || selectedEvents.contains(type)) {
-            filter((SignedAuditEvent)ev);
+        AuditEventFilter filter = enabledEvents.get(type);
+        if (filter == null) {
+            logger.debug("LogFile: event type not selected: " + type);
             return;
         }
 
-        logger.debug("LogFile: event type not selected: " + type);
+        filter((SignedAuditEvent)ev, filter);
     }
 
     public void filter(SignedAuditEvent ev) throws ELogException {
-        String type = ev.getEventType();
-        JDAPFilter filter = filters.get(type);
+
+        AuditEventFilter filter = filters.get(ev.getEventType());
 
         if (filter == null) {
             // filter not defined for this event type
-            doLog(ev);
+            append(ev);
             return;
         }
 
+        filter(ev, filter);
+    }
+
+    private void filter(SignedAuditEvent ev, AuditEventFilter filter) throws ELogException {
+
         try {
-            boolean result = eval(ev, filter);
+            boolean result = filter.matches(ev);
             if (!result) {
                 // event does not match filter, discard
                 return;
@@ -1072,129 +1510,17 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         }
 
         // log event
-        doLog(ev);
-    }
-
-    public boolean eval(SignedAuditEvent event, JDAPFilter filter) {
-
-        if (filter instanceof JDAPFilterPresent) {
-            return eval(event, (JDAPFilterPresent)filter);
-
-        } else if (filter instanceof JDAPFilterEqualityMatch) {
-            return eval(event, (JDAPFilterEqualityMatch)filter);
-
-        } else if (filter instanceof JDAPFilterSubString) {
-            return eval(event, (JDAPFilterSubString)filter);
-
-        } else if (filter instanceof JDAPFilterAnd) {
-            return eval(event, (JDAPFilterAnd)filter);
-
-        } else if (filter instanceof JDAPFilterOr) {
-            return eval(event, (JDAPFilterOr)filter);
-
-        } else if (filter instanceof JDAPFilterNot) {
-            return eval(event, (JDAPFilterNot)filter);
-
-        } else {
-            return false;
-        }
-    }
-
-    public boolean eval(SignedAuditEvent event, JDAPFilterPresent filter) {
-
-        // filter: (<name>=*)
-
-        String name = filter.getType();
-        Object attr = event.getAttribute(name);
-
-        return attr != null;
-    }
-
-    public boolean eval(SignedAuditEvent event, JDAPFilterEqualityMatch filter) {
-
-        // filter: (<name>=<value>)
-
-        JDAPAVA ava = filter.getAVA();
-        String name = ava.getType();
-        String value = ava.getValue();
-
-        Object attr = event.getAttribute(name);
-
-        if (attr == null) return false;
-        if (!(attr instanceof String)) return false;
-
-        String stringAttr = (String)attr;
-
-        return value.equalsIgnoreCase(stringAttr);
-    }
-
-    public boolean eval(SignedAuditEvent event, JDAPFilterSubString filter) {
-
-        // filter: (<name>=<initial>*<any>*...*<any>*<final>)
-
-        String name = filter.getType();
-        Object attr = event.getAttribute(name);
-
-        if (attr == null) return false;
-        if (!(attr instanceof String)) return false;
-
-        String stringAttr = ((String)attr).toLowerCase();
-
-        // check initial substring
-        String initialSubstring = filter.getInitialSubstring();
-        if (initialSubstring != null) {
-            if (!stringAttr.startsWith(initialSubstring.toLowerCase())) return false;
-            stringAttr = stringAttr.substring(initialSubstring.length());
-        }
-
-        // check any substrings
-        for (String anySubstring : filter.getAnySubstrings()) {
-            int p = stringAttr.indexOf(anySubstring.toLowerCase());
-            if (p < 0) return false;
-            stringAttr = stringAttr.substring(p + anySubstring.length());
-        }
-
-        // check final substring
-        String finalSubstring = filter.getFinalSubstring();
-        if (finalSubstring != null) {
-            if (!stringAttr.endsWith(finalSubstring.toLowerCase())) return false;
-        }
-
-        return true;
-    }
-
-    public boolean eval(SignedAuditEvent event, JDAPFilterAnd filter) {
-
-        // filter: (&(filter1)(filter2)...(filterN))
-
-        for (JDAPFilter f : filter.getFilters()) {
-            if (!eval(event, f)) return false;
-        }
-
-        return true;
+        append(ev);
     }
 
-    public boolean eval(SignedAuditEvent event, JDAPFilterOr filter) {
-
-        // filter: (|(filter1)(filter2)...(filterN))
-
-        for (JDAPFilter f : filter.getFilters()) {
-            if (eval(event, f)) return true;
-        }
-
-        return false;
-    }
-
-    public boolean eval(SignedAuditEvent event, JDAPFilterNot filter) {
-
-        // filter: (!(filter))
-
-        JDAPFilter f = filter.getFilter();
-
-        return !eval(event, f);
+    public String logEvt2String(LogEvent ev) {
+        return logEvt2String(ev, Thread.currentThread().getName());
     }
 
-    public String logEvt2String(LogEvent ev) {
+    /**
+     * @param threadName the name of the thread that generated the event
+     */
+    public String logEvt2String(LogEvent ev, String threadName) {
         String entry = null;
 
         // Hmm.. multiple threads could hit this and reset the time.
@@ -1205,12 +1531,12 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         // This should follow the Common Log Format which still needs
         // some work.
         if (ev.getMultiline() == ILogger.L_MULTILINE) {
-            entry = engine.getPID() + "." + Thread.currentThread().getName() + " - ["
+            entry = engine.getPID() + "." + threadName + " - ["
                     + mLogDateFormat.format(mDate) + "] [" +
                     ev.getSource().value() + "] [" + Integer.toString(ev.getLevel())
                     + "] " + prepareMultiline(ev.toString());
         } else {
-            entry = engine.getPID() + "." + Thread.currentThread().getName() + " - ["
+            entry = engine.getPID() + "." + threadName + " - ["
                     + mLogDateFormat.format(mDate) + "] [" +
                     ev.getSource().value() + "] [" + Integer.toString(ev.getLevel())
                     + "] " + ev.toString();
@@ -0,0 +1,134 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue of log entries.
+ *
+ * Each slot of the ring has a sequence number that tells whether the
+ * slot is ready to be written by a producer or read by the consumer,
+ * so producers only contend on a compare-and-set of the tail position
+ * and never block each other.
+ *
+ * @param <E> the type of the entries
+ */
+public class LogRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> entries;
+    private final AtomicLongArray sequences;
+
+    // next position to be read
+    private final AtomicLong head = new AtomicLong();
+
+    // next position to be written
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of entries,
+     *            rounded up to the next power of two
+     */
+    public LogRingBuffer(int capacity) {
+
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        mask = size - 1;
+        entries = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an entry into the queue.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offer(E entry) {
+
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+
+            if (diff == 0) {
+                // the slot is free, try to claim it
+                if (tail.compareAndSet(position, position + 1)) {
+                    entries.set(index, entry);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+
+            } else if (diff < 0) {
+                // the slot has not been read since the previous round
+                return false;
+            }
+
+            position = tail.get();
+        }
+    }
+
+    /**
+     * Removes the oldest entry from the queue.
+     *
+     * @return the entry, or null if the queue is empty
+     */
+    public E poll() {
+
+        long position = head.get();
+
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - (position + 1);
+
+            if (diff == 0) {
+                // the slot has been written, try to claim it
+                if (head.compareAndSet(position, position + 1)) {
+                    E entry = entries.get(index);
+                    entries.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return entry;
+                }
+
+            } else if (diff < 0) {
+                // the slot has not been written yet
+                return null;
+            }
+
+            position = head.get();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the approximate number of entries in the queue.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
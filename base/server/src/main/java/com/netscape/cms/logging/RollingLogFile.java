@@ -36,7 +36,6 @@ import com.netscape.certsrv.common.NameValuePairs;
 import com.netscape.certsrv.logging.AuditEvent;
 import com.netscape.certsrv.logging.ELogException;
 import com.netscape.certsrv.logging.ILogger;
-import com.netscape.certsrv.logging.LogEvent;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmscore.logging.LoggerConfig;
@@ -489,15 +488,13 @@ public class RollingLogFile extends LogFile {
     }
 
     /**
-     * Write an event to the log file
-     *
-     * @param ev The event to be logged.
+     * Rotate the log file once it exceeds the maximum size. This is
+     * called after each event is written, by the thread that generated
+     * the event or by the writer thread in asynchronous mode.
      **/
     @Override
-    public synchronized void log(LogEvent ev) throws ELogException {
+    protected void postWrite() throws ELogException {
         //xxx, Shall we log first without checking if it exceed the maximum?
-        super.log(ev); // Will increment mBytesWritten
-
         if ((0 != mMaxFileSize) && (mBytesWritten > mMaxFileSize)) {
             flush();
             try {
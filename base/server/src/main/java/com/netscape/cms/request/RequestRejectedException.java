@@ -0,0 +1,32 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.request;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * This exception is thrown when a request is not processed
+ * because too many requests of the same type are in progress.
+ */
+public class RequestRejectedException extends EBaseException {
+
+    private static final long serialVersionUID = 8410024203347663214L;
+
+    private int retryAfter;
+
+    /**
+     * @param message error message
+     * @param retryAfter seconds to wait before retrying
+     */
+    public RequestRejectedException(String message, int retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -17,31 +17,123 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.request;
 
-import java.util.Vector;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.request.Request;
 
 /**
- * This class represents a request scheduler that prioritizes
- * the threads based on the request processing order.
- * The request that enters the request queue first should
- * be processed first.
+ * This class represents a request scheduler that limits the number
+ * of requests of each type processed concurrently by the request
+ * queue, so that requests of one type (e.g. enrollment) cannot
+ * starve requests of other types (e.g. revocation or recovery).
+ *
+ * Requests waiting to be processed are admitted in the order they
+ * arrive. A request that cannot be admitted within the maximum
+ * wait time is rejected with a RequestRejectedException.
+ *
+ * To enable the scheduler, add the following to CS.cfg:
+ *
+ * <pre>
+ * ca.requestSchedulerClass=com.netscape.cms.request.RequestScheduler
+ * ca.requestScheduler.maxConcurrent=20              #Default limit for each request type.
+ * ca.requestScheduler.revocation.maxConcurrent=10   #Limit for a specific request type.
+ * ca.requestScheduler.maxWaitTime=5                 #Seconds to wait before rejecting.
+ * ca.requestScheduler.retryAfter=10                 #Seconds to wait before retrying.
+ * </pre>
  */
 public class RequestScheduler {
-    private Vector<Thread> mRequestThreads = new Vector<>();
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RequestScheduler.class);
+
+    protected RequestSchedulerConfig config;
+    protected int maxWaitTime = 5; // seconds
+    protected int retryAfter = 10; // seconds
+
+    // request type -> queue
+    private Map<String, RequestTypeQueue> queues = new ConcurrentHashMap<>();
+
+    // placeholder for requests processed while processing another request
+    private static final RequestTypeQueue NESTED = new RequestTypeQueue("nested", 0);
+
+    // queues that admitted the requests being processed by the current thread
+    private ThreadLocal<Deque<RequestTypeQueue>> admitted = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public void init(RequestSchedulerConfig config) throws EBaseException {
+
+        this.config = config;
+
+        maxWaitTime = config.getMaxWaitTime();
+        logger.info("RequestScheduler: - max wait time: " + maxWaitTime);
+
+        retryAfter = config.getRetryAfter();
+        logger.info("RequestScheduler: - retry after: " + retryAfter);
+    }
 
     /**
-     * Request entered the request queue processing.
+     * Returns the queue for the given request type.
+     */
+    public RequestTypeQueue getQueue(String requestType) {
+
+        if (requestType == null) {
+            requestType = "unknown";
+        }
+
+        return queues.computeIfAbsent(requestType, type -> {
+
+            int maxConcurrent = 0;
+
+            if (config != null) {
+                try {
+                    maxConcurrent = config.getMaxConcurrent(type);
+                } catch (EBaseException e) {
+                    logger.warn("RequestScheduler: Unable to get limit for " + type + ": " + e.getMessage(), e);
+                }
+            }
+
+            logger.info("RequestScheduler: Max concurrent " + type + " requests: "
+                    + (maxConcurrent > 0 ? maxConcurrent : "unlimited"));
+
+            return new RequestTypeQueue(type, maxConcurrent);
+        });
+    }
+
+    public Collection<RequestTypeQueue> getQueues() {
+        return queues.values();
+    }
+
+    /**
+     * Request entered the request queue processing. Waits until
+     * the request can be processed.
      *
      * @param r request
+     * @exception RequestRejectedException if too many requests
+     *            of the same type are being processed
      */
-    public synchronized void requestIn(Request r) {
-        Thread current = Thread.currentThread();
+    public void requestIn(Request r) throws EBaseException {
+
+        Deque<RequestTypeQueue> stack = admitted.get();
 
-        if (mRequestThreads.size() == 0) {
-            current.setPriority(Thread.MAX_PRIORITY);
+        if (!stack.isEmpty()) {
+            // the thread has been admitted already, waiting for
+            // another permit here could deadlock
+            stack.push(NESTED);
+            return;
         }
-        mRequestThreads.addElement(current);
+
+        RequestTypeQueue queue = getQueue(r.getRequestType());
+        queue.acquire(r, maxWaitTime, retryAfter);
+
+        stack.push(queue);
     }
 
     /**
@@ -49,20 +141,133 @@ public class RequestScheduler {
      *
      * @param r request
      */
-    public synchronized void requestOut(Request r) {
-        Thread current = Thread.currentThread();
-        Thread first = mRequestThreads.elementAt(0);
-
-        if (current.equals(first)) {
-            // reprioritize
-            try {
-                Thread second = mRequestThreads.elementAt(1);
-
-                second.setPriority(Thread.MAX_PRIORITY);
-            } catch (Exception e) {
-                // no second element; nothing to do
+    public void requestOut(Request r) {
+
+        Deque<RequestTypeQueue> stack = admitted.get();
+        if (stack.isEmpty()) {
+            logger.warn("RequestScheduler: Request " + r.getRequestId() + " was not admitted");
+            return;
+        }
+
+        RequestTypeQueue queue = stack.pop();
+        if (queue != NESTED) {
+            queue.release();
+        }
+
+        if (stack.isEmpty()) {
+            admitted.remove();
+        }
+    }
+
+    /**
+     * This class limits the number of requests of one type.
+     */
+    public static class RequestTypeQueue {
+
+        private String type;
+        private int maxConcurrent;
+        private Semaphore permits; // null if unlimited
+
+        private AtomicInteger active = new AtomicInteger();
+        private LongAdder admittedCount = new LongAdder();
+        private LongAdder rejectedCount = new LongAdder();
+        private LongAdder queueTime = new LongAdder(); // nanoseconds
+        private LongAccumulator maxQueueTime = new LongAccumulator(Long::max, 0); // nanoseconds
+
+        public RequestTypeQueue(String type, int maxConcurrent) {
+            this.type = type;
+            this.maxConcurrent = maxConcurrent;
+            if (maxConcurrent > 0) {
+                permits = new Semaphore(maxConcurrent, true);
+            }
+        }
+
+        void acquire(Request r, int maxWaitTime, int retryAfter) throws EBaseException {
+
+            if (permits != null) {
+
+                long start = System.nanoTime();
+                boolean acquired;
+
+                try {
+                    // unlike tryAcquire(), this does not barge ahead of waiting requests
+                    acquired = permits.tryAcquire(0, TimeUnit.SECONDS);
+
+                    if (!acquired && maxWaitTime > 0) {
+                        logger.debug("RequestScheduler: Request " + r.getRequestId()
+                                + " waiting for " + maxConcurrent + " active " + type + " requests");
+                        acquired = permits.tryAcquire(maxWaitTime, TimeUnit.SECONDS);
+                    }
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new EBaseException("Interrupted while waiting to process request " + r.getRequestId(), e);
+                }
+
+                long time = System.nanoTime() - start;
+                queueTime.add(time);
+                maxQueueTime.accumulate(time);
+
+                if (!acquired) {
+                    rejectedCount.increment();
+                    String message = "Too many " + type + " requests in progress, retry after " + retryAfter + " seconds";
+                    logger.warn("RequestScheduler: Rejecting request " + r.getRequestId() + ": " + message);
+                    throw new RequestRejectedException(message, retryAfter);
+                }
             }
+
+            admittedCount.increment();
+            active.incrementAndGet();
+        }
+
+        void release() {
+            active.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the maximum number of concurrent requests, 0 if unlimited.
+         */
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public int getActive() {
+            return active.get();
+        }
+
+        /**
+         * Returns the estimated number of requests waiting to be processed.
+         */
+        public int getWaiting() {
+            return permits == null ? 0 : permits.getQueueLength();
+        }
+
+        public long getAdmitted() {
+            return admittedCount.sum();
+        }
+
+        public long getRejected() {
+            return rejectedCount.sum();
+        }
+
+        /**
+         * Returns the average time in milliseconds requests waited
+         * to be admitted or rejected.
+         */
+        public long getAverageQueueTime() {
+            long count = admittedCount.sum() + rejectedCount.sum();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(queueTime.sum() / count);
+        }
+
+        public long getMaxQueueTime() {
+            return TimeUnit.NANOSECONDS.toMillis(maxQueueTime.get());
         }
-        mRequestThreads.removeElement(current);
     }
 }
@@ -0,0 +1,60 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.request;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides &lt;subsystem&gt;.requestScheduler.* parameters.
+ */
+public class RequestSchedulerConfig extends ConfigStore {
+
+    public RequestSchedulerConfig() {
+    }
+
+    public RequestSchedulerConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public RequestSchedulerConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns the default maximum number of requests of
+     * each type processed concurrently (0 = unlimited).
+     */
+    public int getMaxConcurrent() throws EBaseException {
+        return getInteger("maxConcurrent", 0);
+    }
+
+    /**
+     * Returns the maximum number of requests of the given
+     * type processed concurrently (0 = unlimited).
+     */
+    public int getMaxConcurrent(String requestType) throws EBaseException {
+        return getInteger(requestType + ".maxConcurrent", getMaxConcurrent());
+    }
+
+    /**
+     * Returns the maximum time in seconds a request waits
+     * to be processed before it is rejected.
+     */
+    public int getMaxWaitTime() throws EBaseException {
+        return getInteger("maxWaitTime", 5);
+    }
+
+    /**
+     * Returns the time in seconds a client should wait before
+     * retrying a rejected request.
+     */
+    public int getRetryAfter() throws EBaseException {
+        return getInteger("retryAfter", 10);
+    }
+}
@@ -786,7 +786,7 @@ public class ACLAdminServlet extends AdminServlet {
 
             // it's possibl that it's being used...we have to assume that
             // the administrator knows what she is doing, for now
-            mEvaluators.remove(id);
+            mAuthzMgr.unregisterEvaluator(id);
 
             try {
                 ConfigStore destStore = mConfig.getSubStore(PROP_EVAL, ConfigStore.class);
@@ -64,6 +64,7 @@ import com.netscape.certsrv.logging.ILogger;
 import com.netscape.certsrv.logging.event.AuthEvent;
 import com.netscape.certsrv.logging.event.AuthzEvent;
 import com.netscape.certsrv.logging.event.RoleAssumeEvent;
+import com.netscape.cms.request.RequestRejectedException;
 import com.netscape.cms.servlet.common.CMSFileLoader;
 import com.netscape.cms.servlet.common.CMSGateway;
 import com.netscape.cms.servlet.common.CMSLoadTemplate;
@@ -513,6 +514,14 @@ public abstract class CMSServlet extends HttpServlet {
             // PrintStream ps = new PrintStream(os);
             //e.printStackTrace(ps);
             log(e.toString());
+
+            if (e instanceof RequestRejectedException) {
+                // the request scheduler is busy, let the client retry later
+                RequestRejectedException re = (RequestRejectedException) e;
+                httpResp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                httpResp.setHeader("Retry-After", Integer.toString(re.getRetryAfter()));
+            }
+
             renderException(cmsRequest, e);
 
         } catch (Exception e) {
@@ -264,6 +264,14 @@ public class SecurityDomainProcessor extends Processor {
                 logger.debug("Releasing ldap connection");
                 connFactory.returnConn(conn);
             }
+
+            if (connFactory != null) {
+                try {
+                    connFactory.reset();
+                } catch (Exception e) {
+                    logger.warn("SecurityDomainProcessor: Unable to close LDAP connections: " + e.getMessage(), e);
+                }
+            }
         }
     }
 
@@ -626,6 +634,10 @@ public class SecurityDomainProcessor extends Processor {
                     connFactory.returnConn(conn);
                 }
 
+                if (connFactory != null) {
+                    connFactory.reset();
+                }
+
             } catch (Exception e) {
                 logger.warn("SecurityDomainProcessor: Unable to release LDAP connection: " + e.getMessage(), e);
             }
@@ -669,6 +681,10 @@ public class SecurityDomainProcessor extends Processor {
                     connFactory.returnConn(conn);
                 }
 
+                if (connFactory != null) {
+                    connFactory.reset();
+                }
+
             } catch (Exception e) {
                 logger.warn("SecurityDomainProcessor: Unable to release LDAP connection: " + e.getMessage(), e);
             }
@@ -714,6 +730,10 @@ public class SecurityDomainProcessor extends Processor {
                     connFactory.returnConn(conn);
                 }
 
+                if (connFactory != null) {
+                    connFactory.reset();
+                }
+
             } catch (Exception e) {
                 logger.warn("SecurityDomainProcessor: Unable to release LDAP connection: " + e.getMessage(), e);
             }
@@ -747,6 +747,7 @@ public class CMSEngine {
         PasswordStore passwordStore = getPasswordStore();
 
         ugSubsystem.init(ldapConfig, socketConfig, passwordStore);
+        ugSubsystem.initMembershipCache(ugConfig.getCacheSize(), ugConfig.getCacheTTL());
     }
 
     public void initOIDLoaderSubsystem() throws Exception {
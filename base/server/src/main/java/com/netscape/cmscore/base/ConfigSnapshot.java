@@ -0,0 +1,80 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.base;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * This class keeps an immutable object created from a config store,
+ * for example a class with final fields holding the parameters that
+ * are used on every request, so the parameters do not have to be
+ * looked up and parsed every time.
+ *
+ * The object is created again when any property in the source of the
+ * config store has changed, so the parameters used by a request are
+ * always consistent with each other and with the current config.
+ *
+ * <pre>{@code
+ * snapshot = new ConfigSnapshot<>(config, Settings::new);
+ * ...
+ * Settings settings = snapshot.get();
+ * }</pre>
+ *
+ * @param <T> snapshot type
+ */
+public class ConfigSnapshot<T> {
+
+    public interface Loader<T> {
+        T load(ConfigStore config) throws EBaseException;
+    }
+
+    private ConfigStore config;
+    private Loader<T> loader;
+
+    private volatile Entry<T> entry;
+
+    public ConfigSnapshot(ConfigStore config, Loader<T> loader) {
+        this.config = config;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the snapshot of the current config.
+     */
+    public T get() throws EBaseException {
+
+        Entry<T> current = entry;
+        long version = config.getVersion();
+
+        if (current != null && current.version == version) {
+            return current.value;
+        }
+
+        // if the config changes while loading, the next call will reload it
+        current = new Entry<>(version, loader.load(config));
+        entry = current;
+
+        return current.value;
+    }
+
+    /**
+     * Forces the snapshot to be created again on next use.
+     */
+    public void reset() {
+        entry = null;
+    }
+
+    static class Entry<T> {
+
+        final long version;
+        final T value;
+
+        Entry(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
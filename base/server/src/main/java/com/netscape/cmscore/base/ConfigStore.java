@@ -27,11 +27,14 @@ import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.jss.netscape.security.util.Utils;
 import org.mozilla.jss.util.Base64OutputStream;
@@ -101,6 +104,9 @@ public class ConfigStore implements Cloneable {
 
     protected static final String PROP_SUBSTORES = "substores";
 
+    // substore class -> (String, SimpleProperties) constructor
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
     /**
      * The name of this substore
      */
@@ -173,17 +179,6 @@ public class ConfigStore implements Cloneable {
         return mSource.get(getFullName(name));
     }
 
-    /**
-     * Retrieves a property from the configuration file. Does not prepend
-     * the config store name to the property.
-     *
-     * @param name property name
-     * @return property value
-     */
-    private String nakedGet(String name) {
-        return mSource.get(name);
-    }
-
     /**
      * Puts a property into the configuration file. The
      * values wont be updated to the file until save
@@ -236,9 +231,11 @@ public class ConfigStore implements Cloneable {
      * Return the number of items in this substore
      */
     public int size() {
-        Hashtable<String, String> h = new Hashtable<>();
-        enumerate(h);
-        return h.size();
+        int size = 0;
+        for (String key : mSource.keys(getFullName(""))) {
+            size++;
+        }
+        return size;
     }
 
     /**
@@ -247,21 +244,21 @@ public class ConfigStore implements Cloneable {
      *
      * @param map the map
      */
-    private synchronized void enumerate(Map<String, String> map) {
-        Enumeration<String> e = mSource.keys();
+    private void enumerate(Map<String, String> map) {
         // We only want the keys which match the current substore name
         // without the current substore prefix.  This code works even
         // if mStoreName is null.
-        String fullName = getFullName("");
-        int kIndex = fullName.length();
-
-        while (e.hasMoreElements()) {
-            String key = e.nextElement();
+        mSource.getProperties(getFullName(""), map);
+    }
 
-            if (key.startsWith(fullName)) {
-                map.put(key.substring(kIndex), nakedGet(key));
-            }
-        }
+    /**
+     * Returns a number that changes whenever a property in the
+     * source of this config store is added, changed, or removed.
+     *
+     * @see ConfigSnapshot
+     */
+    public long getVersion() {
+        return mSource.getVersion();
     }
 
     /**
@@ -661,9 +658,21 @@ public class ConfigStore implements Cloneable {
          mSource.put(getFullName(PROP_SUBSTORES), name);
          */
 
+        return newInstance(clazz, fullname);
+    }
+
+    private <T extends ConfigStore> T newInstance(Class<T> clazz, String name) {
+
         try {
-            Constructor<T> constructor = clazz.getDeclaredConstructor(String.class, SimpleProperties.class);
-            return constructor.newInstance(fullname, mSource);
+            @SuppressWarnings("unchecked")
+            Constructor<T> constructor = (Constructor<T>) constructors.get(clazz);
+
+            if (constructor == null) {
+                constructor = clazz.getDeclaredConstructor(String.class, SimpleProperties.class);
+                constructors.put(clazz, constructor);
+            }
+
+            return constructor.newInstance(name, mSource);
 
         } catch (NoSuchMethodException | InvocationTargetException
                 | IllegalAccessException | InstantiationException | IllegalArgumentException e) {
@@ -677,20 +686,15 @@ public class ConfigStore implements Cloneable {
      * @param name substore name
      */
     public void removeSubStore(String name) {
-        // this operation is expensive!!!
-
-        Enumeration<String> e = mSource.keys();
-        // We only want the keys which match the current substore name
-        // without the current substore prefix.  This code works even
-        // if mStoreName is null.
         String fullName = getFullName(name);
 
-        while (e.hasMoreElements()) {
-            String key = e.nextElement();
+        List<String> keys = new ArrayList<>();
+        for (String key : mSource.keys(fullName + ".")) {
+            keys.add(key);
+        }
 
-            if (key.startsWith(fullName + ".")) {
-                ((Hashtable<String, String>) mSource).remove(key);
-            }
+        for (String key : keys) {
+            mSource.remove(key);
         }
     }
 
@@ -723,13 +727,7 @@ public class ConfigStore implements Cloneable {
         String fullname = getFullName(name);
         String reference = mSource.get(fullname);
 
-        try {
-            Constructor<T> constructor = clazz.getDeclaredConstructor(String.class, SimpleProperties.class);
-            return reference == null ? constructor.newInstance(fullname, mSource) : constructor.newInstance(reference, mSource);
-        } catch (NoSuchMethodException | InvocationTargetException
-                | IllegalAccessException | InstantiationException | IllegalArgumentException e) {
-            throw new RuntimeException(e);
-        }
+        return newInstance(clazz, reference == null ? fullname : reference);
     }
 
     /**
@@ -738,14 +736,12 @@ public class ConfigStore implements Cloneable {
      * @return a list of string-based property names
      */
     public Enumeration<String> getPropertyNames() {
-        // XXX - this operation is expensive!!!
         Map<String, String> map = getProperties();
 
         Vector<String> v = new Vector<>();
         for (String name : map.keySet()) {
             int i = name.indexOf('.'); // substores have "."
             if (i >= 0) continue;
-            if (v.contains(name)) continue;
 
             v.addElement(name);
         }
@@ -759,7 +755,6 @@ public class ConfigStore implements Cloneable {
      * @return list of substore names
      */
     public Vector<String> getSubStoreNames() {
-        // XXX - this operation is expensive!!!
         Map<String, String> map = getProperties();
 
         Vector<String> v = new Vector<>();
@@ -767,8 +762,10 @@ public class ConfigStore implements Cloneable {
             int i = name.indexOf('.'); // substores have "."
             if (i < 0) continue;
 
+            // the properties are sorted so the properties
+            // of a substore are next to each other
             name = name.substring(0, i);
-            if (v.contains(name)) continue;
+            if (!v.isEmpty() && v.lastElement().equals(name)) continue;
 
             v.addElement(name);
         }
@@ -26,9 +26,21 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * The <code>Properties</code> class represents a persistent set of
@@ -61,6 +73,19 @@ public class SimpleProperties extends Hashtable<String, String> {
      */
     protected SimpleProperties defaults;
 
+    /**
+     * Sorted index of the keys to find the keys of a substore
+     * without scanning the whole table. The index is updated by
+     * put() and remove(), and rebuilt after other changes including
+     * removals through the key, value, and entry views.
+     */
+    private transient NavigableSet<String> keyIndex;
+
+    /**
+     * Incremented on every change to detect stale snapshots.
+     */
+    private transient volatile long version;
+
     /**
      * Creates an empty property list with no default values.
      */
@@ -88,6 +113,389 @@ public class SimpleProperties extends Hashtable<String, String> {
         return put(key, value);
     }
 
+    @Override
+    public synchronized String put(String key, String value) {
+        String oldValue = super.put(key, value);
+        if (oldValue == null && keyIndex != null) {
+            keyIndex.add(key);
+        }
+        version++;
+        return oldValue;
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        String oldValue = super.remove(key);
+        if (oldValue != null) {
+            if (keyIndex != null) {
+                keyIndex.remove(key);
+            }
+            version++;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        if (keyIndex != null) {
+            keyIndex.clear();
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized String putIfAbsent(String key, String value) {
+        invalidate();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        invalidate();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public synchronized String computeIfAbsent(String key,
+            Function<? super String, ? extends String> function) {
+        invalidate();
+        return super.computeIfAbsent(key, function);
+    }
+
+    @Override
+    public synchronized String computeIfPresent(String key,
+            BiFunction<? super String, ? super String, ? extends String> function) {
+        invalidate();
+        return super.computeIfPresent(key, function);
+    }
+
+    @Override
+    public synchronized String compute(String key,
+            BiFunction<? super String, ? super String, ? extends String> function) {
+        invalidate();
+        return super.compute(key, function);
+    }
+
+    @Override
+    public synchronized String merge(String key, String value,
+            BiFunction<? super String, ? super String, ? extends String> function) {
+        invalidate();
+        return super.merge(key, value, function);
+    }
+
+    @Override
+    public synchronized String replace(String key, String value) {
+        String oldValue = super.replace(key, value);
+        if (oldValue != null) {
+            version++;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public synchronized boolean replace(String key, String oldValue, String newValue) {
+        boolean replaced = super.replace(key, oldValue, newValue);
+        if (replaced) {
+            version++;
+        }
+        return replaced;
+    }
+
+    @Override
+    public synchronized void replaceAll(
+            BiFunction<? super String, ? super String, ? extends String> function) {
+        super.replaceAll(function);
+        version++;
+    }
+
+    private void invalidate() {
+        keyIndex = null;
+        version++;
+    }
+
+    /**
+     * Returns a view of the keys. Removing keys from the view
+     * removes the properties.
+     */
+    @Override
+    public Set<String> keySet() {
+
+        Set<String> keySet = super.keySet();
+
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                return new ViewIterator<>(keySet.iterator());
+            }
+
+            @Override
+            public int size() {
+                return keySet.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return keySet.contains(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return SimpleProperties.this.remove(o) != null;
+            }
+
+            @Override
+            public void clear() {
+                SimpleProperties.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the values. Removing values from the view
+     * removes the properties.
+     */
+    @Override
+    public Collection<String> values() {
+
+        Collection<String> values = super.values();
+
+        return new AbstractCollection<>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                return new ViewIterator<>(values.iterator());
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return values.contains(o);
+            }
+
+            @Override
+            public void clear() {
+                SimpleProperties.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the properties. Removing entries from the view
+     * removes the properties, and changing the value of an entry
+     * changes the property.
+     */
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+
+        Set<Map.Entry<String, String>> entrySet = super.entrySet();
+
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+
+                return new ViewIterator<>(entrySet.iterator()) {
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        return new ViewEntry(super.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entrySet.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return entrySet.contains(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                return SimpleProperties.this.remove(entry.getKey(), entry.getValue());
+            }
+
+            @Override
+            public void clear() {
+                SimpleProperties.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Iterator of the key, value, and entry views which rebuilds
+     * the index when a property is removed through the iterator.
+     */
+    private class ViewIterator<E> implements Iterator<E> {
+
+        Iterator<E> iterator;
+
+        ViewIterator(Iterator<E> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            synchronized (SimpleProperties.this) {
+                iterator.remove();
+                invalidate();
+            }
+        }
+    }
+
+    /**
+     * Entry of the entry view which updates the version when the
+     * value is changed.
+     */
+    private class ViewEntry implements Map.Entry<String, String> {
+
+        Map.Entry<String, String> entry;
+
+        ViewEntry(Map.Entry<String, String> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public String getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public String setValue(String value) {
+            synchronized (SimpleProperties.this) {
+                String oldValue = entry.setValue(value);
+                version++;
+                return oldValue;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return entry.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+
+    @Override
+    public synchronized Object clone() {
+        SimpleProperties that = (SimpleProperties) super.clone();
+        that.keyIndex = null;
+        return that;
+    }
+
+    private synchronized NavigableSet<String> getKeyIndex() {
+
+        if (keyIndex == null) {
+            keyIndex = new ConcurrentSkipListSet<>(keySet());
+        }
+
+        return keyIndex;
+    }
+
+    /**
+     * Returns the keys that start with the given prefix in
+     * lexicographic order.
+     *
+     * @param prefix key prefix
+     * @return keys with the prefix
+     */
+    public Iterable<String> keys(String prefix) {
+
+        NavigableSet<String> index = getKeyIndex();
+        if (prefix.isEmpty()) {
+            return Collections.unmodifiableSet(index);
+        }
+
+        return () -> new Iterator<String>() {
+
+            Iterator<String> i = index.tailSet(prefix, true).iterator();
+            String next = advance();
+
+            String advance() {
+                if (!i.hasNext()) return null;
+                String key = i.next();
+                return key.startsWith(prefix) ? key : null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                String key = next;
+                next = advance();
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Fills the given map with the properties whose keys start
+     * with the given prefix, removing the prefix from the keys.
+     *
+     * @param prefix key prefix
+     * @param map the map
+     */
+    public void getProperties(String prefix, Map<String, String> map) {
+
+        int length = prefix.length();
+
+        for (String key : keys(prefix)) {
+            String value = get(key);
+            if (value == null) continue; // removed concurrently
+            map.put(key.substring(length), value);
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever a property is
+     * added, changed, or removed.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     private static final String keyValueSeparators = "=: \t\r\n\f";
 
     private static final String strictKeyValueSeparators = "=:";
@@ -17,6 +17,11 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.connector;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmsutil.http.JssSSLSocketFactory;
@@ -33,13 +38,16 @@ public class HttpConnFactory {
     protected int mMinConns = 1;
     protected int mMaxConns = 30;
 
-    private int mNumConns = 0; // number of available conns in array
-    private int mTotal = 0; // total num conns
-    private HttpConnection mConns[];
+    private LinkedBlockingDeque<HttpConnection> mConns; // available conns
+    private AtomicInteger mTotal = new AtomicInteger(); // total num conns
     private RemoteAuthority mDest;
     private String mNickname = "";
     private String mClientCiphers = null;
     private int mTimeout = 0;
+    private boolean mKeepAlive = false;
+
+    // target (hostname:port) -> latency histogram
+    private Map<String, LatencyHistogram> mLatencies = new ConcurrentHashMap<>();
 
     /**
      * Constructor for initializing from the config store.
@@ -86,6 +94,22 @@ public class HttpConnFactory {
         this.engine = engine;
     }
 
+    public boolean getKeepAlive() {
+        return mKeepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        mKeepAlive = keepAlive;
+    }
+
+    /**
+     * Returns the request latencies of all connections
+     * for each target (hostname:port).
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return mLatencies;
+    }
+
     /**
      * initialize parameters obtained from either constructor or
      * config store
@@ -106,20 +130,13 @@ public class HttpConnFactory {
             throw new EBaseException("HttpConnFactory: Invalid minimum and maximum connections");
         }
 
-        logger.debug("before creating httpconn array");
-
-        mConns = new HttpConnection[mMaxConns];
-
-        // Create connection handle and make initial connection
-
-        logger.debug("before makeConnection");
+        mConns = new LinkedBlockingDeque<>(mMaxConns);
 
         logger.debug(
                 "initializing HttpConnFactory with mininum " + mMinConns + " and maximum " + mMaxConns +
                         " connections to ");
 
-        // initalize minimum number of connection handles available.
-        //makeMinimum();
+        // connections are created on demand
 
         logger.debug("leaving HttpConnFactory init.");
     }
@@ -142,6 +159,8 @@ public class HttpConnFactory {
             }
 
             retConn.setCMSEngine(engine);
+            retConn.setKeepAlive(mKeepAlive);
+            retConn.setLatencies(mLatencies);
             retConn.init();
 
         } catch (Exception e) {
@@ -153,32 +172,6 @@ public class HttpConnFactory {
         return retConn;
     }
 
-    /**
-     * makes the minumum number of connections
-     */
-    private void makeMinimum() throws EBaseException {
-
-        logger.debug("In HttpConnFactory.makeMinimum.");
-        int increment;
-
-        if (mNumConns < mMinConns && mTotal <= mMaxConns) {
-
-            increment = Math.min(mMinConns - mNumConns, mMaxConns - mTotal);
-
-            if (increment == 0)
-                return;
-
-            logger.debug("increasing minimum connections by " + increment);
-            for (int i = increment - 1; i >= 0; i--) {
-                mConns[i] = createConnection();
-            }
-            mTotal += increment;
-            mNumConns += increment;
-            logger.debug("new total available http connections " + mTotal);
-            logger.debug("new number of http connections " + mNumConns);
-        }
-    }
-
     /**
      * gets a conenction from this factory.
      * All connections obtained from the factory must be returned by
@@ -225,37 +218,53 @@ public class HttpConnFactory {
      * }
      * </pre>
      */
-    public synchronized HttpConnection getConn(boolean waitForConn)
+    public HttpConnection getConn(boolean waitForConn)
             throws EBaseException {
-        boolean waited = false;
 
         logger.debug("In HttpConnFactory.getConn");
-        if (mNumConns == 0)
-            makeMinimum();
-        if (mNumConns == 0) {
-            if (!waitForConn)
-                return null;
+
+        // reuse the most recently returned connection since
+        // it is the most likely to still be open
+        HttpConnection conn = mConns.pollFirst();
+        if (conn != null) {
+            return conn;
+        }
+
+        // create a new connection if the maximum has not been reached
+        int total;
+        while ((total = mTotal.get()) < mMaxConns) {
+
+            if (!mTotal.compareAndSet(total, total + 1)) {
+                continue;
+            }
+
             try {
-                logger.warn("HttpConnFactory: Ran out of HTTP connections");
-                waited = true;
-                logger.debug("HttpConn:about to wait for a new http connection");
-                while (mNumConns == 0)
-                    wait();
-
-                logger.debug("HttpConn:done waiting for new http connection");
-            } catch (InterruptedException e) {
+                conn = createConnection();
+            } catch (EBaseException e) {
+                mTotal.decrementAndGet();
+                throw e;
             }
+
+            logger.debug("HttpConnFactory: new total http connections " + (total + 1));
+            return conn;
         }
-        mNumConns--;
-        HttpConnection conn = mConns[mNumConns];
 
-        mConns[mNumConns] = null;
+        if (!waitForConn)
+            return null;
+
+        logger.warn("HttpConnFactory: Ran out of HTTP connections");
+        logger.debug("HttpConn:about to wait for a new http connection");
 
-        if (waited) {
-            logger.warn("HttpConn:had to wait for an available connection from pool");
-            logger.warn("Http connections are available again in http connection pool");
+        try {
+            conn = mConns.takeFirst();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EBaseException("HttpConnFactory: Interrupted while waiting for HTTP connection", e);
         }
-        logger.debug("HttpgetConn: mNumConns now " + mNumConns);
+
+        logger.warn("HttpConn:had to wait for an available connection from pool");
+        logger.warn("Http connections are available again in http connection pool");
 
         return conn;
     }
@@ -278,22 +287,19 @@ public class HttpConnFactory {
      * }
      * </pre>
      */
-    public synchronized void returnConn(HttpConnection conn) {
+    public void returnConn(HttpConnection conn) {
 
         logger.debug("In HttpConnFactory.returnConn");
         if (conn == null) {
             return;
         }
-        HttpConnection boundconn = conn;
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] == conn) {
-                logger.debug("returnConn: previously returned connection. " + conn);
-
-            }
+        if (mConns.contains(conn)) {
+            logger.debug("returnConn: previously returned connection. " + conn);
+            return;
         }
-        mConns[mNumConns++] = boundconn;
-        logger.debug("HttpreturnConn: mNumConns now " + mNumConns);
-        notify();
+
+        mConns.offerFirst(conn);
+        logger.debug("HttpreturnConn: available connections now " + mConns.size());
     }
 }
@@ -23,6 +23,7 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,8 +36,10 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmsutil.http.HttpClient;
+import com.netscape.cmsutil.http.HttpNoResponseException;
 import com.netscape.cmsutil.http.HttpRequest;
 import com.netscape.cmsutil.http.HttpResponse;
+import com.netscape.cmsutil.http.HttpWriteException;
 import com.netscape.cmsutil.net.ISocketFactory;
 
 /**
@@ -50,6 +53,12 @@ public class HttpConnection {
 
     private static Logger logger = LoggerFactory.getLogger(HttpConnection.class);
 
+    // keep-alive connections idle longer than this are reopened
+    // before sending to avoid racing with the server closing them
+    public static final long MAX_IDLE_TIME = 15000; // milliseconds
+
+    private static volatile String localAddress;
+
     protected CMSEngine engine;
     protected RemoteAuthority dest;
     protected ISocketFactory factory;
@@ -61,6 +70,10 @@ public class HttpConnection {
     List<InetSocketAddress> targets;
     String localIP = "localhost";
 
+    boolean keepAlive;
+    long lastUsed;
+    Map<String, LatencyHistogram> latencies;
+
     public HttpConnection(RemoteAuthority dest, ISocketFactory factory) {
         this(dest, factory, 0);
     }
@@ -82,16 +95,54 @@ public class HttpConnection {
         this.engine = engine;
     }
 
-    public void init() {
+    public boolean getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Keeps the connection open between requests if the
+     * remote authority supports it.
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Sets the histograms to record the request latencies
+     * for each target (hostname:port).
+     */
+    public void setLatencies(Map<String, LatencyHistogram> latencies) {
+        this.latencies = latencies;
+    }
+
+    /**
+     * Returns the address of the local host. The lookup is done once
+     * since it may involve a DNS query.
+     */
+    static String getLocalAddress() {
 
-        logger.debug("HttpConnection: Creating HttpConnection with timeout=" + timeout);
+        String address = localAddress;
+        if (address != null) {
+            return address;
+        }
 
         try {
-            localIP = InetAddress.getLocalHost().getHostAddress();
+            address = InetAddress.getLocalHost().getHostAddress();
         } catch (UnknownHostException e) {
-            // default to "localhost";
+            // use "localhost" without caching so it will be retried
+            return "localhost";
         }
 
+        localAddress = address;
+        return address;
+    }
+
+    public void init() {
+
+        logger.debug("HttpConnection: Creating HttpConnection with timeout=" + timeout + " keepAlive=" + keepAlive);
+
+        localIP = getLocalAddress();
+
         mReqEncoder = new HttpRequestEncoder();
         mHttpClient = new HttpClient(factory);
 
@@ -115,6 +166,10 @@ public class HttpConnection {
             mHttpreq.setHeader("Host", dest.getHost());
             logger.debug("HttpConnection: setting Host to " + dest.getHost());
 
+            if (keepAlive) {
+                mHttpreq.setHeader("Connection", "keep-alive");
+            }
+
             connect();
 
         } catch (IOException e) {
@@ -170,6 +225,7 @@ public class HttpConnection {
                 mHttpClient.connect(hostname, port, timeout * 1000);
 
                 logger.debug("HttpConnection: Connected to " + hostname + ":" + port);
+                lastUsed = System.currentTimeMillis();
                 return;
 
             } catch (IOException e) {
@@ -292,12 +348,6 @@ public class HttpConnection {
         boolean reconnected = false;
         Auditor auditor = engine.getAuditor();
         SignedAuditEvent auditEvent;
-        String localIP = "localhost";
-        try {
-            localIP = InetAddress.getLocalHost().getHostAddress();
-        } catch (UnknownHostException e) {
-            // default to "localhost";
-        }
 
         if (getRequestURI() == null) {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", "URI not set in HttpRequest"));
@@ -309,6 +359,11 @@ public class HttpConnection {
         mHttpreq.setContent(content);
 
         try {
+            if (mHttpClient.connected() && System.currentTimeMillis() - lastUsed > MAX_IDLE_TIME) {
+                logger.debug("HttpConnection.doSend: closing idle connection");
+                mHttpClient.disconnect();
+            }
+
             if (!mHttpClient.connected()) {
                 connect();
                 reconnected = true;
@@ -332,8 +387,12 @@ public class HttpConnection {
         while (resp == null) {
             try {
                 logger.debug("HttpConnection.doSend: sending request");
+                long start = System.currentTimeMillis();
                 resp = mHttpClient.send(mHttpreq);
 
+                lastUsed = System.currentTimeMillis();
+                recordLatency(lastUsed - start);
+
             } catch (IOException e) {
                 logger.error("Unable to send HTTP request: " + e.getMessage(), e);
 
@@ -351,6 +410,17 @@ public class HttpConnection {
                             CMS.getUserMessage("CMS_BASE_CONN_FAILED", "resend failed again: " + e), e);
                 }
 
+                // A request that could not be written is resent. A request
+                // on a reused connection that got no response at all is
+                // also resent, since the server has most likely closed
+                // the connection while it was idle. Otherwise the remote
+                // authority may have processed the request already, so
+                // it is not sent again.
+                if (!(e instanceof HttpWriteException || e instanceof HttpNoResponseException)) {
+                    throw new EBaseException(
+                            CMS.getUserMessage("CMS_BASE_CONN_FAILED", "no response: " + e), e);
+                }
+
                 try {
                     logger.warn("HttpConnection.doSend: trying a reconnect ");
                     connect();
@@ -398,4 +468,14 @@ public class HttpConnection {
 
         return resp;
     }
+
+    void recordLatency(long latency) {
+
+        if (latencies == null) {
+            return;
+        }
+
+        String target = mHttpClient.getHost() + ":" + mHttpClient.getPort();
+        latencies.computeIfAbsent(target, k -> new LatencyHistogram()).record(latency);
+    }
 }
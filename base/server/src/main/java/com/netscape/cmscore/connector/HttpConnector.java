@@ -17,6 +17,7 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.connector;
 
+import java.util.Map;
 import java.util.Vector;
 
 import com.netscape.certsrv.base.EBaseException;
@@ -92,9 +93,13 @@ public class HttpConnector extends Connector {
         int maxConns = config.getMaxHttpConns();
         logger.debug("HttpConnector: maxHttpConns: " + maxConns);
 
+        boolean keepAlive = config.getKeepAlive();
+        logger.debug("HttpConnector: keepAlive: " + keepAlive);
+
         try {
             mConnFactory = new HttpConnFactory(minConns, maxConns, mDest, nickname, clientCiphers, mTimeout);
             mConnFactory.setCMSEngine(engine);
+            mConnFactory.setKeepAlive(keepAlive);
             mConnFactory.init();
 
         } catch (EBaseException e) {
@@ -145,6 +150,13 @@ public class HttpConnector extends Connector {
         return resp;
     }
 
+    /**
+     * Returns the request latencies for each target (hostname:port).
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return mConnFactory == null ? Map.of() : mConnFactory.getLatencies();
+    }
+
     @Override
     public boolean send(Request r)
             throws EBaseException {
@@ -259,6 +271,10 @@ public class HttpConnector extends Connector {
         logger.debug("Stopping HttpConnector resender thread");
         if (mResender != null)
             mResender.stop();
+
+        for (Map.Entry<String, LatencyHistogram> entry : getLatencies().entrySet()) {
+            logger.info("HttpConnector: Latency to " + entry.getKey() + ": " + entry.getValue());
+        }
     }
 
 }
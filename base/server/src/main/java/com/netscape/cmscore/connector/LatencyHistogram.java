@@ -0,0 +1,118 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.connector;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records the latencies of requests sent to
+ * a remote authority in fixed buckets.
+ */
+public class LatencyHistogram {
+
+    // upper bounds of the buckets in milliseconds,
+    // the last bucket has no upper bound
+    public static final long[] BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000
+    };
+
+    private LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private LongAdder total = new LongAdder();
+    private LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a request latency.
+     *
+     * @param latency latency in milliseconds
+     */
+    public void record(long latency) {
+
+        int i = 0;
+        while (i < BOUNDS.length && latency > BOUNDS[i]) {
+            i++;
+        }
+
+        buckets[i].increment();
+        total.add(latency);
+        max.accumulate(latency);
+    }
+
+    /**
+     * Returns the number of requests in each bucket.
+     */
+    public long[] getCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getAverage() {
+        long count = getCount();
+        return count == 0 ? 0 : total.sum() / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given
+     * percentile, or the max latency if it is in the last bucket.
+     *
+     * @param percentile percentile between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+
+        long[] counts = getCounts();
+
+        long count = 0;
+        for (long c : counts) {
+            count += c;
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long sum = 0;
+
+        for (int i = 0; i < BOUNDS.length; i++) {
+            sum += counts[i];
+            if (sum >= rank) {
+                return BOUNDS[i];
+            }
+        }
+
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + " avg=" + getAverage() + "ms"
+                + " p50<=" + getPercentile(50) + "ms"
+                + " p99<=" + getPercentile(99) + "ms"
+                + " max=" + getMax() + "ms";
+    }
+}
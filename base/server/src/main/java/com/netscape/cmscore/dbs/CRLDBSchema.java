@@ -44,4 +44,5 @@ public class CRLDBSchema {
     public static final String LDAP_ATTR_UNREVOKED_CERTS = "unrevokedCerts";
     public static final String LDAP_ATTR_EXPIRED_CERTS = "expiredCerts";
     public static final String LDAP_ATTR_DELTA_CRL = "deltaRevocationList";
+    public static final String LDAP_ATTR_REVOCATION_JOURNAL = "revocationJournal";
 }
@@ -21,6 +21,7 @@ import java.math.BigInteger;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
@@ -53,6 +54,7 @@ public class CRLIssuingPointRecord implements IDBObj {
     public static final String ATTR_UNREVOKED_CERTS = "unrevokedCerts";
     public static final String ATTR_EXPIRED_CERTS = "expiredCerts";
     public static final String ATTR_DELTA_CRL = "deltaRevocationList";
+    public static final String ATTR_REVOCATION_JOURNAL = "revocationJournal";
 
     public static final String CLEAN_CACHE = "-1";
     public static final String NEW_CACHE = "-2";
@@ -72,6 +74,7 @@ public class CRLIssuingPointRecord implements IDBObj {
     protected Hashtable<BigInteger, RevokedCertificate> mUnrevokedCerts = null;
     protected Hashtable<BigInteger, RevokedCertificate> mExpiredCerts = null;
     protected byte mDeltaCRL[] = null;
+    protected List<RevocationJournalEntry> mRevocationJournal = null;
     protected static Vector<String> mNames = new Vector<>();
     static {
         mNames.addElement(ATTR_ID);
@@ -89,6 +92,7 @@ public class CRLIssuingPointRecord implements IDBObj {
         mNames.addElement(ATTR_UNREVOKED_CERTS);
         mNames.addElement(ATTR_EXPIRED_CERTS);
         mNames.addElement(ATTR_DELTA_CRL);
+        mNames.addElement(ATTR_REVOCATION_JOURNAL);
     }
 
     /**
@@ -172,6 +176,8 @@ public class CRLIssuingPointRecord implements IDBObj {
             mExpiredCerts = (Hashtable<BigInteger, RevokedCertificate>) obj;
         } else if (name.equalsIgnoreCase(ATTR_DELTA_CRL)) {
             mDeltaCRL = (byte[]) obj;
+        } else if (name.equalsIgnoreCase(ATTR_REVOCATION_JOURNAL)) {
+            mRevocationJournal = (List<RevocationJournalEntry>) obj;
         } else {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", name));
         }
@@ -209,6 +215,8 @@ public class CRLIssuingPointRecord implements IDBObj {
             return mExpiredCerts;
         } else if (name.equalsIgnoreCase(ATTR_DELTA_CRL)) {
             return mDeltaCRL;
+        } else if (name.equalsIgnoreCase(ATTR_REVOCATION_JOURNAL)) {
+            return mRevocationJournal;
         } else {
             throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", name));
         }
@@ -371,4 +379,14 @@ public class CRLIssuingPointRecord implements IDBObj {
     public Hashtable<BigInteger, RevokedCertificate> getExpiredCerts() {
         return mExpiredCerts == null ? null : (Hashtable<BigInteger, RevokedCertificate>) mExpiredCerts.clone();
     }
+
+    /**
+     * Retrieves changes to the revoked and unrevoked certificates
+     * stored since the cache was last saved.
+     *
+     * @return list of journal entries sorted by sequence number
+     */
+    public List<RevocationJournalEntry> getRevocationJournal() {
+        return mRevocationJournal;
+    }
 }
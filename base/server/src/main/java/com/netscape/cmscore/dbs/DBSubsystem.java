@@ -358,6 +358,8 @@ public class DBSubsystem {
                     ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_EXPIRED_CERTS, new
                     ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS));
+            reg.registerAttribute(CRLIssuingPointRecord.ATTR_REVOCATION_JOURNAL, new
+                    RevocationJournalMapper(CRLDBSchema.LDAP_ATTR_REVOCATION_JOURNAL));
 
             boolean registered = reg.isObjectClassRegistered(RepositoryRecord.class.getName());
             logger.debug("registered: " + registered);
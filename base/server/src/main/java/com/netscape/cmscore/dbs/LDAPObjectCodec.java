@@ -0,0 +1,215 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * This class converts objects of a registered class into
+ * LDAP attribute sets and vice versa.
+ *
+ * The constructor of the class and the mappers of its serializable
+ * attributes are looked up once instead of for every entry. The
+ * serializable attribute names are obtained from a prototype object,
+ * so they must be the same for all objects of the class, which is
+ * the case for all records stored in the database.
+ *
+ * Since attributes can be registered after the object class, the
+ * mappers are resolved on first use and again after a new attribute
+ * has been registered.
+ */
+public class LDAPObjectCodec {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LDAPObjectCodec.class);
+
+    private Class<?> objectClass;
+    private String[] ldapNames;
+    private String key;
+    private MethodHandle constructor;
+
+    // serializable attribute names and their mappers,
+    // null if they need to be resolved
+    private volatile AttributeCodec[] attributes;
+
+    public LDAPObjectCodec(Class<?> objectClass, String[] ldapNames) {
+
+        this.objectClass = objectClass;
+        this.ldapNames = ldapNames;
+        this.key = createKey(ldapNames);
+
+        try {
+            constructor = MethodHandles.lookup()
+                    .findConstructor(objectClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(IDBObj.class));
+
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // let newInstance() report the error when the object is created
+            logger.debug("LDAPObjectCodec: No accessible constructor in " + objectClass.getName());
+        }
+    }
+
+    public Class<?> getObjectClass() {
+        return objectClass;
+    }
+
+    public String[] getLDAPNames() {
+        return ldapNames;
+    }
+
+    /**
+     * Returns the key of the object class values used to find
+     * the codec of an LDAP entry.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Creates a key from object class values which does not
+     * depend on the order or the case of the values.
+     */
+    public static String createKey(String[] values) {
+
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].toLowerCase();
+        }
+
+        Arrays.sort(names);
+        return String.join(",", names);
+    }
+
+    /**
+     * Forces the mappers to be resolved again on next use.
+     */
+    public void reset() {
+        attributes = null;
+    }
+
+    IDBObj newInstance() throws Exception {
+
+        if (constructor == null) {
+            return (IDBObj) objectClass.getDeclaredConstructor().newInstance();
+        }
+
+        try {
+            return (IDBObj) constructor.invokeExact();
+
+        } catch (Exception | Error e) {
+            throw e;
+
+        } catch (Throwable e) {
+            // not thrown by a constructor, required by invokeExact()
+            throw new Exception(e);
+        }
+    }
+
+    AttributeCodec[] getAttributes(Map<String, DBAttrMapper> mappers) throws Exception {
+
+        AttributeCodec[] attrs = attributes;
+        if (attrs != null) {
+            return attrs;
+        }
+
+        logger.debug("LDAPObjectCodec: Resolving attribute mappers for " + objectClass.getName());
+
+        List<AttributeCodec> list = new ArrayList<>();
+        IDBObj prototype = newInstance();
+
+        Enumeration<String> names = prototype.getSerializableAttrNames();
+        while (names != null && names.hasMoreElements()) {
+            String name = names.nextElement();
+            list.add(new AttributeCodec(name, mappers.get(name.toLowerCase())));
+        }
+
+        attrs = list.toArray(new AttributeCodec[list.size()]);
+        attributes = attrs;
+
+        return attrs;
+    }
+
+    /**
+     * Creates attribute set from object.
+     */
+    public LDAPAttributeSet encode(IDBObj obj, Map<String, DBAttrMapper> mappers) throws EBaseException {
+
+        AttributeCodec[] attrs;
+        try {
+            attrs = getAttributes(mappers);
+        } catch (EBaseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_INVALID_ATTRS") + ": " + e.getMessage(), e);
+        }
+
+        LDAPAttributeSet attrSet = new LDAPAttributeSet();
+        attrSet.add(new LDAPAttribute("objectclass", ldapNames));
+
+        for (AttributeCodec attr : attrs) {
+
+            if (attr.mapper == null) {
+                continue; // no mapper found, just skip this attribute
+            }
+
+            Object value = obj.get(attr.name);
+            if (value == null) {
+                continue;
+            }
+
+            attr.mapper.mapObjectToLDAPAttributeSet(obj, attr.name, value, attrSet);
+        }
+
+        return attrSet;
+    }
+
+    /**
+     * Creates object from attribute set.
+     */
+    public IDBObj decode(LDAPAttributeSet attrSet, Map<String, DBAttrMapper> mappers) throws Exception {
+
+        AttributeCodec[] attrs = getAttributes(mappers);
+        IDBObj obj = newInstance();
+
+        for (AttributeCodec attr : attrs) {
+
+            if (attr.mapper == null) {
+                throw new EDBException(
+                        CMS.getUserMessage("CMS_DBS_NO_MAPPER_FOUND", attr.name));
+            }
+
+            attr.mapper.mapLDAPAttributeSetToObject(attrSet, attr.name, obj);
+        }
+
+        return obj;
+    }
+
+    static class AttributeCodec {
+
+        String name;
+        DBAttrMapper mapper;
+
+        AttributeCodec(String name, DBAttrMapper mapper) {
+            this.name = name;
+            this.mapper = mapper;
+        }
+    }
+}
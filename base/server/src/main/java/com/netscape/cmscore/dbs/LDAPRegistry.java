@@ -20,9 +20,13 @@ package com.netscape.cmscore.dbs;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,13 +62,36 @@ public class LDAPRegistry extends DBRegistry {
 
     public final static Logger logger = LoggerFactory.getLogger(LDAPRegistry.class);
 
+    public final static int DEFAULT_FILTER_CACHE_SIZE = 1000;
+
     private ConfigStore mConfig = null;
     private Hashtable<String, String[]> mOCclassNames = new Hashtable<>();
-    private Hashtable<String, NameAndObject> mOCldapNames = new Hashtable<>();
     private Hashtable<String, DBAttrMapper> mAttrufNames = new Hashtable<>();
+
+    // object class key -> codec
+    private Map<String, LDAPObjectCodec> mCodecs = new ConcurrentHashMap<>();
+
+    // Java class -> codec
+    private Map<Class<?>, LDAPObjectCodec> mClassCodecs = new ConcurrentHashMap<>();
+
     private FilterConverter mConverter;
     private Vector<DBDynAttrMapper> mDynAttrMappers = new Vector<>();
 
+    // CMS filter -> LDAP filter, least recently used filters are removed first
+    private Map<String, String> mFilterCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > DEFAULT_FILTER_CACHE_SIZE;
+        }
+    };
+
+    // incremented whenever the cache is cleared, guarded by mFilterCache
+    private long mFilterCacheGeneration;
+
+    private LongAdder mFilterCacheHits = new LongAdder();
+    private LongAdder mFilterCacheMisses = new LongAdder();
+    private LongAdder mFilterTranslationTime = new LongAdder();
+
     /**
      * Constructs registry.
      */
@@ -121,8 +148,15 @@ public class LDAPRegistry extends DBRegistry {
      */
     @Override
     public void shutdown() {
+
+        logger.info("LDAPRegistry: Filter cache hits: " + getFilterCacheHits()
+                + ", misses: " + getFilterCacheMisses()
+                + ", saved per hit: " + getAverageFilterTranslationTime() / 1000 + " us");
+
+        clearFilterCache();
         mOCclassNames.clear();
-        mOCldapNames.clear();
+        mCodecs.clear();
+        mClassCodecs.clear();
         mAttrufNames.clear();
     }
 
@@ -134,11 +168,13 @@ public class LDAPRegistry extends DBRegistry {
             throws EDBException {
         try {
             Class<?> c = Class.forName(className);
+            LDAPObjectCodec codec = new LDAPObjectCodec(c, ldapNames);
 
             mOCclassNames.put(className, ldapNames);
-            mOCldapNames.put(sortAndConcate(
-                    ldapNames).toLowerCase(),
-                    new NameAndObject(className, c));
+            mCodecs.put(codec.getKey(), codec);
+            mClassCodecs.put(c, codec);
+
+            clearFilterCache();
         } catch (ClassNotFoundException e) {
 
             /*LogDoc
@@ -169,6 +205,13 @@ public class LDAPRegistry extends DBRegistry {
         // should not allows 'objectclass' as attribute; it has
         // special meaning
         mAttrufNames.put(ufName.toLowerCase(), mapper);
+
+        // resolve the mappers again in case the attribute is used by a codec
+        for (LDAPObjectCodec codec : mCodecs.values()) {
+            codec.reset();
+        }
+
+        clearFilterCache();
     }
 
     /**
@@ -213,7 +256,63 @@ public class LDAPRegistry extends DBRegistry {
      */
     @Override
     public String getFilter(String filter) throws EBaseException {
-        return getFilter(filter, mConverter);
+
+        String ldapFilter;
+        long generation;
+
+        synchronized (mFilterCache) {
+            ldapFilter = mFilterCache.get(filter);
+            generation = mFilterCacheGeneration;
+        }
+
+        if (ldapFilter != null) {
+            mFilterCacheHits.increment();
+            return ldapFilter;
+        }
+
+        mFilterCacheMisses.increment();
+
+        long start = System.nanoTime();
+        ldapFilter = getFilter(filter, mConverter);
+        mFilterTranslationTime.add(System.nanoTime() - start);
+
+        synchronized (mFilterCache) {
+            // don't cache a filter translated with mappers that
+            // have been replaced while it was being translated
+            if (generation == mFilterCacheGeneration) {
+                mFilterCache.put(filter, ldapFilter);
+            }
+        }
+
+        return ldapFilter;
+    }
+
+    /**
+     * Removes the translated filters from the cache. This is
+     * done when the mappers used to translate them have changed.
+     */
+    public void clearFilterCache() {
+        synchronized (mFilterCache) {
+            mFilterCache.clear();
+            mFilterCacheGeneration++;
+        }
+    }
+
+    public long getFilterCacheHits() {
+        return mFilterCacheHits.sum();
+    }
+
+    public long getFilterCacheMisses() {
+        return mFilterCacheMisses.sum();
+    }
+
+    /**
+     * Returns the average time to parse and translate a filter
+     * in nanoseconds, which is the time saved by each cache hit.
+     */
+    public long getAverageFilterTranslationTime() {
+        long misses = getFilterCacheMisses();
+        return misses == 0 ? 0 : mFilterTranslationTime.sum() / misses;
     }
 
     @Override
@@ -251,7 +350,7 @@ public class LDAPRegistry extends DBRegistry {
         int level = 0;
         int start = 0;
         int end = 0;
-        Vector<String> v = new Vector<>();
+        StringBuilder sb = new StringBuilder();
 
         for (int i = 0; i < f.length(); i++) {
             if (f.charAt(i) == '(') {
@@ -264,27 +363,11 @@ public class LDAPRegistry extends DBRegistry {
                 level--;
                 if (level == 0) {
                     end = i;
-                    String filter = getFilter(f.substring(start, end + 1), c);
-
-                    v.addElement(filter);
+                    sb.append(getFilter(f.substring(start, end + 1), c));
                 }
             }
         }
-       return inStringFormat(v);
-    }
-
-    /**
-     * Convert a Vector<String> to Concatenated String
-     * @param v
-     * @return
-     */
-    private String inStringFormat(Vector<String> v){
-        StringBuffer result = new StringBuffer();
-
-        for (int i = 0; i < v.size(); i++) {
-            result.append(v.elementAt(i));
-        }
-        return result.toString();
+        return sb.toString();
     }
 
     /**
@@ -462,30 +545,14 @@ public class LDAPRegistry extends DBRegistry {
     @Override
     public LDAPAttributeSet createLDAPAttributeSet(IDBObj obj) throws EBaseException {
 
-        Enumeration<String> e = obj.getSerializableAttrNames();
-        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        Class<?> c = ((Object) obj).getClass();
+        LDAPObjectCodec codec = mClassCodecs.get(c);
 
-        // add object class to attribute set
-        String className = ((Object) obj).getClass().getName();
-        String[] ocNames = mOCclassNames.get(className);
-        for (String ocName : ocNames) {
-            logger.debug("LDAPRegistry: Adding object class " + ocName);
+        if (codec == null) {
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_INVALID_CLASS_NAME", c.getName()));
         }
-        attrs.add(new LDAPAttribute("objectclass", ocNames));
-
-        while (e.hasMoreElements()) {
-            String name = e.nextElement();
-            Object value = obj.get(name);
 
-            if (value == null) {
-                logger.debug("LDAPRegistry: Skipping empty attribute " + name);
-            } else {
-                logger.debug("LDAPRegistry: Mapping attribute " + name);
-                mapObject(obj, name, value, attrs);
-            }
-        }
-
-        return attrs;
+        return codec.encode(obj, mAttrufNames);
     }
 
     /**
@@ -502,34 +569,17 @@ public class LDAPRegistry extends DBRegistry {
 
         attrs.remove("objectclass");
 
-        // sort the object class values
-
-        String[] s = attr.getStringValueArray();
-        String sorted = sortAndConcate(s).toLowerCase();
-        NameAndObject no = mOCldapNames.get(sorted);
+        String key = LDAPObjectCodec.createKey(attr.getStringValueArray());
+        LDAPObjectCodec codec = mCodecs.get(key);
 
-        if (no == null) {
+        if (codec == null) {
             throw new EDBException(
-                    CMS.getUserMessage("CMS_DBS_INVALID_CLASS_NAME", sorted));
+                    CMS.getUserMessage("CMS_DBS_INVALID_CLASS_NAME", key));
         }
-        Class<?> c = (Class<?>) no.getObject();
 
         try {
-            IDBObj obj = (IDBObj) c.getDeclaredConstructor().newInstance();
-            Enumeration<String> ee = obj.getSerializableAttrNames();
-
-            while (ee.hasMoreElements()) {
-                String oname = ee.nextElement();
-                DBAttrMapper mapper = mAttrufNames.get(oname.toLowerCase());
+            return codec.decode(attrs, mAttrufNames);
 
-                if (mapper == null) {
-                    throw new EDBException(
-                            CMS.getUserMessage("CMS_DBS_NO_MAPPER_FOUND", oname));
-                }
-                mapper.mapLDAPAttributeSetToObject(attrs,
-                        oname, obj);
-            }
-            return obj;
         } catch (Exception e) {
 
             /*LogDoc
@@ -542,49 +592,4 @@ public class LDAPRegistry extends DBRegistry {
             throw new EDBException(CMS.getUserMessage("CMS_DBS_INVALID_ATTRS") + ": " + e.getMessage(), e);
         }
     }
-
-    /**
-     * Sorts and concate given strings.
-     */
-    private String sortAndConcate(String s[]) {
-        Vector<String> v = new Vector<>();
-
-        // sort it first
-        for (int i = 0; i < s.length; i++) {
-            for (int j = 0; j < v.size(); j++) {
-                String t = v.elementAt(j);
-
-                if (s[i].compareTo(t) < 0) {
-                    v.insertElementAt(s[i], j);
-                    break;
-                }
-            }
-            if (i != (v.size() - 1))
-                v.addElement(s[i]);
-        }
-
-       return inStringFormat(v);
-    }
-}
-
-/**
- * Just a convenient container class.
- */
-class NameAndObject {
-
-    private String mN = null;
-    private Object mO = null;
-
-    public NameAndObject(String name, Object o) {
-        mN = name;
-        mO = o;
-    }
-
-    public String getName() {
-        return mN;
-    }
-
-    public Object getObject() {
-        return mO;
-    }
 }
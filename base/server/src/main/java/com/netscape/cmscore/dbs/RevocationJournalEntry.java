@@ -0,0 +1,163 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Hashtable;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * A class represents a single change to the revoked or unrevoked
+ * certificates cached in a CRL issuing point record.
+ *
+ * The entries are stored as values of a multi-valued attribute of
+ * the CRL issuing point record, so a revocation only needs to add
+ * one small value instead of rewriting the whole cache. The entries
+ * are applied in the order of their sequence numbers on top of the
+ * cached revoked and unrevoked certificates.
+ */
+public class RevocationJournalEntry {
+
+    public static final int VERSION = 1;
+
+    public static final int ADD_REVOKED_CERT = 1;
+    public static final int REMOVE_REVOKED_CERT = 2;
+    public static final int ADD_UNREVOKED_CERT = 3;
+    public static final int REMOVE_UNREVOKED_CERT = 4;
+
+    private long sequenceNumber;
+    private int operation;
+    private BigInteger serialNumber;
+    private RevokedCertImpl revokedCert;
+
+    // encoding of the entry as stored in the database
+    private byte[] encoded;
+
+    /**
+     * Constructs a journal entry.
+     *
+     * @param sequenceNumber sequence number of the entry
+     * @param operation change to the cache
+     * @param serialNumber serial number of the certificate
+     * @param revokedCert cache entry for ADD_* operations, null otherwise
+     */
+    public RevocationJournalEntry(
+            long sequenceNumber,
+            int operation,
+            BigInteger serialNumber,
+            RevokedCertImpl revokedCert) {
+
+        this.sequenceNumber = sequenceNumber;
+        this.operation = operation;
+        this.serialNumber = serialNumber;
+        this.revokedCert = revokedCert;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int getOperation() {
+        return operation;
+    }
+
+    public BigInteger getSerialNumber() {
+        return serialNumber;
+    }
+
+    public RevokedCertImpl getRevokedCert() {
+        return revokedCert;
+    }
+
+    /**
+     * Applies this change to the cached revoked and unrevoked certificates.
+     */
+    public void apply(
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts,
+            Hashtable<BigInteger, RevokedCertificate> unrevokedCerts) {
+
+        switch (operation) {
+        case ADD_REVOKED_CERT:
+            revokedCerts.put(serialNumber, revokedCert);
+            break;
+        case REMOVE_REVOKED_CERT:
+            revokedCerts.remove(serialNumber);
+            break;
+        case ADD_UNREVOKED_CERT:
+            unrevokedCerts.put(serialNumber, revokedCert);
+            break;
+        case REMOVE_UNREVOKED_CERT:
+            unrevokedCerts.remove(serialNumber);
+            break;
+        }
+    }
+
+    public byte[] getEncoded() throws Exception {
+
+        if (encoded != null) {
+            return encoded;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(bos);
+
+        os.writeByte(VERSION);
+        os.writeLong(sequenceNumber);
+        os.writeByte(operation);
+
+        byte[] data = revokedCert == null ? serialNumber.toByteArray() : revokedCert.getEncoded();
+        os.writeInt(data.length);
+        os.write(data);
+
+        os.flush();
+        encoded = bos.toByteArray();
+
+        return encoded;
+    }
+
+    public static RevocationJournalEntry decode(byte[] encoded) throws Exception {
+
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(encoded));
+
+        int version = is.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported revocation journal entry version: " + version);
+        }
+
+        long sequenceNumber = is.readLong();
+        int operation = is.readUnsignedByte();
+
+        byte[] data = new byte[is.readInt()];
+        is.readFully(data);
+
+        RevocationJournalEntry entry;
+
+        if (operation == ADD_REVOKED_CERT || operation == ADD_UNREVOKED_CERT) {
+            RevokedCertImpl revokedCert = new RevokedCertImpl(data);
+            entry = new RevocationJournalEntry(
+                    sequenceNumber, operation, revokedCert.getSerialNumber(), revokedCert);
+
+        } else if (operation == REMOVE_REVOKED_CERT || operation == REMOVE_UNREVOKED_CERT) {
+            entry = new RevocationJournalEntry(
+                    sequenceNumber, operation, new BigInteger(data), null);
+
+        } else {
+            throw new IOException("Unsupported revocation journal operation: " + operation);
+        }
+
+        // keep the original encoding so the value can be removed from the database
+        entry.encoded = encoded;
+
+        return entry;
+    }
+}
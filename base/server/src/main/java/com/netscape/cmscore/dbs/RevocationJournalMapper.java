@@ -0,0 +1,120 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * A class represents an attribute mapper that maps a list of
+ * revocation journal entries into a multi-valued LDAP attribute,
+ * and vice versa.
+ */
+public class RevocationJournalMapper extends DBAttrMapper {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RevocationJournalMapper.class);
+
+    private String mLdapName = null;
+    private Vector<String> v = new Vector<>();
+
+    public RevocationJournalMapper(String ldapName) {
+        mLdapName = ldapName;
+        v.addElement(mLdapName);
+    }
+
+    /**
+     * Retrieves a list of supported ldap attributes.
+     */
+    @Override
+    public Enumeration<String> getSupportedLDAPAttributeNames() {
+        return v.elements();
+    }
+
+    /**
+     * Maps a list of journal entries into LDAP attribute values.
+     */
+    @Override
+    public void mapObjectToLDAPAttributeSet(IDBObj parent, String name,
+            Object obj, LDAPAttributeSet attrs)
+            throws EBaseException {
+
+        if (obj == null) {
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<RevocationJournalEntry> entries = (List<RevocationJournalEntry>) obj;
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        LDAPAttribute attr = new LDAPAttribute(mLdapName);
+
+        try {
+            for (RevocationJournalEntry entry : entries) {
+                attr.addValue(entry.getEncoded());
+            }
+        } catch (Exception e) {
+            logger.error("RevocationJournalMapper: " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_SERIALIZE_FAILED", name), e);
+        }
+
+        logger.debug("RevocationJournalMapper: Mapping " + name + " to " + mLdapName);
+        attrs.add(attr);
+    }
+
+    /**
+     * Maps LDAP attribute values into a list of journal entries
+     * sorted by sequence number, and put the list into 'parent'.
+     */
+    @Override
+    public void mapLDAPAttributeSetToObject(LDAPAttributeSet attrs,
+            String name, IDBObj parent) throws EBaseException {
+
+        LDAPAttribute attr = attrs.getAttribute(mLdapName);
+
+        if (attr == null) {
+            return;
+        }
+
+        List<RevocationJournalEntry> entries = new ArrayList<>();
+        Enumeration<byte[]> values = attr.getByteValues();
+
+        try {
+            while (values.hasMoreElements()) {
+                entries.add(RevocationJournalEntry.decode(values.nextElement()));
+            }
+        } catch (Exception e) {
+            logger.error("RevocationJournalMapper: " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name), e);
+        }
+
+        entries.sort(Comparator.comparingLong(RevocationJournalEntry::getSequenceNumber));
+        parent.set(name, entries);
+    }
+
+    /**
+     * Maps search filters into LDAP search filter.
+     */
+    @Override
+    public String mapSearchFilter(String name, String op,
+            String value) throws EBaseException {
+        return mLdapName + op + value;
+    }
+}
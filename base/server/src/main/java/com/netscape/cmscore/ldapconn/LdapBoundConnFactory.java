@@ -17,6 +17,14 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.ldapconn;
 
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.ldap.ELdapException;
 import com.netscape.certsrv.ldap.ELdapServerDownException;
@@ -39,6 +47,12 @@ import netscape.ldap.LDAPv3;
  * the maximum limit of connections is exceeded, the factory
  * should provide proper synchronization to resolve contention issues.
  *
+ * The available connections are kept in a lock-free stack so the
+ * most recently returned connection, which is likely to be used by
+ * the same thread again, is reused first. Threads waiting for a
+ * connection are served in order, optionally with a timeout. The
+ * available connections are validated in the background.
+ *
  * XXX not sure how useful this is given that LDAPConnection itself can
  * be shared by multiple threads and cloned.
  */
@@ -65,13 +79,32 @@ public class LdapBoundConnFactory extends LdapConnFactory {
     public static final String PROP_LDAPAUTHINFO = "ldapauth";
 
     public static final String PROP_ERROR_IF_DOWN = "errorIfDown";
+    public static final String PROP_WAIT_TIMEOUT = "waitTimeout";
+    public static final String PROP_VALIDATION_INTERVAL = "validationInterval";
+
+    private static final AtomicIntegerFieldUpdater<LdapBoundConnection> CHECKED_OUT =
+            AtomicIntegerFieldUpdater.newUpdater(LdapBoundConnection.class, "checkedOut");
 
-    private int mNumConns = 0; // number of available conns in array
-    private int mTotal = 0; // total num conns
+    private AtomicInteger mNumConns = new AtomicInteger(); // number of available conns
+    private AtomicInteger mTotal = new AtomicInteger(); // total num conns
 
     private boolean doCloning = true;
-    private LdapBoundConnection mMasterConn = null; // master connection object.
-    private LdapBoundConnection[] mConns;
+    private volatile LdapBoundConnection mMasterConn = null; // master connection object.
+    private ConcurrentLinkedDeque<LdapBoundConnection> mConns = new ConcurrentLinkedDeque<>();
+
+    // limits the number of connections in use
+    private Semaphore mPermits;
+
+    protected int mWaitTimeout = 0; // seconds, 0 = no timeout
+    protected int mValidationInterval = 60; // seconds, 0 = disabled
+    private LdapConnValidator.Task<LdapBoundConnFactory> mValidator;
+
+    // statistics
+    private LongAdder mCheckouts = new LongAdder();
+    private LongAdder mFailedCheckouts = new LongAdder();
+    private LongAdder mWaits = new LongAdder();
+    private LongAdder mWaitTime = new LongAdder(); // nanoseconds
+    private LongAccumulator mMaxWaitTime = new LongAccumulator(Long::max, 0); // nanoseconds
 
     /**
      * return error if server is down at creation time.
@@ -156,12 +189,12 @@ public class LdapBoundConnFactory extends LdapConnFactory {
 
     @Override
     public int totalConn() {
-        return mTotal;
+        return mTotal.get();
     }
 
     @Override
-    public synchronized int freeConn() {
-        return mNumConns;
+    public int freeConn() {
+        return mNumConns.get();
     }
 
     @Override
@@ -221,6 +254,9 @@ public class LdapBoundConnFactory extends LdapConnFactory {
         doCloning = dbConfig.getBoolean("doCloning", true);
         logger.debug("LdapBoundConnFactory: doCloning: " + doCloning);
 
+        mWaitTimeout = dbConfig.getInteger(PROP_WAIT_TIMEOUT, mWaitTimeout);
+        mValidationInterval = dbConfig.getInteger(PROP_VALIDATION_INTERVAL, mValidationInterval);
+
         init();
     }
 
@@ -242,6 +278,9 @@ public class LdapBoundConnFactory extends LdapConnFactory {
         if (mMaxResults < 0)
             throw new ELdapException("Invalid maximum number of results: " + mMaxResults);
 
+        if (mWaitTimeout < 0)
+            throw new ELdapException("Invalid wait timeout: " + mWaitTimeout);
+
         if (mConnInfo == null)
             throw new IllegalArgumentException("Missing connection info");
 
@@ -254,8 +293,10 @@ public class LdapBoundConnFactory extends LdapConnFactory {
         logger.debug("LdapBoundConnFactory: port: " + mConnInfo.getPort());
         logger.debug("LdapBoundConnFactory: secure: " + mConnInfo.getSecure());
         logger.debug("LdapBoundConnFactory: authentication: " + mAuthInfo.getAuthType());
+        logger.debug("LdapBoundConnFactory: wait timeout: " + mWaitTimeout);
+        logger.debug("LdapBoundConnFactory: validation interval: " + mValidationInterval);
 
-        mConns = new LdapBoundConnection[mMaxConns];
+        mPermits = new Semaphore(mMaxConns, true);
 
         if (mMinConns > 0) {
             // Create connection handle and make initial connection
@@ -263,6 +304,8 @@ public class LdapBoundConnFactory extends LdapConnFactory {
 
             // initalize minimum number of connection handles available.
             makeMinimum();
+
+            startValidator();
         }
     }
 
@@ -334,7 +377,6 @@ public class LdapBoundConnFactory extends LdapConnFactory {
     private void makeMinimum() throws ELdapException {
         String method = "LdapBoundConnFactory.makeMinimum: ";
         boolean cloning = false;
-        int realMin = Math.max(mMinConns, 1);
         if (mMasterConn != null && mMasterConn.isConnected() && doCloning) {
             logger.debug(method + "connections will be cloned from the master");
             cloning = true;
@@ -342,24 +384,58 @@ public class LdapBoundConnFactory extends LdapConnFactory {
             logger.debug(method + "master conn not available.");
         }
 
-        int increment;
-        logger.debug(method + "begins: total connections: " + mTotal);
-        logger.debug(method + "begins: available connections: " + mNumConns);
+        int increment = mMinConns - mNumConns.get();
+        if (increment <= 0)
+            return;
+
+        logger.debug(method + "increasing minimum connections by " + increment);
+
+        for (int i = 0; i < increment; i++) {
+            LdapBoundConnection conn = cloning ? (LdapBoundConnection) mMasterConn.clone() : makeNewConnection(true);
+            mTotal.incrementAndGet();
+            mConns.offerLast(conn);
+            mNumConns.incrementAndGet();
+        }
+
+        logger.debug(method + "ends: total connections: " + mTotal);
+        logger.debug(method + "ends: number of connections: " + mNumConns);
+    }
+
+    /**
+     * Returns the master connection, reconnecting it if necessary.
+     */
+    private synchronized LdapBoundConnection getMasterConn() throws ELdapException {
 
-        if (mNumConns < realMin && mTotal <= mMaxConns) {
-            increment = Math.min(realMin - mNumConns, mMaxConns - mTotal);
-            logger.debug(method + "increasing minimum connections by " + increment);
+        if (mMinConns == 0) {
+            return mMasterConn;
+        }
 
-            for (int i = increment - 1; i >= 0; i--) {
-                mConns[i] = cloning ? (LdapBoundConnection) mMasterConn.clone() : makeNewConnection(true);
+        if (mMasterConn == null || !mMasterConn.isConnected()) {
+            logger.debug("LdapBoundConnFactory: reestablishing master connection");
+            try {
+                makeConnection(true);
+            } catch (ELdapException e) {
+                mMasterConn = null;
+                throw new ELdapException("LdapBoundConnFactory: Unable to create master connection. " + e.getMessage(), e);
             }
+        }
+
+        return mMasterConn;
+    }
+
+    /**
+     * Creates a new connection by cloning the master connection
+     * if possible.
+     */
+    private LdapBoundConnection createConnection() throws ELdapException {
 
-            mTotal += increment;
-            mNumConns += increment;
+        LdapBoundConnection master = getMasterConn();
 
-            logger.debug(method + "ends: total connections: " + mTotal);
-            logger.debug(method + "ends: number of connections: " + mNumConns);
+        if (mMinConns > 0 && doCloning && master != null) {
+            return (LdapBoundConnection) master.clone();
         }
+
+        return makeNewConnection(true);
     }
 
     /**
@@ -409,75 +485,125 @@ public class LdapBoundConnFactory extends LdapConnFactory {
      * }
      * </pre>
      */
-    public synchronized LdapBoundConnection getConn(boolean waitForConn)
+    public LdapBoundConnection getConn(boolean waitForConn)
             throws ELdapException {
-        LdapBoundConnection conn = null;
-        String method = "LdapBoundConnFactory (" + id + ").getConn: ";
-        logger.debug(method + "initial values. Total: " + mTotal + ", pool: " + mNumConns);
 
-        if (mMasterConn != null)
-            logger.debug(method + "master connection is connected: " + mMasterConn.isConnected());
-        else
-            logger.debug(method + "master connection is null");
+        if (!acquirePermit(waitForConn)) {
+            return null;
+        }
 
-        if ((mMasterConn == null || !mMasterConn.isConnected()) && mMinConns > 0) {
-            try {
-                makeConnection(true);
-            } catch (ELdapException e) {
-                mMasterConn = null;
-                throw new ELdapException("LdapBoundConnFactory: Unable to create master connection. " + e.getMessage(), e);
-            }
+        LdapBoundConnection conn;
+        try {
+            conn = checkOut();
+
+        } catch (ELdapException | RuntimeException e) {
+            mFailedCheckouts.increment();
+            mPermits.release();
+            throw e;
         }
 
-        if (mNumConns == 0) {
-            makeMinimum();
+        mCheckouts.increment();
+        CHECKED_OUT.set(conn, 1);
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("LdapBoundConnFactory (" + id + ").getConn: Total: " + mTotal + ", pool: " + mNumConns);
         }
 
+        return conn;
+    }
 
-        while (mNumConns == 0) {
-            logger.warn("LdapBoundConnFactory: waiting connections for " + mConnInfo.getHost() + ":" + mConnInfo.getPort());
-            if (!waitForConn) {
-                logger.warn("LdapBoundConnFactory: out of LDAP connections");
-                return null;
-            }
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                logger.warn("LdapBoundConnFactory: connection wait interrupted");
-                return null;
+    /**
+     * Acquires a permit to use a connection. Threads waiting for a
+     * permit are served in order.
+     *
+     * @return false if waitForConn is false and no permit is available
+     */
+    private boolean acquirePermit(boolean waitForConn) throws ELdapException {
+
+        try {
+            // unlike tryAcquire(), this does not barge ahead of waiting threads
+            if (mPermits.tryAcquire(0, TimeUnit.SECONDS)) {
+                return true;
             }
-            if (mMinConns == 0) {
-                makeMinimum();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mFailedCheckouts.increment();
+            throw new ELdapException("LdapBoundConnFactory: Connection wait interrupted", e);
+        }
+
+        logger.warn("LdapBoundConnFactory: waiting connections for " + mConnInfo.getHost() + ":" + mConnInfo.getPort());
+
+        if (!waitForConn) {
+            logger.warn("LdapBoundConnFactory: out of LDAP connections");
+            mFailedCheckouts.increment();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+
+        try {
+            if (mWaitTimeout > 0) {
+                acquired = mPermits.tryAcquire(mWaitTimeout, TimeUnit.SECONDS);
+            } else {
+                mPermits.acquire();
+                acquired = true;
             }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mFailedCheckouts.increment();
+            throw new ELdapException("LdapBoundConnFactory: Connection wait interrupted", e);
         }
 
-        mNumConns--;
-        conn = mConns[mNumConns];
-        mConns[mNumConns] = null;
-        logger.debug("LdapBoundConnFactory: number of connections: " + mNumConns);
+        long waitTime = System.nanoTime() - start;
+        mWaits.increment();
+        mWaitTime.add(waitTime);
+        mMaxWaitTime.accumulate(waitTime);
 
+        if (!acquired) {
+            mFailedCheckouts.increment();
+            throw new ELdapException("LdapBoundConnFactory: No LDAP connection available after " + mWaitTimeout + " seconds");
+        }
 
-        if (conn == null || !conn.isConnected()) {
-            logger.debug("LdapBoundConnFactory: reestablishing connection");
-            try {
-                if (mMinConns > 0 &&
-                        doCloning &&
-                        mMasterConn != null) {
-                    conn = (LdapBoundConnection) mMasterConn.clone();
-                } else {
-                    conn = makeNewConnection(true);
-                }
-            } catch (ELdapException e) {
-                mTotal--;
-                String message = "Unable to reestablish LDAP connection: " + e.getMessage();
-                logger.error("LdapBoundConnFactory: " + message, e);
-                throw new ELdapException(message, e);
+        return true;
+    }
+
+    /**
+     * Takes an available connection or creates a new one.
+     */
+    private LdapBoundConnection checkOut() throws ELdapException {
+
+        LdapBoundConnection conn = mConns.pollFirst();
+
+        if (conn != null) {
+            mNumConns.decrementAndGet();
+
+            if (conn.isConnected()) {
+                setSizeLimit(conn);
+                return conn;
             }
-            logger.debug("LdapBoundConnFactory: connection reestablished");
+
+            logger.debug("LdapBoundConnFactory: reestablishing connection");
+            mTotal.decrementAndGet();
         }
 
+        try {
+            conn = createConnection();
+        } catch (ELdapException e) {
+            String message = "Unable to reestablish LDAP connection: " + e.getMessage();
+            logger.error("LdapBoundConnFactory: " + message, e);
+            throw new ELdapException(message, e);
+        }
+
+        mTotal.incrementAndGet();
+        setSizeLimit(conn);
 
+        return conn;
+    }
 
+    private void setSizeLimit(LdapBoundConnection conn) throws ELdapException {
         try {
             // Before returning the connection, set the SIZELIMIT option; this
             // ensures that if the connection is recycled and the previous owner
@@ -487,8 +613,6 @@ public class LdapBoundConnFactory extends LdapConnFactory {
         } catch (LDAPException e) {
             throw new ELdapException("Unable to set LDAP size limit: " + e.getMessage(), e);
         }
-        logger.debug(method + " final values. Total: " + mTotal + ", pool: " + mNumConns);
-        return conn;
     }
 
     /**
@@ -510,9 +634,7 @@ public class LdapBoundConnFactory extends LdapConnFactory {
      * </pre>
      */
     @Override
-    public synchronized void returnConn(LDAPConnection conn) {
-        String method = "LdapBoundConnFactory (" + id + ").returnConn: ";
-        logger.debug(method + "initial values. Total: " + mTotal + ", pool: " + mNumConns);
+    public void returnConn(LDAPConnection conn) {
 
         if (conn == null) {
             return;
@@ -537,28 +659,164 @@ public class LdapBoundConnFactory extends LdapConnFactory {
 
         }
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] == conn) {
-                logger.warn("LdapBoundConnFactory: Connection already returned");
-                --mTotal;
-                notifyAll();
-                return;
-            }
+        if (!CHECKED_OUT.compareAndSet(boundconn, 1, 0)) {
+            logger.warn("LdapBoundConnFactory: Connection already returned");
+            return;
         }
 
-        if (mNumConns < mMinConns) {
-            mConns[mNumConns++] = boundconn;
+        // keep up to the minimum number of connections
+        if (mNumConns.incrementAndGet() <= mMinConns) {
+            mConns.offerFirst(boundconn);
         } else {
+            mNumConns.decrementAndGet();
             try {
                 boundconn.disconnect();
             } catch(LDAPException e) {
                 logger.warn("LdapBoundConnFactory: Unable to disconnect: " + e.getMessage(), e);
             }
-            --mTotal;
+            mTotal.decrementAndGet();
+        }
+
+        mPermits.release();
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("LdapBoundConnFactory (" + id + ").returnConn: Total: " + mTotal + ", pool: " + mNumConns);
+        }
+    }
+
+    /**
+     * Starts validating the available connections periodically.
+     */
+    private synchronized void startValidator() {
+
+        if (mValidationInterval <= 0 || mValidator != null) {
+            return;
         }
-        notifyAll();
-        logger.debug(method + " final values. Total: " + mTotal + ", pool: " + mNumConns);
 
+        // the validator thread is shared by all factories and does not
+        // keep a factory that is dropped without reset() from being
+        // garbage collected
+        mValidator = LdapConnValidator.schedule(
+                this,
+                LdapBoundConnFactory::validateConnections,
+                mValidationInterval,
+                TimeUnit.SECONDS);
+    }
+
+    private synchronized void stopValidator() {
+
+        if (mValidator == null) {
+            return;
+        }
+
+        mValidator.cancel();
+        mValidator = null;
+    }
+
+    /**
+     * Replaces the available connections that have been disconnected
+     * and reestablishes the master connection if necessary, so that
+     * getConn() does not have to reconnect.
+     */
+    void validateConnections() {
+
+        try {
+            getMasterConn();
+        } catch (ELdapException e) {
+            logger.warn("LdapBoundConnFactory: " + e.getMessage(), e);
+            return;
+        }
+
+        // check each available connection once, oldest first
+        int count = mNumConns.get();
+
+        for (int i = 0; i < count; i++) {
+
+            LdapBoundConnection conn = mConns.pollLast();
+            if (conn == null) {
+                break;
+            }
+
+            if (!conn.isConnected()) {
+                logger.debug("LdapBoundConnFactory: replacing disconnected connection");
+                mTotal.decrementAndGet();
+
+                try {
+                    conn = createConnection();
+                } catch (ELdapException e) {
+                    mNumConns.decrementAndGet();
+                    logger.warn("LdapBoundConnFactory: Unable to replace connection: " + e.getMessage(), e);
+                    return;
+                }
+
+                mTotal.incrementAndGet();
+            }
+
+            mConns.offerLast(conn);
+        }
+
+        logger.debug("LdapBoundConnFactory (" + id + "): " + getStats());
+    }
+
+    /**
+     * Returns the number of connections obtained from this pool.
+     */
+    public long getCheckouts() {
+        return mCheckouts.sum();
+    }
+
+    /**
+     * Returns the number of times a connection could not be obtained.
+     */
+    public long getFailedCheckouts() {
+        return mFailedCheckouts.sum();
+    }
+
+    /**
+     * Returns the number of times a thread had to wait for a connection.
+     */
+    public long getWaits() {
+        return mWaits.sum();
+    }
+
+    /**
+     * Returns the total time spent waiting for connections in milliseconds.
+     */
+    public long getWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(mWaitTime.sum());
+    }
+
+    /**
+     * Returns the longest time spent waiting for a connection in milliseconds.
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(mMaxWaitTime.get());
+    }
+
+    /**
+     * Returns the number of connections in use.
+     */
+    public int getActiveConns() {
+        return mPermits == null ? 0 : mMaxConns - mPermits.availablePermits();
+    }
+
+    /**
+     * Returns the percentage of the maximum connections in use.
+     */
+    public int getUtilization() {
+        return getActiveConns() * 100 / mMaxConns;
+    }
+
+    public String getStats() {
+        return "active: " + getActiveConns()
+                + ", available: " + mNumConns
+                + ", total: " + mTotal
+                + ", utilization: " + getUtilization() + "%"
+                + ", checkouts: " + getCheckouts()
+                + ", failed: " + getFailedCheckouts()
+                + ", waits: " + getWaits()
+                + ", wait time: " + getWaitTime() + " ms"
+                + ", max wait time: " + getMaxWaitTime() + " ms";
     }
 
     @Override
@@ -577,14 +835,15 @@ public class LdapBoundConnFactory extends LdapConnFactory {
     public synchronized void reset()
             throws ELdapException {
         logger.debug("Destroying LdapBoundConnFactory(" + id + ")");
-        if (mNumConns == mTotal) {
-            for (int i = 0; i < mNumConns; i++) {
+        if (getActiveConns() == 0) {
+            stopValidator();
+            LdapBoundConnection conn;
+            while ((conn = mConns.pollFirst()) != null) {
                 try {
-                    mConns[i].disconnect();
+                    conn.disconnect();
                 } catch (LDAPException e) {
                     logger.warn("LdapBoundConnFactory: Unable to disconnect: " + e.getMessage(), e);
                 }
-                mConns[i] = null;
             }
             if (mMasterConn != null) {
                 try {
@@ -596,9 +855,8 @@ public class LdapBoundConnFactory extends LdapConnFactory {
                 }
             }
             mMasterConn = null;
-            mTotal = 0;
-            mNumConns = 0;
-            mConns = new LdapBoundConnection[mMaxConns];
+            mTotal.set(0);
+            mNumConns.set(0);
         } else {
             String message = "Unable to reset LDAP connection factory due to outstanding connections";
             logger.error("LdapBoundConnFactory: " + message);
@@ -613,12 +871,13 @@ public class LdapBoundConnFactory extends LdapConnFactory {
     public synchronized void shutdown() throws ELdapException {
 
         logger.debug("Destroying LdapBoundConnFactory(" + id + ")");
+        logger.debug("LdapBoundConnFactory: " + getStats());
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] != null) {
-                mConns[i].close();
-                mConns[i] = null;
-            }
+        stopValidator();
+
+        LdapBoundConnection conn;
+        while ((conn = mConns.pollFirst()) != null) {
+            conn.close();
         }
 
         if (mMasterConn != null) {
@@ -627,8 +886,8 @@ public class LdapBoundConnFactory extends LdapConnFactory {
             mMasterConn = null;
         }
 
-        mTotal = 0;
-        mNumConns = 0;
+        mTotal.set(0);
+        mNumConns.set(0);
 
         if (mAuthInfo != null) {
             mAuthInfo.reset();
@@ -46,6 +46,9 @@ public class LdapBoundConnection extends LDAPConnection {
     private boolean mAuthenticated;
     LdapBoundConnFactory connectionFactory;
 
+    // 1 if the connection has been obtained from the factory
+    volatile int checkedOut;
+
     /**
      * Instantiates a connection to a ldap server, secure or non-secure
      * connection with LDAP basic bind DN and password authentication.
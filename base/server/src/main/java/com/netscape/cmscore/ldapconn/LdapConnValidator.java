@@ -0,0 +1,112 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.ldapconn;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class validates the connections of all connection pools
+ * with a single background thread.
+ *
+ * A pool is only weakly referenced by its task, so a pool that is
+ * no longer used is garbage collected even if it has not been reset,
+ * and its task is removed the next time it runs. The validation
+ * function must not hold a reference to the pool either, for example
+ * it should be an unbound method reference.
+ */
+public class LdapConnValidator {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LdapConnValidator.class);
+
+    private static ScheduledThreadPoolExecutor executor;
+
+    static synchronized ScheduledThreadPoolExecutor getExecutor() {
+
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "LdapConnValidator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Calls the validation function with the target periodically
+     * until the task is cancelled or the target is garbage collected.
+     */
+    public static <T> Task<T> schedule(
+            T target,
+            Consumer<T> validator,
+            long interval,
+            TimeUnit unit) {
+
+        Task<T> task = new Task<>(target, validator);
+        task.future = getExecutor().scheduleWithFixedDelay(task, interval, interval, unit);
+
+        return task;
+    }
+
+    /**
+     * Returns the number of scheduled tasks.
+     */
+    public static synchronized int getTaskCount() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public static class Task<T> implements Runnable {
+
+        WeakReference<T> target;
+        Consumer<T> validator;
+        volatile ScheduledFuture<?> future;
+
+        Task(T target, Consumer<T> validator) {
+            this.target = new WeakReference<>(target);
+            this.validator = validator;
+        }
+
+        @Override
+        public void run() {
+
+            T t = target.get();
+            if (t == null) {
+                logger.debug("LdapConnValidator: Removing task of released connection pool");
+                cancel();
+                return;
+            }
+
+            try {
+                validator.accept(t);
+
+            } catch (Exception e) {
+                // keep the task scheduled
+                logger.warn("LdapConnValidator: Unable to validate connections: " + e.getMessage(), e);
+            }
+        }
+
+        public void cancel() {
+
+            target.clear();
+
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            ScheduledFuture<?> f = future;
+            return f != null && f.isCancelled();
+        }
+    }
+}
@@ -29,6 +29,9 @@ public class LoggerConfig extends ConfigStore {
     public static final String LAST_HASH_FILE_NAME = "lastHashFileName";
     public static final String BUFFER_SIZE = "bufferSize";
     public static final String FLUSH_INTERVAL = "flushInterval";
+    public static final String ASYNC = "async";
+    public static final String QUEUE_SIZE = "queueSize";
+    public static final String OVERFLOW_POLICY = "overflowPolicy";
 
     /**
      * The default output stream buffer size in bytes
@@ -40,6 +43,21 @@ public class LoggerConfig extends ConfigStore {
      */
     public static final int DEFAULT_FLUSH_INTERVAL = 5;
 
+    /**
+     * The default number of pending events in asynchronous mode
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 8192;
+
+    /**
+     * Overflow policies in asynchronous mode:
+     * - block: wait until the queue has space
+     * - drop: discard non-mandatory events, wait for mandatory events
+     * - fail: reject the event with an error
+     */
+    public static final String OVERFLOW_BLOCK = "block";
+    public static final String OVERFLOW_DROP = "drop";
+    public static final String OVERFLOW_FAIL = "fail";
+
     public LoggerConfig() {
     }
 
@@ -102,4 +120,16 @@ public class LoggerConfig extends ConfigStore {
     public int getFlushInterval() throws EBaseException {
         return getInteger(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL);
     }
+
+    public boolean getAsync() throws EBaseException {
+        return getBoolean(ASYNC, false);
+    }
+
+    public int getQueueSize() throws EBaseException {
+        return getInteger(QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    public String getOverflowPolicy() throws EBaseException {
+        return getString(OVERFLOW_POLICY, OVERFLOW_BLOCK);
+    }
 }
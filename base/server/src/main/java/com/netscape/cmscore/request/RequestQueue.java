@@ -30,6 +30,7 @@ import com.netscape.certsrv.request.IService;
 import com.netscape.certsrv.request.PolicyResult;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestStatus;
+import com.netscape.cms.request.RequestRejectedException;
 import com.netscape.cms.request.RequestScheduler;
 import com.netscape.cmscore.dbs.DBSSession;
 import com.netscape.cmscore.dbs.DBSearchResults;
@@ -666,7 +667,15 @@ public class RequestQueue {
         RequestScheduler scheduler = getRequestScheduler();
 
         if (scheduler != null) {
-            scheduler.requestIn(r);
+            try {
+                scheduler.requestIn(r);
+
+            } catch (RequestRejectedException e) {
+                // the request has been stored already, mark it
+                // rejected so it does not remain in BEGIN state
+                rejectRequest(r, e);
+                throw e;
+            }
         }
 
         try {
@@ -686,6 +695,23 @@ public class RequestQueue {
         }
     }
 
+    /**
+     * Marks a request that was not admitted by the scheduler as rejected.
+     */
+    protected void rejectRequest(Request r, RequestRejectedException e) {
+
+        r.setExtData(Request.ERROR, e.getMessage());
+        r.setRequestStatus(RequestStatus.REJECTED);
+
+        try {
+            requestRepository.updateRequest(r);
+
+        } catch (EBaseException ex) {
+            logger.warn("RequestQueue: Unable to update rejected request " + r.getRequestId() + ": " + ex.getMessage(), ex);
+            e.addSuppressed(ex);
+        }
+    }
+
     /**
      * log a change in the request status
      */
@@ -0,0 +1,153 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.usrgrp;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class caches the results of group membership lookups
+ * for a limited time.
+ *
+ * The entries are kept per user and expire together once the
+ * TTL has passed since the first lookup. If the cache is full,
+ * the expired entries are removed, and if that is not enough,
+ * the whole cache is cleared.
+ *
+ * A lookup result is only stored if the cache has not been
+ * invalidated since the lookup started, so a membership change
+ * made during the lookup is not overwritten by an older result.
+ */
+public class GroupMembershipCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(GroupMembershipCache.class);
+
+    private int maxSize;
+    private long ttl; // milliseconds
+
+    private Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // incremented on every invalidation
+    private AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of users
+     * @param ttl entry lifetime in milliseconds
+     */
+    public GroupMembershipCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTTL() {
+        return ttl;
+    }
+
+    /**
+     * Returns the current generation. It should be obtained before
+     * looking up the membership and passed to put().
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the cached membership, or null if it is not cached.
+     */
+    public Boolean get(String userDN, String group, long currentTime) {
+
+        Entry entry = entries.get(normalize(userDN));
+        if (entry == null || entry.expiration <= currentTime) {
+            return null;
+        }
+
+        return entry.groups.get(normalize(group));
+    }
+
+    public void put(String userDN, String group, boolean member, long generation, long currentTime) {
+
+        String key = normalize(userDN);
+        Entry entry = entries.get(key);
+
+        if (entry == null || entry.expiration <= currentTime) {
+
+            if (entries.size() >= maxSize) {
+                removeExpiredEntries(currentTime);
+            }
+
+            if (entries.size() >= maxSize) {
+                logger.debug("GroupMembershipCache: Cache is full, clearing");
+                entries.clear();
+            }
+
+            entry = new Entry(currentTime + ttl);
+            entries.put(key, entry);
+        }
+
+        entry.groups.put(normalize(group), member);
+
+        // discard the result if the cache was invalidated during the lookup
+        if (generation != this.generation.get()) {
+            entry.groups.remove(normalize(group));
+        }
+    }
+
+    public void removeExpiredEntries(long currentTime) {
+        entries.values().removeIf(entry -> entry.expiration <= currentTime);
+    }
+
+    /**
+     * Removes the cached memberships of a user.
+     */
+    public void invalidateUser(String userDN) {
+        generation.incrementAndGet();
+        entries.remove(normalize(userDN));
+    }
+
+    /**
+     * Removes the cached memberships of a group for all users.
+     */
+    public void invalidateGroup(String group) {
+        generation.incrementAndGet();
+        String key = normalize(group);
+        for (Entry entry : entries.values()) {
+            entry.groups.remove(key);
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached users.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    String normalize(String name) {
+        // DNs and group names are case-insensitive
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    static class Entry {
+
+        long expiration;
+        Map<String, Boolean> groups = new ConcurrentHashMap<>();
+
+        Entry(long expiration) {
+            this.expiration = expiration;
+        }
+    }
+}
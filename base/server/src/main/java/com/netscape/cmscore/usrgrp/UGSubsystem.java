@@ -82,6 +82,9 @@ public class UGSubsystem {
     protected transient LdapBoundConnFactory mLdapConnFactory = null;
     protected String mBaseDN = null;
 
+    // cached group memberships, null if disabled
+    protected GroupMembershipCache membershipCache;
+
     /**
      * Constructs LDAP based usr/grp management
      */
@@ -108,10 +111,40 @@ public class UGSubsystem {
         mLdapConnFactory.init(socketConfig, ldapConfig, passwordStore);
     }
 
+    /**
+     * Enables group membership cache.
+     *
+     * @param maxSize maximum number of users in the cache
+     * @param ttl lifetime of cached memberships in seconds
+     */
+    public void initMembershipCache(int maxSize, int ttl) {
+
+        if (maxSize <= 0 || ttl <= 0) {
+            logger.info("UGSubsystem: Group membership cache disabled");
+            membershipCache = null;
+            return;
+        }
+
+        logger.info("UGSubsystem: Group membership cache:");
+        logger.info("UGSubsystem: - size: " + maxSize);
+        logger.info("UGSubsystem: - TTL: " + ttl);
+
+        membershipCache = new GroupMembershipCache(maxSize, ttl * 1000L);
+    }
+
+    public GroupMembershipCache getMembershipCache() {
+        return membershipCache;
+    }
+
     /**
      * Disconnects usr/grp manager from the LDAP
      */
     public void shutdown() {
+
+        if (membershipCache != null) {
+            membershipCache.clear();
+        }
+
         try {
             if (mLdapConnFactory != null) {
                 mLdapConnFactory.reset();
@@ -1026,6 +1059,7 @@ public class UGSubsystem {
                     LDAPModification.ADD, memberAttr);
 
             ldapconn.modify(groupDN, singleChange);
+            invalidateUserMemberships(getUserDN(userid));
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1054,6 +1088,7 @@ public class UGSubsystem {
                     LDAPModification.DELETE, memberAttr);
 
             ldapconn.modify(groupDN, singleChange);
+            invalidateUserMemberships(getUserDN(userid));
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1080,6 +1115,7 @@ public class UGSubsystem {
         try {
             ldapconn = getConn();
             ldapconn.delete("uid=" + LDAPUtil.escapeRDNValue(userid) + "," + getUserBaseDN());
+            invalidateUserMemberships(getUserDN(userid));
             // for audit log
             SessionContext sessionContext = SessionContext.getContext();
             String adminId = (String) sessionContext.get(SessionContext.USER_ID);
@@ -1547,6 +1583,15 @@ public class UGSubsystem {
     }
 
     public boolean isMemberOf(String userid, String groupname) {
+
+        if (membershipCache != null) {
+            // users are always stored under the user base DN
+            Boolean member = membershipCache.get(getUserDN(userid), groupname, System.currentTimeMillis());
+            if (member != null) {
+                return member;
+            }
+        }
+
         try {
             User user = getUser(userid);
             if (user != null) {
@@ -1583,6 +1628,27 @@ public class UGSubsystem {
      * by running an ldap search for the user in the group
      */
     protected boolean isMemberOfLdapGroup(String userid, String groupname) {
+
+        if (membershipCache == null) {
+            return searchLdapGroupMember(userid, groupname, null);
+        }
+
+        Boolean member = membershipCache.get(userid, groupname, System.currentTimeMillis());
+        if (member != null) {
+            logger.trace("authorization result (cached): " + member);
+            return member;
+        }
+
+        long generation = membershipCache.getGeneration();
+        return searchLdapGroupMember(userid, groupname, generation);
+    }
+
+    /**
+     * Runs an ldap search for the user DN in the specified group.
+     * If the search succeeds and the generation is not null, the
+     * result is stored in the membership cache.
+     */
+    protected boolean searchLdapGroupMember(String userid, String groupname, Long generation) {
         String basedn = "cn=" + LDAPUtil.escapeRDNValue(groupname) + ",ou=groups," + mBaseDN;
         LDAPConnection ldapconn = null;
         boolean founduser = false;
@@ -1611,6 +1677,10 @@ public class UGSubsystem {
                 founduser = true;
             }
             logger.trace("authorization result: " + founduser);
+
+            if (generation != null) {
+                membershipCache.put(userid, groupname, founduser, generation, System.currentTimeMillis());
+            }
         } catch (LDAPException e) {
             String errMsg =
                     "isMemberOfLdapGroup: could not find group " + groupname + ". Error " + e;
@@ -1682,6 +1752,7 @@ public class UGSubsystem {
 
             ldapconn = getConn();
             ldapconn.add(entry);
+            invalidateGroupMemberships(grp.getGroupID());
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1710,6 +1781,7 @@ public class UGSubsystem {
         try {
             ldapconn = getConn();
             ldapconn.delete("cn=" + LDAPUtil.escapeRDNValue(name) + "," + getGroupBaseDN());
+            invalidateGroupMemberships(name);
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1770,6 +1842,7 @@ public class UGSubsystem {
 
             ldapconn = getConn();
             ldapconn.modify(dn, mod);
+            invalidateGroupMemberships(grp.getGroupID());
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toPKIException(e);
@@ -1883,6 +1956,18 @@ public class UGSubsystem {
                 ";" + cert.getIssuerDN() + ";" + cert.getSubjectDN();
     }
 
+    protected void invalidateUserMemberships(String userDN) {
+        if (membershipCache != null) {
+            membershipCache.invalidateUser(userDN);
+        }
+    }
+
+    protected void invalidateGroupMemberships(String groupname) {
+        if (membershipCache != null) {
+            membershipCache.invalidateGroup(groupname);
+        }
+    }
+
     /**
      * Retrieves user base dn.
      */
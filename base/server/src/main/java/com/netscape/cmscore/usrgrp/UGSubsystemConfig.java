@@ -27,4 +27,18 @@ public class UGSubsystemConfig extends ConfigStore {
     public LDAPConfig getLDAPConfig() throws EBaseException {
         return getSubStore("ldap", LDAPConfig.class);
     }
+
+    /**
+     * Returns usrgrp.cache.size parameter.
+     */
+    public int getCacheSize() throws EBaseException {
+        return getInteger("cache.size", 1000);
+    }
+
+    /**
+     * Returns usrgrp.cache.ttl parameter in seconds.
+     */
+    public int getCacheTTL() throws EBaseException {
+        return getInteger("cache.ttl", 60);
+    }
 }
@@ -194,6 +194,15 @@ public abstract class AuthzManager {
      */
     public abstract void registerEvaluator(String type, AccessEvaluator evaluator);
 
+    /**
+     * Unregister evaluator. Authorization managers without
+     * evaluators do not need to override this method.
+     *
+     * @param type Type of evaluator
+     */
+    public void unregisterEvaluator(String type) {
+    }
+
     /**
      * Return a table of evaluators
      *
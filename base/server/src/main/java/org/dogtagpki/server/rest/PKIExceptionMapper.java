@@ -8,6 +8,7 @@ import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
 
 import com.netscape.certsrv.base.PKIException;
+import com.netscape.certsrv.base.ServiceUnavailableException;
 
 @Provider
 public class PKIExceptionMapper implements ExceptionMapper<PKIException> {
@@ -59,10 +60,18 @@ public class PKIExceptionMapper implements ExceptionMapper<PKIException> {
             throw new RuntimeException("Unable to map exception: " + e.getMessage(), e);
         }
 
-        return Response
+        Response.ResponseBuilder builder = Response
                 .status(exception.getCode())
                 .entity(entity)
-                .type(contentType)
-                .build();
+                .type(contentType);
+
+        if (exception instanceof ServiceUnavailableException) {
+            Integer retryAfter = ((ServiceUnavailableException) exception).getRetryAfter();
+            if (retryAfter != null) {
+                builder.header("Retry-After", retryAfter);
+            }
+        }
+
+        return builder.build();
     }
 }
@@ -0,0 +1,119 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.authorization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dogtagpki.server.authentication.AuthToken;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.evaluators.AccessEvaluator;
+
+public class ACLExpressionTest {
+
+    // records evaluated expressions, matches user="admin" and group!="Guests"
+    List<String> evaluated = new ArrayList<>();
+
+    // number of expressions evaluated in the session context
+    int sessionEvaluations;
+
+    AccessEvaluator evaluator = new AccessEvaluator() {
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public boolean evaluate(String type, String op, String value) {
+            sessionEvaluations++;
+            return evaluate(null, type, op, value);
+        }
+
+        @Override
+        public boolean evaluate(AuthToken authToken, String type, String op, String value) {
+            evaluated.add(type + op + value);
+            if (type.equals("user")) {
+                return op.equals("=") && value.equals("\"admin\"");
+            }
+            return op.equals("!=") && !value.equals("\"Guests\"");
+        }
+
+        @Override
+        public String[] getSupportedOperators() {
+            return new String[] { "=", "!=" };
+        }
+    };
+
+    Map<String, AccessEvaluator> evaluators = new HashMap<>();
+
+    ACLExpressionTest() {
+        evaluators.put("user", evaluator);
+        evaluators.put("group", evaluator);
+    }
+
+    boolean evaluate(String expression) {
+        evaluated.clear();
+        return ACLExpression.parse(expression).evaluate(evaluators, null);
+    }
+
+    @Test
+    public void testSingleExpression() throws Exception {
+        assertTrue(evaluate("user=\"admin\""));
+        assertTrue(evaluate(" user = \"admin\" "));
+        assertFalse(evaluate("user=\"agent\""));
+        assertTrue(evaluate("group!=\"Administrators\""));
+        assertFalse(evaluate("group!=\"Guests\""));
+    }
+
+    @Test
+    public void testLeftToRight() throws Exception {
+
+        // evaluated as (true || false) && false
+        assertFalse(evaluate("user=\"admin\" || user=\"agent\" && user=\"agent\""));
+
+        // evaluated as (false && true) || true
+        assertTrue(evaluate("user=\"agent\" && user=\"admin\" || user=\"admin\""));
+    }
+
+    @Test
+    public void testShortCircuit() throws Exception {
+
+        assertTrue(evaluate("user=\"admin\" || user=\"agent\" || user=\"other\""));
+        assertEquals(List.of("user=\"admin\""), evaluated);
+
+        assertFalse(evaluate("user=\"agent\" && user=\"admin\" && user=\"other\""));
+        assertEquals(List.of("user=\"agent\""), evaluated);
+
+        assertTrue(evaluate("user=\"agent\" || user=\"admin\""));
+        assertEquals(List.of("user=\"agent\"", "user=\"admin\""), evaluated);
+    }
+
+    @Test
+    public void testSessionContext() throws Exception {
+
+        ACLExpression expression = ACLExpression.parse("user=\"agent\" || group!=\"Administrators\"");
+        sessionEvaluations = 0;
+
+        assertTrue(expression.evaluate(evaluators));
+        assertEquals(2, sessionEvaluations);
+
+        assertTrue(expression.evaluate(evaluators, null));
+        assertEquals(2, sessionEvaluations);
+    }
+
+    @Test
+    public void testEmptyExpression() throws Exception {
+        assertFalse(evaluate(""));
+        assertFalse(evaluate(null));
+    }
+}
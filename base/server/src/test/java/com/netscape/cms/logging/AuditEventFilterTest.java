@@ -0,0 +1,138 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.logging.SignedAuditEvent;
+
+import netscape.ldap.client.JDAPFilter;
+
+public class AuditEventFilterTest {
+
+    SignedAuditEvent createEvent(String outcome, String subjectID) {
+
+        SignedAuditEvent event = new SignedAuditEvent();
+        event.setAttribute("Outcome", outcome);
+        event.setAttribute("SubjectID", subjectID);
+        event.setAttribute("Serial", Integer.valueOf(16)); // not a string
+
+        return event;
+    }
+
+    SignedAuditEvent success = createEvent("Success", "caadmin");
+    SignedAuditEvent failure = createEvent("Failure", "$System$");
+
+    /**
+     * Checks the compiled filter against the expected result.
+     */
+    void check(String filter, SignedAuditEvent event, boolean expected) {
+
+        JDAPFilter jdapFilter = JDAPFilter.getFilter(filter);
+        assertNotNull(jdapFilter, filter);
+
+        AuditEventFilter compiledFilter = AuditEventFilter.compile(jdapFilter);
+
+        assertEquals(expected, compiledFilter.matches(event), filter);
+    }
+
+    @Test
+    public void testNullFilter() throws Exception {
+        assertNull(AuditEventFilter.compile((JDAPFilter) null));
+    }
+
+    @Test
+    public void testPresent() throws Exception {
+
+        check("(Outcome=*)", success, true);
+        check("(Serial=*)", success, true);
+        check("(ClientIP=*)", success, false);
+    }
+
+    @Test
+    public void testEqualityMatch() throws Exception {
+
+        check("(Outcome=Failure)", failure, true);
+        check("(Outcome=Failure)", success, false);
+
+        // case-insensitive
+        check("(Outcome=failure)", failure, true);
+        check("(outcome=Failure)", failure, false);
+
+        // non-string attribute
+        check("(Serial=16)", success, false);
+
+        // missing attribute
+        check("(ClientIP=127.0.0.1)", success, false);
+    }
+
+    @Test
+    public void testSubString() throws Exception {
+
+        // initial
+        check("(SubjectID=ca*)", success, true);
+        check("(SubjectID=CA*)", success, true);
+        check("(SubjectID=kra*)", success, false);
+
+        // final
+        check("(SubjectID=*admin)", success, true);
+        check("(SubjectID=*ADMIN)", success, true);
+        check("(SubjectID=*agent)", success, false);
+
+        // any
+        check("(SubjectID=*adm*)", success, true);
+        check("(SubjectID=*a*d*n*)", success, true);
+        check("(SubjectID=*d*a*)", success, false);
+
+        // initial, any and final
+        check("(SubjectID=c*adm*n)", success, true);
+        check("(SubjectID=$*system*$)", failure, true);
+        check("(SubjectID=c*adm*x)", success, false);
+
+        // substrings must not overlap
+        check("(SubjectID=caa*admin)", success, false);
+        check("(SubjectID=ca*admin)", success, true);
+        check("(SubjectID=*min*in)", success, false);
+
+        // non-string and missing attributes
+        check("(Serial=1*)", success, false);
+        check("(ClientIP=127*)", success, false);
+    }
+
+    @Test
+    public void testNested() throws Exception {
+
+        String filter = "(&(Outcome=Failure)(|(SubjectID=$System$)(SubjectID=*admin)))";
+        check(filter, failure, true);
+        check(filter, success, false);
+        check(filter, createEvent("Failure", "caadmin"), true);
+        check(filter, createEvent("Failure", "agent"), false);
+
+        filter = "(|(Outcome=Success)(!(SubjectID=$*)))";
+        check(filter, success, true);
+        check(filter, failure, false);
+        check(filter, createEvent("Failure", "agent"), true);
+
+        filter = "(!(&(Outcome=*)(!(SubjectID=ca*))))";
+        check(filter, success, true);
+        check(filter, failure, false);
+
+        // not of a missing attribute
+        check("(!(ClientIP=*))", success, true);
+    }
+
+    @Test
+    public void testConstants() throws Exception {
+        assertTrue(AuditEventFilter.ALL.matches(success));
+        assertFalse(AuditEventFilter.NONE.matches(success));
+    }
+}
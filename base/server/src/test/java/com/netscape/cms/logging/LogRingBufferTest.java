@@ -0,0 +1,101 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class LogRingBufferTest {
+
+    @Test
+    public void testCapacity() throws Exception {
+
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(5);
+        assertEquals(8, buffer.capacity());
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        assertFalse(buffer.offer(8));
+        assertEquals(8, buffer.size());
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(8));
+        assertFalse(buffer.offer(9));
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        // wrap around several times
+        for (int i = 0; i < 20; i++) {
+            assertTrue(buffer.offer(i));
+            assertTrue(buffer.offer(i + 100));
+            assertEquals(i, buffer.poll());
+            assertEquals(i + 100, buffer.poll());
+        }
+
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+
+        int producers = 4;
+        int events = 10000;
+
+        LogRingBuffer<int[]> buffer = new LogRingBuffer<>(64);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    int[] event = { producer, i };
+                    while (!buffer.offer(event)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // events from each producer must arrive in order
+        int[] next = new int[producers];
+        int received = 0;
+
+        while (received < producers * events) {
+            int[] event = buffer.poll();
+            if (event == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[event[0]], event[1]);
+            next[event[0]]++;
+            received++;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(buffer.isEmpty());
+    }
+}
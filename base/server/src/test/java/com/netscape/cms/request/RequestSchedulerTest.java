@@ -0,0 +1,95 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.cms.request.RequestScheduler.RequestTypeQueue;
+import com.netscape.cmscore.request.RequestDefaultStub;
+
+public class RequestSchedulerTest {
+
+    static class RequestStub extends RequestDefaultStub {
+
+        String type;
+
+        RequestStub(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public String getRequestType() {
+            return type;
+        }
+    }
+
+    RequestScheduler createScheduler() {
+
+        RequestScheduler scheduler = new RequestScheduler();
+
+        // reject immediately when saturated
+        scheduler.maxWaitTime = 0;
+        scheduler.retryAfter = 5;
+
+        return scheduler;
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+
+        RequestTypeQueue queue = new RequestTypeQueue("enrollment", 1);
+        RequestStub request = new RequestStub("enrollment");
+
+        queue.acquire(request, 0, 5);
+        assertEquals(1, queue.getActive());
+
+        RequestRejectedException e = assertThrows(
+                RequestRejectedException.class,
+                () -> queue.acquire(request, 0, 5));
+        assertEquals(5, e.getRetryAfter());
+        assertEquals(1, queue.getRejected());
+
+        queue.release();
+        assertEquals(0, queue.getActive());
+
+        queue.acquire(request, 0, 5);
+        assertEquals(2, queue.getAdmitted());
+    }
+
+    @Test
+    public void testNestedRequest() throws Exception {
+
+        RequestScheduler scheduler = createScheduler();
+        RequestStub enrollment = new RequestStub("enrollment");
+        RequestStub revocation = new RequestStub("revocation");
+
+        scheduler.requestIn(enrollment);
+
+        // a request processed while processing another request
+        // does not need to be admitted again
+        scheduler.requestIn(revocation);
+        assertEquals(0, scheduler.getQueue("revocation").getActive());
+        scheduler.requestOut(revocation);
+
+        assertEquals(1, scheduler.getQueue("enrollment").getActive());
+        scheduler.requestOut(enrollment);
+        assertEquals(0, scheduler.getQueue("enrollment").getActive());
+    }
+
+    @Test
+    public void testRequestTypes() throws Exception {
+
+        RequestScheduler scheduler = createScheduler();
+
+        // without configuration the requests are not limited
+        RequestTypeQueue queue = scheduler.getQueue("recovery");
+        assertEquals(0, queue.getMaxConcurrent());
+        assertEquals("unknown", scheduler.getQueue(null).getType());
+    }
+}
@@ -0,0 +1,143 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+public class SimplePropertiesTest {
+
+    List<String> keys(SimpleProperties props, String prefix) {
+        List<String> list = new ArrayList<>();
+        for (String key : props.keys(prefix)) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    @Test
+    public void testPrefixKeys() throws Exception {
+
+        SimpleProperties props = new SimpleProperties();
+        props.put("ca.crl.MasterCRL.enable", "true");
+        props.put("ca.crl.MasterCRL.period", "60");
+        props.put("ca.crl0.enable", "false");
+        props.put("ca.cert.signing.nickname", "ca_signing");
+        props.put("ocsp.enable", "true");
+
+        assertEquals(
+                List.of("ca.crl.MasterCRL.enable", "ca.crl.MasterCRL.period"),
+                keys(props, "ca.crl."));
+        assertEquals(5, keys(props, "").size());
+        assertEquals(List.of(), keys(props, "kra."));
+
+        props.remove("ca.crl.MasterCRL.period");
+        props.put("ca.crl.MasterCRL.autoUpdateInterval", "10");
+
+        Map<String, String> map = new TreeMap<>();
+        props.getProperties("ca.crl.MasterCRL.", map);
+        assertEquals(Map.of("autoUpdateInterval", "10", "enable", "true"), map);
+
+        // changes that are not tracked rebuild the index
+        props.putIfAbsent("ca.crl.MasterCRL.period", "30");
+        assertEquals(3, keys(props, "ca.crl.MasterCRL.").size());
+
+        props.clear();
+        assertEquals(List.of(), keys(props, ""));
+    }
+
+    @Test
+    public void testVersion() throws Exception {
+
+        SimpleProperties props = new SimpleProperties();
+
+        long version = props.getVersion();
+        props.put("ocsp.store.ldapStore.notFoundAsGood", "true");
+        assertNotEquals(version, props.getVersion());
+
+        version = props.getVersion();
+        props.remove("ocsp.store.ldapStore.includeNextUpdate");
+        assertEquals(version, props.getVersion());
+
+        props.remove("ocsp.store.ldapStore.notFoundAsGood");
+        assertNotEquals(version, props.getVersion());
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+
+        SimpleProperties props = new SimpleProperties();
+        props.put("ca.crl.MasterCRL.period", "60");
+
+        long version = props.getVersion();
+        props.replace("ca.crl.MasterCRL.period", "30");
+        assertNotEquals(version, props.getVersion());
+
+        version = props.getVersion();
+        props.replace("ca.crl.MasterCRL.period", "30", "10");
+        assertNotEquals(version, props.getVersion());
+
+        version = props.getVersion();
+        props.replaceAll((key, value) -> "5");
+        assertNotEquals(version, props.getVersion());
+
+        version = props.getVersion();
+        props.entrySet().iterator().next().setValue("1");
+        assertNotEquals(version, props.getVersion());
+        assertEquals("1", props.get("ca.crl.MasterCRL.period"));
+    }
+
+    @Test
+    public void testViews() throws Exception {
+
+        SimpleProperties props = new SimpleProperties();
+        props.put("ca.crl.MasterCRL.enable", "true");
+        props.put("ca.crl.MasterCRL.period", "60");
+        props.put("ca.crl.MasterCRL.autoUpdateInterval", "10");
+        props.put("ocsp.enable", "true");
+        keys(props, "");
+
+        long version = props.getVersion();
+        Iterator<String> i = props.keySet().iterator();
+        while (i.hasNext()) {
+            if (i.next().equals("ca.crl.MasterCRL.period")) {
+                i.remove();
+            }
+        }
+        assertNotEquals(version, props.getVersion());
+        assertEquals(
+                List.of("ca.crl.MasterCRL.autoUpdateInterval", "ca.crl.MasterCRL.enable"),
+                keys(props, "ca.crl."));
+
+        props.entrySet().removeIf(e -> e.getKey().startsWith("ocsp."));
+        assertEquals(List.of(), keys(props, "ocsp."));
+
+        props.values().removeIf(value -> value.equals("10"));
+        assertEquals(List.of("ca.crl.MasterCRL.enable"), keys(props, ""));
+    }
+
+    @Test
+    public void testClone() throws Exception {
+
+        SimpleProperties props = new SimpleProperties();
+        props.put("ca.enable", "true");
+        keys(props, "");
+
+        SimpleProperties clone = (SimpleProperties) props.clone();
+        clone.put("kra.enable", "true");
+
+        assertEquals(List.of("ca.enable"), keys(props, ""));
+        assertEquals(List.of("ca.enable", "kra.enable"), keys(clone, ""));
+    }
+}
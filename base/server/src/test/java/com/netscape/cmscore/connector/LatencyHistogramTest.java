@@ -0,0 +1,51 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.connector;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testRecord() throws Exception {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(10);
+        histogram.record(20000);
+
+        assertArrayEquals(
+                new long[] { 2, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 },
+                histogram.getCounts());
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(20000, histogram.getMax());
+        assertEquals(4002, histogram.getAverage());
+    }
+
+    @Test
+    public void testPercentile() throws Exception {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+
+        for (int i = 0; i < 98; i++) {
+            histogram.record(15);
+        }
+        histogram.record(150);
+        histogram.record(30000);
+
+        assertEquals(20, histogram.getPercentile(50));
+        assertEquals(200, histogram.getPercentile(99));
+        assertEquals(30000, histogram.getPercentile(100));
+    }
+}
@@ -108,6 +108,49 @@ public class DBRegistryTest {
         assertTrue(extAttrMapper.mapLDAPAttrsCalled);
     }
 
+    @Test
+    public void testCreateObjectWithUnorderedObjectClasses() throws EBaseException {
+
+        registry.registerObjectClass(RequestRecordDefaultStub.class.getName(),
+                new String[] { "top", "request", "extensibleObject" });
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(new LDAPAttribute("objectclass",
+                new String[] { "extensibleobject", "Request", "top" }));
+
+        IDBObj obj = registry.createObject(attrs);
+        assertEquals(RequestRecordDefaultStub.class, obj.getClass());
+    }
+
+    @Test
+    public void testGetFilterCache() throws EBaseException {
+
+        LDAPRegistry ldapRegistry = (LDAPRegistry) registry;
+        ldapRegistry.init(null);
+
+        String filter = "(&(" + RequestRecord.ATTR_SOURCE_ID + "=foo)(objectclass=" +
+                requestRecordStub.getClass().getName() + "))";
+
+        assertEquals("(&(sourceIdOut=foo)(&(objectclass=ocvalue)))", registry.getFilter(filter));
+        assertEquals("(&(sourceIdOut=foo)(&(objectclass=ocvalue)))", registry.getFilter(filter));
+        assertEquals(1, ldapRegistry.getFilterCacheMisses());
+        assertEquals(1, ldapRegistry.getFilterCacheHits());
+
+        // registering a mapper invalidates the translated filters
+        registry.registerAttribute(RequestRecord.ATTR_SOURCE_ID, new StringMapper("sourceIdNew"));
+        assertEquals("(&(sourceIdNew=foo)(&(objectclass=ocvalue)))", registry.getFilter(filter));
+        assertEquals(2, ldapRegistry.getFilterCacheMisses());
+    }
+
+    @Test
+    public void testCreateKey() {
+        assertEquals("extensibleobject,request,top",
+                LDAPObjectCodec.createKey(new String[] { "top", "request", "extensibleObject" }));
+        assertEquals(
+                LDAPObjectCodec.createKey(new String[] { "top", "request", "extensibleObject" }),
+                LDAPObjectCodec.createKey(new String[] { "extensibleobject", "Request", "top" }));
+    }
+
     static class DBSubsystemStub extends DBSubsystem {
         DBRegistry registry;
 
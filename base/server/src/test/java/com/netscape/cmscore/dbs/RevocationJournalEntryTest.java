@@ -0,0 +1,142 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class RevocationJournalEntryTest {
+
+    BigInteger serialNumber = new BigInteger("123456789abcdef0123456789abcdef", 16);
+    Date revocationDate = new Date(1700000000000L);
+
+    RevokedCertImpl createRevokedCert(boolean extensions) throws Exception {
+
+        CRLExtensions entryExt = null;
+        if (extensions) {
+            entryExt = new CRLExtensions();
+            entryExt.set(CRLReasonExtension.REMOVE_FROM_CRL.getName(),
+                    CRLReasonExtension.REMOVE_FROM_CRL);
+        }
+
+        return new RevokedCertImpl(serialNumber, revocationDate, entryExt);
+    }
+
+    RevocationJournalEntry roundTrip(RevocationJournalEntry entry) throws Exception {
+
+        byte[] encoded = entry.getEncoded();
+        RevocationJournalEntry decoded = RevocationJournalEntry.decode(encoded);
+
+        assertEquals(entry.getSequenceNumber(), decoded.getSequenceNumber());
+        assertEquals(entry.getOperation(), decoded.getOperation());
+        assertEquals(entry.getSerialNumber(), decoded.getSerialNumber());
+
+        // the original encoding is kept to remove the value from the database
+        assertSame(encoded, decoded.getEncoded());
+
+        return decoded;
+    }
+
+    @Test
+    public void testAddRevokedCert() throws Exception {
+
+        RevokedCertImpl revokedCert = createRevokedCert(false);
+        RevocationJournalEntry decoded = roundTrip(new RevocationJournalEntry(
+                1, RevocationJournalEntry.ADD_REVOKED_CERT, serialNumber, revokedCert));
+
+        assertArrayEquals(revokedCert.getEncoded(), decoded.getRevokedCert().getEncoded());
+        assertEquals(revocationDate, decoded.getRevokedCert().getRevocationDate());
+    }
+
+    @Test
+    public void testAddUnrevokedCert() throws Exception {
+
+        RevokedCertImpl revokedCert = createRevokedCert(true);
+        RevocationJournalEntry decoded = roundTrip(new RevocationJournalEntry(
+                Long.MAX_VALUE, RevocationJournalEntry.ADD_UNREVOKED_CERT, serialNumber, revokedCert));
+
+        assertArrayEquals(revokedCert.getEncoded(), decoded.getRevokedCert().getEncoded());
+        assertTrue(decoded.getRevokedCert().hasExtensions());
+    }
+
+    @Test
+    public void testRemoveCerts() throws Exception {
+
+        RevocationJournalEntry decoded = roundTrip(new RevocationJournalEntry(
+                2, RevocationJournalEntry.REMOVE_REVOKED_CERT, serialNumber, null));
+        assertNull(decoded.getRevokedCert());
+
+        decoded = roundTrip(new RevocationJournalEntry(
+                3, RevocationJournalEntry.REMOVE_UNREVOKED_CERT, BigInteger.ONE, null));
+        assertNull(decoded.getRevokedCert());
+    }
+
+    @Test
+    public void testApply() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> revokedCerts = new Hashtable<>();
+        Hashtable<BigInteger, RevokedCertificate> unrevokedCerts = new Hashtable<>();
+
+        RevocationJournalEntry[] journal = {
+                new RevocationJournalEntry(1, RevocationJournalEntry.ADD_REVOKED_CERT,
+                        serialNumber, createRevokedCert(false)),
+                new RevocationJournalEntry(2, RevocationJournalEntry.REMOVE_REVOKED_CERT,
+                        serialNumber, null),
+                new RevocationJournalEntry(3, RevocationJournalEntry.ADD_UNREVOKED_CERT,
+                        serialNumber, createRevokedCert(true))
+        };
+
+        for (RevocationJournalEntry entry : journal) {
+            RevocationJournalEntry.decode(entry.getEncoded()).apply(revokedCerts, unrevokedCerts);
+        }
+
+        assertTrue(revokedCerts.isEmpty());
+        assertEquals(1, unrevokedCerts.size());
+
+        // replaying changes already included in the cache gives the same result
+        for (RevocationJournalEntry entry : journal) {
+            entry.apply(revokedCerts, unrevokedCerts);
+        }
+
+        assertTrue(revokedCerts.isEmpty());
+        assertEquals(1, unrevokedCerts.size());
+
+        new RevocationJournalEntry(4, RevocationJournalEntry.REMOVE_UNREVOKED_CERT, serialNumber, null)
+                .apply(revokedCerts, unrevokedCerts);
+        assertTrue(unrevokedCerts.isEmpty());
+    }
+
+    @Test
+    public void testInvalidEntries() throws Exception {
+
+        byte[] encoded = new RevocationJournalEntry(
+                1, RevocationJournalEntry.REMOVE_REVOKED_CERT, serialNumber, null).getEncoded().clone();
+
+        encoded[0] = 2; // version
+        byte[] version = encoded.clone();
+        assertThrows(IOException.class, () -> RevocationJournalEntry.decode(version));
+
+        encoded[0] = RevocationJournalEntry.VERSION;
+        encoded[9] = 5; // operation
+        byte[] operation = encoded.clone();
+        assertThrows(IOException.class, () -> RevocationJournalEntry.decode(operation));
+    }
+}
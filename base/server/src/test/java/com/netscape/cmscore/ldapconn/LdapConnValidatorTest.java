@@ -0,0 +1,91 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.ldapconn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LdapConnValidatorTest {
+
+    static class Pool {
+
+        AtomicInteger validations = new AtomicInteger();
+        CountDownLatch validated = new CountDownLatch(2);
+
+        void validate() {
+            validations.incrementAndGet();
+            validated.countDown();
+        }
+    }
+
+    void waitForCancel(LdapConnValidator.Task<?> task) throws Exception {
+        for (int i = 0; i < 100 && !task.isCancelled(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+
+        Pool pool = new Pool();
+        LdapConnValidator.Task<Pool> task = LdapConnValidator.schedule(
+                pool, Pool::validate, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(pool.validated.await(5, TimeUnit.SECONDS));
+
+        task.cancel();
+        assertTrue(task.isCancelled());
+
+        // no more validations after the current one
+        Thread.sleep(50);
+        int validations = pool.validations.get();
+        Thread.sleep(50);
+        assertEquals(validations, pool.validations.get());
+    }
+
+    @Test
+    public void testReleasedPool() throws Exception {
+
+        Pool pool = new Pool();
+        LdapConnValidator.Task<Pool> task = LdapConnValidator.schedule(
+                pool, Pool::validate, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(pool.validated.await(5, TimeUnit.SECONDS));
+
+        // simulate the pool being garbage collected without being reset
+        task.target.clear();
+        waitForCancel(task);
+
+        assertTrue(task.isCancelled());
+    }
+
+    @Test
+    public void testSharedThread() throws Exception {
+
+        int count = LdapConnValidator.getTaskCount();
+
+        LdapConnValidator.Task<Pool> task1 = LdapConnValidator.schedule(
+                new Pool(), Pool::validate, 1, TimeUnit.HOURS);
+        LdapConnValidator.Task<Pool> task2 = LdapConnValidator.schedule(
+                new Pool(), Pool::validate, 1, TimeUnit.HOURS);
+
+        assertEquals(count + 2, LdapConnValidator.getTaskCount());
+        assertFalse(task1.isCancelled());
+
+        task1.cancel();
+        task2.cancel();
+
+        // cancelled tasks are removed from the scheduler
+        assertEquals(count, LdapConnValidator.getTaskCount());
+    }
+}
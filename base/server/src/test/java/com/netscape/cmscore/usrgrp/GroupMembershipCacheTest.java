@@ -0,0 +1,88 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.usrgrp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class GroupMembershipCacheTest {
+
+    static final String ADMIN_DN = "uid=admin,ou=people,dc=example,dc=com";
+    static final String AGENT_DN = "uid=agent,ou=people,dc=example,dc=com";
+
+    @Test
+    public void testGetAndPut() throws Exception {
+
+        GroupMembershipCache cache = new GroupMembershipCache(10, 1000);
+
+        assertNull(cache.get(ADMIN_DN, "Administrators", 0));
+
+        cache.put(ADMIN_DN, "Administrators", true, cache.getGeneration(), 0);
+        cache.put(ADMIN_DN, "Certificate Manager Agents", false, cache.getGeneration(), 0);
+
+        assertTrue(cache.get(ADMIN_DN, "Administrators", 500));
+        assertTrue(cache.get(ADMIN_DN.toUpperCase(), "administrators", 500));
+        assertFalse(cache.get(ADMIN_DN, "Certificate Manager Agents", 500));
+
+        // expired
+        assertNull(cache.get(ADMIN_DN, "Administrators", 1000));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+
+        GroupMembershipCache cache = new GroupMembershipCache(10, 1000);
+
+        cache.put(ADMIN_DN, "Administrators", true, cache.getGeneration(), 0);
+        cache.put(AGENT_DN, "Administrators", false, cache.getGeneration(), 0);
+        cache.put(AGENT_DN, "Certificate Manager Agents", true, cache.getGeneration(), 0);
+
+        cache.invalidateGroup("Administrators");
+        assertNull(cache.get(ADMIN_DN, "Administrators", 0));
+        assertNull(cache.get(AGENT_DN, "Administrators", 0));
+        assertTrue(cache.get(AGENT_DN, "Certificate Manager Agents", 0));
+
+        cache.invalidateUser(AGENT_DN);
+        assertNull(cache.get(AGENT_DN, "Certificate Manager Agents", 0));
+    }
+
+    @Test
+    public void testStaleResult() throws Exception {
+
+        GroupMembershipCache cache = new GroupMembershipCache(10, 1000);
+
+        // membership changed while the lookup was in progress
+        long generation = cache.getGeneration();
+        cache.invalidateUser(ADMIN_DN);
+        cache.put(ADMIN_DN, "Administrators", true, generation, 0);
+
+        assertNull(cache.get(ADMIN_DN, "Administrators", 0));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+
+        GroupMembershipCache cache = new GroupMembershipCache(2, 1000);
+
+        cache.put("uid=user1", "Administrators", true, cache.getGeneration(), 0);
+        cache.put("uid=user2", "Administrators", true, cache.getGeneration(), 500);
+        assertEquals(2, cache.size());
+
+        // the expired entry is removed
+        cache.put("uid=user3", "Administrators", true, cache.getGeneration(), 1000);
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("uid=user2", "Administrators", 1000));
+
+        // no expired entries, the cache is cleared
+        cache.put("uid=user4", "Administrators", true, cache.getGeneration(), 1000);
+        assertEquals(1, cache.size());
+        assertTrue(cache.get("uid=user4", "Administrators", 1000));
+    }
+}
@@ -0,0 +1,86 @@
+#
+# Copyright Red Hat, Inc.
+#
+# SPDX-License-Identifier: GPL-2.0-or-later
+
+import logging
+
+import ldap
+
+import pki
+
+logger = logging.getLogger(__name__)
+
+ATTRIBUTE_TYPE = \
+    "( revocationJournal-oid NAME 'revocationJournal' DESC 'CMS defined attribute' " \
+    "SYNTAX 1.3.6.1.4.1.1466.115.121.1.5 X-ORIGIN 'user defined' )"
+
+
+class AddRevocationJournalSchema(pki.server.upgrade.PKIServerUpgradeScriptlet):
+
+    def __init__(self):
+        super().__init__()
+        self.message = 'Add revocationJournal attribute to CRL issuing point schema'
+
+    def upgrade_subsystem(self, instance, subsystem):
+
+        if subsystem.name != 'ca':
+            return
+
+        try:
+            con = subsystem.open_database()
+
+        except Exception as e:  # pylint: disable=broad-except
+            # CRL issuing points will keep storing the CRL cache in full
+            logger.warning('Unable to connect to database: %s', e)
+            logger.warning('Run pki-server db-schema-upgrade to update the schema')
+            return
+
+        try:
+            self.update_schema(con)
+
+        except ldap.LDAPError as e:
+            logger.warning('Unable to update schema: %s', e)
+            logger.warning('Run pki-server db-schema-upgrade to update the schema')
+
+        finally:
+            con.close()
+
+    def update_schema(self, con):
+
+        _, attrs = con.ldap.search_s(
+            'cn=schema',
+            ldap.SCOPE_BASE,
+            '(objectClass=*)',
+            ['attributeTypes', 'objectClasses'])[0]
+
+        attribute_types = [v.decode() for v in attrs.get('attributeTypes', [])]
+        object_classes = [v.decode() for v in attrs.get('objectClasses', [])]
+
+        if not any("NAME 'revocationJournal'" in v for v in attribute_types):
+            logger.info('Adding revocationJournal attribute type')
+            con.ldap.modify_s('cn=schema', [
+                (ldap.MOD_ADD, 'attributeTypes', ATTRIBUTE_TYPE.encode())
+            ])
+
+        for value in object_classes:
+
+            if "NAME 'crlIssuingPointRecord'" not in value:
+                continue
+
+            if 'revocationJournal' in value:
+                logger.info('crlIssuingPointRecord already has revocationJournal')
+                return
+
+            # keep the other attributes of the existing definition
+            new_value = value.replace(
+                'MAY ( ',
+                'MAY ( revocationJournal $ ',
+                1)
+
+            logger.info('Adding revocationJournal to crlIssuingPointRecord')
+            con.ldap.modify_s('cn=schema', [
+                (ldap.MOD_DELETE, 'objectClasses', value.encode()),
+                (ldap.MOD_ADD, 'objectClasses', new_value.encode())
+            ])
+            return
@@ -29,6 +29,7 @@ import org.dogtagpki.server.authentication.AuthToken;
 import org.dogtagpki.server.authorization.AuthzToken;
 import org.dogtagpki.server.tks.TKSEngine;
 import org.dogtagpki.server.tks.TKSEngineConfig;
+import org.dogtagpki.server.tks.servlet.SecureChannelProtocol;
 import org.mozilla.jss.CryptoManager;
 import org.mozilla.jss.netscape.security.util.Utils;
 
@@ -133,6 +134,9 @@ public class ImportTransportCert extends CMSServlet {
             logger.debug("ImportTransportCert: Commiting configuration");
             cs.commit(false);
 
+            // the new certificate may replace a cached one with the same nickname
+            SecureChannelProtocol.getKeyCache().invalidateCerts();
+
             // send success status back to the requestor
             logger.debug("ImportTransportCert: Sending response");
             JSONObject jsonObj = new JSONObject();
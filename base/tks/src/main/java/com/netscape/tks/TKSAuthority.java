@@ -20,6 +20,8 @@ package com.netscape.tks;
 import org.dogtagpki.server.tks.TKSConfig;
 import org.dogtagpki.server.tks.TKSEngine;
 import org.dogtagpki.server.tks.TKSEngineConfig;
+import org.dogtagpki.server.tks.servlet.SecureChannelProtocol;
+import org.dogtagpki.server.tks.servlet.TKSKeyCache;
 
 import com.netscape.certsrv.authority.IAuthority;
 import com.netscape.certsrv.base.EBaseException;
@@ -101,6 +103,13 @@ public class TKSAuthority extends Subsystem implements IAuthority {
      */
     @Override
     public void shutdown() {
+
+        TKSKeyCache keyCache = SecureChannelProtocol.getKeyCache();
+        logger.info("TKSAuthority: Symmetric key cache hits: " + keyCache.getSymKeyHits()
+                + ", misses: " + keyCache.getSymKeyMisses());
+        logger.info("TKSAuthority: Certificate cache hits: " + keyCache.getCertHits()
+                + ", misses: " + keyCache.getCertMisses());
+
         logger.info("TKSAuthority is stopped");
     }
 
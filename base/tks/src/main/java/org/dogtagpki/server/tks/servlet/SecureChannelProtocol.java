@@ -74,6 +74,9 @@ public class SecureChannelProtocol {
     static final int AES_192_BITS = 192;
     static final int AES_256_BITS = 256;
 
+    // handles of the symmetric keys and certificates used by the TKS
+    static final TKSKeyCache keyCache = new TKSKeyCache();
+
     private SymmetricKey transportKey = null;
     CryptoManager cryptoManager = null;
 
@@ -789,6 +792,12 @@ public class SecureChannelProtocol {
             }
 
             devKey.setNickName(devKeyName);
+
+            try {
+                keyCache.invalidateSymKeys(token.getName());
+            } catch (TokenException e) {
+                throw new EBaseException(method + e);
+            }
         } else {
             logger.debug(method + " Found sym key: " + devKeyName);
         }
@@ -1145,29 +1154,28 @@ public class SecureChannelProtocol {
         if (token == null || name == null) {
             throw new EBaseException(method + "Invalid input data!");
         }
-        SymmetricKey[] keys;
+        SymmetricKey key;
 
         logger.debug(method + "Searching for sym key: " + name);
         try {
-            keys = token.getCryptoStore().getSymmetricKeys();
+            key = keyCache.getSymKey(token, name);
         } catch (TokenException e) {
             throw new EBaseException(method + "Can't get the list of symmetric keys!");
         }
-        int len = keys.length;
-        for (int i = 0; i < len; i++) {
-            SymmetricKey cur = keys[i];
-            if (cur != null) {
-                if (name.equals(cur.getNickName())) {
-                    logger.debug(method + "Found key: " + name);
-                    return cur;
-                }
-            }
+
+        if (key != null) {
+            logger.debug(method + "Found key: " + name);
+            return key;
         }
 
         logger.debug(method + " Sym Key not found.");
         return null;
     }
 
+    public static TKSKeyCache getKeyCache() {
+        return keyCache;
+    }
+
     public CryptoToken returnTokenByName(String name, CryptoManager manager) throws NoSuchTokenException, NotInitializedException {
 
         logger.debug("returnTokenByName: requested name: " + name);
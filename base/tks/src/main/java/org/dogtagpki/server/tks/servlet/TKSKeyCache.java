@@ -0,0 +1,218 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.tks.servlet;
+
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateNotYetValidException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.NotInitializedException;
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.ObjectNotFoundException;
+import org.mozilla.jss.crypto.SymmetricKey;
+import org.mozilla.jss.crypto.TokenException;
+import org.mozilla.jss.crypto.X509Certificate;
+
+/**
+ * This class caches the handles of the symmetric keys and
+ * certificates used by the TKS.
+ *
+ * Finding a symmetric key by nickname requires enumerating all
+ * symmetric keys on the token, which is expensive on HSMs with
+ * many key sets. The cache keeps a nickname index of the keys
+ * for each token. If a key is not in the index, the keys are
+ * enumerated again so new keys will be found, but not more often
+ * than once per MIN_RELOAD_INTERVAL for each token, and threads
+ * that miss at the same time share a single enumeration.
+ *
+ * The cache must be invalidated when a key or certificate is
+ * imported, replaced, or removed by the TKS. Keys replaced outside
+ * the TKS under the same nickname require a restart. Cached certificates
+ * that are no longer valid are looked up again, so a renewed
+ * certificate stored under the same nickname will be found.
+ */
+public class TKSKeyCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(TKSKeyCache.class);
+
+    public static final long MIN_RELOAD_INTERVAL = 5000; // milliseconds
+
+    // token name -> key index
+    private Map<String, SymKeyIndex> symKeys = new ConcurrentHashMap<>();
+
+    // token name -> lock for loading the key index
+    private Map<String, Object> symKeyLocks = new ConcurrentHashMap<>();
+
+    // cert nickname -> cert
+    private Map<String, X509Certificate> certs = new ConcurrentHashMap<>();
+
+    private AtomicLong symKeyHits = new AtomicLong();
+    private AtomicLong symKeyMisses = new AtomicLong();
+    private AtomicLong certHits = new AtomicLong();
+    private AtomicLong certMisses = new AtomicLong();
+
+    /**
+     * Returns the symmetric key with the given nickname,
+     * or null if the key does not exist.
+     */
+    public SymmetricKey getSymKey(CryptoToken token, String nickname) throws TokenException {
+
+        String tokenName = token.getName();
+
+        SymKeyIndex index = symKeys.get(tokenName);
+        if (index != null) {
+            SymmetricKey key = index.keys.get(nickname);
+            if (key != null) {
+                symKeyHits.incrementAndGet();
+                return key;
+            }
+        }
+
+        symKeyMisses.incrementAndGet();
+
+        index = loadSymKeys(token, index);
+        return index.keys.get(nickname);
+    }
+
+    /**
+     * Loads the key index of the token unless the index has changed
+     * since the given one was obtained or has been loaded recently.
+     *
+     * @param token token
+     * @param staleIndex index that did not contain the requested key, or null
+     */
+    SymKeyIndex loadSymKeys(CryptoToken token, SymKeyIndex staleIndex) throws TokenException {
+
+        String tokenName = token.getName();
+        Object lock = symKeyLocks.computeIfAbsent(tokenName, name -> new Object());
+
+        synchronized (lock) {
+
+            SymKeyIndex index = symKeys.get(tokenName);
+
+            if (index != null && index != staleIndex) {
+                // loaded by another thread while waiting for the lock
+                return index;
+            }
+
+            if (index != null && System.currentTimeMillis() - index.loadTime < MIN_RELOAD_INTERVAL) {
+                // the key did not exist a moment ago
+                return index;
+            }
+
+            logger.debug("TKSKeyCache: Loading symmetric keys from " + tokenName);
+
+            Map<String, SymmetricKey> keys = new HashMap<>();
+
+            for (SymmetricKey key : token.getCryptoStore().getSymmetricKeys()) {
+                if (key == null) continue;
+
+                String nickname = key.getNickName();
+                if (nickname == null) continue;
+
+                // use the first key if there are duplicate nicknames
+                keys.putIfAbsent(nickname, key);
+            }
+
+            logger.debug("TKSKeyCache: Found " + keys.size() + " symmetric keys in " + tokenName);
+            logger.debug("TKSKeyCache: Symmetric key hits: " + symKeyHits + ", misses: " + symKeyMisses);
+
+            index = new SymKeyIndex(keys, System.currentTimeMillis());
+            symKeys.put(tokenName, index);
+
+            return index;
+        }
+    }
+
+    /**
+     * Returns the certificate with the given nickname.
+     */
+    public X509Certificate getCert(String nickname)
+            throws NotInitializedException, ObjectNotFoundException, TokenException {
+
+        X509Certificate cert = certs.get(nickname);
+        if (cert != null && isValid(cert)) {
+            certHits.incrementAndGet();
+            return cert;
+        }
+
+        certMisses.incrementAndGet();
+
+        cert = CryptoManager.getInstance().findCertByNickname(nickname);
+        certs.put(nickname, cert);
+
+        return cert;
+    }
+
+    /**
+     * Returns false if the certificate has expired or is not valid yet.
+     */
+    boolean isValid(X509Certificate cert) {
+
+        if (!(cert instanceof java.security.cert.X509Certificate)) {
+            return true;
+        }
+
+        try {
+            ((java.security.cert.X509Certificate) cert).checkValidity();
+            return true;
+
+        } catch (CertificateExpiredException | CertificateNotYetValidException e) {
+            logger.debug("TKSKeyCache: Cached certificate " + cert.getNickname() + " is not valid: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Removes the symmetric keys of the given token from the cache.
+     */
+    public void invalidateSymKeys(String tokenName) {
+        logger.debug("TKSKeyCache: Invalidating symmetric keys in " + tokenName);
+        symKeys.remove(tokenName);
+    }
+
+    public void invalidateSymKeys() {
+        logger.debug("TKSKeyCache: Invalidating all symmetric keys");
+        symKeys.clear();
+    }
+
+    public void invalidateCerts() {
+        logger.debug("TKSKeyCache: Invalidating certificates");
+        certs.clear();
+    }
+
+    public long getSymKeyHits() {
+        return symKeyHits.get();
+    }
+
+    public long getSymKeyMisses() {
+        return symKeyMisses.get();
+    }
+
+    public long getCertHits() {
+        return certHits.get();
+    }
+
+    public long getCertMisses() {
+        return certMisses.get();
+    }
+
+    static class SymKeyIndex {
+
+        // key nickname -> key
+        Map<String, SymmetricKey> keys;
+        long loadTime;
+
+        SymKeyIndex(Map<String, SymmetricKey> keys, long loadTime) {
+            this.keys = keys;
+            this.loadTime = loadTime;
+        }
+    }
+}
@@ -651,7 +651,7 @@ public class TokenServlet extends CMSServlet {
                     logger.debug("TokenServlet.computeSessionKeySCP02:drmtransport_cert_nickname=" + drmTransNickname);
 
                     X509Certificate drmTransCert = null;
-                    drmTransCert = CryptoManager.getInstance().findCertByNickname(drmTransNickname);
+                    drmTransCert = SecureChannelProtocol.getKeyCache().getCert(drmTransNickname);
                     // wrap kek session key with DRM transport public key
 
                     PublicKey pubKey = drmTransCert.getPublicKey();
@@ -1219,7 +1219,7 @@ public class TokenServlet extends CMSServlet {
                         logger.debug("TokenServlet:drmtransport_cert_nickname=" + drmTransNickname);
 
                         X509Certificate drmTransCert = null;
-                        drmTransCert = CryptoManager.getInstance().findCertByNickname(drmTransNickname);
+                        drmTransCert = SecureChannelProtocol.getKeyCache().getCert(drmTransNickname);
                         // wrap kek session key with DRM transport public key
                         CryptoToken token = null;
                         if (useSoftToken_s.equals("true")) {
@@ -3128,7 +3128,7 @@ public class TokenServlet extends CMSServlet {
         X509Certificate drmTransCert = null;
         try {
 
-            drmTransCert = CryptoManager.getInstance().findCertByNickname(drmTransNickname);
+            drmTransCert = SecureChannelProtocol.getKeyCache().getCert(drmTransNickname);
             // wrap kek session key with DRM transport public key
             CryptoToken token = null;
             if (useSoftToken.equals("true")) {